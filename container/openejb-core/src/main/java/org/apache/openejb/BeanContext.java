@@ -26,6 +26,7 @@ import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.cmp.KeyGenerator;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorInstance;
 import org.apache.openejb.core.interceptor.InterceptorStack;
@@ -333,6 +334,7 @@ public class BeanContext extends DeploymentContext {
     private final List<InterceptorInstance> systemInterceptors = new ArrayList<>();
     private final List<InterceptorInstance> userInterceptors = new ArrayList<>();
     private final List<Injection> injections = new ArrayList<>();
+    private volatile InjectionPlan injectionPlan;
     private final Map<Class, InterfaceType> interfaces = new HashMap<>();
     private final Map<Class, ExceptionType> exceptions = new ConcurrentHashMap<>();
 
@@ -752,6 +754,16 @@ public class BeanContext extends DeploymentContext {
         return injections;
     }
 
+    // shared by the bean and its interceptors, each class gets its own plan
+    private InjectionPlan getInjectionPlan(final Context ctx) {
+        InjectionPlan plan = injectionPlan;
+        if (plan == null || plan.getContext() != ctx) {
+            plan = new InjectionPlan(injections, ctx, getModuleContext().getAppContext());
+            injectionPlan = plan;
+        }
+        return plan;
+    }
+
     public Index<EntityManagerFactory, EntityManagerConfiguration> getExtendedEntityManagerFactories() {
         return getStateful().extendedEntityManagerFactories;
     }
@@ -1126,14 +1138,23 @@ public class BeanContext extends DeploymentContext {
 
     public void addSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(new InterceptorInstance(interceptor));
+        clearInterceptorChains();
     }
 
     public void addFirstSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(0, new InterceptorInstance(interceptor));
+        clearInterceptorChains();
     }
 
     public void addUserInterceptor(final Object interceptor) {
         userInterceptors.add(new InterceptorInstance(interceptor));
+        clearInterceptorChains();
+    }
+
+    private void clearInterceptorChains() {
+        for (final MethodContext methodContext : methodContextMap.values()) {
+            methodContext.clearInterceptorChains();
+        }
     }
 
     public List<InterceptorInstance> getUserAndSystemInterceptors() {
@@ -1174,12 +1195,17 @@ public class BeanContext extends DeploymentContext {
         this.cdiInterceptors.clear();
         this.cdiInterceptors.addAll(cdiInterceptors);
         this.instanceScopedInterceptors.addAll(cdiInterceptors);
+        clearInterceptorChains();
     }
 
     public List<InterceptorData> getMethodInterceptors(final Method method) {
         return getMethodContext(method).getInterceptors();
     }
 
+    public InterceptorChain getMethodInterceptorChain(final Method method, final Operation operation) {
+        return getMethodContext(method).getInterceptorChain(operation);
+    }
+
     public List<InterceptorData> getInterceptorData() {
         final List<InterceptorData> datas = new ArrayList<>(getUserAndSystemInterceptors().size());
         for (final InterceptorInstance instance : getUserAndSystemInterceptors()) {
@@ -1596,7 +1622,7 @@ public class BeanContext extends DeploymentContext {
 
             final InjectionProcessor injectionProcessor;
             if (!dynamicallyImplemented) {
-                injectionProcessor = new InjectionProcessor(rootInstance, getInjections(), InjectionProcessor.unwrap(ctx));
+                injectionProcessor = new InjectionProcessor(rootInstance, getInjectionPlan(InjectionProcessor.unwrap(ctx)));
                 beanInstance = injectionProcessor.createInstance();
                 inject(beanInstance, creationalContext);
             } else {
@@ -1681,7 +1707,7 @@ public class BeanContext extends DeploymentContext {
                     iInstance = clazz.newInstance();
                 }
 
-                final InjectionProcessor interceptorInjector = new InjectionProcessor(iInstance, this.getInjections(), InjectionProcessor.unwrap(ctx));
+                final InjectionProcessor interceptorInjector = new InjectionProcessor(iInstance, getInjectionPlan(InjectionProcessor.unwrap(ctx)));
                 try {
                     final Object interceptorInstance = interceptorInjector.createInstance();
                     if (webBeansContext != null) {
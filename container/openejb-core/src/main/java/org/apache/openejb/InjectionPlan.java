@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb;
+
+import org.apache.openejb.core.ivm.BaseEjbProxyHandler;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.persistence.JtaEntityManager;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.PassthroughFactory;
+import org.apache.openejb.util.proxy.LocalBeanProxyFactory;
+import org.apache.openejb.util.proxy.ProxyManager;
+import org.apache.xbean.propertyeditor.PropertyEditors;
+import org.apache.xbean.recipe.ObjectRecipe;
+import org.apache.xbean.recipe.Option;
+import org.apache.xbean.recipe.ReflectionUtil;
+
+import javax.naming.Context;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Injections of a component compiled once per injected class instead of being looked up and set through an
+ * {@link ObjectRecipe} for every instance (see {@link InjectionProcessor#InjectionProcessor(Object, InjectionPlan)}).
+ * <p/>
+ * The first instance of a class resolves its injections as {@link InjectionProcessor} does. Values which can't change
+ * (env entries, datasources, entity managers and their factories, stateless and singleton references of the same
+ * application) are kept, the others (stateful references for instance, a new session per injection, or references to
+ * another application which can be redeployed independently) are looked up again for every instance.
+ * Fields and setters taking the value as it is are assigned through method handles, a value needing a conversion is
+ * still set through xbean.
+ */
+public final class InjectionPlan {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, InjectionPlan.class);
+
+    public static final String ACTIVE = "openejb.injection.plan";
+
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Collection<Injection> injections;
+    private final Context context;
+    private final AppContext appContext;
+    private final boolean active;
+    private final ConcurrentMap<Class<?>, List<Step>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * @param appContext the application of the injected component, only its own bean references are kept
+     */
+    public InjectionPlan(final Collection<Injection> injections, final Context context, final AppContext appContext) {
+        this.injections = injections;
+        this.context = context;
+        this.appContext = appContext;
+        this.active = SystemInstance.get().getOptions().get(ACTIVE, true);
+    }
+
+    public Collection<Injection> getInjections() {
+        return injections;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return false if the plans are deactivated and the instance must be injected by an {@link InjectionProcessor}
+     */
+    boolean inject(final Object instance) throws OpenEJBException {
+        if (!active) {
+            return false;
+        }
+
+        final Class<?> clazz = instance.getClass();
+        final List<Step> steps = plans.get(clazz);
+        if (steps == null) {
+            compile(clazz, instance);
+            return true;
+        }
+
+        for (final Step step : steps) {
+            step.inject(instance);
+        }
+        return true;
+    }
+
+    // the values resolved to compile the plan are injected in the instance, dynamic ones are not looked up twice
+    private void compile(final Class<?> clazz, final Object instance) throws OpenEJBException {
+        final List<Step> steps = new ArrayList<>();
+        if (injections != null && context != null) {
+            for (final Injection injection : injections) {
+                if (injection.getTarget() == null || !injection.getTarget().isAssignableFrom(clazz)) {
+                    continue;
+                }
+
+                final Object value = InjectionProcessor.resolve(context, Collections.<String, Object>emptyMap(), injection);
+                final Step step = new Step(injection, value != null && isConstant(value) ? value : null, setter(injection, value));
+                step.set(instance, value);
+                steps.add(step);
+            }
+        }
+        plans.putIfAbsent(clazz, steps);
+    }
+
+    private boolean isConstant(final Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+            || value instanceof Class || value instanceof Enum
+            || value instanceof DataSource || value instanceof EntityManagerFactory || value instanceof JtaEntityManager) {
+            return true;
+        }
+
+        // a stateful reference is a new session each time, stateless and singleton proxies can be shared
+        final Class<?> type = value.getClass();
+        if (!LocalBeanProxyFactory.isProxy(type) && !ProxyManager.isProxyClass(type)) {
+            return false;
+        }
+        final InvocationHandler handler = ProxyManager.getInvocationHandler(value);
+        if (!BaseEjbProxyHandler.class.isInstance(handler)) {
+            return false;
+        }
+        // a bean of another application goes away with its redeployment, the proxy would then be invalid
+        final BeanContext beanContext = BaseEjbProxyHandler.class.cast(handler).getBeanContext();
+        if (appContext == null || beanContext.getModuleContext().getAppContext() != appContext) {
+            return false;
+        }
+        final BeanType beanType = beanContext.getComponentType();
+        return beanType == BeanType.STATELESS || beanType == BeanType.SINGLETON;
+    }
+
+    /**
+     * @return the handle setting the value to the member xbean would use or null if xbean must convert the value
+     */
+    private static MethodHandle setter(final Injection injection, final Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        final Set<Option> options = newRecipe(value).getOptions();
+        final List<Member> members = new ArrayList<>();
+        try {
+            members.addAll(ReflectionUtil.findAllSetters(injection.getTarget(), injection.getName(), value, options, PropertyEditors.registry()));
+        } catch (final RuntimeException e) {
+            // no setter
+        }
+        try {
+            members.add(ReflectionUtil.findField(injection.getTarget(), injection.getName(), value, options, PropertyEditors.registry()));
+        } catch (final RuntimeException e) {
+            // no field
+        }
+        if (members.isEmpty()) {
+            return null;
+        }
+
+        try {
+            final Member member = members.get(0);
+            if (member instanceof Method) {
+                final Method method = (Method) member;
+                if (!box(method.getParameterTypes()[0]).isInstance(value)) {
+                    return null;
+                }
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            }
+
+            final Field field = (Field) member;
+            if (!box(field.getType()).isInstance(value)) {
+                return null;
+            }
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> box(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        if (type == char.class) {
+            return Character.class;
+        }
+        if (type == byte.class) {
+            return Byte.class;
+        }
+        if (type == short.class) {
+            return Short.class;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == float.class) {
+            return Float.class;
+        }
+        return Double.class;
+    }
+
+    private static ObjectRecipe newRecipe(final Object instance) {
+        final ObjectRecipe recipe = PassthroughFactory.recipe(instance);
+        recipe.allow(Option.FIELD_INJECTION);
+        recipe.allow(Option.PRIVATE_PROPERTIES);
+        recipe.allow(Option.IGNORE_MISSING_PROPERTIES);
+        recipe.allow(Option.NAMED_PARAMETERS);
+        return recipe;
+    }
+
+    private final class Step {
+        private final Injection injection;
+        private final Object constant;
+        private final MethodHandle setter;
+        private final Class<?> type;
+
+        private Step(final Injection injection, final Object constant, final MethodHandle setter) {
+            this.injection = injection;
+            this.constant = constant;
+            this.setter = setter == null ? null : setter.asType(SETTER);
+            this.type = setter == null ? null : box(setter.type().parameterType(1));
+        }
+
+        private void inject(final Object instance) throws OpenEJBException {
+            set(instance, constant != null ? constant : InjectionProcessor.resolve(context, Collections.<String, Object>emptyMap(), injection));
+        }
+
+        private void set(final Object instance, final Object value) throws OpenEJBException {
+            if (value == null) {
+                logger.warning("Injection data not found in JNDI context: jndiName='" + injection.getJndiName() + "', target=" + injection.getTarget().getName() + "/" + injection.getName());
+                return;
+            }
+
+            if (setter != null && type.isInstance(value)) {
+                try {
+                    setter.invokeExact(instance, value);
+                } catch (final Throwable e) {
+                    throw new OpenEJBException("Error while creating bean " + instance.getClass().getName(), e);
+                }
+                return;
+            }
+
+            final ObjectRecipe recipe = newRecipe(instance);
+            recipe.setProperty(injection.getTarget().getName() + "/" + injection.getName(), value);
+            try {
+                recipe.create(instance.getClass().getClassLoader());
+            } catch (final Exception e) {
+                throw new OpenEJBException("Error while creating bean " + instance.getClass().getName(), e);
+            }
+            final Map<String, Object> unsetProperties = recipe.getUnsetProperties();
+            for (final String property : unsetProperties.keySet()) {
+                logger.warning("Injection: No such property '" + property + "' in class " + instance.getClass().getName());
+            }
+        }
+    }
+}
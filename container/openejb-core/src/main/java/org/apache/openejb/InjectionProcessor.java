@@ -50,7 +50,7 @@ public class InjectionProcessor<T> {
     private T instance;
     private T suppliedInstance;
     private final Map<String, Object> bindings = new HashMap<>();
-
+    private InjectionPlan plan;
 
     public InjectionProcessor(final T suppliedInstance, final Collection<Injection> injections, final Context context) {
         this.beanClass = null;
@@ -61,6 +61,14 @@ public class InjectionProcessor<T> {
         preDestroyMethods = null;
     }
 
+    /**
+     * Injects the supplied instance with the compiled plan of its class, see {@link InjectionPlan}.
+     */
+    public InjectionProcessor(final T suppliedInstance, final InjectionPlan plan) {
+        this(suppliedInstance, plan.getInjections(), plan.getContext());
+        this.plan = plan;
+    }
+
     public InjectionProcessor(final Class<? extends T> beanClass, final Collection<Injection> injections, final Context context) {
         this.beanClass = beanClass;
         this.injections = injections;
@@ -102,6 +110,11 @@ public class InjectionProcessor<T> {
             throw new IllegalStateException("Instance already constructed");
         }
 
+        if (plan != null && suppliedInstance != null && properties.isEmpty() && plan.inject(suppliedInstance)) {
+            instance = suppliedInstance;
+            return;
+        }
+
         Class<? extends T> clazz = beanClass;
 
         final ObjectRecipe objectRecipe;
@@ -210,35 +223,7 @@ public class InjectionProcessor<T> {
                     continue;
                 }
 
-                final String jndiName = injection.getJndiName();
-                Object value;
-                try {
-                    value = context.lookup(jndiName);
-                } catch (final NamingException ne) { // some fallback
-                    value = bindings.get(jndiName);
-                    if (value instanceof SimpleReference) {
-                        try {
-                            value = ((SimpleReference) value).getContent();
-                        } catch (final NamingException e) {
-                            if (value instanceof JndiUrlReference) {
-                                try {
-                                    value = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext()
-                                        .lookup(((JndiUrlReference) value).getJndiName());
-                                } catch (final NamingException e1) {
-                                    value = null;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (value == null) { // used for testing/mocking
-                    final FallbackPropertyInjector fallback = SystemInstance.get().getComponent(FallbackPropertyInjector.class);
-                    if (fallback != null) {
-                        value = fallback.getValue(injection);
-                    }
-                }
-
+                final Object value = resolve(context, bindings, injection);
                 if (value != null) {
                     final String prefix;
                     if (usePrefix) {
@@ -255,6 +240,38 @@ public class InjectionProcessor<T> {
         }
     }
 
+    static Object resolve(final Context context, final Map<String, Object> bindings, final Injection injection) {
+        final String jndiName = injection.getJndiName();
+        Object value;
+        try {
+            value = context.lookup(jndiName);
+        } catch (final NamingException ne) { // some fallback
+            value = bindings.get(jndiName);
+            if (value instanceof SimpleReference) {
+                try {
+                    value = ((SimpleReference) value).getContent();
+                } catch (final NamingException e) {
+                    if (value instanceof JndiUrlReference) {
+                        try {
+                            value = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext()
+                                .lookup(((JndiUrlReference) value).getJndiName());
+                        } catch (final NamingException e1) {
+                            value = null;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (value == null) { // used for testing/mocking
+            final FallbackPropertyInjector fallback = SystemInstance.get().getComponent(FallbackPropertyInjector.class);
+            if (fallback != null) {
+                value = fallback.getValue(injection);
+            }
+        }
+        return value;
+    }
+
     public static Context unwrap(final Context context) {
 //        if (context == null) return null;
 //        try {
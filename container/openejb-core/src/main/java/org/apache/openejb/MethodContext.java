@@ -17,6 +17,8 @@
 
 package org.apache.openejb;
 
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.timer.ScheduleData;
 import org.apache.openejb.core.transaction.TransactionType;
@@ -27,7 +29,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @version $Rev$ $Date$
@@ -43,6 +47,7 @@ public class MethodContext {
     private TransactionType transactionType;
     private Duration accessTimeout;
     private boolean asynchronous;
+    private final Map<Operation, InterceptorChain> chains = new ConcurrentHashMap<>();
 
     public MethodContext(final BeanContext beanContext, final Method beanMethod) {
         this.beanContext = beanContext;
@@ -51,6 +56,7 @@ public class MethodContext {
 
     public void setSelfInterception(final InterceptorData data) {
         self = data;
+        clearInterceptorChains();
     }
 
     public void setAccessTimeout(final Duration accessTimeout) {
@@ -71,11 +77,13 @@ public class MethodContext {
 
     public void addCdiInterceptor(final InterceptorData data) {
         cdiInterceptors.add(data);
+        clearInterceptorChains();
     }
 
     public void setInterceptors(final List<InterceptorData> interceptors) {
         this.interceptors.clear();
         this.interceptors.addAll(interceptors);
+        clearInterceptorChains();
     }
 
     public List<InterceptorData> getInterceptors() {
@@ -89,6 +97,26 @@ public class MethodContext {
         return datas;
     }
 
+    /**
+     * @param operation BUSINESS or TIMEOUT, the operations a bean method is called for
+     * @return the chain of {@link #getInterceptors()} around the bean method, built on first use
+     */
+    public InterceptorChain getInterceptorChain(final Operation operation) {
+        InterceptorChain chain = chains.get(operation);
+        if (chain == null) {
+            chain = new InterceptorChain(beanMethod, operation, getInterceptors());
+            final InterceptorChain existing = chains.putIfAbsent(operation, chain);
+            if (existing != null) {
+                chain = existing;
+            }
+        }
+        return chain;
+    }
+
+    void clearInterceptorChains() {
+        chains.clear();
+    }
+
     public LockType getLockType() {
         return lockType != null ? lockType : beanContext.getLockType();
     }
@@ -243,8 +243,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -910,19 +911,41 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 // to the class loader which must be added before any classes are loaded
                 final Map<String, String> units = new HashMap<>();
                 final PersistenceBuilder persistenceBuilder = new PersistenceBuilder(persistenceClassLoaderHandler);
-                for (final PersistenceUnitInfo info : appInfo.persistenceUnits) {
-                    final ReloadableEntityManagerFactory factory;
+                final ClassLoader unitsClassLoader = classLoader;
+                // the undeployment only closes the bound factories so the other ones are closed here on failure
+                final ParallelBuilder.Discard<ReloadableEntityManagerFactory> unbound = new ParallelBuilder.Discard<ReloadableEntityManagerFactory>() {
+                    @Override
+                    public void discard(final ReloadableEntityManagerFactory factory) throws Exception {
+                        factory.close();
+                        persistenceClassLoaderHandler.destroy(factory.getEntityManagerFactoryCallable().getUnitInfo().getId());
+                    }
+                };
+                final List<ReloadableEntityManagerFactory> factories = ParallelBuilder.build(appInfo.persistenceUnits, new ParallelBuilder.Build<PersistenceUnitInfo, ReloadableEntityManagerFactory>() {
+                    @Override
+                    public ReloadableEntityManagerFactory build(final PersistenceUnitInfo info) throws Exception {
+                        return persistenceBuilder.createEntityManagerFactory(info, unitsClassLoader, validatorFactoriesByConfig, cdiActive);
+                    }
+                }, unbound);
+                for (int i = 0; i < factories.size(); i++) {
+                    final PersistenceUnitInfo info = appInfo.persistenceUnits.get(i);
+                    final ReloadableEntityManagerFactory factory = factories.get(i);
                     try {
-                        factory = persistenceBuilder.createEntityManagerFactory(info, classLoader, validatorFactoriesByConfig, cdiActive);
                         containerSystem.getJNDIContext().bind(PERSISTENCE_UNIT_NAMING_CONTEXT + info.id, factory);
                         units.put(info.name, PERSISTENCE_UNIT_NAMING_CONTEXT + info.id);
-                    } catch (final NameAlreadyBoundException e) {
-                        throw new OpenEJBException("PersistenceUnit already deployed: " + info.persistenceUnitRootUrl);
                     } catch (final Exception e) {
+                        ParallelBuilder.discard(factories.subList(i, factories.size()), unbound, e);
+                        if (NameAlreadyBoundException.class.isInstance(e)) {
+                            throw new OpenEJBException("PersistenceUnit already deployed: " + info.persistenceUnitRootUrl);
+                        }
                         throw new OpenEJBException(e);
                     }
 
-                    factory.register();
+                    try {
+                        factory.register();
+                    } catch (final OpenEJBException e) {
+                        ParallelBuilder.discard(factories.subList(i + 1, factories.size()), unbound, e);
+                        throw e;
+                    }
                 }
 
                 logger.debug("Loaded persistence units: " + units);
@@ -1483,14 +1506,25 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                                       final Set<Injection> injections, final List<BeanContext> allDeployments, final String webappId) throws OpenEJBException {
         final String globalTimersOn = SystemInstance.get().getProperty(OPENEJB_TIMERS_ON, "true");
 
-        final EjbJarBuilder ejbJarBuilder = new EjbJarBuilder(props, appContext);
+        final List<EjbJarInfo> ejbJars = new ArrayList<>(appInfo.ejbJars.size());
         for (final EjbJarInfo ejbJar : appInfo.ejbJars) {
+            if (!isSkip(appInfo, webappId, ejbJar)) {
+                ejbJars.add(ejbJar);
+            }
+        }
 
-            if (isSkip(appInfo, webappId, ejbJar)) {
-                continue;
+        // bean contexts only depend on their own module, everything touching the container system stays sequential
+        final EjbJarBuilder ejbJarBuilder = new EjbJarBuilder(props, appContext);
+        final List<HashMap<String, BeanContext>> builtDeployments = ParallelBuilder.build(ejbJars, new ParallelBuilder.Build<EjbJarInfo, HashMap<String, BeanContext>>() {
+            @Override
+            public HashMap<String, BeanContext> build(final EjbJarInfo ejbJar) throws Exception {
+                return ejbJarBuilder.build(ejbJar, injections, classLoader);
             }
+        });
 
-            final HashMap<String, BeanContext> deployments = ejbJarBuilder.build(ejbJar, injections, classLoader);
+        for (int i = 0; i < ejbJars.size(); i++) {
+            final EjbJarInfo ejbJar = ejbJars.get(i);
+            final HashMap<String, BeanContext> deployments = builtDeployments.get(i);
 
             final JaccPermissionsBuilder jaccPermissionsBuilder = new JaccPermissionsBuilder();
             final PolicyContext policyContext = jaccPermissionsBuilder.build(ejbJar, deployments);
@@ -3770,7 +3804,8 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
     private static class PersistenceClassLoaderHandlerImpl implements PersistenceClassLoaderHandler {
         private static final AtomicBoolean logged = new AtomicBoolean(false);
 
-        private final Map<String, List<ClassFileTransformer>> transformers = new TreeMap<>();
+        // persistence units of an application can be built in parallel, see ParallelBuilder
+        private final Map<String, List<ClassFileTransformer>> transformers = new ConcurrentHashMap<>();
 
         @Override
         public void addTransformer(final String unitId, final ClassLoader classLoader, final ClassFileTransformer classFileTransformer) {
@@ -3779,7 +3814,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 instrumentation.addTransformer(classFileTransformer);
 
                 if (unitId != null) {
-                    List<ClassFileTransformer> transformers = this.transformers.computeIfAbsent(unitId, k -> new ArrayList<>(1));
+                    List<ClassFileTransformer> transformers = this.transformers.computeIfAbsent(unitId, k -> new CopyOnWriteArrayList<>());
                     transformers.add(classFileTransformer);
                 }
             } else if (!logged.getAndSet(true)) {
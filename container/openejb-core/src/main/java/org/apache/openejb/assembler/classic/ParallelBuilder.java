@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.assembler.classic;
+
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the per module builds of an application which don't depend on each other (the entity manager factories of the
+ * persistence units, the bean contexts and module JNDI trees of the ejb jars) concurrently when
+ * {@link #PARALLEL} is set, in the deploying thread otherwise.
+ * <p/>
+ * The dependencies between the kinds of modules are kept by the caller which only starts a kind once the previous
+ * one is done: persistence units, then connectors and resources, then ejb jars. Results come back in the module
+ * order and when several modules fail the first one in that order is reported so a deployment fails the same way
+ * from one run to another. The modules already built when one fails are handed to the optional {@link Discard}
+ * since the caller never gets them back.
+ */
+final class ParallelBuilder {
+    public static final String PARALLEL = "openejb.deployment.parallel";
+    public static final String THREADS = "openejb.deployment.parallel.threads";
+
+    private ParallelBuilder() {
+        // no-op
+    }
+
+    interface Build<I, O> {
+        O build(I module) throws Exception;
+    }
+
+    interface Discard<O> {
+        void discard(O result) throws Exception;
+    }
+
+    static <I, O> List<O> build(final Collection<I> modules, final Build<I, O> build) throws OpenEJBException {
+        return build(modules, build, null);
+    }
+
+    static <I, O> List<O> build(final Collection<I> modules, final Build<I, O> build, final Discard<O> discard) throws OpenEJBException {
+        final Options options = SystemInstance.get().getOptions();
+        final int threads = Math.min(modules.size(), options.get(THREADS, Runtime.getRuntime().availableProcessors()));
+        final List<O> results = new ArrayList<>(modules.size());
+        if (threads < 2 || !options.get(PARALLEL, false)) {
+            for (final I module : modules) {
+                try {
+                    results.add(build.build(module));
+                } catch (final Exception e) {
+                    discard(results, discard, e);
+                    throw toOpenEJBException(e);
+                }
+            }
+            return results;
+        }
+
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("openejb-deployment"));
+        try {
+            final List<Future<O>> futures = new ArrayList<>(modules.size());
+            for (final I module : modules) {
+                futures.add(executor.submit(new Callable<O>() {
+                    @Override
+                    public O call() throws Exception {
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader old = thread.getContextClassLoader();
+                        thread.setContextClassLoader(loader);
+                        try {
+                            return build.build(module);
+                        } finally {
+                            thread.setContextClassLoader(old);
+                        }
+                    }
+                }));
+            }
+
+            // wait for all the modules before failing to not leave builds running behind the undeployment
+            Exception error = null;
+            for (final Future<O> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (final ExecutionException e) {
+                    if (error == null) {
+                        error = Exception.class.isInstance(e.getCause()) ? Exception.class.cast(e.getCause()) : e;
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new OpenEJBException("Interrupted while deploying", e);
+                }
+            }
+            if (error != null) {
+                discard(results, discard, error);
+                throw toOpenEJBException(error);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static <O> void discard(final List<O> results, final Discard<O> discard, final Exception error) {
+        if (discard == null) {
+            return;
+        }
+        for (final O result : results) {
+            try {
+                discard.discard(result);
+            } catch (final Exception e) {
+                error.addSuppressed(e);
+            }
+        }
+    }
+
+    private static OpenEJBException toOpenEJBException(final Exception e) {
+        if (OpenEJBException.class.isInstance(e)) {
+            return OpenEJBException.class.cast(e);
+        }
+        if (RuntimeException.class.isInstance(e)) {
+            throw RuntimeException.class.cast(e);
+        }
+        return new OpenEJBException(e);
+    }
+}
@@ -35,6 +35,7 @@ import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.persistence.PersistenceUnitInfoImpl;
 import org.apache.openejb.persistence.QueryLogEntityManager;
+import org.apache.openejb.persistence.QueryStatistics;
 import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -92,6 +93,7 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
 
     private final boolean logCriteriaJpql;
     private final String logCriteriaJpqlLevel;
+    private final QueryStatistics queryStatistics = new QueryStatistics();
 
     public ReloadableEntityManagerFactory(final ClassLoader cl, final EntityManagerFactoryCallable callable, final PersistenceUnitInfoImpl unitInfo) {
         classLoader = cl;
@@ -112,6 +114,10 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
         unitInfoImpl.setClassLoader(loader);
     }
 
+    public QueryStatistics getQueryStatistics() {
+        return queryStatistics;
+    }
+
     public EntityManagerFactoryCallable getEntityManagerFactoryCallable() {
         return entityManagerFactoryCallable;
     }
@@ -643,6 +649,24 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
             }
         }
 
+        @ManagedAttribute
+        @Description("executions of queries created without transaction reusing the created query")
+        public long getQueryHits() {
+            return reloadableEntityManagerFactory.getQueryStatistics().getHits();
+        }
+
+        @ManagedAttribute
+        @Description("executions of queries created without transaction recreating the query")
+        public long getQueryMisses() {
+            return reloadableEntityManagerFactory.getQueryStatistics().getMisses();
+        }
+
+        @ManagedOperation
+        @Description("reset the query statistics")
+        public void resetQueryStatistics() {
+            reloadableEntityManagerFactory.getQueryStatistics().reset();
+        }
+
         @ManagedAttribute
         @Description("get exclude unlisted classes")
         public boolean getExcludeUnlistedClasses() {
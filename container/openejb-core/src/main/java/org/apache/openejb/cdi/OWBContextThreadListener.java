@@ -31,12 +31,16 @@ import org.apache.webbeans.config.WebBeansContext;
  */
 public class OWBContextThreadListener implements ThreadContextListener {
 
+    // kept in the context instead of the previous OWB context, which can be null
+    private static final Object NOT_ENTERED = new Object();
+    private static final Object NO_CONTEXT = new Object();
+
     private final ThreadSingletonService singletonService = SystemInstance.get().getComponent(ThreadSingletonService.class);
 
     @Override
     public void contextEntered(final ThreadContext oldContext, final ThreadContext newContext) {
         final BeanContext beanContext = newContext.getBeanContext();
-        if (beanContext == null) { // OWBContextHolder will be null so calling contextExited will throw a NPE
+        if (beanContext == null) { // the CDI context will be null so calling contextExited will throw a NPE
             return;
         }
         final ModuleContext moduleContext = beanContext.getModuleContext();
@@ -44,42 +48,23 @@ public class OWBContextThreadListener implements ThreadContextListener {
         //For now, go with the attachment of the BeanManager to AppContext
         final AppContext appContext = moduleContext.getAppContext();
         final WebBeansContext owbContext = appContext.getWebBeansContext();
-        final Object oldOWBContext;
-        final OWBContextHolder holder;
         if (owbContext != null) {
-            oldOWBContext = singletonService.contextEntered(owbContext);
-            holder = new OWBContextHolder(oldOWBContext);
+            final Object oldOWBContext = singletonService.contextEntered(owbContext);
+            newContext.setCdiContext(oldOWBContext != null ? oldOWBContext : NO_CONTEXT);
         } else {
-            holder = OWBContextHolder.EMPTY_CONTEXT;
+            newContext.setCdiContext(NOT_ENTERED);
         }
-        newContext.set(OWBContextHolder.class, holder);
     }
 
     @Override
     public void contextExited(final ThreadContext exitedContext, final ThreadContext reenteredContext) {
-        final OWBContextHolder holder = exitedContext.get(OWBContextHolder.class);
-        if (holder == null) {
+        final Object oldOWBContext = exitedContext.getCdiContext();
+        if (oldOWBContext == null) {
             throw new NullPointerException("OWBContext not set in this thread");
         }
 
-        if (holder != OWBContextHolder.EMPTY_CONTEXT) {
-            final Object oldOWBContextContext = holder.getContext();
-            singletonService.contextExited(oldOWBContextContext);
-        }
-    }
-
-    private static final class OWBContextHolder {
-
-        static OWBContextHolder EMPTY_CONTEXT = new OWBContextHolder(null);
-
-        private final Object context;
-
-        private OWBContextHolder(final Object context) {
-            this.context = context;
-        }
-
-        public Object getContext() {
-            return context;
+        if (oldOWBContext != NOT_ENTERED) {
+            singletonService.contextExited(oldOWBContext != NO_CONTEXT ? oldOWBContext : null);
         }
     }
 
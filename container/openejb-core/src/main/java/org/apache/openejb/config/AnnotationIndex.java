@@ -0,0 +1,584 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.config;
+
+import org.apache.openejb.cli.SystemExitException;
+import org.apache.openejb.core.EmptyResourcesClassLoader;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.HexConverter;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
+import org.apache.xbean.finder.AnnotationFinder;
+import org.apache.xbean.finder.archive.Archive;
+import org.apache.xbean.finder.archive.ClasspathArchive;
+import org.apache.xbean.finder.filter.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Annotation scanning result of a jar or a classes folder computed at build time (see {@link #main(String[])}) and
+ * stored in the archive itself as {@link #LOCATION}. {@link FinderFactory} reads it instead of parsing every class
+ * file of the archive.
+ * <p/>
+ * For every class the index keeps what the finder needs for the annotation, subclass and implementation lookups:
+ * the parent, the interfaces, the annotations and the annotated methods, constructors and fields. It also keeps a
+ * digest of the names and CRCs of the class files of the archive and is ignored when they don't match anymore
+ * (classes recompiled or jar repackaged without regenerating the index). Archives with their own scan.xml are
+ * scanned as before.
+ * <p/>
+ * Checking the digest is cheap for a jar, the CRCs come from its central directory, but a classes folder has
+ * to read every class file to compute them: the index still saves the bytecode parsing there but not the I/O.
+ */
+public final class AnnotationIndex {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AnnotationIndex.class);
+
+    public static final String ACTIVE = "openejb.finder.index";
+    public static final String LOCATION = "META-INF/openejb-annotations.idx";
+
+    private static final String MAGIC = "openejb-annotations";
+    private static final int VERSION = 1;
+    private static final String CLASS_EXTENSION = ".class";
+
+    private final String digest;
+    private final List<Type> types;
+
+    private AnnotationIndex(final String digest, final List<Type> types) {
+        this.digest = digest;
+        this.types = types;
+    }
+
+    public List<Type> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return the index of the archive or null if it has none, it is outdated or indexes are deactivated
+     */
+    public static AnnotationIndex read(final URL url) {
+        if (!SystemInstance.get().getOptions().get(ACTIVE, true)) {
+            return null;
+        }
+
+        final File archive;
+        try {
+            archive = URLs.toFile(url);
+        } catch (final RuntimeException e) { // not a file, nothing we can index
+            return null;
+        }
+
+        // a scan descriptor restricts the classes, the index would ignore it
+        final String scanXml = "META-INF/" + ConfigurableClasspathArchive.name();
+        try {
+            if (archive.isDirectory()) {
+                final File index = new File(archive, LOCATION);
+                if (!index.isFile() || new File(archive, scanXml).exists()) {
+                    return null;
+                }
+                try (final InputStream in = new FileInputStream(index)) {
+                    return validate(archive, read(in));
+                }
+            }
+            if (!archive.isFile()) {
+                return null;
+            }
+            try (final ZipFile zip = new ZipFile(archive)) {
+                final ZipEntry index = zip.getEntry(LOCATION);
+                if (index == null || zip.getEntry(scanXml) != null) {
+                    return null;
+                }
+                try (final InputStream in = zip.getInputStream(index)) {
+                    return validate(archive, read(in));
+                }
+            }
+        } catch (final IOException e) {
+            logger.warning("Can't read the annotation index of " + archive.getAbsolutePath() + ", scanning it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static AnnotationIndex validate(final File archive, final AnnotationIndex index) throws IOException {
+        if (index == null) {
+            logger.info("Ignoring the annotation index of " + archive.getAbsolutePath() + " written by another version, scanning it");
+            return null;
+        }
+        if (!index.digest.equals(digest(archive))) {
+            logger.warning("Ignoring the outdated annotation index of " + archive.getAbsolutePath() + ", scanning it");
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * @return the types of this index accepted by the filter (the filter can record what it accepts)
+     */
+    public AnnotationIndex filter(final Filter filter) {
+        final List<Type> accepted = new ArrayList<>(types.size());
+        for (final Type type : types) {
+            if (filter.accept(type.name)) {
+                accepted.add(type);
+            }
+        }
+        return new AnnotationIndex(digest, accepted);
+    }
+
+    /**
+     * @return an archive loading the classes of the indexed archive but not listing them, they come from the index
+     */
+    public static Archive archive(final ClassLoader loader, final URL url) {
+        return new IndexedArchive(loader, url);
+    }
+
+    /**
+     * Scans the archive (jar or classes folder) and stores its index inside it.
+     */
+    public static void write(final File archive) throws IOException {
+        final AnnotationIndex index = scan(archive);
+        if (archive.isDirectory()) {
+            final File file = new File(archive, LOCATION);
+            Files.mkdirs(file.getParentFile());
+            try (final OutputStream out = new FileOutputStream(file)) {
+                index.write(out);
+            }
+            return;
+        }
+
+        // written next to the jar then moved over it so a failure never leaves the jar half written or deleted
+        final File tmp = new File(archive.getParentFile(), archive.getName() + ".tmp");
+        boolean moved = false;
+        try {
+            try (final ZipFile zip = new ZipFile(archive);
+                 final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (LOCATION.equals(entry.getName())) {
+                        continue;
+                    }
+                    final ZipEntry copy = new ZipEntry(entry.getName());
+                    copy.setTime(entry.getTime());
+                    out.putNextEntry(copy);
+                    try (final InputStream in = zip.getInputStream(entry)) {
+                        IO.copy(in, out);
+                    }
+                    out.closeEntry();
+                }
+                out.putNextEntry(new ZipEntry(LOCATION));
+                index.write(out);
+                out.closeEntry();
+            }
+            try {
+                java.nio.file.Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved && tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    static AnnotationIndex scan(final File archive) throws IOException {
+        return scan(archive, digest(archive));
+    }
+
+    static AnnotationIndex scan(final File archive, final String digest) throws IOException {
+        final URL url = archive.toURI().toURL();
+        final List<Type> types = new ArrayList<>();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{url}, new EmptyResourcesClassLoader());
+             final ZipFile zip = archive.isDirectory() ? null : new ZipFile(archive)) {
+            // xbean JarArchive never closes its jar, we rewrite it just after
+            final Scanner scanner = new Scanner(zip == null ? ClasspathArchive.archive(loader, url) : new ZipArchive(zip, loader));
+            for (final AnnotationFinder.ClassInfo info : scanner.classes()) {
+                final Type type = new Type(info.getName(), info.getSuperType());
+                type.interfaces.addAll(info.getInterfaces());
+                names(info.getAnnotations(), type.annotations);
+                for (final AnnotationFinder.MethodInfo method : info.getMethods()) {
+                    final Member member = new Member(method.getName(), method.getDescriptor());
+                    names(method.getAnnotations(), member.annotations);
+                    for (final List<AnnotationFinder.AnnotationInfo> parameter : method.getParameterAnnotations()) {
+                        final List<String> annotations = new ArrayList<>(parameter.size());
+                        names(parameter, annotations);
+                        member.parameters.add(annotations);
+                    }
+                    if (!member.annotations.isEmpty() || !member.parameters.isEmpty()) {
+                        type.methods.add(member);
+                    }
+                }
+                for (final AnnotationFinder.FieldInfo field : info.getFields()) {
+                    final Member member = new Member(field.getName(), field.getType());
+                    names(field.getAnnotations(), member.annotations);
+                    if (!member.annotations.isEmpty()) {
+                        type.fields.add(member);
+                    }
+                }
+                types.add(type);
+            }
+            for (final AnnotationFinder.PackageInfo info : scanner.packages()) {
+                final Type type = new Type(info.getName(), null);
+                names(info.getAnnotations(), type.annotations);
+                types.add(type);
+            }
+        }
+        return new AnnotationIndex(digest, types);
+    }
+
+    private static void names(final List<AnnotationFinder.AnnotationInfo> annotations, final List<String> names) {
+        for (final AnnotationFinder.AnnotationInfo annotation : annotations) {
+            names.add(annotation.getName());
+        }
+    }
+
+    /**
+     * @return a digest of the names and CRCs of the class files of the archive
+     */
+    static String digest(final File archive) throws IOException {
+        final Map<String, Long> crcs = new TreeMap<>();
+        if (archive.isDirectory()) {
+            crcs(archive, "", crcs);
+        } else {
+            try (final ZipFile zip = new ZipFile(archive)) {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(CLASS_EXTENSION)) {
+                        long crc = entry.getCrc();
+                        if (crc < 0) {
+                            try (final InputStream in = zip.getInputStream(entry)) {
+                                crc = crc(in);
+                            }
+                        }
+                        crcs.put(entry.getName(), crc);
+                    }
+                }
+            }
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        for (final Map.Entry<String, Long> entry : crcs.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update(Long.toHexString(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexConverter.bytesToHex(digest.digest());
+    }
+
+    private static void crcs(final File directory, final String prefix, final Map<String, Long> crcs) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                crcs(file, prefix + file.getName() + '/', crcs);
+            } else if (file.getName().endsWith(CLASS_EXTENSION)) {
+                try (final InputStream in = new FileInputStream(file)) {
+                    crcs.put(prefix + file.getName(), crc(in));
+                }
+            }
+        }
+    }
+
+    private static long crc(final InputStream in) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    void write(final OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeUTF(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(digest);
+        out.writeInt(types.size());
+        for (final Type type : types) {
+            out.writeUTF(type.name);
+            out.writeUTF(type.superType == null ? "" : type.superType);
+            writeStrings(out, type.interfaces);
+            writeStrings(out, type.annotations);
+            out.writeInt(type.methods.size());
+            for (final Member method : type.methods) {
+                out.writeUTF(method.name);
+                out.writeUTF(method.descriptor);
+                writeStrings(out, method.annotations);
+                out.writeInt(method.parameters.size());
+                for (final List<String> parameter : method.parameters) {
+                    writeStrings(out, parameter);
+                }
+            }
+            out.writeInt(type.fields.size());
+            for (final Member field : type.fields) {
+                out.writeUTF(field.name);
+                out.writeUTF(field.descriptor);
+                writeStrings(out, field.annotations);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the index or null if it was written by another version
+     */
+    static AnnotationIndex read(final InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (!MAGIC.equals(in.readUTF()) || in.readInt() != VERSION) {
+            return null;
+        }
+
+        final String digest = in.readUTF();
+        final int count = in.readInt();
+        final List<Type> types = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String name = in.readUTF();
+            final String superType = in.readUTF();
+            final Type type = new Type(name, superType.isEmpty() ? null : superType);
+            readStrings(in, type.interfaces);
+            readStrings(in, type.annotations);
+            final int methods = in.readInt();
+            for (int m = 0; m < methods; m++) {
+                final Member method = new Member(in.readUTF(), in.readUTF());
+                readStrings(in, method.annotations);
+                final int parameters = in.readInt();
+                for (int p = 0; p < parameters; p++) {
+                    final List<String> parameter = new ArrayList<>();
+                    readStrings(in, parameter);
+                    method.parameters.add(parameter);
+                }
+                type.methods.add(method);
+            }
+            final int fields = in.readInt();
+            for (int f = 0; f < fields; f++) {
+                final Member field = new Member(in.readUTF(), in.readUTF());
+                readStrings(in, field.annotations);
+                type.fields.add(field);
+            }
+            types.add(type);
+        }
+        return new AnnotationIndex(digest, types);
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (final String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void readStrings(final DataInputStream in, final List<String> values) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+    }
+
+    public static void main(final String[] args) throws SystemExitException {
+        if (args.length == 0) {
+            System.out.println("Usage: index-annotations <jar or classes folder>...");
+            throw new SystemExitException(-1);
+        }
+
+        for (final String path : args) {
+            final File archive = new File(path);
+            if (!archive.exists()) {
+                System.out.println(path + " doesn't exist");
+                throw new SystemExitException(-1);
+            }
+            try {
+                write(archive);
+                System.out.println("Indexed " + archive.getAbsolutePath());
+            } catch (final IOException e) {
+                System.out.println("Can't index " + path + ": " + e.getMessage());
+                throw new SystemExitException(-1);
+            }
+        }
+    }
+
+    /**
+     * A class (or a package-info) of the index, annotation names are fully qualified class names.
+     */
+    public static final class Type {
+        public final String name;
+        public final String superType;
+        public final List<String> interfaces = new ArrayList<>();
+        public final List<String> annotations = new ArrayList<>();
+        public final List<Member> methods = new ArrayList<>();
+        public final List<Member> fields = new ArrayList<>();
+
+        private Type(final String name, final String superType) {
+            this.name = name;
+            this.superType = superType;
+        }
+    }
+
+    /**
+     * An annotated method (descriptor is the JVM method descriptor) or field (descriptor is the JVM type descriptor).
+     */
+    public static final class Member {
+        public final String name;
+        public final String descriptor;
+        public final List<String> annotations = new ArrayList<>();
+        public final List<List<String>> parameters = new ArrayList<>();
+
+        private Member(final String name, final String descriptor) {
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+
+    private static final class Scanner extends AnnotationFinder {
+        private Scanner(final Archive archive) {
+            super(archive);
+        }
+
+        private Collection<ClassInfo> classes() {
+            return classInfos.values();
+        }
+
+        private Collection<PackageInfo> packages() {
+            final Set<String> names = new HashSet<>();
+            final List<PackageInfo> packages = new ArrayList<>();
+            for (final List<Info> infos : annotated.values()) {
+                for (final Info info : infos) {
+                    if (PackageInfo.class.isInstance(info) && names.add(info.getName())) {
+                        packages.add(PackageInfo.class.cast(info));
+                    }
+                }
+            }
+            return packages;
+        }
+    }
+
+    private static final class IndexedArchive implements Archive {
+        private final ClassLoader loader;
+        private final URL url;
+        private volatile Archive delegate;
+
+        private IndexedArchive(final ClassLoader loader, final URL url) {
+            this.loader = loader;
+            this.url = url;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            if (delegate == null) { // rarely needed, don't open the jar upfront
+                delegate = ClasspathArchive.archive(loader, url);
+            }
+            return delegate.getBytecode(className);
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            return loader.loadClass(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return Collections.<Entry>emptyList().iterator();
+        }
+    }
+
+    private static final class ZipArchive implements Archive {
+        private final ZipFile zip;
+        private final ClassLoader loader;
+
+        private ZipArchive(final ZipFile zip, final ClassLoader loader) {
+            this.zip = zip;
+            this.loader = loader;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            final ZipEntry entry = zip.getEntry(className.replace('.', '/') + CLASS_EXTENSION);
+            if (entry == null) {
+                throw new ClassNotFoundException(className);
+            }
+            return zip.getInputStream(entry);
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            return loader.loadClass(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            final List<Entry> entries = new ArrayList<>();
+            final Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipEntry entry = zipEntries.nextElement();
+                final String name = entry.getName();
+                if (name.endsWith(CLASS_EXTENSION) && !name.startsWith("META-INF/")) {
+                    entries.add(new Entry() {
+                        @Override
+                        public String getName() {
+                            return name.substring(0, name.length() - CLASS_EXTENSION.length()).replace('/', '.');
+                        }
+
+                        @Override
+                        public InputStream getBytecode() throws IOException {
+                            return zip.getInputStream(entry);
+                        }
+                    });
+                }
+            }
+            return entries.iterator();
+        }
+    }
+}
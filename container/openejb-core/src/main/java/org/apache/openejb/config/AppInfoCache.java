@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ServiceInfo;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.HexConverter;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.OpenEjbVersion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Opt-in on disk cache of the {@link AppInfo} computed for an archive.
+ * <p/>
+ * The key hashes the archive (the bytes of a file, the names, sizes and dates of the files of a directory), the
+ * OpenEJB version and the system properties. An entry is only used if the containers and resources it can be linked
+ * to are the ones it was configured with. On a hit {@link ConfigurationFactory} skips the descriptor reading, the scanning and the whole deployer
+ * chain and only replays what they installed in the container: auto created containers/resources and extensions.
+ */
+class AppInfoCache {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AppInfoCache.class);
+
+    public static final String ACTIVE = "openejb.deployments.cache";
+    public static final String DIRECTORY = "openejb.deployments.cache.directory";
+
+    // jvm/platform properties not impacting the configuration, they would just make the key less stable
+    private static final String[] IGNORED_PREFIXES = {"java.", "jdk.", "sun.", "os.", "user.", "file.", "line.", "path.", "awt."};
+
+    private final File directory;
+
+    AppInfoCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the cache if {@link #ACTIVE} is set, null otherwise
+     */
+    static AppInfoCache get() {
+        final SystemInstance systemInstance = SystemInstance.get();
+        final Options options = systemInstance.getOptions();
+        if (!options.get(ACTIVE, false)) {
+            return null;
+        }
+
+        final String directory = options.get(DIRECTORY, (String) null);
+        try {
+            final File file = directory != null ? new File(directory) : systemInstance.getBase().getDirectory("data/app-info-cache", true);
+            if (!file.isDirectory() && !file.mkdirs()) {
+                throw new IOException("Can't create " + file.getAbsolutePath());
+            }
+            return new AppInfoCache(file);
+        } catch (final IOException e) {
+            logger.warning("Can't create the deployment cache directory, the cache is disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    String key(final File archive) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        update(digest, OpenEjbVersion.get().getVersion());
+        update(digest, archive.getAbsolutePath());
+        if (archive.isDirectory()) {
+            hashTree(digest, archive, "");
+        } else {
+            final byte[] buffer = new byte[8192];
+            try (final InputStream in = new FileInputStream(archive)) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        final Properties systemProperties = SystemInstance.get().getProperties();
+        final Map<String, String> properties = new TreeMap<>();
+        for (final Map.Entry<Object, Object> entry : systemProperties.entrySet()) {
+            if (String.class.isInstance(entry.getKey()) && String.class.isInstance(entry.getValue())) {
+                final String key = String.class.cast(entry.getKey());
+                final String value = String.class.cast(entry.getValue());
+                // the unprefixed aliases of openejb.* are added as they are read
+                if (!isIgnored(key) && !value.equals(systemProperties.getProperty("openejb." + key))) {
+                    properties.put(key, value);
+                }
+            }
+        }
+        for (final Map.Entry<String, String> entry : properties.entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+        return HexConverter.bytesToHex(digest.digest());
+    }
+
+    Entry load(final String key) {
+        final File file = file(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (final ObjectInputStream in = new EjbObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return Entry.class.cast(in.readObject());
+        } catch (final Exception e) { // old format or partially written, rebuild it
+            logger.debug("Ignoring unreadable deployment cache entry " + file.getAbsolutePath(), e);
+            IO.delete(file);
+            return null;
+        }
+    }
+
+    void store(final String key, final Entry entry) {
+        final File file = file(key);
+        final File tmp = new File(directory, key + ".tmp");
+        try {
+            try (final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeObject(entry);
+            }
+            if (!tmp.renameTo(file)) {
+                IO.delete(file);
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Can't rename " + tmp + " to " + file);
+                }
+            }
+        } catch (final IOException e) { // not serializable custom properties for instance
+            logger.debug("Can't cache " + entry.appInfo.appId + ": " + e.getMessage(), e);
+            IO.delete(tmp);
+        }
+    }
+
+    private File file(final String key) {
+        return new File(directory, key + ".ser");
+    }
+
+    private static void hashTree(final MessageDigest digest, final File directory, final String path) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+        for (final File file : files) {
+            final String name = path + file.getName();
+            if (file.isDirectory()) {
+                hashTree(digest, file, name + '/');
+            } else {
+                update(digest, name);
+                update(digest, Long.toString(file.length()));
+                update(digest, Long.toString(file.lastModified()));
+            }
+        }
+    }
+
+    private static boolean isIgnored(final String key) {
+        for (final String prefix : IGNORED_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a hash of the service class, types and properties, empty for a service not configured yet
+     */
+    static String fingerprint(final ServiceInfo service) {
+        if (service == null) {
+            return "";
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        update(digest, String.valueOf(service.service));
+        update(digest, String.valueOf(service.className));
+        update(digest, String.valueOf(service.factoryMethod));
+        for (final String type : service.types) {
+            update(digest, type);
+        }
+        update(digest, "");
+        if (service.properties != null) {
+            final Map<String, String> properties = new TreeMap<>();
+            for (final Map.Entry<Object, Object> entry : service.properties.entrySet()) {
+                properties.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+            for (final Map.Entry<String, String> entry : properties.entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+        }
+        return HexConverter.bytesToHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * What configuring the archive produced: the info tree and the side effects to replay on a hit.
+     */
+    static class Entry implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        final Map<String, String> environment;
+        final List<ServiceInfo> services = new ArrayList<>();
+        final List<String> extensions = new ArrayList<>();
+        AppInfo appInfo;
+
+        Entry(final Map<String, String> environment) {
+            this.environment = environment;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.config;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipFile;
+
+/**
+ * Scans the archives of a webapp into {@link AnnotationIndex} instances {@link FinderFactory} merges in its finder.
+ * <p/>
+ * The archives are split over a fork/join pool ({@link #THREADS} threads, the number of processors by default) so a
+ * large WEB-INF/lib is not scanned one jar after the other. A jar is kept by content (the digest of the names and
+ * CRCs of its classes) so a library shared by several webapps is only scanned once, the {@link #CACHE_SIZE} most
+ * recently used jars are kept. The scanning duration of each archive is logged in debug and exposed, most expensive
+ * first, by the {@code openejb.management:ObjectType=ArchiveScanner} MBean.
+ * <p/>
+ * With {@link #UPFRONT} set to false the archives are scanned by the finder through the
+ * {@link ConfigurableClasspathArchive} as before, only the build time indexes are still read.
+ */
+public final class ArchiveScanner {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ArchiveScanner.class);
+
+    public static final String UPFRONT = "openejb.scan.upfront";
+    public static final String PARALLEL = "openejb.scan.parallel";
+    public static final String THREADS = "openejb.scan.parallel.threads";
+    public static final String CACHE_SIZE = "openejb.scan.cache.size";
+
+    private final boolean upfront;
+    private final boolean parallel;
+    private final int threads;
+    private final Map<String, AnnotationIndex> cache;
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    ArchiveScanner(final boolean upfront, final boolean parallel, final int threads, final int cacheSize) {
+        this.upfront = upfront;
+        this.parallel = parallel;
+        this.threads = Math.max(1, threads);
+        this.cache = cacheSize <= 0 ? null : new LinkedHashMap<String, AnnotationIndex>(cacheSize, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, AnnotationIndex> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        if (LocalMBeanServer.isJMXActive()) {
+            LocalMBeanServer.registerDynamicWrapperSilently(new View(),
+                new ObjectNameBuilder("openejb.management").set("ObjectType", "ArchiveScanner").build());
+        }
+    }
+
+    public static synchronized ArchiveScanner get() {
+        final SystemInstance systemInstance = SystemInstance.get();
+        ArchiveScanner scanner = systemInstance.getComponent(ArchiveScanner.class);
+        if (scanner == null) {
+            final Options options = systemInstance.getOptions();
+            scanner = new ArchiveScanner(
+                options.get(UPFRONT, true),
+                options.get(PARALLEL, true),
+                options.get(THREADS, Runtime.getRuntime().availableProcessors()),
+                options.get(CACHE_SIZE, 64));
+            systemInstance.setComponent(ArchiveScanner.class, scanner);
+        }
+        return scanner;
+    }
+
+    /**
+     * @param scan false to only read the build time indexes, when most classes would be filtered out afterwards
+     * @return for each url, in the same order, its build time index, the result of its scan or null when it can't be
+     * scanned this way (not a file or using its own scan.xml) and must be scanned as before
+     */
+    public List<AnnotationIndex> scan(final List<URL> urls, final boolean scan) {
+        final AnnotationIndex[] indexes = new AnnotationIndex[urls.size()];
+        final Scan task = new Scan(urls, scan && upfront, indexes, 0, indexes.length);
+        if (!parallel || threads == 1 || indexes.length < 2) {
+            task.compute();
+        } else {
+            final ForkJoinPool pool = new ForkJoinPool(Math.min(threads, indexes.length), new ScanThreadFactory(), null, false);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        final List<AnnotationIndex> result = new ArrayList<>(indexes.length);
+        Collections.addAll(result, indexes);
+        return result;
+    }
+
+    private AnnotationIndex scan(final URL url, final boolean scan) {
+        final AnnotationIndex built = AnnotationIndex.read(url);
+        if (built != null || !scan) {
+            return built;
+        }
+
+        final File archive;
+        try {
+            archive = URLs.toFile(url);
+        } catch (final RuntimeException e) { // not a file
+            return null;
+        }
+
+        final String scanXml = "META-INF/" + ConfigurableClasspathArchive.name();
+        try {
+            final boolean jar = archive.isFile();
+            if (jar) {
+                try (final ZipFile zip = new ZipFile(archive)) {
+                    if (zip.getEntry(scanXml) != null) {
+                        return null;
+                    }
+                }
+            } else if (!archive.isDirectory() || new File(archive, scanXml).exists()) {
+                return null;
+            }
+
+            final long start = System.nanoTime();
+            final String digest = jar ? AnnotationIndex.digest(archive) : null;
+            AnnotationIndex index = cached(digest);
+            final boolean hit = index != null;
+            if (!hit) {
+                index = AnnotationIndex.scan(archive, digest);
+                if (digest != null && cache != null) {
+                    synchronized (cache) {
+                        cache.put(digest, index);
+                    }
+                }
+            }
+            record(archive, index.getTypes().size(), System.nanoTime() - start, hit);
+            return index;
+        } catch (final IOException | RuntimeException e) {
+            logger.warning("Can't scan " + archive.getAbsolutePath() + " upfront, it will be scanned by the finder: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private AnnotationIndex cached(final String digest) {
+        if (digest == null || cache == null) {
+            return null;
+        }
+        synchronized (cache) {
+            return cache.get(digest);
+        }
+    }
+
+    private void record(final File archive, final int classes, final long duration, final boolean hit) {
+        // a library keeps its name in every webapp, a classes folder belongs to a single one
+        final String name = archive.isFile() ? archive.getName() : archive.getAbsolutePath();
+        Statistics stats = statistics.get(name);
+        if (stats == null) {
+            stats = new Statistics(name);
+            final Statistics existing = statistics.putIfAbsent(name, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.record(classes, duration, hit);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug((hit ? "Reused the scan of " : "Scanned ") + archive.getAbsolutePath() + " (" + classes
+                + " classes) in " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms");
+        }
+    }
+
+    /**
+     * @return the statistics of the scanned archives, most time consuming first
+     */
+    public List<Statistics> getStatistics() {
+        final List<Statistics> values = new ArrayList<>(statistics.values());
+        values.sort(new Comparator<Statistics>() {
+            @Override
+            public int compare(final Statistics o1, final Statistics o2) {
+                return Long.compare(o2.getTotalMillis(), o1.getTotalMillis());
+            }
+        });
+        return values;
+    }
+
+    public void reset() {
+        statistics.clear();
+        if (cache != null) {
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    private final class Scan extends RecursiveAction {
+        private final List<URL> urls;
+        private final boolean scan;
+        private final AnnotationIndex[] indexes;
+        private final int from;
+        private final int to;
+
+        private Scan(final List<URL> urls, final boolean scan, final AnnotationIndex[] indexes, final int from, final int to) {
+            this.urls = urls;
+            this.scan = scan;
+            this.indexes = indexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || getPool() == null) {
+                for (int i = from; i < to; i++) {
+                    indexes[i] = scan(urls.get(i), scan);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Scan(urls, scan, indexes, from, middle), new Scan(urls, scan, indexes, middle, to));
+        }
+    }
+
+    private static final class ScanThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger ids = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+            };
+            thread.setName("openejb-scan-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            // don't leak the loader of the deploying webapp in the pool
+            thread.setContextClassLoader(ArchiveScanner.class.getClassLoader());
+            return thread;
+        }
+    }
+
+    public static final class Statistics {
+        private final String archive;
+        private final AtomicLong scans = new AtomicLong();
+        private final AtomicLong cacheHits = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private volatile long lastNanos;
+        private volatile int classes;
+
+        private Statistics(final String archive) {
+            this.archive = archive;
+        }
+
+        private void record(final int classes, final long duration, final boolean hit) {
+            this.classes = classes;
+            this.lastNanos = duration;
+            scans.incrementAndGet();
+            totalNanos.addAndGet(duration);
+            if (hit) {
+                cacheHits.incrementAndGet();
+            }
+        }
+
+        public String getArchive() {
+            return archive;
+        }
+
+        public long getScans() {
+            return scans.get();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.get();
+        }
+
+        public int getClasses() {
+            return classes;
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        public long getLastMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastNanos);
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Scanning statistics of the archives of the deployed webapps")
+    public final class View {
+        private final String[] columns = {"archive", "scans", "cacheHits", "classes", "totalMs", "lastMs"};
+        private final OpenType<?>[] types = {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.INTEGER,
+            SimpleType.LONG, SimpleType.LONG};
+
+        @ManagedAttribute
+        @Description("Number of threads scanning the archives of a webapp")
+        public int getThreads() {
+            return parallel ? threads : 1;
+        }
+
+        @ManagedAttribute
+        @Description("Number of jars which scan is kept")
+        public int getCachedArchives() {
+            if (cache == null) {
+                return 0;
+            }
+            synchronized (cache) {
+                return cache.size();
+            }
+        }
+
+        @ManagedAttribute
+        @Description("Archives statistics, most time consuming first")
+        public TabularData getArchives() {
+            try {
+                final CompositeType row = new CompositeType("ScannedArchive", "statistics of an archive", columns, columns, types);
+                final TabularDataSupport data = new TabularDataSupport(new TabularType("ScannedArchives", "archives statistics", row, new String[]{"archive"}));
+                for (final Statistics stats : getStatistics()) {
+                    data.put(new CompositeDataSupport(row, columns, new Object[]{
+                        stats.getArchive(), stats.getScans(), stats.getCacheHits(), stats.getClasses(),
+                        stats.getTotalMillis(), stats.getLastMillis()
+                    }));
+                }
+                return data;
+            } catch (final OpenDataException e) {
+                return null;
+            }
+        }
+
+        @ManagedOperation
+        @Description("Clear the statistics and the cached scans")
+        public void reset() {
+            ArchiveScanner.this.reset();
+        }
+    }
+}
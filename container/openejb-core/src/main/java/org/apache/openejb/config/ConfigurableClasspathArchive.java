@@ -106,7 +106,10 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
         }
     }
 
-    private static String name() {
+    /**
+     * @return the name of the scan descriptor in META-INF, {@code scan.xml} unless overridden by {@value ScanConstants#SCAN_XML_PROPERTY}
+     */
+    static String name() {
         return SystemInstance.get().getProperty(SCAN_XML_PROPERTY, SCAN_XML_NAME);
     }
 
@@ -122,6 +122,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.apache.openejb.config.DeploymentsResolver.DEPLOYMENTS_CLASSPATH_PROPERTY;
 import static org.apache.openejb.config.ServiceUtils.implies;
@@ -149,6 +150,7 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     private final DeploymentLoader deploymentLoader;
     private final boolean offline;
     private final boolean serviceTypeIsAdjustable; // offline is a bit different from this and offline could be off and this on
+    private final ThreadLocal<AppInfoCache.Entry> cacheRecording = new ThreadLocal<>();
 
     private static final String CLASSPATH_AS_EAR = "openejb.deployments.classpath.ear";
     static final String WEBSERVICES_ENABLED = "openejb.webservices.enabled";
@@ -440,6 +442,7 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ContainerInfo serviceInfo) throws OpenEJBException {
+        record(serviceInfo);
         if (sys != null) {
             sys.containerSystem.containers.add(serviceInfo);
         } else if (!offline) {
@@ -453,6 +456,7 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ResourceInfo serviceInfo) throws OpenEJBException {
+        record(serviceInfo);
         if (sys != null) {
             sys.facilities.resources.add(serviceInfo);
         } else if (!offline) {
@@ -460,6 +464,13 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         }
     }
 
+    private void record(final ServiceInfo serviceInfo) {
+        final AppInfoCache.Entry entry = cacheRecording.get();
+        if (entry != null) {
+            entry.services.add(serviceInfo);
+        }
+    }
+
     void doInstall(final ResourceInfo serviceInfo) throws OpenEJBException {
         final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
         if (assembler != null) {
@@ -852,8 +863,40 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         logger.debug("Beginning load: " + jarFile.getAbsolutePath());
 
         try {
+            final AppInfoCache cache = AppInfoCache.get();
+            String cacheKey = null;
+            if (cache != null) {
+                try {
+                    cacheKey = cache.key(jarFile);
+                } catch (final IOException e) {
+                    logger.debug("Can't compute the deployment cache key of " + jarFile.getAbsolutePath(), e);
+                }
+            }
+            if (cacheKey != null) {
+                final AppInfo cached = fromCache(cache.load(cacheKey));
+                if (cached != null) {
+                    logger.info("Configuring " + jarFile.getAbsolutePath() + " from the deployment cache");
+                    cached.paths.add(cached.path);
+                    cached.paths.add(jarFile.getAbsolutePath());
+                    return cached;
+                }
+            }
+
             final AppModule appModule = deploymentLoader.load(jarFile, null);
-            final AppInfo appInfo = configureApplication(appModule);
+            final AppInfo appInfo;
+            if (cacheKey != null) {
+                final AppInfoCache.Entry entry = new AppInfoCache.Entry(cacheEnvironment());
+                cacheRecording.set(entry);
+                try {
+                    appInfo = configureApplication(appModule);
+                } finally {
+                    cacheRecording.remove();
+                }
+                entry.appInfo = appInfo;
+                cache.store(cacheKey, entry);
+            } else {
+                appInfo = configureApplication(appModule);
+            }
 
             // we need the finder for web scanning so push it to what sees TomcatWebAppBuilder, ie the info tree
             // this is clean up in Assembler for safety and TomcatWebAppBuilder when used
@@ -882,6 +925,56 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         }
     }
 
+    private AppInfo fromCache(final AppInfoCache.Entry entry) throws OpenEJBException {
+        if (entry == null) {
+            return null;
+        }
+
+        // the containers and resources the app can be linked to must be the ones it was configured with
+        final Map<String, String> environment = cacheEnvironment();
+        for (final ServiceInfo service : entry.services) {
+            environment.remove(service.id);
+            if (ResourceInfo.class.isInstance(service)) {
+                environment.keySet().removeAll(ResourceInfo.class.cast(service).aliases);
+            }
+        }
+        if (!environment.equals(entry.environment)) {
+            return null;
+        }
+
+        for (final ServiceInfo service : entry.services) {
+            if (ContainerInfo.class.isInstance(service)) {
+                if (!getContainerIds().contains(service.id)) {
+                    install(ContainerInfo.class.cast(service));
+                }
+            } else if (getResourceInfo(service.id) == null) {
+                install(ResourceInfo.class.cast(service));
+            }
+        }
+        Extensions.addExtensions(Thread.currentThread().getContextClassLoader(), entry.extensions);
+        return entry.appInfo;
+    }
+
+    /**
+     * @return the id of each container and resource with a fingerprint of its definition, a redefined
+     * service changes what the application would be linked to
+     */
+    private Map<String, String> cacheEnvironment() {
+        final Map<String, ContainerInfo> containers = new HashMap<>();
+        for (final ContainerInfo container : getContainerInfos()) {
+            containers.put(container.id, container);
+        }
+
+        final Map<String, String> environment = new TreeMap<>();
+        for (final String id : getContainerIds()) {
+            environment.put(id, AppInfoCache.fingerprint(containers.get(id)));
+        }
+        for (final String id : getResourceIds()) {
+            environment.put(id, AppInfoCache.fingerprint(getResourceInfo(id)));
+        }
+        return environment;
+    }
+
     /**
      * embedded usage
      *
@@ -1031,6 +1124,12 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
 
             // add it as early as possible, the ones needing the app classloader will be added later
             Extensions.addExtensions(extensions);
+            final AppInfoCache.Entry cacheEntry = cacheRecording.get();
+            if (cacheEntry != null) {
+                for (final Class<?> extension : extensions) {
+                    cacheEntry.extensions.add(extension.getName());
+                }
+            }
 
             final String location = appModule.getJarLocation();
             logger.info("config.configApp", null != location ? location : appModule.getModuleId());
@@ -52,6 +52,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.Collections.singletonList;
 import static org.apache.openejb.util.Classes.ancestors;
 
 public class FinderFactory {
@@ -105,7 +106,10 @@ public class FinderFactory {
                 url = new URL(location);
             }
 
-            if (module instanceof Module) {
+            final AnnotationIndex index = AnnotationIndex.read(url);
+            if (index != null) {
+                finder = new OpenEJBAnnotationFinder(new DebugArchive(AnnotationIndex.archive(module.getClassLoader(), url)), singletonList(index));
+            } else if (module instanceof Module) {
                 final DebugArchive archive = new DebugArchive(new ConfigurableClasspathArchive((Module) module, url));
                 finder = newFinder(archive);
             } else {
@@ -543,7 +547,64 @@ public class FinderFactory {
         private static final String[] JVM_SCANNING_CONFIG = SystemInstance.get().getProperty("openejb.scanning.xbean.jvm", "java.").split(",");
 
         public OpenEJBAnnotationFinder(final Archive archive) {
+            this(archive, WebappAggregatedArchive.class.isInstance(archive) ?
+                    WebappAggregatedArchive.class.cast(archive).getIndexes() : Collections.<AnnotationIndex>emptyList());
+        }
+
+        public OpenEJBAnnotationFinder(final Archive archive, final Collection<AnnotationIndex> indexes) {
             super(archive);
+            for (final AnnotationIndex index : indexes) {
+                for (final AnnotationIndex.Type type : index.getTypes()) {
+                    if (!isJvm(type.name)) { // the bytecode scanning skips them too
+                        read(type);
+                    }
+                }
+            }
+        }
+
+        // same infos as the ones the bytecode scanning creates
+        private void read(final AnnotationIndex.Type type) {
+            if (type.name.endsWith("package-info")) {
+                annotate(new PackageInfo(type.name), type.annotations);
+                return;
+            }
+
+            final ClassInfo classInfo = new ClassInfo(type.name, type.superType);
+            for (final String api : type.interfaces) { // SingleLinkedList doesn't support addAll
+                classInfo.getInterfaces().add(api);
+            }
+            annotate(classInfo, type.annotations);
+            for (final AnnotationIndex.Member method : type.methods) {
+                final MethodInfo methodInfo = new MethodInfo(classInfo, method.name, method.descriptor);
+                classInfo.getMethods().add(methodInfo);
+                annotate(methodInfo, method.annotations);
+                for (int i = 0; i < method.parameters.size(); i++) {
+                    for (final String annotation : method.parameters.get(i)) {
+                        methodInfo.getParameterAnnotations(i).add(new AnnotationInfo(descriptor(annotation)));
+                        final ParameterInfo parameterInfo = new ParameterInfo(methodInfo, i);
+                        methodInfo.getParameters().add(parameterInfo);
+                        initAnnotationInfos(annotation).add(parameterInfo);
+                    }
+                }
+            }
+            for (final AnnotationIndex.Member field : type.fields) {
+                final FieldInfo fieldInfo = new FieldInfo(classInfo, field.name, field.descriptor);
+                classInfo.getFields().add(fieldInfo);
+                annotate(fieldInfo, field.annotations);
+            }
+            classInfos.put(classInfo.getName(), classInfo);
+            originalInfos.put(classInfo.getName(), classInfo);
+        }
+
+        private void annotate(final Info info, final List<String> annotations) {
+            for (final String annotation : annotations) {
+                info.getAnnotations().add(new AnnotationInfo(descriptor(annotation)));
+                initAnnotationInfos(annotation).add(info);
+            }
+        }
+
+        private static String descriptor(final String className) {
+            return 'L' + className.replace('.', '/') + ';';
         }
 
         @Override
@@ -39,6 +39,7 @@ import static org.apache.openejb.loader.JarLocation.jarLocation;
 
 public class WebappAggregatedArchive implements Archive, ScanConstants {
     private final Map<URL, List<String>> map = new HashMap<>();
+    private final List<AnnotationIndex> indexes = new ArrayList<>();
     private ScanUtil.ScanHandler handler;
     private boolean scanXmlExists; // faster than using an empty handler
     private Archive archive;
@@ -76,14 +77,26 @@ public class WebappAggregatedArchive implements Archive, ScanConstants {
     }
 
     private List<Archive> doScan(final ClassLoader loader, final Iterable<URL> urls, final Filter filter) {
-        final List<Archive> archives = new ArrayList<>();
+        final List<URL> list = new ArrayList<>();
         for (final URL url : urls) {
+            list.add(url);
+        }
+
+        // filtered archives only read the classes they accept, scanning them fully would be slower
+        final List<AnnotationIndex> scanned = ArchiveScanner.get().scan(list, filter == null && !scanXmlExists);
+        final List<Archive> archives = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            final URL url = list.get(i);
             final List<String> classes = new ArrayList<>();
-            final Archive archive = new FilteredArchive(
-                    new ConfigurableClasspathArchive(loader, singletonList(url)),
-                    new ScanXmlSaverFilter(scanXmlExists, handler, classes, filter));
+            final ScanXmlSaverFilter saverFilter = new ScanXmlSaverFilter(scanXmlExists, handler, classes, filter);
+            final AnnotationIndex index = scanned.get(i);
+            if (index != null) {
+                indexes.add(index.filter(saverFilter));
+                archives.add(AnnotationIndex.archive(loader, url));
+            } else {
+                archives.add(new FilteredArchive(new ConfigurableClasspathArchive(loader, singletonList(url)), saverFilter));
+            }
             map.put(url, classes);
-            archives.add(archive);
         }
         return archives;
     }
@@ -114,6 +127,13 @@ public class WebappAggregatedArchive implements Archive, ScanConstants {
         return map;
     }
 
+    /**
+     * @return the build time indexes replacing the scanning of some of the urls
+     */
+    public List<AnnotationIndex> getIndexes() {
+        return indexes;
+    }
+
     @Override
     public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
         return archive.getBytecode(className);
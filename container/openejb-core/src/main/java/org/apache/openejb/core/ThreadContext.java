@@ -18,24 +18,35 @@
 package org.apache.openejb.core;
 
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.core.security.AbstractSecurityService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * The values every call stores (business method, invocation context, security
+ * context and CDI context) have their own field, {@link #get(Class)} and
+ * {@link #set(Class, Object)} only fall back to a map, created on demand, for
+ * the other types.  Entering and exiting a context therefore allocates nothing
+ * but the context itself.
+ */
 public class ThreadContext {
 
     private static final Logger log = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private static final ThreadLocal<ThreadContext> threadStorage = new ThreadLocal<ThreadContext>();
-    private static final List<ThreadContextListener> listeners = new CopyOnWriteArrayList<ThreadContextListener>();
     private static final ThreadLocal<AtomicBoolean> asynchronousCancelled = new ThreadLocal<AtomicBoolean>();
 
+    // copy on write, iterated with an index so notifying the listeners doesn't allocate an iterator
+    private static volatile ThreadContextListener[] listeners = new ThreadContextListener[0];
+
     public static ThreadContext getThreadContext() {
         return threadStorage.get();
     }
@@ -47,17 +58,22 @@ public class ThreadContext {
 
         // set the thread context class loader
         final Thread thread = Thread.currentThread();
-        newContext.oldClassLoader = thread.getContextClassLoader();
-        thread.setContextClassLoader(newContext.beanContext.getClassLoader());
+        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+        final ClassLoader classLoader = newContext.beanContext.getClassLoader();
+        newContext.oldClassLoader = oldClassLoader;
+        if (oldClassLoader != classLoader) {
+            thread.setContextClassLoader(classLoader);
+        }
 
         // update thread local
         final ThreadContext oldContext = threadStorage.get();
         threadStorage.set(newContext);
 
         // notify listeners
-        for (final ThreadContextListener listener : listeners) {
+        final ThreadContextListener[] listeners = ThreadContext.listeners;
+        for (int i = 0; i < listeners.length; i++) {
             try {
-                listener.contextEntered(oldContext, newContext);
+                listeners[i].contextEntered(oldContext, newContext);
             } catch (final Throwable e) {
                 log.warning("ThreadContextListener threw an exception", e);
             }
@@ -74,16 +90,20 @@ public class ThreadContext {
         }
 
         // set the thread context class loader back
-        Thread.currentThread().setContextClassLoader(exitingContext.oldClassLoader);
+        final Thread thread = Thread.currentThread();
+        if (thread.getContextClassLoader() != exitingContext.oldClassLoader) {
+            thread.setContextClassLoader(exitingContext.oldClassLoader);
+        }
         exitingContext.oldClassLoader = null;
 
         // update thread local
         threadStorage.set(oldContext);
 
         // notify listeners
-        for (final ThreadContextListener listener : listeners) {
+        final ThreadContextListener[] listeners = ThreadContext.listeners;
+        for (int i = 0; i < listeners.length; i++) {
             try {
-                listener.contextExited(exitingContext, oldContext);
+                listeners[i].contextExited(exitingContext, oldContext);
             } catch (final Throwable e) {
                 log.debug("ThreadContextListener threw an exception", e);
             }
@@ -102,17 +122,31 @@ public class ThreadContext {
         asynchronousCancelled.remove();
     }
 
-    public static void addThreadContextListener(final ThreadContextListener listener) {
-        listeners.add(listener);
+    public static synchronized void addThreadContextListener(final ThreadContextListener listener) {
+        final ThreadContextListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
     }
 
-    public static void removeThreadContextListener(final ThreadContextListener listener) {
-        listeners.remove(listener);
+    public static synchronized void removeThreadContextListener(final ThreadContextListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                final ThreadContextListener[] updated = new ThreadContextListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
+                listeners = updated;
+                return;
+            }
+        }
     }
 
     private final BeanContext beanContext;
     private final Object primaryKey;
-    private final Map<Class, Object> data = Collections.synchronizedMap(new HashMap<>());
+    private Method method;
+    private InvocationContext invocationContext;
+    private AbstractSecurityService.SecurityContext securityContext;
+    private Object cdiContext;
+    private volatile Map<Class, Object> data;
     private ClassLoader oldClassLoader;
     private Operation currentOperation;
     private Class invokedInterface;
@@ -140,7 +174,14 @@ public class ThreadContext {
     public ThreadContext(final ThreadContext that) {
         this.beanContext = that.beanContext;
         this.primaryKey = that.primaryKey;
-        this.data.putAll(that.data);
+        this.method = that.method;
+        this.invocationContext = that.invocationContext;
+        this.securityContext = that.securityContext;
+        this.cdiContext = that.cdiContext;
+        final Map<Class, Object> data = that.data;
+        if (data != null) {
+            data().putAll(data);
+        }
         this.oldClassLoader = that.oldClassLoader;
     }
 
@@ -184,19 +225,83 @@ public class ThreadContext {
         return null;
     }
 
+    /**
+     * Opaque state of the CDI container for this call, restored when the context exits
+     *
+     * @return the value set by the CDI {@link ThreadContextListener}
+     */
+    public Object getCdiContext() {
+        return cdiContext;
+    }
+
+    public void setCdiContext(final Object cdiContext) {
+        this.cdiContext = cdiContext;
+    }
+
     @SuppressWarnings({"unchecked"})
     public <T> T get(final Class<T> type) {
-        return (T) data.get(type);
+        if (type == Method.class) {
+            return (T) method;
+        }
+        if (type == InvocationContext.class) {
+            return (T) invocationContext;
+        }
+        if (type == AbstractSecurityService.SecurityContext.class) {
+            return (T) securityContext;
+        }
+        final Map<Class, Object> data = this.data;
+        return data == null ? null : (T) data.get(type);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T set(final Class<T> type, final T value) {
-        return (T) data.put(type, value);
+        final Object old;
+        if (type == Method.class) {
+            old = method;
+            method = (Method) value;
+        } else if (type == InvocationContext.class) {
+            old = invocationContext;
+            invocationContext = (InvocationContext) value;
+        } else if (type == AbstractSecurityService.SecurityContext.class) {
+            old = securityContext;
+            securityContext = (AbstractSecurityService.SecurityContext) value;
+        } else {
+            old = data().put(type, value);
+        }
+        return (T) old;
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T remove(final Class<T> type) {
-        return (T) data.remove(type);
+        if (isSlot(type)) {
+            return set(type, null);
+        }
+        final Map<Class, Object> data = this.data;
+        return data == null ? null : (T) data.remove(type);
+    }
+
+    private static boolean isSlot(final Class<?> type) {
+        return type == Method.class || type == InvocationContext.class || type == AbstractSecurityService.SecurityContext.class;
+    }
+
+    private Map<Class, Object> data() {
+        Map<Class, Object> data = this.data;
+        if (data == null) {
+            synchronized (this) {
+                data = this.data;
+                if (data == null) {
+                    data = Collections.synchronizedMap(new HashMap<>());
+                    this.data = data;
+                }
+            }
+        }
+        return data;
+    }
+
+    private int size() {
+        final Map<Class, Object> data = this.data;
+        return (method != null ? 1 : 0) + (invocationContext != null ? 1 : 0) + (securityContext != null ? 1 : 0)
+            + (cdiContext != null ? 1 : 0) + (data == null ? 0 : data.size());
     }
 
     public boolean isDiscardInstance() {
@@ -212,7 +317,7 @@ public class ThreadContext {
         return "ThreadContext{" +
             "beanContext=" + beanContext.getId() +
             ", primaryKey=" + primaryKey +
-            ", data=" + data.size() +
+            ", data=" + size() +
             ", oldClassLoader=" + oldClassLoader +
             ", currentOperation=" + currentOperation +
             ", invokedInterface=" + invokedInterface +
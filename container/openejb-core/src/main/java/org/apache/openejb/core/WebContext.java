@@ -19,6 +19,7 @@ package org.apache.openejb.core;
 
 import org.apache.openejb.AppContext;
 import org.apache.openejb.Injection;
+import org.apache.openejb.InjectionPlan;
 import org.apache.openejb.InjectionProcessor;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.cdi.ConstructorInjectionBean;
@@ -67,6 +68,7 @@ public class WebContext {
     private Context initialContext;
     private ServletContext servletContext;
     private final Map<Class<?>, ConstructorInjectionBean<Object>> constructorInjectionBeanCache = new ConcurrentHashMap<>();
+    private volatile InjectionPlan injectionPlan;
 
     public Context getInitialContext() {
         if (initialContext != null) {
@@ -155,7 +157,7 @@ public class WebContext {
 
         // Create bean instance
         final Context unwrap = InjectionProcessor.unwrap(getInitialContext());
-        final InjectionProcessor injectionProcessor = new InjectionProcessor(o, injections, unwrap);
+        final InjectionProcessor injectionProcessor = new InjectionProcessor(o, getInjectionPlan(unwrap));
 
         final Object beanInstance;
         try {
@@ -181,6 +183,15 @@ public class WebContext {
         return newWeakableInstance(beanClass).getValue();
     }
 
+    private InjectionPlan getInjectionPlan(final Context context) {
+        InjectionPlan plan = injectionPlan;
+        if (plan == null || plan.getContext() != context) {
+            plan = new InjectionPlan(injections, context, appContext);
+            injectionPlan = plan;
+        }
+        return plan;
+    }
+
     private ConstructorInjectionBean<Object> getConstructorInjectionBean(final Class beanClass, final WebBeansContext webBeansContext) {
         if (webBeansContext == null) {
             return null;
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
+
+import javax.interceptor.InvocationContext;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable equivalent of an {@link InterceptorStack} for one bean method and operation.
+ * <p/>
+ * The interceptor methods and the bean method are resolved once into {@link MethodHandle}s,
+ * an invocation only looks up the interceptor instances of the bean instance by name and
+ * allocates its {@link ReflectionInvocationContext}, whose context data map is created on
+ * first use.
+ */
+public class InterceptorChain {
+
+    private static final MethodType AROUND_INVOKE = MethodType.methodType(Object.class, Object.class, InvocationContext.class);
+    private static final MethodType SPREAD = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Operation operation;
+    private final Method method;
+    private final Class<?>[] parameterTypes;
+    private final Step[] steps;
+    private final MethodHandle target;
+    private final boolean timeoutWithoutTimer;
+
+    public InterceptorChain(final Method targetMethod, final Operation operation, final List<InterceptorData> interceptorDatas) {
+        if (operation == null) {
+            throw new NullPointerException("operation is null");
+        }
+        if (interceptorDatas == null) {
+            throw new NullPointerException("interceptorDatas is null");
+        }
+        this.operation = operation;
+        this.method = targetMethod;
+        this.parameterTypes = targetMethod == null ? new Class<?>[0] : targetMethod.getParameterTypes();
+        //EJB 3.1, it is allowed that timeout method does not have parameter Timer.class,
+        //However, while invoking the timeout method, the timer value is passed, as it is also required by InnvocationContext.getTimer() method
+        this.timeoutWithoutTimer = operation == Operation.TIMEOUT && parameterTypes.length == 0;
+        this.target = targetMethod == null ? null : spread(targetMethod);
+
+        final List<Step> steps = new ArrayList<>(interceptorDatas.size());
+        for (final InterceptorData interceptorData : interceptorDatas) {
+            final String name = interceptorData.getInterceptorClass().getName();
+            for (final Method method : interceptorData.getMethods(operation)) {
+                final Class<?>[] types = method.getParameterTypes();
+                final boolean aroundInvoke = types.length == 1 && types[0] == InvocationContext.class;
+                steps.add(new Step(name, method, aroundInvoke ? handle(method).asType(AROUND_INVOKE) : spread(method), aroundInvoke));
+            }
+        }
+        this.steps = steps.toArray(new Step[steps.size()]);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public InvocationContext createInvocationContext(final Object beanInstance, final Map<String, Object> interceptorInstances, final Object... parameters) {
+        return new ReflectionInvocationContext(this, beanInstance, interceptorInstances, parameters);
+    }
+
+    public Object invoke(final Object beanInstance, final Map<String, Object> interceptorInstances, final Object... parameters) throws Exception {
+        final ThreadContext threadContext = ThreadContext.getThreadContext();
+        try {
+            final InvocationContext invocationContext = createInvocationContext(beanInstance, interceptorInstances, parameters);
+            if (threadContext != null) {
+                threadContext.set(InvocationContext.class, invocationContext);
+            }
+            return invocationContext.proceed();
+        } finally {
+            if (threadContext != null) {
+                threadContext.remove(InvocationContext.class);
+            }
+        }
+    }
+
+    Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * @param context      the invocation going through the chain
+     * @param position     index of the interceptor method to call, the bean method once they are all called
+     * @param beanInstance the intercepted instance
+     * @param interceptors the interceptor instances of the bean instance by class name
+     * @param parameters   the current parameters
+     */
+    Object proceed(final InvocationContext context, final int position, final Object beanInstance,
+                   final Map<String, Object> interceptors, final Object[] parameters) throws Exception {
+        try {
+            if (position < steps.length) {
+                final Step step = steps[position];
+                final Object instance = step.instance(interceptors);
+                if (step.aroundInvoke) {
+                    return step.handle.invokeExact(instance, context);
+                }
+
+                // lifecycle callback, we need to call proceed so callbacks in subclasses get invoked
+                final Object ignored = step.handle.invokeExact(instance, parameters);
+                return context.proceed();
+            } else if (target != null) {
+                final Object[] args = timeoutWithoutTimer ? NO_ARGS : parameters;
+                return target.invokeExact(beanInstance, args);
+            }
+            return null;
+        } catch (final Exception | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    private static MethodHandle handle(final Method method) {
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        try {
+            final MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+            if (Modifier.isStatic(method.getModifiers())) {
+                return MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle;
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException("Can't access " + method, e);
+        }
+    }
+
+    private static MethodHandle spread(final Method method) {
+        return handle(method).asSpreader(Object[].class, method.getParameterTypes().length).asType(SPREAD);
+    }
+
+    @Override
+    public String toString() {
+        return "InterceptorChain(operation=" + operation + ", method=" + (method != null ? method.getName() : null) + ", interceptors=" + steps.length + ")";
+    }
+
+    private static final class Step {
+        private final String interceptor;
+        private final Class<?> declaringClass;
+        private final MethodHandle handle;
+        private final boolean aroundInvoke;
+
+        private Step(final String interceptor, final Method method, final MethodHandle handle, final boolean aroundInvoke) {
+            this.interceptor = interceptor;
+            this.declaringClass = method.getDeclaringClass();
+            this.handle = handle;
+            this.aroundInvoke = aroundInvoke;
+        }
+
+        private Object instance(final Map<String, Object> interceptors) {
+            final Object instance = interceptors.get(interceptor);
+            if (instance == null) {
+                throw new IllegalArgumentException("No interceptor of type " + interceptor);
+            }
+            if (!declaringClass.isInstance(instance)) {
+                final Object handler = DynamicProxyImplFactory.realHandler(instance);
+                if (handler != null && declaringClass.equals(handler.getClass())) { // dynamic impl
+                    return handler;
+                }
+            }
+            return instance;
+        }
+    }
+}
@@ -37,11 +37,15 @@ public class ReflectionInvocationContext implements InvocationContext {
     private final Object target;
     private final Method method;
     private final Object[] parameters;
-    private final Map<String, Object> contextData = new TreeMap<>();
+    private Map<String, Object> contextData;
     private final Class<?>[] parameterTypes;
 
     private final Operation operation;
 
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
+    private int position;
+
     public ReflectionInvocationContext(final Operation operation, final List<Interceptor> interceptors, final Object target, final Method method, final Object... parameters) {
         if (operation == null) {
             throw new NullPointerException("operation is null");
@@ -58,6 +62,8 @@ public class ReflectionInvocationContext implements InvocationContext {
         this.target = target;
         this.method = method;
         this.parameters = parameters;
+        this.chain = null;
+        this.interceptorInstances = null;
 
         if (method == null) {
             parameterTypes = new Class[0];
@@ -66,6 +72,27 @@ public class ReflectionInvocationContext implements InvocationContext {
         }
     }
 
+    public ReflectionInvocationContext(final InterceptorChain chain, final Object target, final Map<String, Object> interceptorInstances, final Object... parameters) {
+        if (chain == null) {
+            throw new NullPointerException("chain is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+        if (interceptorInstances == null) {
+            throw new NullPointerException("interceptorInstances is null");
+        }
+
+        this.operation = chain.getOperation();
+        this.interceptors = null;
+        this.target = target;
+        this.method = chain.getMethod();
+        this.parameters = parameters;
+        this.parameterTypes = chain.getParameterTypes();
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
+    }
+
     @Override
     public Object getTimer() {
         if (operation.equals(Operation.TIMEOUT)) {
@@ -147,6 +174,9 @@ public class ReflectionInvocationContext implements InvocationContext {
 
     @Override
     public Map<String, Object> getContextData() {
+        if (contextData == null) {
+            contextData = new TreeMap<>();
+        }
         return contextData;
     }
 
@@ -181,6 +211,9 @@ public class ReflectionInvocationContext implements InvocationContext {
         // The bulk of the logic of this method has intentionally been moved
         // out so stepping through a large stack in a debugger can be done quickly.
         // Simply put one break point on 'next.invoke()' or one inside that method.
+        if (chain != null) {
+            return chain.proceed(this, position++, target, interceptorInstances, parameters);
+        }
         try {
             final Invocation next = next();
             return next.invoke();
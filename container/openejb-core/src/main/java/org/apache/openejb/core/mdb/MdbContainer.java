@@ -27,8 +27,7 @@ import org.apache.openejb.SystemException;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
-import org.apache.openejb.core.interceptor.InterceptorData;
-import org.apache.openejb.core.interceptor.InterceptorStack;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.loader.Options;
@@ -71,7 +70,6 @@ import javax.validation.Validator;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -482,10 +480,8 @@ public class MdbContainer implements RpcContainer, BaseMdbContainer {
             ApplicationException {
         final Object returnValue;
         try {
-            final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-            final InterceptorStack interceptorStack = new InterceptorStack(((Instance) instance).bean, runMethod, interfaceType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS,
-                    interceptors, ((Instance) instance).interceptors);
-            returnValue = interceptorStack.invoke(args);
+            final InterceptorChain interceptorChain = beanContext.getMethodInterceptorChain(runMethod, interfaceType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
+            returnValue = interceptorChain.invoke(((Instance) instance).bean, ((Instance) instance).interceptors, args);
             return returnValue;
         } catch (Throwable e) {
             // unwrap invocation target exception
@@ -105,6 +105,10 @@ public class MdbContainerFactory {
         this.poolBuilder.setMinSize(min);
     }
 
+    public void setPoolStrategy(final Pool.Strategy strategy) {
+        this.poolBuilder.setPoolStrategy(strategy);
+    }
+
     public boolean isFailOnUnknownActivationSpec() {
         return failOnUnknownActivationSpec;
     }
@@ -27,6 +27,7 @@ import org.apache.openejb.cdi.CurrentCreationalContext;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.security.AbstractSecurityService;
@@ -91,6 +92,10 @@ public class SingletonContainer implements RpcContainer {
         this.accessTimeout = duration;
     }
 
+    public void setLockStrategy(final String strategy) {
+        instanceManager.setLockStrategy(SingletonInstanceManager.LockStrategy.valueOf(strategy.trim().toUpperCase()));
+    }
+
     @Override
     public synchronized BeanContext[] getBeanContexts() {
         return deploymentRegistry.values().toArray(new BeanContext[deploymentRegistry.size()]);
@@ -263,13 +268,9 @@ public class SingletonContainer implements RpcContainer {
                     callContext.setCurrentOperation(Operation.BUSINESS_WS);
                     returnValue = invokeWebService(args, beanContext, runMethod, instance);
                 } else {
-                    final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                    final InterceptorStack interceptorStack = new InterceptorStack(instance.bean,
-                        runMethod,
-                        callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS,
-                        interceptors,
-                        instance.interceptors);
-                    returnValue = interceptorStack.invoke(args);
+                    final InterceptorChain interceptorChain = beanContext.getMethodInterceptorChain(runMethod,
+                        callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
+                    returnValue = interceptorChain.invoke(instance.bean, instance.interceptors, args);
                 }
             } catch (final Throwable e) {// handle reflection exception
                 final ExceptionType type = beanContext.getExceptionType(e);
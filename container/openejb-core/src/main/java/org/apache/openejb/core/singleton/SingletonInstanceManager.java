@@ -69,9 +69,26 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class SingletonInstanceManager {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
 
+    /**
+     * Bean property overriding the container {@code LockStrategy} for one bean.
+     */
+    public static final String LOCK_STRATEGY = "Singleton.LockStrategy";
+
+    public enum LockStrategy {
+        /**
+         * a single {@link ReentrantReadWriteLock}
+         */
+        REENTRANT,
+        /**
+         * a {@link StripedReadWriteLock}, readers don't contend but writers lock every stripe
+         */
+        STRIPED
+    }
+
     private final SecurityService securityService;
     private final SingletonContext sessionContext;
     private final WebServiceContext webServiceContext;
+    private LockStrategy lockStrategy = LockStrategy.REENTRANT;
 
     public SingletonInstanceManager(final SecurityService securityService) {
         this.securityService = securityService;
@@ -79,6 +96,10 @@ public class SingletonInstanceManager {
         webServiceContext = new EjbWsContext(sessionContext);
     }
 
+    public void setLockStrategy(final LockStrategy lockStrategy) {
+        this.lockStrategy = lockStrategy;
+    }
+
     protected void start(final BeanContext beanContext) throws OpenEJBException {
         if (beanContext.isLoadOnStartup()) {
             initialize(beanContext);
@@ -197,7 +218,8 @@ public class SingletonInstanceManager {
                 lock = new BeanManagedLock();
             } else {
                 // Container-Managed Concurrency
-                lock = new ReentrantReadWriteLock();
+                final LockStrategy strategy = beanContext.getOptions().get(LOCK_STRATEGY, lockStrategy);
+                lock = strategy == LockStrategy.STRIPED ? new StripedReadWriteLock() : new ReentrantReadWriteLock();
             }
 
             return new Instance(context.getBean(), context.getInterceptors(), context.getCreationalContext(), lock);
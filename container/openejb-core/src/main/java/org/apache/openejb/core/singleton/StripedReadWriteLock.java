@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.singleton;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write lock for read mostly singletons.
+ * <p/>
+ * A reader only locks the stripe of its thread so concurrent readers do not share the reader
+ * count of a single {@link ReentrantReadWriteLock}, a writer locks every stripe in order.
+ * Reentrancy, downgrading and timeouts behave as with a single {@link ReentrantReadWriteLock},
+ * writes are just more expensive.
+ */
+public class StripedReadWriteLock implements ReadWriteLock {
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+
+    public StripedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedReadWriteLock(final int concurrency) {
+        int size = 1;
+        while (size < Math.min(concurrency, 64)) {
+            size <<= 1;
+        }
+
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    private Lock stripe() {
+        // thread ids are sequential, the same thread always uses the same stripe
+        return stripes[(int) Thread.currentThread().getId() & mask].readLock();
+    }
+
+    private class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            stripe().lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            stripe().lockInterruptibly();
+        }
+
+        @Override
+        public boolean tryLock() {
+            return stripe().tryLock();
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+            return stripe().tryLock(time, unit);
+        }
+
+        @Override
+        public void unlock() {
+            stripe().unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+    }
+
+    private class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            for (final ReentrantReadWriteLock stripe : stripes) {
+                stripe.writeLock().lock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            for (int i = 0; i < stripes.length; i++) {
+                try {
+                    stripes[i].writeLock().lockInterruptibly();
+                } catch (final InterruptedException e) {
+                    release(i);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            for (int i = 0; i < stripes.length; i++) {
+                if (!stripes[i].writeLock().tryLock()) {
+                    release(i);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(time);
+            for (int i = 0; i < stripes.length; i++) {
+                final boolean locked;
+                try {
+                    locked = stripes[i].writeLock().tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (final InterruptedException e) {
+                    release(i);
+                    throw e;
+                }
+                if (!locked) {
+                    release(i);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            release(stripes.length);
+        }
+
+        private void release(final int acquired) {
+            for (int i = acquired - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.SystemException;
+import org.apache.openejb.core.EnvProps;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.JavaSecurityManagers;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Log structured passivation store.
+ * <p/>
+ * Passivated beans are appended to memory mapped segment files and an in-memory index keeps
+ * where each one is, activating a bean is a read in the mapping. Activated beans leave dead
+ * bytes in their segment, once a segment holds more than
+ * {@code openejb.stateful.passivation.compaction.threshold} percent (default 50) of dead bytes
+ * its live beans are copied to the current segment in the background and the file is deleted.
+ * <p/>
+ * {@code openejb.stateful.passivation.segment.size} sets the segment size (default 64MB) and
+ * {@code openejb.stateful.passivation.compress=true} deflates the serialized beans.
+ * <p/>
+ * Mappings are never unmapped explicitly, a retired segment stays readable by an activation
+ * which already resolved it and is released by the garbage collector. A segment file which can't
+ * be deleted yet (still mapped on Windows) is deleted again by the next compaction or by
+ * {@link #close()}, which the cache calls when it is destroyed.
+ */
+public class MappedPassivater implements PassivationStrategy, AutoCloseable {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    public static final String SEGMENT_SIZE = "openejb.stateful.passivation.segment.size";
+    public static final String COMPRESS = "openejb.stateful.passivation.compress";
+    public static final String COMPACTION_THRESHOLD = "openejb.stateful.passivation.compaction.threshold";
+
+    private static final int HEADER = 5; // length + flags
+    private static final byte COMPRESSED = 1;
+
+    private static final AtomicInteger STORES = new AtomicInteger();
+
+    private final ConcurrentMap<Object, Location> index = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<File> undeleted = new ArrayList<>();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final int store = STORES.incrementAndGet();
+    private File directory;
+    private int segmentSize;
+    private boolean compress;
+    private int compactionThreshold;
+    private int segmentIds;
+    private Segment active;
+    private ExecutorService compactor;
+    private boolean closed;
+
+    public MappedPassivater() throws SystemException {
+        init(null);
+    }
+
+    @Override
+    public synchronized void init(Properties props) throws SystemException {
+        if (props == null) {
+            props = new Properties();
+        }
+
+        final Options options = new Options(props, SystemInstance.get().getOptions());
+        segmentSize = options.get(SEGMENT_SIZE, 64 * 1024 * 1024);
+        compress = options.get(COMPRESS, false);
+        compactionThreshold = options.get(COMPACTION_THRESHOLD, 50);
+
+        final String dir = props.getProperty(EnvProps.IM_PASSIVATOR_PATH_PREFIX);
+        try {
+            if (dir != null) {
+                directory = SystemInstance.get().getBase().getDirectory(dir);
+            } else {
+                directory = new File(JavaSecurityManagers.getSystemProperty("java.io.tmpdir", File.separator + "tmp"));
+            }
+
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Failed to create session directory: " + directory.getAbsolutePath());
+            }
+
+            if (directory.exists() && !directory.isDirectory()) {
+                throw new IOException("Session directory exists as a file: " + directory.getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            throw new SystemException(getClass().getName() + ".init(): can't use directory prefix " + dir + ":" + e, e);
+        }
+    }
+
+    @Override
+    public void passivate(final Map stateTable) throws SystemException {
+        // serialize outside of the lock, concurrent caches only contend on the copy
+        final List<Object> keys = new ArrayList<>(stateTable.size());
+        final List<byte[]> records = new ArrayList<>(stateTable.size());
+        for (final Object o : stateTable.entrySet()) {
+            final Map.Entry entry = (Map.Entry) o;
+            keys.add(entry.getKey());
+            records.add(serialize(entry.getValue()));
+        }
+
+        final List<Location> replaced = new ArrayList<>();
+        synchronized (this) {
+            try {
+                for (int i = 0; i < keys.size(); i++) {
+                    final Location previous = index.put(keys.get(i), append(records.get(i)));
+                    if (previous != null) {
+                        replaced.add(previous);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new SystemException(e);
+            }
+        }
+        for (final Location location : replaced) {
+            release(location);
+        }
+    }
+
+    @Override
+    public Object activate(final Object primaryKey) throws SystemException {
+        final Location location = index.remove(primaryKey);
+        if (location == null) {
+            return null;
+        }
+
+        try {
+            final ByteBuffer buffer = location.segment.buffer.duplicate();
+            buffer.position(location.offset + HEADER);
+            final byte[] bytes = new byte[location.length];
+            buffer.get(bytes);
+
+            InputStream in = new ByteArrayInputStream(bytes);
+            if (location.compressed) {
+                in = new InflaterInputStream(in);
+            }
+            try (final ObjectInputStream ois = new EjbObjectInputStream(in)) {
+                return ois.readObject();
+            }
+        } catch (final Exception t) {
+            logger.info("Activation failed ", t);
+            throw new SystemException(t);
+        } finally {
+            release(location);
+        }
+    }
+
+    /**
+     * Stops the compaction and deletes the segment files, the passivated beans are lost.
+     */
+    @Override
+    public void close() {
+        final ExecutorService executor;
+        synchronized (this) {
+            closed = true;
+            executor = compactor;
+            compactor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            index.clear();
+            for (final Segment segment : segments) {
+                undeleted.add(segment.file);
+            }
+            segments.clear();
+            active = null;
+            deleteRetiredFiles();
+        }
+    }
+
+    /**
+     * Number of passivated beans.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Number of segment files.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private byte[] serialize(final Object state) throws SystemException {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+            baos.write(new byte[HEADER], 0, HEADER);
+            if (compress) {
+                final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (final ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(baos, deflater))) {
+                    oos.writeObject(state);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                try (final ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                    oos.writeObject(state);
+                }
+            }
+
+            final byte[] record = baos.toByteArray();
+            final ByteBuffer header = ByteBuffer.wrap(record, 0, HEADER);
+            header.putInt(record.length - HEADER);
+            header.put(compress ? COMPRESSED : 0);
+            return record;
+        } catch (final NotSerializableException nse) {
+            logger.error("Passivation failed ", nse);
+            throw (SystemException) new SystemException("The type " + nse.getMessage() + " is not serializable as mandated by the EJB specification.").initCause(nse);
+        } catch (final IOException e) {
+            logger.error("Passivation failed ", e);
+            throw new SystemException(e);
+        }
+    }
+
+    // guarded by this
+    private Location append(final byte[] record) throws IOException {
+        if (active == null || active.capacity() - active.position < record.length) {
+            active = newSegment(Math.max(segmentSize, record.length));
+        }
+
+        final int offset = active.position;
+        final ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(offset);
+        buffer.put(record);
+        active.position += record.length;
+        active.live.addAndGet(record.length);
+
+        return new Location(active, offset, record.length - HEADER, record[4] == COMPRESSED);
+    }
+
+    // guarded by this
+    private Segment newSegment(final int size) throws IOException {
+        final File file = new File(directory, "passivation-" + store + "-" + (segmentIds++) + ".seg");
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final FileChannel channel = raf.getChannel();
+            // the mapping stays valid once the channel is closed
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            final Segment segment = new Segment(file, buffer);
+            segments.add(segment);
+            return segment;
+        }
+    }
+
+    private void release(final Location location) {
+        final Segment segment = location.segment;
+        final int live = segment.live.addAndGet(-(location.length + HEADER));
+
+        if (live == 0 || segment.isWorthCompacting(compactionThreshold)) {
+            synchronized (this) {
+                if (segment == active || !segments.contains(segment)) {
+                    return;
+                }
+            }
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                compacting.set(false);
+                return;
+            }
+            if (compactor == null) {
+                compactor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("Stateful passivation compaction"));
+            }
+            // submitted under the lock, close() can't shut the executor down in between
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Moves the live beans out of the segments full of dead entries and deletes them.
+     */
+    void compact() {
+        final List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (final Segment segment : segments) {
+                if (segment != active && segment.isWorthCompacting(compactionThreshold)) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        for (final Map.Entry<Object, Location> entry : index.entrySet()) {
+            final Location location = entry.getValue();
+            if (!candidates.contains(location.segment)) {
+                continue;
+            }
+
+            final byte[] record = new byte[location.length + HEADER];
+            final ByteBuffer buffer = location.segment.buffer.duplicate();
+            buffer.position(location.offset);
+            buffer.get(record);
+
+            synchronized (this) {
+                try {
+                    final Location moved = append(record);
+                    if (!index.replace(entry.getKey(), location, moved)) {
+                        // activated meanwhile, the copy is dead
+                        moved.segment.live.addAndGet(-record.length);
+                    }
+                } catch (final IOException e) {
+                    logger.warning("Can't compact passivated beans: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        synchronized (this) {
+            segments.removeAll(candidates);
+            for (final Segment segment : candidates) {
+                undeleted.add(segment.file);
+            }
+            deleteRetiredFiles();
+        }
+    }
+
+    // guarded by this
+    private void deleteRetiredFiles() {
+        final Iterator<File> files = undeleted.iterator();
+        while (files.hasNext()) {
+            final File file = files.next();
+            if (file.delete() || !file.exists()) {
+                files.remove();
+            } else {
+                logger.debug("Can't delete passivation segment " + file.getAbsolutePath() + " yet");
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger live = new AtomicInteger();
+        private volatile int position; // written by the passivater lock owner
+
+        private Segment(final File file, final MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        private boolean isWorthCompacting(final int threshold) {
+            final int used = position;
+            return used > 0 && (used - live.get()) * 100L >= (long) used * threshold;
+        }
+    }
+
+    private static final class Location {
+
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final boolean compressed;
+
+        private Location(final Segment segment, final int offset, final int length, final boolean compressed) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.compressed = compressed;
+        }
+    }
+}
@@ -0,0 +1,901 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.monitoring.LatencyHistogram;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stateful cache for containers holding a lot of conversations.
+ * <p/>
+ * Same contract and entry life cycle as {@link SimpleCache} but the entries are split in
+ * {@code Shards} shards, each one with its own map and least recently used set (O(1) removal
+ * when an entry is checked out instead of a queue scan). {@code Capacity} is shared equally by
+ * the shards.
+ * <p/>
+ * A shard going over its capacity is shrunk right away by one of the {@code PassivationThreads}
+ * workers and the periodic check runs on all the shards in parallel. Evicted instances are
+ * written {@code BulkPassivate} at a time with a single {@link PassivationStrategy#passivate(Map)}
+ * call and stay locked in the cache until written, a concurrent checkOut waits for the write then
+ * activates the instance instead of missing it.
+ * <p/>
+ * To use it: {@code Cache org.apache.openejb.core.stateful.ShardedCache} on the stateful container.
+ */
+public class ShardedCache<K, V> implements Cache<K, V> {
+    public static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    private volatile CacheListener<V> listener;
+
+    private volatile PassivationStrategy passivator;
+
+    private volatile int capacity = 1000;
+
+    private volatile int bulkPassivate = 100;
+
+    private volatile long timeOut = -1;
+
+    private volatile long frequency = 60 * 1000;
+
+    private int passivationThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private Shard[] shards;
+
+    private int mask;
+
+    private ScheduledExecutorService executor;
+
+    // true when init() created the executor, a container provided one is shut down by the container
+    private boolean ownsExecutor;
+
+    private ExecutorService workers;
+
+    private ScheduledFuture<?> future;
+
+    private Object containerId;
+
+    private ObjectName objectName;
+
+    private final Stats stats = new Stats();
+
+    public ShardedCache() {
+        setShards(16);
+    }
+
+    public ShardedCache(final CacheListener<V> listener, final PassivationStrategy passivator, final int capacity, final int bulkPassivate, final Duration timeOut) {
+        this();
+        this.listener = listener;
+        this.passivator = passivator;
+        this.capacity = capacity;
+        this.bulkPassivate = bulkPassivate;
+        this.timeOut = timeOut.getTime(TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void init() {
+        if (workers != null) {
+            return;
+        }
+
+        // start any thread in container loader to avoid leaks
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ShardedCache.class.getClassLoader());
+        try {
+            workers = Executors.newFixedThreadPool(passivationThreads, new DaemonThreadFactory("Stateful cache passivation"));
+            if (frequency > 0) {
+                if (executor == null) {
+                    executor = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("Stateful cache"));
+                    ownsExecutor = true;
+                }
+                future = executor.scheduleWithFixedDelay(this::processLRU, frequency, frequency, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(loader);
+        }
+
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management")
+                .set("ObjectType", "StatefulCache")
+                .set("name", containerId == null ? Integer.toString(System.identityHashCode(this)) : containerId.toString());
+        objectName = jmxName.build();
+        LocalMBeanServer.registerDynamicWrapperSilently(stats, objectName);
+    }
+
+    public synchronized void destroy() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+            executor = null;
+            ownsExecutor = false;
+        }
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+        if (passivator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) passivator).close();
+            } catch (final Exception e) {
+                logger.warning("Can't close the passivation store: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public CacheListener<V> getListener() {
+        return listener;
+    }
+
+    public void setListener(final CacheListener<V> listener) {
+        this.listener = listener;
+    }
+
+    public PassivationStrategy getPassivator() {
+        return passivator;
+    }
+
+    public void setPassivator(final PassivationStrategy passivator) {
+        this.passivator = passivator;
+    }
+
+    public void setPassivator(final Class<? extends PassivationStrategy> passivatorClass) throws Exception {
+        this.passivator = passivatorClass.newInstance();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Old configurations use "PoolSize" to configure max cache size
+    public void setPoolSize(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBulkPassivate() {
+        return bulkPassivate;
+    }
+
+    public void setBulkPassivate(final int bulkPassivate) {
+        this.bulkPassivate = bulkPassivate;
+    }
+
+    public long getTimeOut() {
+        return timeOut;
+    }
+
+    public void setTimeOut(final String timeOut) {
+        this.timeOut = ms(timeOut, TimeUnit.MINUTES);
+    }
+
+    public long getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(final String frequency) {
+        this.frequency = ms(frequency, TimeUnit.SECONDS);
+    }
+
+    public int getShards() {
+        return shards.length;
+    }
+
+    /**
+     * Only effective before the cache is used, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public void setShards(final int count) {
+        int size = 1;
+        while (size < count) {
+            size <<= 1;
+        }
+        final Shard[] newShards = new ShardedCache.Shard[size];
+        for (int i = 0; i < size; i++) {
+            newShards[i] = new Shard();
+        }
+        this.shards = newShards;
+        this.mask = size - 1;
+    }
+
+    public int getPassivationThreads() {
+        return passivationThreads;
+    }
+
+    public void setPassivationThreads(final int passivationThreads) {
+        this.passivationThreads = Math.max(1, passivationThreads);
+    }
+
+    public void setContainerId(final Object containerId) {
+        this.containerId = containerId;
+    }
+
+    public void setScheduledExecutorService(final ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public ScheduledExecutorService getScheduledExecutorService() {
+        return executor;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    private static long ms(final String durationValue, final TimeUnit defaultTU) {
+        final Duration duration = new Duration(durationValue.trim());
+        // as in SimpleCache a value without unit uses the old default unit
+        if (duration.getUnit() == null) {
+            duration.setUnit(defaultTU);
+        }
+        return duration.getUnit().toMillis(duration.getTime());
+    }
+
+    private Shard shard(final K key) {
+        final int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & mask];
+    }
+
+    private int shardCapacity() {
+        return Math.max(1, (capacity + shards.length - 1) / shards.length);
+    }
+
+    public void add(final K key, final V value) {
+        final Shard shard = shard(key);
+
+        // find the existing entry
+        Entry entry = shard.entries.get(key);
+        if (entry != null) {
+            entry.lock.lock();
+            try {
+                if (entry.getState() != EntryState.REMOVED) {
+                    throw new IllegalStateException("An entry for the key " + key + " already exists");
+                }
+                // Entry has been removed between get and lock, simply remove the garbage entry
+                shard.entries.remove(key, entry);
+                shard.lruRemove(entry);
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        entry = new Entry(key, value, EntryState.CHECKED_OUT);
+        shard.entries.put(key, entry);
+    }
+
+    public V checkOut(final K key, final boolean loadEntryIfNotFound) throws Exception {
+        final Shard shard = shard(key);
+
+        // attempt (up to 10 times) to obtain the entry from the cache
+        for (int i = 0; i < 10; i++) {
+            // find the entry
+            Entry entry = shard.entries.get(key);
+            if (!loadEntryIfNotFound && entry == null) {
+                return null;
+            }
+            final boolean loaded = entry == null;
+            if (loaded) {
+                entry = loadEntry(shard, key);
+                if (entry == null) {
+                    stats.misses.increment();
+                    return null;
+                }
+            }
+
+            entry.lock.lock();
+            try {
+                switch (entry.getState()) {
+                    case AVAILABLE:
+                        break;
+                    case CHECKED_OUT:
+                        if (!loaded) {
+                            stats.hits.increment();
+                        }
+                        return entry.getValue();
+                    case PASSIVATED:
+                        // Entry was written to the store while we waited for the lock, load it again
+                        shard.entries.remove(key, entry);
+                        continue;
+                    case REMOVED:
+                        // Entry has been removed between get and lock (most likely by undeploying the EJB), simply drop the instance
+                        return null;
+                }
+
+                // mark entry as in-use, it is removed from the lru while in use
+                entry.setState(EntryState.CHECKED_OUT);
+                shard.lruRemove(entry);
+                if (!loaded) {
+                    stats.hits.increment();
+                }
+
+                return entry.getValue();
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        // something is really messed up with this entry, try to cleanup before throwing an exception
+        final Entry entry = shard.entries.remove(key);
+        if (entry != null) {
+            shard.lruRemove(entry);
+        }
+        throw new OpenEJBRuntimeException("Cache is corrupted: the entry " + key + " in the Map 'cache' is in state PASSIVATED");
+    }
+
+    public void checkIn(final K key) {
+        final Shard shard = shard(key);
+
+        // find the entry
+        final Entry entry = shard.entries.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        entry.lock.lock();
+        try {
+            switch (entry.getState()) {
+                case AVAILABLE:
+                    if (shard.lruContains(entry)) {
+                        entry.resetTimeOut();
+                        return;
+                    } else {
+                        throw new IllegalStateException("The entry " + key + " is not checked-out");
+                    }
+                case PASSIVATED:
+                    // An entry in-use should not be passivated so we can only assume
+                    // that the caller never checked out the bean in the first place
+                    throw new IllegalStateException("The entry " + key + " is not checked-out");
+                case REMOVED:
+                    // Entry has been removed between get and lock (most likely by undeploying the EJB), simply drop the instance
+                    return;
+            }
+
+            // mark entry as available and add it to the lru
+            entry.setState(EntryState.AVAILABLE);
+            shard.lruAdd(entry);
+            entry.resetTimeOut();
+        } finally {
+            entry.lock.unlock();
+        }
+
+        if (frequency == 0) {
+            processShard(shard);
+        } else if (shard.lruSize() > shardCapacity()) {
+            shrinkAsync(shard);
+        }
+    }
+
+    public V remove(final K key) {
+        final Shard shard = shard(key);
+
+        // find the entry
+        final Entry entry = shard.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.lock.lock();
+        try {
+            // remove the entry from the cache and lru
+            shard.entries.remove(key, entry);
+            shard.lruRemove(entry);
+
+            // mark the entry as removed, users of the cache are responsible for maintaining references to beans in use
+            entry.setState(EntryState.REMOVED);
+
+            return entry.getValue();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    public void removeAll(final CacheFilter<V> filter) {
+        for (final Shard shard : shards) {
+            for (final Iterator<Entry> iterator = shard.entries.values().iterator(); iterator.hasNext(); ) {
+                final Entry entry = iterator.next();
+
+                entry.lock.lock();
+                try {
+                    if (filter.matches(entry.getValue())) {
+                        iterator.remove();
+                        shard.lruRemove(entry);
+                        entry.setState(EntryState.REMOVED);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the timed out entries and passivates the ones over the capacity, the shards are processed
+     * in parallel by the passivation workers.
+     */
+    public void processLRU() {
+        final ExecutorService workers = this.workers;
+        if (workers == null) {
+            for (final Shard shard : shards) {
+                processShard(shard);
+            }
+            return;
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<>(shards.length);
+        for (final Shard shard : shards) {
+            tasks.add(() -> {
+                processShard(shard);
+                return null;
+            });
+        }
+        try {
+            workers.invokeAll(tasks);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processShard(final Shard shard) {
+        final CacheListener<V> listener = this.listener;
+
+        // entries are in least recently used order but they can have different timeouts so all are checked
+        for (final Entry entry : shard.lruSnapshot()) {
+            entry.lock.lock();
+            try {
+                switch (entry.getState()) {
+                    case AVAILABLE:
+                        break;
+                    case CHECKED_OUT:
+                        // bean is in use so cannot be passivated
+                        continue;
+                    case PASSIVATED:
+                    case REMOVED:
+                        shard.lruRemove(entry);
+                        continue;
+                }
+
+                if (entry.isTimedOut()) {
+                    shard.lruRemove(entry);
+                    shard.entries.remove(entry.getKey(), entry);
+                    entry.setState(EntryState.REMOVED);
+                    stats.timeouts.increment();
+                    timedOut(listener, entry);
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        shrink(shard);
+    }
+
+    private void shrinkAsync(final Shard shard) {
+        final ExecutorService workers = this.workers;
+        if (workers == null || !shard.shrinking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    shrink(shard);
+                } finally {
+                    shard.shrinking.set(false);
+                }
+            });
+        } catch (final RuntimeException e) { // rejected, the cache is destroyed
+            shard.shrinking.set(false);
+        }
+    }
+
+    private void shrink(final Shard shard) {
+        final int shardCapacity = shardCapacity();
+        final int bulkPassivate = Math.max(1, this.bulkPassivate);
+
+        while (shard.lruSize() >= shardCapacity) {
+            final List<Entry> polled = shard.lruPoll(bulkPassivate);
+            if (polled.isEmpty()) {
+                return;
+            }
+
+            final Map<K, V> valuesToStore = new LinkedHashMap<>();
+            final List<Entry> locked = new ArrayList<>();
+            for (final Entry entry : polled) {
+                if (!entry.lock.tryLock()) {
+                    // in use, it will come back into the lru when checked in
+                    continue;
+                }
+                try {
+                    if (entry.getState() != EntryState.AVAILABLE) {
+                        continue;
+                    }
+
+                    // if the entry is actually timed out we just destroy it; otherwise it is written to the store
+                    if (entry.isTimedOut()) {
+                        shard.entries.remove(entry.getKey(), entry);
+                        entry.setState(EntryState.REMOVED);
+                        stats.timeouts.increment();
+                        timedOut(listener, entry);
+                    } else {
+                        // keep the entry locked until it is written, a checkOut waits then activates it
+                        entry.lock.lock();
+                        locked.add(entry);
+
+                        entry.setState(EntryState.PASSIVATED);
+                        valuesToStore.put(entry.getKey(), entry.getValue());
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+
+            if (!locked.isEmpty()) {
+                try {
+                    storeEntries(valuesToStore);
+                } finally {
+                    for (final Entry entry : locked) {
+                        shard.entries.remove(entry.key, entry);
+                        entry.lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    private void timedOut(final CacheListener<V> listener, final Entry entry) {
+        if (listener != null) {
+            try {
+                listener.timedOut(entry.getValue());
+            } catch (final Exception e) {
+                logger.error("An unexpected exception occured from timedOut callback", e);
+            }
+        }
+    }
+
+    private Entry loadEntry(final Shard shard, final K key) throws Exception {
+        final PassivationStrategy passivator = this.passivator;
+        if (passivator == null) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        V value = null;
+        try {
+            value = (V) passivator.activate(key);
+        } catch (final Exception e) {
+            logger.error("An unexpected exception occured while reading entries from disk", e);
+        }
+
+        if (value == null) {
+            return null;
+        }
+
+        final CacheListener<V> listener = this.listener;
+        if (listener != null) {
+            listener.afterLoad(value);
+        }
+        stats.activations.increment();
+        stats.activationLatency.record(System.nanoTime() - start);
+
+        final Entry entry = new Entry(key, value, EntryState.AVAILABLE);
+        final Entry existing = shard.entries.putIfAbsent(key, entry);
+        return existing != null ? existing : entry;
+    }
+
+    private void storeEntries(final Map<K, V> entriesToStore) {
+        final CacheListener<V> listener = this.listener;
+        for (final Iterator<Map.Entry<K, V>> iterator = entriesToStore.entrySet().iterator(); iterator.hasNext(); ) {
+            final Map.Entry<K, V> entry = iterator.next();
+
+            if (listener != null) {
+                try {
+                    listener.beforeStore(entry.getValue());
+                } catch (final Exception e) {
+                    iterator.remove();
+                    logger.error("An unexpected exception occured from beforeStore callback", e);
+                }
+            }
+        }
+
+        final PassivationStrategy passivator = this.passivator;
+        if (passivator == null || entriesToStore.isEmpty()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            passivator.passivate(entriesToStore);
+            stats.passivations.add(entriesToStore.size());
+            stats.passivationLatency.record(System.nanoTime() - start);
+        } catch (final Exception e) {
+            logger.error("An unexpected exception occured while writting the entries to disk", e);
+        }
+    }
+
+    private enum EntryState {
+        AVAILABLE, CHECKED_OUT, PASSIVATED, REMOVED
+    }
+
+    private final class Shard {
+
+        private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+
+        /**
+         * Available entries, least recently used first
+         */
+        private final LinkedHashSet<Entry> lru = new LinkedHashSet<>();
+
+        private final ReentrantLock lruLock = new ReentrantLock();
+
+        private final AtomicBoolean shrinking = new AtomicBoolean();
+
+        private void lruAdd(final Entry entry) {
+            lruLock.lock();
+            try {
+                lru.add(entry);
+            } finally {
+                lruLock.unlock();
+            }
+        }
+
+        private void lruRemove(final Entry entry) {
+            lruLock.lock();
+            try {
+                lru.remove(entry);
+            } finally {
+                lruLock.unlock();
+            }
+        }
+
+        private boolean lruContains(final Entry entry) {
+            lruLock.lock();
+            try {
+                return lru.contains(entry);
+            } finally {
+                lruLock.unlock();
+            }
+        }
+
+        private int lruSize() {
+            lruLock.lock();
+            try {
+                return lru.size();
+            } finally {
+                lruLock.unlock();
+            }
+        }
+
+        private List<Entry> lruSnapshot() {
+            lruLock.lock();
+            try {
+                return new ArrayList<>(lru);
+            } finally {
+                lruLock.unlock();
+            }
+        }
+
+        private List<Entry> lruPoll(final int max) {
+            lruLock.lock();
+            try {
+                final List<Entry> polled = new ArrayList<>(Math.min(max, lru.size()));
+                final Iterator<Entry> iterator = lru.iterator();
+                while (polled.size() < max && iterator.hasNext()) {
+                    polled.add(iterator.next());
+                    iterator.remove();
+                }
+                return polled;
+            } finally {
+                lruLock.unlock();
+            }
+        }
+    }
+
+    private final class Entry {
+        private final K key;
+        private final V value;
+        private final ReentrantLock lock = new ReentrantLock();
+        private EntryState state;
+        private long lastAccess;
+        private final long timeOut;
+
+        private Entry(final K key, final V value, final EntryState state) {
+            this.key = key;
+            this.value = value;
+            this.state = state;
+
+            if (value instanceof Cache.TimeOut) {
+                final Duration duration = ((Cache.TimeOut) value).getTimeOut();
+                this.timeOut = duration != null ? duration.getTime(TimeUnit.MILLISECONDS) : getTimeOut();
+            } else {
+                this.timeOut = getTimeOut();
+            }
+
+            lastAccess = System.currentTimeMillis();
+        }
+
+        private K getKey() {
+            assertLockHeld();
+            return key;
+        }
+
+        private V getValue() {
+            assertLockHeld();
+            return value;
+        }
+
+        private EntryState getState() {
+            assertLockHeld();
+            return state;
+        }
+
+        private void setState(final EntryState state) {
+            assertLockHeld();
+            this.state = state;
+        }
+
+        private boolean isTimedOut() {
+            assertLockHeld();
+
+            if (timeOut < 0) {
+                return false;
+            } else if (timeOut == 0) {
+                return true;
+            } else {
+                final long now = System.currentTimeMillis();
+                return now - lastAccess > timeOut;
+            }
+        }
+
+        private void resetTimeOut() {
+            assertLockHeld();
+
+            if (timeOut > 0) {
+                lastAccess = System.currentTimeMillis();
+            }
+        }
+
+        private void assertLockHeld() {
+            if (!lock.isHeldByCurrentThread()) {
+                throw new IllegalStateException("Entry must be locked");
+            }
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Stateful cache statistics")
+    public final class Stats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder activations = new LongAdder();
+        private final LongAdder passivations = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LatencyHistogram activationLatency = new LatencyHistogram(10000);
+        private final LatencyHistogram passivationLatency = new LatencyHistogram(1000);
+
+        @ManagedAttribute
+        @Description("Number of instances in memory")
+        public int getSize() {
+            int size = 0;
+            for (final Shard shard : shards) {
+                size += shard.entries.size();
+            }
+            return size;
+        }
+
+        @ManagedAttribute
+        @Description("Number of shards")
+        public int getShardCount() {
+            return shards.length;
+        }
+
+        @ManagedAttribute
+        @Description("Lookups which found the instance in memory")
+        public long getHits() {
+            return hits.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Lookups which found the instance nowhere")
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Instances read back from the passivation store")
+        public long getActivations() {
+            return activations.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Instances written to the passivation store")
+        public long getPassivations() {
+            return passivations.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Instances removed because they timed out")
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Ratio of the lookups served from memory")
+        public double getHitRate() {
+            final long hits = getHits();
+            final long total = hits + getMisses() + getActivations();
+            return total == 0 ? Double.NaN : hits / (double) total;
+        }
+
+        @ManagedAttribute
+        @Description("Mean activation time in milliseconds")
+        public double getActivationMean() {
+            return activationLatency.snapshot().getMean();
+        }
+
+        @ManagedAttribute
+        @Description("99th percentile of the activation time in milliseconds")
+        public double getActivation99() {
+            return activationLatency.snapshot().getPercentile(99);
+        }
+
+        @ManagedAttribute
+        @Description("Mean time in milliseconds to write a batch of instances")
+        public double getPassivationMean() {
+            return passivationLatency.snapshot().getMean();
+        }
+
+        @ManagedAttribute
+        @Description("99th percentile of the time in milliseconds to write a batch of instances")
+        public double getPassivation99() {
+            return passivationLatency.snapshot().getPercentile(99);
+        }
+    }
+}
@@ -118,6 +118,13 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         if (future != null) {
             future.cancel(false);
         }
+        if (passivator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) passivator).close();
+            } catch (final Exception e) {
+                logger.warning("Can't close the passivation store: " + e.getMessage(), e);
+            }
+        }
     }
 
     private synchronized void initScheduledExecutorService() {
@@ -33,6 +33,7 @@ import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.security.AbstractSecurityService;
@@ -721,12 +722,11 @@ public class StatefulContainer implements RpcContainer {
                     currentCreationalContext.set(instance.creationalContext);
                 }
 
-                // Initialize interceptor stack
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
+                // Interceptor chain of the method
+                final InterceptorChain interceptorChain = beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS);
 
                 // Invoke
-                returnValue = interceptorStack.invoke(args);
+                returnValue = interceptorChain.invoke(instance.bean, instance.interceptors, args);
             } catch (final Throwable e) {
                 handleException(callContext, txPolicy, e);
             } finally {
@@ -150,6 +150,7 @@ public class StatefulContainerFactory {
         serviceRecipe.allow(Option.IGNORE_MISSING_PROPERTIES);
         serviceRecipe.allow(Option.NAMED_PARAMETERS);
         serviceRecipe.setAllProperties(properties);
+        serviceRecipe.setProperty("ContainerId", id);
 
         // invoke recipe
         /* the cache should be created with container loader to avoid memory leaks
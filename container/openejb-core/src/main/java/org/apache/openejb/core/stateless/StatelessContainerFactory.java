@@ -130,6 +130,10 @@ public class StatelessContainerFactory {
         pool.setMaxAgeOffset(maxAgeOffset);
     }
 
+    public void setPoolStrategy(final Pool.Strategy strategy) {
+        pool.setPoolStrategy(strategy);
+    }
+
     public void setCloseTimeout(final Duration closeTimeout) {
         this.closeTimeout = closeTimeout;
     }
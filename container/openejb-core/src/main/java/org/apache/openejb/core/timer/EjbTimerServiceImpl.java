@@ -84,6 +84,10 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
 
     public static final String EJB_TIMER_RETRY_ATTEMPTS = "EjbTimer.RetryAttempts";
     public static final String OPENEJB_QUARTZ_USE_TCCL = "openejb.quartz.use-TCCL";
+    public static final String OPENEJB_TIMERS_WHEEL = "openejb.timers.wheel";
+
+    // same default as quartz RAMJobStore
+    private static final long MISFIRE_THRESHOLD = 5000;
 
     private boolean transacted;
     private int retryAttempts;
@@ -92,6 +96,7 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
     private transient BeanContext deployment;
     private transient TimerStore timerStore;
     private transient Scheduler scheduler;
+    private transient TimerWheel wheel;
 
     public EjbTimerServiceImpl(final BeanContext deployment, final TimerStore timerStore) {
         this(deployment, getDefaultTransactionManager(), timerStore, -1);
@@ -365,6 +370,8 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
     }
 
     public static void shutdown() {
+        TimerWheel.shutdown();
+        TimerJournal.closeAll();
         shutdown(SystemInstance.get().getComponent(Scheduler.class));
     }
 
@@ -477,6 +484,9 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
             return;
         }
 
+        if (deployment.getOptions().get(OPENEJB_TIMERS_WHEEL, false)) {
+            wheel = TimerWheel.get();
+        }
         scheduler = getDefaultScheduler(deployment);
 
         // load saved timers
@@ -504,6 +514,11 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
             throw new TimerStoreException("Scheduler is not configured properly");
         }
 
+        if (wheel != null && !timerData.isPersistent()) {
+            scheduleOnWheel(timerData);
+            return;
+        }
+
         timerData.setScheduler(scheduler);
 
         final Trigger trigger = timerData.getTrigger();
@@ -547,6 +562,32 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
         }
     }
 
+    private void scheduleOnWheel(final TimerData timerData) {
+        final AbstractTrigger<?> trigger = timerData.trigger;
+        Date next = trigger.getNextFireTime();
+        if (next != null && next.getTime() < System.currentTimeMillis() - MISFIRE_THRESHOLD) {
+            trigger.updateAfterMisfire(null);
+            next = trigger.getNextFireTime();
+        }
+        if (next == null) {
+            return;
+        }
+
+        timerData.setTimeout(wheel.schedule(next.getTime(), new Runnable() {
+            @Override
+            public void run() {
+                if (timerData.isCancelled()) {
+                    return;
+                }
+
+                // as quartz: the trigger already points to the next timeout when the callback runs
+                trigger.triggered(null);
+                scheduleOnWheel(timerData);
+                ejbTimeout(timerData);
+            }
+        }));
+    }
+
     /**
      * Call back from TimerData and ejbTimeout when a timer has been cancelled (or is complete) and should be removed from stores.
      *
@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.MethodContext;
+import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.ejb.ScheduleExpression;
+import javax.ejb.TimerConfig;
+import javax.transaction.TransactionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timer store keeping the persistent timers on the local disk so they survive a restart without a database.
+ * <p/>
+ * Timers are kept in memory exactly as with the {@link MemoryTimerStore} (Quartz still schedules them) and each
+ * committed creation or removal of a persistent programmatic timer is written to a {@link TimerJournal} shared by
+ * all the stores using the same directory. Automatic (@Schedule) timers are recreated at deployment so they are
+ * not written. Persisted timers are reloaded when the timer service of their bean starts.
+ * <p/>
+ * Activated with {@code timerStore.class=org.apache.openejb.core.timer.FileTimerStore} and configured with:
+ * <ul>
+ * <li>{@code openejb.timers.file.directory}: journal location, defaults to {@code <openejb.base>/data/timers}</li>
+ * <li>{@code openejb.timers.file.sync}: force each write to the disk, defaults to false (written to the OS only)</li>
+ * <li>{@code openejb.timers.file.snapshot-threshold}: journal entries between two snapshots, defaults to 100000</li>
+ * </ul>
+ */
+public class FileTimerStore extends MemoryTimerStore {
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    public static final String DIRECTORY = "openejb.timers.file.directory";
+    public static final String SYNC = "openejb.timers.file.sync";
+    public static final String SNAPSHOT_THRESHOLD = "openejb.timers.file.snapshot-threshold";
+
+    private final TimerJournal journal;
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    public FileTimerStore(final TransactionManager transactionManager) {
+        super(transactionManager);
+
+        final Options options = SystemInstance.get().getOptions();
+        try {
+            final String directory = options.get(DIRECTORY, (String) null);
+            journal = TimerJournal.open(
+                directory != null ? new File(directory) : SystemInstance.get().getBase().getDirectory("data/timers", true),
+                options.get(SYNC, false), options.get(SNAPSHOT_THRESHOLD, 100000));
+        } catch (final IOException | TimerStoreException e) {
+            throw new OpenEJBRuntimeException("Can't open the timer journal", e);
+        }
+    }
+
+    @Override
+    protected long nextId() {
+        return journal.nextId(); // unique across the deployments sharing the journal, including reloaded timers
+    }
+
+    @Override
+    public Collection<TimerData> loadTimers(final EjbTimerServiceImpl timerService, final String deploymentId) throws TimerStoreException {
+        if (deploymentId != null && loaded.add(deploymentId)) {
+            final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext(deploymentId);
+            if (beanContext != null) {
+                for (final TimerJournal.Entry entry : journal.getTimers(deploymentId)) {
+                    if (getTimer(deploymentId, entry.id) != null) {
+                        continue;
+                    }
+                    try {
+                        restore(decode(timerService, beanContext, entry));
+                    } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+                        log.warning("Can't reload timer " + entry.id + " of " + deploymentId + ", it is kept in the journal", e);
+                    }
+                }
+            }
+        }
+        return super.loadTimers(timerService, deploymentId);
+    }
+
+    @Override
+    protected void added(final TimerData timerData) {
+        if (!isDurable(timerData)) {
+            return;
+        }
+        try {
+            journal.add(timerData.getDeploymentId(), timerData.getId(), encode(timerData));
+        } catch (final IOException | TimerStoreException e) {
+            throw new OpenEJBRuntimeException("Can't persist timer " + timerData.getId() + " of " + timerData.getDeploymentId(), e);
+        }
+    }
+
+    @Override
+    protected void removed(final TimerData timerData) {
+        if (!isDurable(timerData)) {
+            return;
+        }
+        try {
+            journal.remove(timerData.getDeploymentId(), timerData.getId());
+        } catch (final TimerStoreException e) {
+            log.warning("Can't remove timer " + timerData.getId() + " of " + timerData.getDeploymentId() + " from the journal", e);
+        }
+    }
+
+    private static boolean isDurable(final TimerData timerData) {
+        return timerData.isPersistent()
+            && !(CalendarTimerData.class.isInstance(timerData) && CalendarTimerData.class.cast(timerData).isAutoCreated());
+    }
+
+    private static byte[] encode(final TimerData timerData) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeUTF(timerData.getType().name());
+        out.writeUTF(timerData.getTimeoutMethod().getName());
+        switch (timerData.getType()) {
+            case SingleAction:
+                out.writeLong(SingleActionTimerData.class.cast(timerData).getExpiration().getTime());
+                break;
+            case Interval:
+                final IntervalTimerData interval = IntervalTimerData.class.cast(timerData);
+                out.writeLong(interval.getInitialExpiration().getTime());
+                out.writeLong(interval.getIntervalDuration());
+                break;
+            default:
+                break;
+        }
+
+        final ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeObject(timerData.getPrimaryKey());
+        objects.writeObject(timerData.getInfo());
+        if (CalendarTimerData.class.isInstance(timerData)) {
+            objects.writeObject(CalendarTimerData.class.cast(timerData).getSchedule());
+        }
+        objects.close();
+        return baos.toByteArray();
+    }
+
+    private static TimerData decode(final EjbTimerServiceImpl timerService, final BeanContext beanContext,
+                                    final TimerJournal.Entry entry) throws IOException, ClassNotFoundException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.data));
+        final TimerType type = TimerType.valueOf(in.readUTF());
+        final Method timeoutMethod = timeoutMethod(beanContext, in.readUTF());
+        final long expiration = type == TimerType.Calendar ? 0 : in.readLong();
+        final long intervalDuration = type == TimerType.Interval ? in.readLong() : 0;
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(beanContext.getClassLoader());
+        try (final ObjectInputStream objects = new EjbObjectInputStream(in)) {
+            final Object primaryKey = objects.readObject();
+            final TimerConfig config = new TimerConfig(Serializable.class.cast(objects.readObject()), true);
+            switch (type) {
+                case SingleAction:
+                    return new SingleActionTimerData(entry.id, timerService, entry.deploymentId, primaryKey, timeoutMethod, config,
+                        new Date(expiration));
+                case Interval:
+                    return new IntervalTimerData(entry.id, timerService, entry.deploymentId, primaryKey, timeoutMethod, config,
+                        new Date(expiration), intervalDuration);
+                default:
+                    return new CalendarTimerData(entry.id, timerService, entry.deploymentId, primaryKey, timeoutMethod, config,
+                        ScheduleExpression.class.cast(objects.readObject()), false);
+            }
+        } finally {
+            thread.setContextClassLoader(oldLoader);
+        }
+    }
+
+    private static Method timeoutMethod(final BeanContext beanContext, final String name) {
+        final Method ejbTimeout = beanContext.getEjbTimeout();
+        if (ejbTimeout != null && ejbTimeout.getName().equals(name)) {
+            return ejbTimeout;
+        }
+        for (final Iterator<Map.Entry<Method, MethodContext>> it = beanContext.iteratorMethodContext(); it.hasNext(); ) {
+            final Method method = it.next().getValue().getBeanMethod();
+            if (method != null && method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalStateException("No timeout method " + name + " on " + beanContext.getDeploymentID());
+    }
+}
@@ -40,6 +40,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -47,7 +48,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public class MemoryTimerStore implements TimerStore {
     private static final long serialVersionUID = 1L;
     private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
-    private final Map<Long, TimerData> taskStore = new ConcurrentHashMap<>();
+    private final Map<Long, TimerData> taskStore = new ConcurrentSkipListMap<>();
     private final Map<Transaction, TimerDataView> tasksByTransaction = new ConcurrentHashMap<>();
     private final AtomicLong counter = new AtomicLong(0);
 
@@ -61,7 +62,7 @@ public class MemoryTimerStore implements TimerStore {
     public TimerData getTimer(final String deploymentId, final long timerId) {
         try {
             final TimerDataView tasks = getTasks();
-            return tasks.getTasks().get(timerId);
+            return tasks.getTimerData(timerId);
         } catch (final TimerStoreException e) {
             return null;
         }
@@ -98,7 +99,7 @@ public class MemoryTimerStore implements TimerStore {
     @Override
     public TimerData createCalendarTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final ScheduleExpression scheduleExpression, final TimerConfig timerConfig, final boolean auto)
         throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId();
         final TimerData timerData = new CalendarTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, scheduleExpression, auto);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -107,7 +108,7 @@ public class MemoryTimerStore implements TimerStore {
     @Override
     public TimerData createIntervalTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date initialExpiration, final long intervalDuration, final TimerConfig timerConfig)
         throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId();
         final TimerData timerData = new IntervalTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, initialExpiration, intervalDuration);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -115,7 +116,7 @@ public class MemoryTimerStore implements TimerStore {
 
     @Override
     public TimerData createSingleActionTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date expiration, final TimerConfig timerConfig) throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId();
         final TimerData timerData = new SingleActionTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, expiration);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -134,6 +135,31 @@ public class MemoryTimerStore implements TimerStore {
     public void updateIntervalTimer(final TimerData timerData) {
     }
 
+    protected long nextId() {
+        return counter.incrementAndGet();
+    }
+
+    /**
+     * Puts a timer in the store without going through {@link #added(TimerData)}, used to reload timers.
+     */
+    protected void restore(final TimerData timerData) {
+        taskStore.put(timerData.getId(), timerData);
+    }
+
+    /**
+     * Called when a timer is visible outside of the transaction which created it.
+     */
+    protected void added(final TimerData timerData) {
+        // no-op
+    }
+
+    /**
+     * Called when the removal of a timer is visible outside of the transaction which removed it.
+     */
+    protected void removed(final TimerData timerData) {
+        // no-op
+    }
+
     private TimerDataView getTasks() throws TimerStoreException {
         Transaction transaction = null;
         int status = Status.STATUS_NO_TRANSACTION;
@@ -161,6 +187,8 @@ public class MemoryTimerStore implements TimerStore {
     private interface TimerDataView {
         Map<Long, TimerData> getTasks();
 
+        TimerData getTimerData(Long timerId);
+
         void addTimerData(TimerData timerData);
 
         void removeTimerData(Long timerId);
@@ -169,17 +197,26 @@ public class MemoryTimerStore implements TimerStore {
     private class LiveTimerDataView implements TimerDataView {
         @Override
         public Map<Long, TimerData> getTasks() {
-            return new TreeMap<>(taskStore);
+            return Collections.unmodifiableMap(taskStore); // sorted and weakly consistent, no need to copy it
+        }
+
+        @Override
+        public TimerData getTimerData(final Long timerId) {
+            return taskStore.get(timerId);
         }
 
         @Override
         public void addTimerData(final TimerData timerData) {
             taskStore.put(timerData.getId(), timerData);
+            added(timerData);
         }
 
         @Override
         public void removeTimerData(final Long timerId) {
-            taskStore.remove(timerId);
+            final TimerData removed = taskStore.remove(timerId);
+            if (removed != null) {
+                removed(removed);
+            }
         }
     }
 
@@ -233,6 +270,16 @@ public class MemoryTimerStore implements TimerStore {
             return Collections.unmodifiableMap(allTasks);
         }
 
+        @Override
+        public TimerData getTimerData(final Long timerId) {
+            checkThread();
+            final TimerData added = add.get(timerId);
+            if (added != null) {
+                return added;
+            }
+            return remove.contains(timerId) ? null : taskStore.get(timerId);
+        }
+
         @Override
         public void addTimerData(final TimerData timerData) {
             checkThread();
@@ -271,10 +318,18 @@ public class MemoryTimerStore implements TimerStore {
             }
 
             // add the new work
-            taskStore.putAll(add);
+            for (final TimerData timerData : add.values()) {
+                taskStore.put(timerData.getId(), timerData);
+                added(timerData);
+            }
 
             // remove work
-            taskStore.keySet().removeAll(remove);
+            for (final Long timerId : remove) {
+                final TimerData removed = taskStore.remove(timerId);
+                if (removed != null) {
+                    removed(removed);
+                }
+            }
 
             tasksByTransaction.remove(tansactionReference.get());
         }
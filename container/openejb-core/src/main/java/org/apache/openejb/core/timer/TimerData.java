@@ -66,6 +66,9 @@ public abstract class TimerData implements Serializable {
 
     protected Scheduler scheduler;
 
+    // set instead of the quartz trigger when the timer runs on the TimerWheel
+    private volatile TimerWheel.Timeout timeout;
+
     public void setScheduler(final Scheduler scheduler) {
         this.scheduler = scheduler;
     }
@@ -174,7 +177,9 @@ public abstract class TimerData implements Serializable {
     }
 
     public void stop() {
-        if (trigger != null) {
+        if (timeout != null) {
+            timeout.cancel();
+        } else if (trigger != null) {
             try {
                 final Scheduler s = timerService.getScheduler();
 
@@ -241,7 +246,9 @@ public abstract class TimerData implements Serializable {
         }
 
         timerService.cancelled(TimerData.this);
-        if (trigger != null) {
+        if (timeout != null) {
+            timeout.cancel();
+        } else if (trigger != null) {
             try {
                 final Scheduler s = timerService.getScheduler();
 
@@ -335,9 +342,13 @@ public abstract class TimerData implements Serializable {
         return persistent;
     }
 
+    void setTimeout(final TimerWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
     public Trigger getTrigger() {
 
-        if (scheduler != null) {
+        if (scheduler != null && timeout == null) {
             try {
                 final TriggerKey key = new TriggerKey(trigger.getName(), trigger.getGroup());
                 if (scheduler.checkExists(key)) {
@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Durable state of the {@link FileTimerStore}s sharing a directory.
+ * <p/>
+ * Each change is appended to {@code journal-<generation>.log} as a frame (length, crc32, payload) and applied to an
+ * in memory index of the timers by deployment id. Once a journal holds {@code snapshotThreshold} frames a new
+ * generation is started and the index at that point is written in background to {@code snapshot-<generation>.dat}
+ * (through a temporary file and a rename), then the older files are deleted. A snapshot starts with the highest id
+ * given so far so the id of a removed timer is never given again, even once its frames are compacted.
+ * <p/>
+ * Recovery loads the latest complete snapshot and replays the journals of the same or a later generation, a torn
+ * frame at the end of a journal (crash while writing) ends its replay.
+ */
+final class TimerJournal {
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    private static final ConcurrentMap<File, TimerJournal> JOURNALS = new ConcurrentHashMap<>();
+    private static final Pattern FILE = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|dat)");
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte IDS = 3;
+
+    private final File directory;
+    private final boolean sync;
+    private final int snapshotThreshold;
+    private final ConcurrentMap<String, ConcurrentMap<Long, Entry>> timers = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(new DaemonThreadFactory("openejb-timer-snapshot"));
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    private final DataOutputStream frameOut = new DataOutputStream(frame);
+    private final CRC32 crc = new CRC32();
+
+    private long generation;
+    private FileChannel journal;
+    private int journalFrames;
+
+    static TimerJournal open(final File directory, final boolean sync, final int snapshotThreshold) throws TimerStoreException {
+        final File key;
+        try {
+            key = directory.getCanonicalFile();
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't resolve " + directory, e);
+        }
+
+        final TimerJournal existing = JOURNALS.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (JOURNALS) {
+            final TimerJournal racing = JOURNALS.get(key);
+            if (racing != null) {
+                return racing;
+            }
+            final TimerJournal created = new TimerJournal(key, sync, snapshotThreshold);
+            created.recover();
+            JOURNALS.put(key, created);
+            return created;
+        }
+    }
+
+    private TimerJournal(final File directory, final boolean sync, final int snapshotThreshold) {
+        this.directory = directory;
+        this.sync = sync;
+        this.snapshotThreshold = Math.max(1, snapshotThreshold);
+    }
+
+    long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    Collection<Entry> getTimers(final String deploymentId) {
+        final ConcurrentMap<Long, Entry> entries = timers.get(deploymentId);
+        return entries == null ? Collections.<Entry>emptyList() : entries.values();
+    }
+
+    int size() {
+        int size = 0;
+        for (final ConcurrentMap<Long, Entry> entries : timers.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    synchronized void add(final String deploymentId, final long id, final byte[] data) throws TimerStoreException {
+        final Entry entry = new Entry(deploymentId, id, data);
+        index(entry); // before the append which can start a snapshot
+        try {
+            append(ADD, entry);
+        } catch (final TimerStoreException e) {
+            timers.get(deploymentId).remove(id, entry);
+            throw e;
+        }
+    }
+
+    synchronized void remove(final String deploymentId, final long id) throws TimerStoreException {
+        final ConcurrentMap<Long, Entry> entries = timers.get(deploymentId);
+        if (entries == null || entries.remove(id) == null) {
+            return;
+        }
+        append(REMOVE, new Entry(deploymentId, id, null));
+    }
+
+    /**
+     * Closes all the journals when the container stops, a container started again in the same JVM recovers them.
+     */
+    static void closeAll() {
+        for (final File directory : new ArrayList<>(JOURNALS.keySet())) {
+            try {
+                close(directory);
+            } catch (final IOException e) {
+                log.warning("Can't close the timer journal of " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the pending snapshot and closes the journal.
+     */
+    static void close(final File directory) throws IOException {
+        final TimerJournal journal = JOURNALS.remove(directory.getCanonicalFile());
+        if (journal == null) {
+            return;
+        }
+        journal.snapshots.shutdown();
+        try {
+            journal.snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journal) {
+            journal.journal.close();
+        }
+    }
+
+    private void index(final Entry entry) {
+        ConcurrentMap<Long, Entry> entries = timers.get(entry.deploymentId);
+        if (entries == null) {
+            entries = new ConcurrentHashMap<>();
+            final ConcurrentMap<Long, Entry> existing = timers.putIfAbsent(entry.deploymentId, entries);
+            if (existing != null) {
+                entries = existing;
+            }
+        }
+        entries.put(entry.id, entry);
+        seen(entry.id);
+    }
+
+    private void seen(final long id) {
+        long current;
+        while (id > (current = ids.get()) && !ids.compareAndSet(current, id)) {
+            // retry
+        }
+    }
+
+    private void append(final byte op, final Entry entry) throws TimerStoreException {
+        try {
+            frame.reset();
+            writeFrame(frameOut, op, entry);
+            journal.write(ByteBuffer.wrap(frame.toByteArray()));
+            if (sync) {
+                journal.force(false);
+            }
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't write timer " + entry.id + " of " + entry.deploymentId + " in " + directory, e);
+        }
+
+        if (++journalFrames >= snapshotThreshold) {
+            rotate();
+        }
+    }
+
+    private void writeFrame(final DataOutputStream out, final byte op, final Entry entry) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(payload);
+        data.writeByte(op);
+        data.writeUTF(entry.deploymentId);
+        data.writeLong(entry.id);
+        if (entry.data != null) {
+            data.write(entry.data);
+        }
+        data.flush();
+
+        final byte[] bytes = payload.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+        out.flush();
+    }
+
+    private void rotate() throws TimerStoreException {
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            generation++;
+            journal = new FileOutputStream(file("journal", generation, "log"), true).getChannel();
+            journalFrames = 0;
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't create a timer journal in " + directory, e);
+        }
+
+        final List<Entry> state = new ArrayList<>();
+        for (final ConcurrentMap<Long, Entry> entries : timers.values()) {
+            state.addAll(entries.values());
+        }
+
+        final long snapshotGeneration = generation;
+        final long highestId = ids.get();
+        snapshots.execute(new Runnable() {
+            @Override
+            public void run() {
+                snapshot(snapshotGeneration, highestId, state);
+            }
+        });
+    }
+
+    private void snapshot(final long snapshotGeneration, final long highestId, final List<Entry> state) {
+        final File target = file("snapshot", snapshotGeneration, "dat");
+        final File tmp = new File(directory, target.getName() + ".tmp");
+        try (final FileOutputStream fos = new FileOutputStream(tmp);
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            writeFrame(out, IDS, new Entry("", highestId, null));
+            for (final Entry entry : state) {
+                writeFrame(out, ADD, entry);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (final IOException e) {
+            log.warning("Can't write timer snapshot " + target + ", the journals are kept", e);
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+            return;
+        }
+
+        if (!tmp.renameTo(target)) {
+            log.warning("Can't rename " + tmp + " to " + target + ", the journals are kept");
+            return;
+        }
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final Matcher matcher = FILE.matcher(file.getName());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshotGeneration && !file.delete()) {
+                    log.warning("Can't delete old timer file " + file);
+                }
+            }
+        }
+    }
+
+    private void recover() throws TimerStoreException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new TimerStoreException("Can't create timer directory " + directory);
+        }
+
+        long snapshot = -1;
+        long last = 0;
+        final List<Long> journals = new ArrayList<>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final Matcher matcher = FILE.matcher(file.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                final long gen = Long.parseLong(matcher.group(2));
+                if ("snapshot".equals(matcher.group(1))) {
+                    snapshot = Math.max(snapshot, gen);
+                } else {
+                    journals.add(gen);
+                }
+                last = Math.max(last, gen);
+            }
+        }
+        Collections.sort(journals);
+
+        final long start = System.nanoTime();
+        try {
+            if (snapshot >= 0) {
+                replay(file("snapshot", snapshot, "dat"));
+            }
+            for (final Long gen : journals) {
+                if (gen >= snapshot) {
+                    replay(file("journal", gen, "log"));
+                }
+            }
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't read timers from " + directory, e);
+        }
+
+        generation = last;
+        rotate(); // compacts the recovered state in a new snapshot
+
+        log.info("Loaded " + size() + " timers from " + directory + " in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    private void replay(final File file) throws IOException {
+        try (final InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            final DataInputStream in = new DataInputStream(is);
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (final EOFException e) {
+                    return;
+                }
+
+                final int checksum;
+                final byte[] bytes;
+                try {
+                    checksum = in.readInt();
+                    if (length < 0 || length > file.length()) {
+                        throw new EOFException();
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                } catch (final EOFException e) {
+                    log.warning("Ignoring the truncated end of " + file);
+                    return;
+                }
+
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != checksum) {
+                    log.warning("Ignoring the corrupted end of " + file);
+                    return;
+                }
+
+                final DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+                final byte op = payload.readByte();
+                final String deploymentId = payload.readUTF();
+                final long id = payload.readLong();
+                if (op == ADD) {
+                    final byte[] data = new byte[payload.available()];
+                    payload.readFully(data);
+                    index(new Entry(deploymentId, id, data));
+                } else if (op == REMOVE) {
+                    final ConcurrentMap<Long, Entry> entries = timers.get(deploymentId);
+                    if (entries != null) {
+                        entries.remove(id);
+                    }
+                    seen(id);
+                } else if (op == IDS) {
+                    seen(id);
+                }
+            }
+        }
+    }
+
+    private File file(final String prefix, final long gen, final String extension) {
+        return new File(directory, prefix + "-" + gen + "." + extension);
+    }
+
+    static final class Entry {
+        final String deploymentId;
+        final long id;
+        final byte[] data;
+
+        private Entry(final String deploymentId, final long id, final byte[] data) {
+            this.deploymentId = deploymentId;
+            this.id = id;
+            this.data = data;
+        }
+    }
+}
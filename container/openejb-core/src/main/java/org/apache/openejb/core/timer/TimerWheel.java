@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.ExecutorBuilder;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel used instead of quartz for the non persistent timers when
+ * {@link EjbTimerServiceImpl#OPENEJB_TIMERS_WHEEL} is set.
+ * <p/>
+ * A single thread advances the wheel every {@code tick} and hands the expired timeouts to the executor. Scheduling
+ * and cancelling only enqueue the timeout, the worker moves it in (or out of) its bucket on the next tick so callers
+ * never contend on the buckets. A timeout more than one revolution away stays in its bucket and counts the
+ * remaining rounds down.
+ */
+final class TimerWheel {
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    public static final String TICK = "openejb.timers.wheel.tick";
+    public static final String SIZE = "openejb.timers.wheel.size";
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    TimerWheel(final long tickMillis, final int ticksPerWheel, final Executor executor) {
+        int length = 1;
+        while (length < ticksPerWheel) {
+            length <<= 1;
+        }
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new Bucket[length];
+        for (int i = 0; i < length; i++) {
+            this.buckets[i] = new Bucket();
+        }
+        this.mask = length - 1;
+        this.executor = executor;
+
+        this.worker = new Thread(new Worker(), "openejb-timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    static synchronized TimerWheel get() {
+        final SystemInstance systemInstance = SystemInstance.get();
+        TimerWheel wheel = systemInstance.getComponent(TimerWheel.class);
+        if (wheel == null) {
+            final Options options = systemInstance.getOptions();
+            final ExecutorService executor = new ExecutorBuilder()
+                .size(options.get(DefaultTimerThreadPoolAdapter.OPENEJB_TIMER_POOL_SIZE, 3))
+                .prefix("EjbTimerWheelPool")
+                .build(options);
+            wheel = new TimerWheel(options.get(TICK, 10L), options.get(SIZE, 512), executor);
+            systemInstance.setComponent(TimerWheel.class, wheel);
+        }
+        return wheel;
+    }
+
+    static synchronized void shutdown() {
+        final TimerWheel wheel = SystemInstance.get().removeComponent(TimerWheel.class);
+        if (wheel != null) {
+            wheel.stop();
+            if (ExecutorService.class.isInstance(wheel.executor)) {
+                ExecutorService.class.cast(wheel.executor).shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @param time  the expiration, in milliseconds since the epoch, a past time expires on the next tick
+     * @param task  run by the executor when the timeout expires
+     */
+    Timeout schedule(final long time, final Runnable task) {
+        final long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, time - System.currentTimeMillis()));
+        final Timeout timeout = new Timeout(System.nanoTime() - start + delay, task);
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of scheduled timeouts which neither expired nor were cancelled
+     */
+    int size() {
+        return size.get();
+    }
+
+    void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            while (running) {
+                final long now = waitForNextTick();
+                if (now < 0) {
+                    break;
+                }
+
+                removeCancelled();
+                transferPending();
+                expire(buckets[(int) (tick & mask)], now);
+                tick++;
+            }
+        }
+
+        private long waitForNextTick() {
+            final long deadline = tickNanos * (tick + 1);
+            while (true) {
+                final long current = System.nanoTime() - start;
+                final long sleep = deadline - current;
+                if (sleep <= 0) {
+                    return current;
+                }
+
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (final InterruptedException e) {
+                    if (!running) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        private void removeCancelled() {
+            Timeout timeout;
+            while ((timeout = cancelled.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+
+        private void transferPending() {
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+                final Timeout timeout = pending.poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.state.get() != INIT) {
+                    continue;
+                }
+
+                final long expiration = timeout.deadline / tickNanos;
+                timeout.rounds = (expiration - tick) / buckets.length;
+                buckets[(int) (Math.max(expiration, tick) & mask)].add(timeout);
+            }
+        }
+
+        private void expire(final Bucket bucket, final long now) {
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                    bucket.remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state.get() == CANCELLED) {
+                    bucket.remove(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    final class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // only used by the worker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(final long deadline, final Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * @return false if the timeout already expired or was cancelled
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            size.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            size.decrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (final Throwable t) {
+                log.error("Failed to execute timer task", t);
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(final Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
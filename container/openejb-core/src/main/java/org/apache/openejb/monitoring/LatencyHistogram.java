@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.monitoring;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency recorder.
+ * <p/>
+ * Durations are kept in microseconds in log-linear buckets: exact below 32 then 16 buckets
+ * per power of two, so a percentile is at most ~6% away from the real value (and always
+ * within the recorded min/max). Each thread increments the cell picked from its id, cells
+ * are only merged when the statistics are read.
+ * <p/>
+ * The window is a ring of slices filled one after the other, when the current slice holds
+ * its share of the window the oldest one is cleared and becomes the current one. Statistics
+ * therefore cover roughly the last {@code window} recordings.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = SUB_COUNT * 2;
+    private static final int MAX_BITS = 40; // ~12 days in microseconds
+    private static final long MAX_VALUE = (1L << (MAX_BITS + 1)) - 1;
+    private static final int BUCKETS = LINEAR + (MAX_BITS - SUB_BITS) * SUB_COUNT;
+
+    private static final int SLICES = 4;
+    private static final int CELLS = cells(Runtime.getRuntime().availableProcessors());
+
+    private final Slice[] slices = new Slice[SLICES];
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicBoolean rotating = new AtomicBoolean();
+    private volatile int window;
+    private volatile int perSlice;
+
+    public LatencyHistogram(final int window) {
+        this(window, CELLS);
+    }
+
+    /**
+     * @param cells number of cells per slice, 1 for a histogram which is rarely updated concurrently
+     *              and should stay small, rounded to a power of two
+     */
+    public LatencyHistogram(final int window, final int cells) {
+        final int sliceCells = cells(cells);
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new Slice(sliceCells);
+        }
+        setWindow(window);
+    }
+
+    private static int cells(final int wanted) {
+        int cells = 1;
+        while (cells < Math.min(wanted, 16)) {
+            cells <<= 1;
+        }
+        return cells;
+    }
+
+    public void setWindow(final int window) {
+        this.window = Math.max(1, window);
+        // the current slice is partial, the others hold the window
+        this.perSlice = Math.max(1, (this.window + SLICES - 2) / (SLICES - 1));
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void record(final long nanos) {
+        final long micros = Math.min(MAX_VALUE, Math.max(0, nanos / 1000));
+
+        final long current = epoch.get();
+        final Slice slice = slices[(int) (current % SLICES)];
+        if (slice.record(micros) >= perSlice) {
+            rotate(current);
+        }
+    }
+
+    private void rotate(final long current) {
+        if (rotating.compareAndSet(false, true)) {
+            try {
+                if (epoch.get() == current) {
+                    slices[(int) ((current + 1) % SLICES)].clear();
+                    epoch.set(current + 1);
+                }
+            } finally {
+                rotating.set(false);
+            }
+        }
+    }
+
+    /**
+     * Clears the recorded values, the histogram stays usable by the threads recording in it.
+     */
+    public void reset() {
+        for (final Slice slice : slices) {
+            slice.clear();
+        }
+    }
+
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        long sum = 0;
+        double sumsq = 0;
+        long min = Long.MAX_VALUE;
+        long max = -1;
+        for (final Slice slice : slices) {
+            for (int c = 0; c < slice.cells.length(); c++) {
+                final AtomicIntegerArray cell = slice.cells.get(c);
+                if (cell != null) {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        counts[i] += cell.get(i);
+                    }
+                }
+            }
+            sum += slice.sum.sum();
+            sumsq += slice.sumsq.sum();
+            min = Math.min(min, slice.min.get());
+            max = Math.max(max, slice.max.get());
+        }
+        return new Snapshot(counts, sum, sumsq, min, max);
+    }
+
+    static int index(final long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return LINEAR + (shift - 1) * SUB_COUNT + (int) (micros >>> shift) - SUB_COUNT;
+    }
+
+    static long value(final int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        final int shift = (index - LINEAR) / SUB_COUNT + 1;
+        final long lower = (long) ((index - LINEAR) % SUB_COUNT + SUB_COUNT) << shift;
+        return lower + ((1L << shift) - 1) / 2;
+    }
+
+    private static final class Slice {
+
+        private final AtomicReferenceArray<AtomicIntegerArray> cells;
+        private final AtomicInteger count = new AtomicInteger();
+        private final LongAdder sum = new LongAdder();
+        private final DoubleAdder sumsq = new DoubleAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(-1);
+
+        private Slice(final int cells) {
+            this.cells = new AtomicReferenceArray<>(cells);
+        }
+
+        private int record(final long micros) {
+            final int c = (int) Thread.currentThread().getId() & (cells.length() - 1);
+            AtomicIntegerArray cell = cells.get(c);
+            if (cell == null) {
+                cells.compareAndSet(c, null, new AtomicIntegerArray(BUCKETS));
+                cell = cells.get(c);
+            }
+            cell.incrementAndGet(index(micros));
+
+            sum.add(micros);
+            final double millis = micros / 1000.;
+            sumsq.add(millis * millis);
+
+            long current;
+            while (micros < (current = min.get()) && !min.compareAndSet(current, micros)) {
+                // retry
+            }
+            while (micros > (current = max.get()) && !max.compareAndSet(current, micros)) {
+                // retry
+            }
+
+            return count.incrementAndGet();
+        }
+
+        private void clear() {
+            for (int c = 0; c < cells.length(); c++) {
+                final AtomicIntegerArray cell = cells.get(c);
+                if (cell != null) {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        cell.set(i, 0);
+                    }
+                }
+            }
+            sum.reset();
+            sumsq.reset();
+            min.set(Long.MAX_VALUE);
+            max.set(-1);
+            count.set(0);
+        }
+    }
+
+    /**
+     * Merged view of the window, all the values are in milliseconds.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long n;
+        private final long sum;
+        private final double sumsq;
+        private final long min;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long sum, final double sumsq, final long min, final long max) {
+            this.counts = counts;
+            this.sum = sum;
+            this.sumsq = sumsq;
+            this.min = min;
+            this.max = max;
+
+            long n = 0;
+            for (final long count : counts) {
+                n += count;
+            }
+            this.n = n;
+        }
+
+        public long getCount() {
+            return n;
+        }
+
+        public double getPercentile(final double p) {
+            if (n == 0) {
+                return Double.NaN;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(p / 100. * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return millis(i);
+                }
+            }
+            return getMax();
+        }
+
+        public double getMin() {
+            return n == 0 ? Double.NaN : min / 1000.;
+        }
+
+        public double getMax() {
+            return n == 0 ? Double.NaN : max / 1000.;
+        }
+
+        public double getSum() {
+            return n == 0 ? Double.NaN : sum / 1000.;
+        }
+
+        public double getSumsq() {
+            return n == 0 ? Double.NaN : sumsq;
+        }
+
+        public double getMean() {
+            return n == 0 ? Double.NaN : sum / 1000. / n;
+        }
+
+        public double getVariance() {
+            if (n == 0) {
+                return Double.NaN;
+            }
+            if (n == 1) {
+                return 0;
+            }
+            final double mean = getMean();
+            return Math.max(0, (sumsq - n * mean * mean) / (n - 1));
+        }
+
+        public double getStandardDeviation() {
+            return Math.sqrt(getVariance());
+        }
+
+        public double getGeometricMean() {
+            if (n == 0) {
+                return Double.NaN;
+            }
+            double logs = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    logs += counts[i] * Math.log(millis(i));
+                }
+            }
+            return Math.exp(logs / n);
+        }
+
+        public double getSkewness() {
+            if (n < 3) {
+                return Double.NaN;
+            }
+            final double variance = getVariance();
+            if (variance < 10E-20) {
+                return 0;
+            }
+            final double mean = getMean();
+            double accum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    accum += counts[i] * Math.pow(millis(i) - mean, 3);
+                }
+            }
+            accum /= variance * Math.sqrt(variance);
+            return n / ((n - 1.) * (n - 2.)) * accum;
+        }
+
+        public double getKurtosis() {
+            if (n < 4) {
+                return Double.NaN;
+            }
+            final double variance = getVariance();
+            if (variance < 10E-20) {
+                return 0;
+            }
+            final double mean = getMean();
+            final double stdev = Math.sqrt(variance);
+            double accum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    accum += counts[i] * Math.pow((millis(i) - mean) / stdev, 4);
+                }
+            }
+            final double n0 = n;
+            final double coefficientOne = (n0 * (n0 + 1)) / ((n0 - 1) * (n0 - 2) * (n0 - 3));
+            final double termTwo = (3 * Math.pow(n0 - 1, 2.0)) / ((n0 - 2) * (n0 - 3));
+            return coefficientOne * accum - termTwo;
+        }
+
+        /**
+         * @return the bucketed values in ascending order, the arrival order is not kept
+         */
+        public double[] getSortedValues() {
+            final double[] values = new double[(int) Math.min(Integer.MAX_VALUE, n)];
+            int v = 0;
+            for (int i = 0; i < counts.length && v < values.length; i++) {
+                for (long j = 0; j < counts[i] && v < values.length; j++) {
+                    values[v++] = millis(i);
+                }
+            }
+            return values;
+        }
+
+        private double millis(final int index) {
+            // the bucket middle can't be outside of what was really recorded
+            return Math.min(max, Math.max(min, value(index))) / 1000.;
+        }
+    }
+}
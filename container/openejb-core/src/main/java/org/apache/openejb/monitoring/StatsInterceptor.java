@@ -20,7 +20,6 @@ package org.apache.openejb.monitoring;
 import org.apache.openejb.api.Monitor;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.loader.SystemInstance;
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 import org.apache.xbean.finder.ClassFinder;
@@ -41,6 +40,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @version $Rev$ $Date$
@@ -190,12 +190,11 @@ public class StatsInterceptor {
         try {
             return invocationContext.proceed();
         } finally {
-            long time = System.nanoTime() - start;
-            time = millis(time); // do it in 2 steps since otherwise the measure is false (more false)
+            final long nanos = System.nanoTime() - start;
             if (stats != null) {
-                stats.record(time);
+                stats.recordNanos(nanos);
             }
-            invocationTime.addAndGet(time);
+            invocationTime.addAndGet(millis(nanos));
         }
     }
 
@@ -206,22 +205,16 @@ public class StatsInterceptor {
     private Stats stats(final InvocationContext invocationContext, final Method callback) {
         final Method method = callback == null ? invocationContext.getMethod() : callback;
 
-        Stats stats = map.get(method);
-        if (stats == null) {
-            synchronized (map) {
-                stats = map.get(method);
-                if (stats == null) {
-                    stats = new Stats(method, monitor);
-                    map.put(method, stats);
-                }
-            }
+        final Stats stats = map.get(method);
+        if (stats != null) { // computeIfAbsent locks the bin even when the entry is there
+            return stats;
         }
-        return stats;
+        return map.computeIfAbsent(method, m -> new Stats(m, monitor));
     }
 
     public class Stats {
-        private final AtomicLong count = new AtomicLong();
-        private final SynchronizedDescriptiveStatistics samples;
+        private final LongAdder count = new LongAdder();
+        private final LatencyHistogram samples;
 
         // Used as the prefix for the MBeanAttributeInfo
         private final String method;
@@ -231,7 +224,7 @@ public class StatsInterceptor {
 
             final int window = methodAnnotation != null ? methodAnnotation.sample() : classAnnotation != null ? classAnnotation.sample() : 2000;
 
-            this.samples = new SynchronizedDescriptiveStatistics(window);
+            this.samples = new LatencyHistogram(window);
             final String s = ",";
 
             final StringBuilder sb = new StringBuilder(method.getName());
@@ -251,117 +244,129 @@ public class StatsInterceptor {
 
         @Managed
         public void setSampleSize(final int i) {
-            samples.setWindowSize(i);
+            samples.setWindow(i);
         }
 
         @Managed
         public int getSampleSize() {
-            return samples.getWindowSize();
+            return samples.getWindow();
         }
 
         @Managed
         public long getCount() {
-            return count.get();
+            return count.sum();
+        }
+
+        @Managed
+        public double getPercentile999() {
+            return samples.snapshot().getPercentile(99.9);
         }
 
         @Managed
         public double getPercentile99() {
-            return samples.getPercentile(99.0);
+            return samples.snapshot().getPercentile(99.0);
         }
 
         @Managed
         public double getPercentile90() {
-            return samples.getPercentile(90.0);
+            return samples.snapshot().getPercentile(90.0);
         }
 
         @Managed
         public double getPercentile75() {
-            return samples.getPercentile(75.0);
+            return samples.snapshot().getPercentile(75.0);
         }
 
         @Managed
         public double getPercentile50() {
-            return samples.getPercentile(50.0);
+            return samples.snapshot().getPercentile(50.0);
         }
 
         @Managed
         public double getPercentile25() {
-            return samples.getPercentile(25.0);
+            return samples.snapshot().getPercentile(25.0);
         }
 
         @Managed
         public double getPercentile10() {
-            return samples.getPercentile(10.0);
+            return samples.snapshot().getPercentile(10.0);
         }
 
         @Managed
         public double getPercentile01() {
-            return samples.getPercentile(1.0);
+            return samples.snapshot().getPercentile(1.0);
         }
 
         @Managed
         public double getStandardDeviation() {
-            return samples.getStandardDeviation();
+            return samples.snapshot().getStandardDeviation();
         }
 
         @Managed
         public double getMean() {
-            return samples.getMean();
+            return samples.snapshot().getMean();
         }
 
         @Managed
         public double getVariance() {
-            return samples.getVariance();
+            return samples.snapshot().getVariance();
         }
 
         @Managed
         public double getGeometricMean() {
-            return samples.getGeometricMean();
+            return samples.snapshot().getGeometricMean();
         }
 
         @Managed
         public double getSkewness() {
-            return samples.getSkewness();
+            return samples.snapshot().getSkewness();
         }
 
         @Managed
         public double getKurtosis() {
-            return samples.getKurtosis();
+            return samples.snapshot().getKurtosis();
         }
 
         @Managed
         public double getMax() {
-            return samples.getMax();
+            return samples.snapshot().getMax();
         }
 
         @Managed
         public double getMin() {
-            return samples.getMin();
+            return samples.snapshot().getMin();
         }
 
         @Managed
         public double getSum() {
-            return samples.getSum();
+            return samples.snapshot().getSum();
         }
 
         @Managed
         public double getSumsq() {
-            return samples.getSumsq();
+            return samples.snapshot().getSumsq();
         }
 
         @Managed
         public double[] sortedValues() {
-            return samples.getSortedValues();
+            return samples.snapshot().getSortedValues();
         }
 
+        /**
+         * Same as {@link #sortedValues()}, the histogram does not keep the arrival order.
+         */
         @Managed
         public double[] values() {
-            return samples.getValues();
+            return sortedValues();
+        }
+
+        public void record(final long millis) {
+            recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
         }
 
-        public void record(final long time) {
-            count.incrementAndGet();
-            samples.addValue(time);
+        public void recordNanos(final long nanos) {
+            count.increment();
+            samples.record(nanos);
         }
 
     }
@@ -88,6 +88,7 @@ public class JtaEntityManager implements EntityManager, Serializable {
     private final Logger logger;
     private final boolean wrapNoTxQueries;
     private final boolean timer;
+    private final QueryStatistics queryStatistics;
 
     public JtaEntityManager(final JtaEntityManagerRegistry registry, final EntityManagerFactory entityManagerFactory,
                             final Map properties, final String unitName, final String synchronizationType) {
@@ -116,6 +117,8 @@ public class JtaEntityManager implements EntityManager, Serializable {
         final String wrapConfig = ReloadableEntityManagerFactory.class.isInstance(entityManagerFactory) ?
                 ReloadableEntityManagerFactory.class.cast(entityManagerFactory).getUnitProperties().getProperty("openejb.jpa.query.wrap-no-tx", "true") : "true";
         this.wrapNoTxQueries = wrapConfig == null || "true".equalsIgnoreCase(wrapConfig);
+        this.queryStatistics = ReloadableEntityManagerFactory.class.isInstance(entityManagerFactory) ?
+                ReloadableEntityManagerFactory.class.cast(entityManagerFactory).getQueryStatistics() : new QueryStatistics();
     }
 
     public static boolean isJPA21(final EntityManagerFactory entityManagerFactory) {
@@ -149,6 +152,10 @@ public class JtaEntityManager implements EntityManager, Serializable {
         return registry.isTransactionActive();
     }
 
+    QueryStatistics getQueryStatistics() {
+        return queryStatistics;
+    }
+
     /**
      * This method assures that a non-extended entity managers has an acive transaction.  This is
      * required for some operations on the entity manager.
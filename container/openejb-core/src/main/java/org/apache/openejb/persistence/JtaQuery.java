@@ -24,10 +24,9 @@ import javax.persistence.Parameter;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,16 +34,21 @@ import java.util.Set;
 /**
  * The JtaQuery is a wrapper around a query and and entity manager that automatically closes the entity managers
  * when the query is finished.  This implementation is only for non-transaction queryies
+ * <p/>
+ * The first execution uses the query created with the wrapper, the next ones recreate it on a new entity manager
+ * and replay the last value set by each setter.
  */
 public class JtaQuery implements Query {
     private EntityManager entityManager;
     private final Object[] args;
     private final Method method;
     private final JtaEntityManager jtaEntityManager;
-    private final Collection<QueryOperation> appliedOperations = new ArrayList<>();
+    private final Map<Object, QueryOperation> appliedOperations = new LinkedHashMap<>();
 
+    private QueryOperation[] replay;
     private boolean underTx;
     private boolean unwrap;
+    private boolean fresh;
     private Query query;
 
     public JtaQuery(final EntityManager entityManager, final JtaEntityManager jtaEntityManager, final Method method, final Object... args) {
@@ -54,6 +58,7 @@ public class JtaQuery implements Query {
         this.args = args;
         this.underTx = jtaEntityManager.isTransactionActive();
         createQuery();
+        this.fresh = !underTx;
     }
 
     private Query createQuery() {
@@ -61,19 +66,37 @@ public class JtaQuery implements Query {
             query = jtaEntityManager.createQuery(queryType(), entityManager, method, args);
         }
         if (!underTx) {
-            for (final QueryOperation op : appliedOperations) {
+            if (replay == null) {
+                replay = appliedOperations.values().toArray(new QueryOperation[appliedOperations.size()]);
+            }
+            for (final QueryOperation op : replay) {
                 query = op.apply(query);
             }
         }
         return query;
     }
 
+    private void record(final Object key, final QueryOperation operation) {
+        appliedOperations.remove(key); // keep the order of the calls
+        appliedOperations.put(key, operation);
+        replay = null;
+    }
+
     protected Class<? extends Query> queryType() {
         return Query.class;
     }
 
     private EntityManager getEntityManager() {
         if (!underTx) {
+            if (fresh) { // first execution, the query already has all the operations
+                fresh = false;
+                if (!jtaEntityManager.isTransactionActive()) {
+                    jtaEntityManager.getQueryStatistics().hit();
+                    return entityManager;
+                }
+                entityManager.close();
+            }
+            jtaEntityManager.getQueryStatistics().miss();
             entityManager = jtaEntityManager.getEntityManager();
             this.underTx = jtaEntityManager.isTransactionActive();
             createQuery();
@@ -111,7 +134,7 @@ public class JtaQuery implements Query {
     public Query setMaxResults(final int i) {
         query.setMaxResults(i);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record("setMaxResults", new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setMaxResults(i);
@@ -124,7 +147,7 @@ public class JtaQuery implements Query {
     public Query setFirstResult(final int i) {
         query.setFirstResult(i);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record("setFirstResult", new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setFirstResult(i);
@@ -137,7 +160,7 @@ public class JtaQuery implements Query {
     public Query setFlushMode(final FlushModeType flushModeType) {
         query.setFlushMode(flushModeType);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record("setFlushMode", new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setFlushMode(flushModeType);
@@ -150,7 +173,7 @@ public class JtaQuery implements Query {
     public Query setHint(final String s, final Object o) {
         query.setHint(s, o);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("hint", s), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setHint(s, o);
@@ -163,7 +186,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final String s, final Object o) {
         query.setParameter(s, o);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", s), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(s, o);
@@ -176,7 +199,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final String s, final Date date, final TemporalType temporalType) {
         query.setParameter(s, date, temporalType);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", s), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(s, date, temporalType);
@@ -189,7 +212,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final String s, final Calendar calendar, final TemporalType temporalType) {
         query.setParameter(s, calendar, temporalType);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", s), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(s, calendar, temporalType);
@@ -202,7 +225,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final int i, final Object o) {
         query.setParameter(i, o);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", i), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(i, o);
@@ -215,7 +238,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final int i, final Date date, final TemporalType temporalType) {
         query.setParameter(i, date, temporalType);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", i), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(i, date, temporalType);
@@ -228,7 +251,7 @@ public class JtaQuery implements Query {
     public Query setParameter(final int i, final Calendar calendar, final TemporalType temporalType) {
         query.setParameter(i, calendar, temporalType);
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", i), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(i, calendar, temporalType);
@@ -342,7 +365,7 @@ public class JtaQuery implements Query {
      */
     public Query setLockMode(final LockModeType lockMode) {
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record("setLockMode", new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setLockMode(lockMode);
@@ -357,7 +380,7 @@ public class JtaQuery implements Query {
      */
     public <T> Query setParameter(final Parameter<T> param, final T value) {
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", param), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(param, value);
@@ -372,7 +395,7 @@ public class JtaQuery implements Query {
      */
     public Query setParameter(final Parameter<Calendar> param, final Calendar value, final TemporalType temporalType) {
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", param), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(param, value, temporalType);
@@ -387,7 +410,7 @@ public class JtaQuery implements Query {
      */
     public Query setParameter(final Parameter<Date> param, final Date value, final TemporalType temporalType) {
         if (!underTx) {
-            appliedOperations.add(new QueryOperation() {
+            record(new OperationKey("parameter", param), new QueryOperation() {
                 @Override
                 public Query apply(final Query query) {
                     return query.setParameter(param, value, temporalType);
@@ -408,4 +431,31 @@ public class JtaQuery implements Query {
         }
         return query.unwrap(cls);
     }
+
+    private static final class OperationKey {
+        private final String type;
+        private final Object id;
+
+        private OperationKey(final String type, final Object id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final OperationKey that = OperationKey.class.cast(o);
+            return type.equals(that.type) && (id != null ? id.equals(that.id) : that.id == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + (id != null ? id.hashCode() : 0);
+        }
+    }
 }
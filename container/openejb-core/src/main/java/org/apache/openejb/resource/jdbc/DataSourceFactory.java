@@ -25,6 +25,8 @@ import org.apache.openejb.resource.XAResourceWrapper;
 import org.apache.openejb.resource.jdbc.dbcp.DbcpDataSourceCreator;
 import org.apache.openejb.resource.jdbc.driver.AlternativeDriver;
 import org.apache.openejb.resource.jdbc.logging.LoggingSqlDataSource;
+import org.apache.openejb.resource.jdbc.logging.SqlTrace;
+import org.apache.openejb.resource.jdbc.logging.TracingSqlDataSource;
 import org.apache.openejb.resource.jdbc.plugin.AbstractDataSourcePlugin;
 import org.apache.openejb.resource.jdbc.plugin.DataSourcePlugin;
 import org.apache.openejb.resource.jdbc.pool.DataSourceCreator;
@@ -69,11 +71,16 @@ public class DataSourceFactory {
 
     public static final String LOG_SQL_PROPERTY = "LogSql";
     public static final String LOG_SQL_PACKAGE_PROPERTY = "LogSqlPackages";
+    public static final String TRACE_SQL_PROPERTY = "TraceSql";
+    public static final String TRACE_SQL_SAMPLING_PROPERTY = "TraceSqlSampling";
+    public static final String TRACE_SQL_SLOW_THRESHOLD_PROPERTY = "TraceSqlSlowThreshold";
+    public static final String TRACE_SQL_MAX_STATEMENTS_PROPERTY = "TraceSqlMaxStatements";
     public static final String FLUSHABLE_PROPERTY = "Flushable";
     public static final String RESET_PROPERTY = "ResetOnError";
     public static final String RESET_METHODS_PROPERTY = "ResetOnErrorMethods";
     public static final String GLOBAL_LOG_SQL_PROPERTY = "openejb.jdbc.log";
     public static final String GLOBAL_LOG_SQL_PACKAGE_PROPERTY = "openejb.jdbc.log.packages";
+    public static final String GLOBAL_TRACE_SQL_PROPERTY = "openejb.jdbc.trace";
     public static final String GLOBAL_FLUSH_PROPERTY = "openejb.jdbc.flushable";
     public static final String POOL_PROPERTY = "openejb.datasource.pool";
     public static final String DATA_SOURCE_CREATOR_PROP = "DataSourceCreator";
@@ -142,7 +149,12 @@ public class DataSourceFactory {
         final boolean logSql = SystemInstance.get().getOptions().get(GLOBAL_LOG_SQL_PROPERTY,
             "true".equalsIgnoreCase((String) properties.remove(LOG_SQL_PROPERTY)));
         final String logPackages = SystemInstance.get().getProperty(GLOBAL_LOG_SQL_PACKAGE_PROPERTY, (String) properties.remove(LOG_SQL_PACKAGE_PROPERTY));
-        final DataSourceCreator creator = creator(properties.remove(DATA_SOURCE_CREATOR_PROP), logSql);
+        final boolean traceSql = SystemInstance.get().getOptions().get(GLOBAL_TRACE_SQL_PROPERTY,
+            "true".equalsIgnoreCase((String) properties.remove(TRACE_SQL_PROPERTY)));
+        final String traceSampling = (String) properties.remove(TRACE_SQL_SAMPLING_PROPERTY);
+        final String traceSlowThreshold = (String) properties.remove(TRACE_SQL_SLOW_THRESHOLD_PROPERTY);
+        final String traceMaxStatements = (String) properties.remove(TRACE_SQL_MAX_STATEMENTS_PROPERTY);
+        final DataSourceCreator creator = creator(properties.remove(DATA_SOURCE_CREATOR_PROP), logSql || traceSql);
         final String resetOnError = (String) properties.remove(RESET_PROPERTY);
         final String resetMethods = (String) properties.remove(RESET_METHODS_PROPERTY); // before setProperties()
 
@@ -224,7 +236,7 @@ public class DataSourceFactory {
             }
 
             final boolean doResetOnError = resetOnError != null && !"false".equals(resetOnError);
-            if (doResetOnError || logSql || flushable) { // will get proxied
+            if (doResetOnError || logSql || traceSql || flushable) { // will get proxied
                 ObjectRecipe objectRecipe = null;
                 ResettableDataSourceHandler existingResettableHandler = null;
                 FlushableDataSourceHandler flushableDataSourceHandler = null;
@@ -264,6 +276,9 @@ public class DataSourceFactory {
                 if (logSql) {
                     ds = makeItLogging(ds, logPackages);
                 }
+                if (traceSql) {
+                    ds = makeItTracing(ds, name, traceSampling, traceSlowThreshold, traceMaxStatements, logPackages);
+                }
 
                 final ResettableDataSourceHandler resettableDataSourceHandler;
                 if (doResetOnError) { // needs to be done after flushable
@@ -384,6 +399,19 @@ public class DataSourceFactory {
             new Class<?>[]{DataSource.class, Serializable.class}, new LoggingSqlDataSource(ds, pck));
     }
 
+    public static DataSource makeItTracing(final CommonDataSource ds, final String name, final String sampling,
+                                           final String slowThreshold, final String maxStatements, final String packagesStr) {
+        final String[] pck = packagesStr == null ? null : packagesStr.split(" *, *");
+        final Duration threshold = new Duration(slowThreshold == null ? "1 second" : slowThreshold);
+        final SqlTrace trace = new SqlTrace(name,
+            sampling == null ? 1. : Double.parseDouble(sampling.trim()),
+            threshold.getTime(), threshold.getUnit() == null ? TimeUnit.MILLISECONDS : threshold.getUnit(),
+            maxStatements == null ? 500 : Integer.parseInt(maxStatements.trim()), pck);
+        trace.register();
+        return (DataSource) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
+            new Class<?>[]{DataSource.class, Serializable.class}, new TracingSqlDataSource(ds, trace));
+    }
+
     private static void normalizeJdbcUrl(final Properties properties) {
         final String key = "JdbcUrl";
         final String jdbcUrl = properties.getProperty(key);
@@ -507,6 +535,8 @@ public class DataSourceFactory {
 
     @SuppressWarnings("SuspiciousMethodCalls")
     public static void destroy(final Object o) throws Throwable {
+        unregisterTrace(o);
+
         final Object instance = realInstance(o);
         if (instance == null) {
             return;
@@ -520,6 +550,21 @@ public class DataSourceFactory {
         }
     }
 
+    private static void unregisterTrace(final Object o) {
+        Object ds = o;
+        while (ds != null && Proxy.isProxyClass(ds.getClass())) {
+            final InvocationHandler handler = Proxy.getInvocationHandler(ds);
+            if (TracingSqlDataSource.class.isInstance(handler)) {
+                TracingSqlDataSource.class.cast(handler).getTrace().unregister();
+                return;
+            }
+            if (!DelegatableHandler.class.isInstance(handler)) {
+                return;
+            }
+            ds = DelegatableHandler.class.cast(handler).getDelegate();
+        }
+    }
+
     // remove proxy added by us in front of the datasource returned by the creator
     private static Object realInstance(final Object o) {
         if (o == null || !(o instanceof DataSource)) {
@@ -0,0 +1,459 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.logging;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.monitoring.LatencyHistogram;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statement table of a traced datasource.
+ * <p/>
+ * Statements are normalized (literals replaced by {@code ?}, whitespaces and parameter lists collapsed)
+ * and each normalized statement gets its executions, errors, rows and a latency histogram. Only a sample
+ * of the statements is traced, the others are returned unwrapped by the connection. The table holds at
+ * most {@code maxStatements} entries, executions of new statements once it is full are counted in a
+ * shared {@link #OVERFLOW} entry, so the footprint does not depend on the number of distinct queries.
+ * <p/>
+ * Executions slower than the threshold are logged with their bound parameters.
+ */
+public class SqlTrace {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SQL, SqlTrace.class);
+
+    public static final String OVERFLOW = "<other statements>";
+
+    private static final int MAX_SQL_LENGTH = 2048;
+    private static final int MAX_VALUE_LENGTH = 100;
+    private static final int LATENCY_WINDOW = 10000;
+
+    private final String name;
+    private final double sampling;
+    private final long slowThreshold;
+    private final int maxStatements;
+    private final String[] packages;
+    private final ConcurrentMap<String, Statistics> statements = new ConcurrentHashMap<>();
+    private final Statistics overflow = new Statistics(OVERFLOW, 0);
+    private final AtomicLong slowExecutions = new AtomicLong();
+    private volatile int generation;
+    private ObjectName objectName;
+
+    public SqlTrace(final String name, final double sampling, final long slowThreshold, final TimeUnit unit,
+                    final int maxStatements, final String[] packages) {
+        this.name = name;
+        this.sampling = sampling;
+        this.slowThreshold = unit.toNanos(slowThreshold);
+        this.maxStatements = Math.max(1, maxStatements);
+        this.packages = packages;
+    }
+
+    public boolean sample() {
+        return sampling >= 1 || (sampling > 0 && ThreadLocalRandom.current().nextDouble() < sampling);
+    }
+
+    public Statistics statistics(final String sql) {
+        final String key = normalize(sql);
+        final Statistics existing = statements.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (statements.size() >= maxStatements) {
+            return overflow;
+        }
+        final Statistics created = new Statistics(key, generation);
+        final Statistics racing = statements.putIfAbsent(key, created);
+        return racing != null ? racing : created;
+    }
+
+    /**
+     * @return {@code current} or, when the table was reset since it was looked up
+     * or when it is the overflow and the table has room again, the entry of {@code sql}
+     */
+    public Statistics statistics(final Statistics current, final String sql) {
+        if (current == overflow ? statements.size() >= maxStatements : current.generation == generation) {
+            return current;
+        }
+        return statistics(sql);
+    }
+
+    /**
+     * Records an execution and logs it when it is slow.
+     *
+     * @param rows rows updated by the execution, negative when unknown (queries count them while reading)
+     */
+    public void executed(final Statistics statistics, final String sql, final List<Object> parameters,
+                         final int batch, final long nanos, final long rows, final Throwable error) {
+        statistics.record(nanos, rows, error != null);
+        if (nanos >= slowThreshold) {
+            slowExecutions.incrementAndGet();
+            LOGGER.warning(slowMessage(sql, parameters, batch, nanos, error));
+        }
+    }
+
+    private String slowMessage(final String sql, final List<Object> parameters, final int batch,
+                               final long nanos, final Throwable error) {
+        final String text = sql == null ? "null" : sql;
+        final StringBuilder message = new StringBuilder(text.length() + 64)
+                .append("Slow SQL (").append(TimeUnit.NANOSECONDS.toMillis(nanos)).append("ms")
+                .append(error != null ? ", FAILED" : "")
+                .append("): ").append(text);
+        if (batch > 0) {
+            message.append(" - batch of ").append(batch);
+        }
+        if (parameters != null && !parameters.isEmpty()) {
+            message.append(" - parameters [");
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) {
+                    message.append(", ");
+                }
+                message.append(i + 1).append('=');
+                appendValue(message, parameters.get(i));
+            }
+            message.append(']');
+        }
+        if (packages != null) {
+            message.append(" - stack:").append(TimeWatcherExecutor.inlineStack(packages));
+        }
+        return message.toString();
+    }
+
+    private static void appendValue(final StringBuilder message, final Object value) {
+        if (value == null) {
+            message.append("null");
+        } else if (byte[].class.isInstance(value)) {
+            message.append("byte[").append(byte[].class.cast(value).length).append(']');
+        } else if (InputStream.class.isInstance(value) || Reader.class.isInstance(value)) {
+            message.append(value.getClass().getSimpleName());
+        } else {
+            final String string = String.valueOf(value);
+            final boolean quote = CharSequence.class.isInstance(value);
+            if (quote) {
+                message.append('\'');
+            }
+            if (string.length() > MAX_VALUE_LENGTH) {
+                message.append(string, 0, MAX_VALUE_LENGTH).append("...");
+            } else {
+                message.append(string);
+            }
+            if (quote) {
+                message.append('\'');
+            }
+        }
+    }
+
+    /**
+     * Single pass normalization, no regex: string and numeric literals become {@code ?},
+     * whitespaces are collapsed and {@code ?, ?, ?} lists become {@code ?}.
+     */
+    public static String normalize(final String sql) {
+        if (sql == null) {
+            return "null";
+        }
+
+        final int length = sql.length();
+        final StringBuilder out = new StringBuilder(Math.min(length, MAX_SQL_LENGTH + 3));
+        boolean space = false;
+        int i = 0;
+        while (i < length && out.length() < MAX_SQL_LENGTH) {
+            final char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+                i++;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+
+            if (c == '\'') { // string literal, '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                placeholder(out);
+            } else if (Character.isDigit(c) && !isIdentifierEnd(out)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                placeholder(out);
+            } else if (c == '?') {
+                i++;
+                placeholder(out);
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        if (i < length) {
+            out.append("...");
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdentifierEnd(final StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        final char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$' || previous == '.';
+    }
+
+    private static void placeholder(final StringBuilder out) {
+        // collapse "?, ?" (IN lists, VALUES) in a single placeholder
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > 1 && out.charAt(end - 1) == ',' && out.charAt(end - 2) == '?') {
+            out.setLength(end - 1);
+            return;
+        }
+        out.append('?');
+    }
+
+    public void register() {
+        objectName = new ObjectNameBuilder("openejb.management")
+                .set("ObjectType", "SqlTrace")
+                .set("name", name)
+                .build();
+        LocalMBeanServer.registerDynamicWrapperSilently(new View(), objectName);
+    }
+
+    public void unregister() {
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Statistics> getStatistics() {
+        final List<Statistics> all = new ArrayList<>(statements.values());
+        if (overflow.getExecutions() > 0) {
+            all.add(overflow);
+        }
+        Collections.sort(all, (o1, o2) -> Long.compare(o2.getTotalMicros(), o1.getTotalMicros()));
+        return all;
+    }
+
+    public long getSlowExecutions() {
+        return slowExecutions.get();
+    }
+
+    /**
+     * Empties the table, the statements still holding a previous {@link Statistics}
+     * switch to the new entry of their SQL on their next execution.
+     */
+    public synchronized void reset() {
+        generation++;
+        statements.clear();
+        overflow.reset();
+        slowExecutions.set(0);
+    }
+
+    /**
+     * Counters of a normalized statement, the latency percentiles and max cover the
+     * last {@link #LATENCY_WINDOW} executions.
+     */
+    public static class Statistics {
+        private final String sql;
+        private final int generation;
+        private final LatencyHistogram latencies = new LatencyHistogram(LATENCY_WINDOW, 1);
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+
+        Statistics(final String sql, final int generation) {
+            this.sql = sql;
+            this.generation = generation;
+        }
+
+        void record(final long nanos, final long updated, final boolean error) {
+            latencies.record(nanos);
+            executions.incrementAndGet();
+            totalMicros.addAndGet(Math.max(0, nanos / 1000));
+            if (updated > 0) {
+                rows.addAndGet(updated);
+            }
+            if (error) {
+                errors.incrementAndGet();
+            }
+        }
+
+        void rows(final long read) {
+            if (read > 0) {
+                rows.addAndGet(read);
+            }
+        }
+
+        void reset() {
+            latencies.reset();
+            executions.set(0);
+            errors.set(0);
+            rows.set(0);
+            totalMicros.set(0);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getTotalMicros() {
+            return totalMicros.get();
+        }
+
+        public double getMean() {
+            final long n = executions.get();
+            return n == 0 ? Double.NaN : totalMicros.get() / 1000. / n;
+        }
+
+        public LatencyHistogram.Snapshot getLatencies() {
+            return latencies.snapshot();
+        }
+
+        /**
+         * @return the max of the last executions in milliseconds
+         */
+        public double getMax() {
+            return getLatencies().getMax();
+        }
+
+        /**
+         * @return the percentile of the last executions in milliseconds
+         */
+        public double getPercentile(final double p) {
+            return getLatencies().getPercentile(p);
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("SQL statements statistics of a datasource")
+    public final class View {
+        private final String[] columns = {"sql", "executions", "errors", "rows", "totalMs", "meanMs", "p50Ms", "p99Ms", "maxMs"};
+        private final OpenType<?>[] types = {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+            SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE};
+
+        @ManagedAttribute
+        @Description("Ratio of the statements which are traced")
+        public double getSampling() {
+            return sampling;
+        }
+
+        @ManagedAttribute
+        @Description("Duration in milliseconds after which an execution is logged")
+        public long getSlowThreshold() {
+            return TimeUnit.NANOSECONDS.toMillis(slowThreshold);
+        }
+
+        @ManagedAttribute
+        @Description("Maximum number of distinct statements in the table")
+        public int getMaxStatements() {
+            return maxStatements;
+        }
+
+        @ManagedAttribute
+        @Description("Number of distinct statements in the table")
+        public int getStatementCount() {
+            return statements.size();
+        }
+
+        @ManagedAttribute
+        @Description("Number of slow executions")
+        public long getSlowExecutions() {
+            return slowExecutions.get();
+        }
+
+        @ManagedAttribute
+        @Description("Statements statistics, most time consuming first")
+        public TabularData getStatements() {
+            try {
+                final CompositeType row = new CompositeType("SqlStatement", "statistics of a statement", columns, columns, types);
+                final TabularDataSupport data = new TabularDataSupport(new TabularType("SqlStatements", "statements statistics", row, new String[]{"sql"}));
+                for (final Statistics statistics : getStatistics()) {
+                    final LatencyHistogram.Snapshot latencies = statistics.getLatencies();
+                    data.put(new CompositeDataSupport(row, columns, new Object[]{
+                        statistics.getSql(), statistics.getExecutions(), statistics.getErrors(), statistics.getRows(),
+                        statistics.getTotalMicros() / 1000., statistics.getMean(),
+                        latencies.getPercentile(50), latencies.getPercentile(99), latencies.getMax()
+                    }));
+                }
+                return data;
+            } catch (final OpenDataException e) {
+                return null;
+            }
+        }
+
+        @ManagedOperation
+        @Description("Clear the statements table")
+        public void reset() {
+            SqlTrace.this.reset();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.logging;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the executions of a statement and keeps its bound parameters for the slow query log,
+ * parameters are only formatted when an execution is slow.
+ */
+public class TracingSqlStatement implements InvocationHandler {
+    private static final Class<?>[] INTERFACES_RESULT_SET = new Class<?>[]{ResultSet.class};
+    private static final String BATCH = "<batch>";
+
+    private final Statement delegate;
+    private final String sql;
+    private final SqlTrace trace;
+    private final List<Object> parameters = new ArrayList<>();
+
+    private SqlTrace.Statistics statistics;
+    private String batchSql;
+    private int batch;
+
+    public TracingSqlStatement(final Statement statement, final String query, final SqlTrace trace) {
+        this.delegate = statement;
+        this.sql = query;
+        this.trace = trace;
+        this.statistics = query != null ? trace.statistics(query) : null;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final String mtdName = method.getName();
+        if (mtdName.startsWith("execute")) {
+            return execute(proxy, method, args, mtdName);
+        }
+
+        final Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (final InvocationTargetException ite) {
+            throw ite.getCause();
+        }
+
+        if (mtdName.startsWith("set") && args != null && args.length >= 2 && Integer.class.isInstance(args[0])) {
+            parameter((Integer) args[0], "setNull".equals(mtdName) ? null : args[1]);
+        } else if ("clearParameters".equals(mtdName)) {
+            parameters.clear();
+        } else if ("addBatch".equals(mtdName)) {
+            if (batchSql == null && args != null && args.length == 1) {
+                batchSql = (String) args[0];
+            }
+            batch++;
+        } else if ("clearBatch".equals(mtdName)) {
+            batchSql = null;
+            batch = 0;
+        } else if ("getResultSet".equals(mtdName) && result != null && statistics != null) {
+            return resultSet(proxy, (ResultSet) result);
+        }
+        return result;
+    }
+
+    private Object execute(final Object proxy, final Method method, final Object[] args, final String mtdName) throws Throwable {
+        final String executed;
+        if (sql != null) {
+            executed = sql;
+            statistics = trace.statistics(statistics, sql);
+        } else {
+            if (args != null && args.length > 0) {
+                executed = (String) args[0];
+            } else {
+                // executeBatch() without any addBatch(String)
+                executed = batchSql != null ? batchSql : BATCH;
+            }
+            statistics = trace.statistics(executed);
+        }
+
+        Object result = null;
+        Throwable error = null;
+        final long start = System.nanoTime();
+        try {
+            result = method.invoke(delegate, args);
+        } catch (final InvocationTargetException ite) {
+            error = ite.getCause();
+        }
+        final long duration = System.nanoTime() - start;
+
+        final boolean isBatch = mtdName.endsWith("Batch");
+        trace.executed(statistics, executed, parameters, isBatch ? batch : 0, duration, rows(mtdName, result), error);
+        if (isBatch) {
+            batchSql = null;
+            batch = 0;
+        }
+
+        if (error != null) {
+            throw error;
+        }
+        if (ResultSet.class.isInstance(result)) {
+            return resultSet(proxy, (ResultSet) result);
+        }
+        return result;
+    }
+
+    private static long rows(final String mtdName, final Object result) {
+        if (Integer.class.isInstance(result) && mtdName.startsWith("executeUpdate")) {
+            return (Integer) result;
+        }
+        if (Long.class.isInstance(result)) {
+            return (Long) result;
+        }
+        long rows = 0;
+        if (int[].class.isInstance(result)) {
+            for (final int updated : (int[]) result) {
+                rows += Math.max(0, updated);
+            }
+            return rows;
+        }
+        if (long[].class.isInstance(result)) {
+            for (final long updated : (long[]) result) {
+                rows += Math.max(0, updated);
+            }
+            return rows;
+        }
+        return -1;
+    }
+
+    private Object resultSet(final Object statement, final ResultSet resultSet) {
+        return Proxy.newProxyInstance(delegate.getClass().getClassLoader(), INTERFACES_RESULT_SET,
+            new TracingResultSet(resultSet, (Statement) statement, statistics));
+    }
+
+    private void parameter(final int index, final Object value) {
+        if (index < 1) {
+            return;
+        }
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+        parameters.set(index - 1, value);
+    }
+
+    /**
+     * Counts the rows read to add them to the statement statistics once the result set is consumed or closed.
+     */
+    private static class TracingResultSet implements InvocationHandler {
+        private final ResultSet delegate;
+        private final Statement statement;
+        private final SqlTrace.Statistics statistics;
+        private long rows;
+        private boolean done;
+
+        private TracingResultSet(final ResultSet delegate, final Statement statement, final SqlTrace.Statistics statistics) {
+            this.delegate = delegate;
+            this.statement = statement;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String mtdName = method.getName();
+            if ("getStatement".equals(mtdName)) {
+                return statement;
+            }
+
+            final Object result;
+            try {
+                result = method.invoke(delegate, args);
+            } catch (final InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+
+            if ("next".equals(mtdName)) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    done();
+                }
+            } else if ("close".equals(mtdName)) {
+                done();
+            }
+            return result;
+        }
+
+        private void done() {
+            if (!done) {
+                done = true;
+                statistics.rows(rows);
+            }
+        }
+    }
+}
@@ -72,14 +72,13 @@ public class ManagedConnection implements InvocationHandler {
         // first some Object method management
         final String mtdName = method.getName();
         if ("toString".equals(mtdName)) {
-            return "ManagedConnection{" + delegate + "}";
+            return toString();
         }
         if ("hashCode".equals(mtdName)) {
             return hashCode();
         }
         if ("equals".equals(mtdName)) {
-            InvocationHandler handler;
-            return args[0] == this || ((handler = unwrapHandler(args[0])) == this) || (delegate != null && delegate.equals(unwrapDelegate(args[0], handler)));
+            return isSame(args[0]);
         }
 
         // allow to get delegate if needed by the underlying program
@@ -93,104 +92,160 @@ public class ManagedConnection implements InvocationHandler {
         }
 
         // here the real logic starts
-        try {
-            final Transaction transaction = transactionManager.getTransaction();
+        if ("close".equals(mtdName)) {
+            closeHandle();
+            return null;
+        }
+        if ("isClosed".equals(mtdName)) {
+            return isHandleClosed();
+        }
+        if ("setAutoCommit".equals(mtdName)
+                || "commit".equals(mtdName)
+                || "rollback".equals(mtdName)
+                || "setSavepoint".equals(mtdName)
+                || "setReadOnly".equals(mtdName)) {
+            return invoke(method, localTransaction(mtdName), args);
+        }
+        return invoke(method, connection(), args);
+    }
 
-            // shouldn't be used without a transaction but if so just delegate to the actual connection
-            if (transaction == null) {
-                if ("close".equals(mtdName)) {
-                    if (delegate == null) { // no need to get a connection
-                        return close();
-                    }
+    /**
+     * @return the connection to delegate a call to once it is enlisted in the current transaction if there is one
+     */
+    Connection connection() throws SQLException {
+        join();
+        if (delegate == null) {
+            newConnection();
+        }
+        return delegate;
+    }
 
-                    closeConnection(true);
-                    return null;
-                }
-                if ("isClosed".equals(mtdName) && closed) {
-                    return true;
-                }
-                if (delegate == null) {
-                    newConnection();
-                }
-                return invoke(method, delegate, args);
-            }
+    /**
+     * Only for calls reading the connection state: once the physical connection exists the transaction is not checked.
+     */
+    Connection currentConnection() throws SQLException {
+        return delegate != null ? delegate : connection();
+    }
+
+    /**
+     * @return the connection for a call managing the local transaction, forbidden when the connection is JTA managed
+     */
+    Connection localTransaction(final String mtdName) throws SQLException {
+        if (join() == TransactionState.ENLISTED) {
+            throw forbiddenCall(mtdName);
+        }
+        if (delegate == null) {
+            newConnection();
+        }
+        return delegate;
+    }
+
+    void closeHandle() throws SQLException {
+        if (join() == TransactionState.NONE && delegate != null) {
+            closeConnection(true);
+        } else { // no need to get a connection or let it be handled by the ClosingSynchronisation since we have a tx there
+            close();
+        }
+    }
+
+    boolean isHandleClosed() throws SQLException {
+        join();
+        if (closed) {
+            return true; // if !closed let's delegate to the underlying connection
+        }
+        if (delegate == null) {
+            newConnection();
+        }
+        return delegate.isClosed();
+    }
+
+    boolean isSame(final Object other) {
+        if (other == this) {
+            return true;
+        }
+        final ManagedConnection handler = unwrapHandler(other);
+        return handler == this || (delegate != null && delegate.equals(handler != null ? handler.delegate : other));
+    }
+
+    // checks the current transaction and enlists the connection in it if needed
+    private TransactionState join() throws SQLException {
+        final Transaction transaction;
+        try {
+            transaction = transactionManager.getTransaction();
+        } catch (final SystemException e) {
+            throw new SQLException("Unable to get the current transaction", e);
+        }
+
+        // shouldn't be used without a transaction but if so just delegate to the actual connection
+        if (transaction == null) {
+            return TransactionState.NONE;
+        }
 
+        try {
             // if we have a tx check it is the same this connection is linked to
             if (currentTransaction != null && isUnderTransaction(currentTransaction.getStatus())) {
                 if (!currentTransaction.equals(transaction)) {
                     throw new SQLException("Connection can not be used while enlisted in another transaction");
                 }
-                return invokeUnderTransaction(method, args);
+                return TransactionState.ENLISTED;
             }
 
             // get the already bound connection to the current transaction or enlist this one in the tx
             final int transactionStatus = transaction.getStatus();
-            if (isUnderTransaction(transactionStatus)) {
-                Connection connection = Connection.class.cast(registry.getResource(key));
-                if (connection == null && delegate == null) {
-                    newConnection();
+            if (!isUnderTransaction(transactionStatus)) {
+                return TransactionState.INACTIVE;
+            }
 
-                    currentTransaction = transaction;
-                    try {
-                        if (!transaction.enlistResource(getXAResource())) {
-                            closeConnection(true);
-                            throw new SQLException("Unable to enlist connection in transaction: enlistResource returns 'false'.");
-                        }
-                    } catch (final RollbackException ignored) {
-                        // no-op
-                    } catch (final SystemException e) {
-                        throw new SQLException("Unable to enlist connection the transaction", e);
-                    }
+            final Connection connection = Connection.class.cast(registry.getResource(key));
+            if (connection == null && delegate == null) {
+                newConnection();
 
-                    registry.putResource(key, delegate);
-                    transaction.registerSynchronization(new ClosingSynchronization());
-
-                    if (xaConnection == null) {
-                        try {
-                            setAutoCommit(false);
-                        } catch (final SQLException xae) { // we are alreay in a transaction so this can't be called from a user perspective - some XA DataSource prevents it in their code
-                            final String message = "Can't set auto commit to false cause the XA datasource doesn't support it, this is likely an issue";
-                            final Logger logger = Logger.getInstance(LogCategory.OPENEJB_RESOURCE_JDBC, ManagedConnection.class);
-                            if (logger.isDebugEnabled()) { // we don't want to print the exception by default
-                                logger.warning(message, xae);
-                            } else {
-                                logger.warning(message);
-                            }
-                        }
+                currentTransaction = transaction;
+                try {
+                    if (!transaction.enlistResource(getXAResource())) {
+                        closeConnection(true);
+                        throw new SQLException("Unable to enlist connection in transaction: enlistResource returns 'false'.");
                     }
-                } else if (delegate == null) { // shouldn't happen
-                    delegate = connection;
+                } catch (final RollbackException ignored) {
+                    // no-op
                 }
 
-                return invokeUnderTransaction(method, args);
-            }
-
-            if ("isClosed".equals(mtdName) && closed) {
-                return true;
-            }
-            if ("close".equals(mtdName)) { // let it be handled by the ClosingSynchronisation since we have a tx there
-                return close();
-            }
+                registry.putResource(key, delegate);
+                transaction.registerSynchronization(new ClosingSynchronization());
 
-            // we shouldn't come here, tempted to just throw an exception
-            if (delegate == null) {
-                newConnection();
+                if (xaConnection == null) {
+                    try {
+                        setAutoCommit(false);
+                    } catch (final SQLException xae) { // we are alreay in a transaction so this can't be called from a user perspective - some XA DataSource prevents it in their code
+                        final String message = "Can't set auto commit to false cause the XA datasource doesn't support it, this is likely an issue";
+                        final Logger logger = Logger.getInstance(LogCategory.OPENEJB_RESOURCE_JDBC, ManagedConnection.class);
+                        if (logger.isDebugEnabled()) { // we don't want to print the exception by default
+                            logger.warning(message, xae);
+                        } else {
+                            logger.warning(message);
+                        }
+                    }
+                }
+            } else if (delegate == null) { // shouldn't happen
+                delegate = connection;
             }
-            return invoke(method, delegate, args);
-        } catch (final InvocationTargetException ite) {
-            throw ite.getTargetException();
+            return TransactionState.ENLISTED;
+        } catch (final RollbackException e) {
+            throw new SQLException("Unable to register the connection synchronization", e);
+        } catch (final SystemException e) {
+            throw new SQLException("Unable to enlist connection the transaction", e);
         }
     }
 
-    private InvocationHandler unwrapHandler(final Object arg) {
+    private static ManagedConnection unwrapHandler(final Object arg) {
+        if (ManagedSqlConnection.class.isInstance(arg)) {
+            return ManagedSqlConnection.class.cast(arg).getHandler();
+        }
         if (arg == null || !Proxy.isProxyClass(arg.getClass())) {
             return null;
         }
-        return Proxy.getInvocationHandler(arg);
-    }
-
-    private Object unwrapDelegate(final Object arg, final InvocationHandler handler) {
-        return handler != null && ManagedConnection.class.isInstance(handler) ? ManagedConnection.class.cast(handler).delegate : arg;
+        final InvocationHandler handler = Proxy.getInvocationHandler(arg);
+        return ManagedConnection.class.isInstance(handler) ? ManagedConnection.class.cast(handler) : null;
     }
 
     protected Object newConnection() throws SQLException {
@@ -223,24 +278,6 @@ public class ManagedConnection implements InvocationHandler {
         }
     }
 
-    private Object invokeUnderTransaction(final Method method, final Object[] args) throws Exception {
-        final String mtdName = method.getName();
-        if ("setAutoCommit".equals(mtdName)
-                || "commit".equals(mtdName)
-                || "rollback".equals(mtdName)
-                || "setSavepoint".equals(mtdName)
-                || "setReadOnly".equals(mtdName)) {
-            throw forbiddenCall(mtdName);
-        }
-        if ("close".equals(mtdName)) {
-            return close();
-        }
-        if ("isClosed".equals(mtdName) && closed) {
-            return true; // if !closed let's delegate to the underlying connection
-        }
-        return method.invoke(delegate, args);
-    }
-
     // will be done later
     // we need to delay it in case of rollback
     private Object close() {
@@ -248,6 +285,11 @@ public class ManagedConnection implements InvocationHandler {
         return null;
     }
 
+    @Override
+    public String toString() {
+        return "ManagedConnection{" + delegate + "}";
+    }
+
     private static boolean isUnderTransaction(final int status) {
         return status == Status.STATUS_ACTIVE || status == Status.STATUS_MARKED_ROLLBACK;
     }
@@ -285,6 +327,10 @@ public class ManagedConnection implements InvocationHandler {
         }
     }
 
+    private enum TransactionState {
+        NONE, ENLISTED, INACTIVE
+    }
+
     private static final class Key {
         private final CommonDataSource ds;
         private final String user;
@@ -18,8 +18,8 @@
 package org.apache.openejb.resource.jdbc.managed.xa;
 
 import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedSqlConnection;
 
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import javax.sql.CommonDataSource;
@@ -27,8 +27,6 @@ import javax.transaction.TransactionManager;
 import javax.transaction.TransactionSynchronizationRegistry;
 
 public class ManagedXADataSource extends ManagedDataSource {
-    private static final Class<?>[] CONNECTION_CLASS = new Class<?>[]{Connection.class};
-
     private final TransactionManager txMgr;
 
     public ManagedXADataSource(final CommonDataSource ds, final TransactionManager txMgr, final TransactionSynchronizationRegistry registry) {
@@ -47,7 +45,6 @@ public class ManagedXADataSource extends ManagedDataSource {
     }
 
     private Connection managedXA(final String u, final String p) throws SQLException {
-        return Connection.class.cast(Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), CONNECTION_CLASS,
-                new ManagedXAConnection(delegate, txMgr, registry, u, p)));
+        return new ManagedSqlConnection(new ManagedXAConnection(delegate, txMgr, registry, u, p));
     }
 }
@@ -19,10 +19,12 @@ package org.apache.openejb.resource.jdbc.router;
 
 import org.apache.openejb.OpenEJB;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 import javax.transaction.Transaction;
@@ -32,6 +34,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,6 +43,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -47,6 +51,7 @@ public class FailOverRouter extends AbstractRouter {
     private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SERVER, FailOverRouter.class);
 
     public static final String DEFAULT_STRATEGY = "default";
+    public static final String LATENCY_STRATEGY = "latency";
 
     private ExceptionSelector exceptionSelectorRuntime;
     private ErrorHandler errorHandlerRuntime;
@@ -57,6 +62,9 @@ public class FailOverRouter extends AbstractRouter {
     private String delimiter = ",";
     private String strategy = DEFAULT_STRATEGY;
     private String datasourceNames = "";
+    private double latencyDecay = 0.2;
+    private int failureThreshold = 3;
+    private Duration probeInterval = new Duration(5, TimeUnit.SECONDS);
 
     @Override
     public DataSource getDataSource() {
@@ -82,7 +90,38 @@ public class FailOverRouter extends AbstractRouter {
         this.strategy = strategy;
     }
 
+    /**
+     * @param latencyDecay weight of a new measure in the latency averages of the "latency" strategy
+     */
+    public void setLatencyDecay(final double latencyDecay) {
+        this.latencyDecay = latencyDecay;
+    }
+
+    /**
+     * @param failureThreshold consecutive failures after which the "latency" strategy considers a datasource down
+     */
+    public void setFailureThreshold(final int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param probeInterval delay between two background checks of a datasource the "latency" strategy considers down
+     */
+    public void setProbeInterval(final Duration probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (LatencyAwareStrategy.class.isInstance(strategyRuntime)) {
+            LatencyAwareStrategy.class.cast(strategyRuntime).close();
+        }
+    }
+
     public void setStrategyInstance(final Strategy strategy) {
+        if (strategy != strategyRuntime) {
+            destroy();
+        }
         this.strategyRuntime = strategy;
     }
 
@@ -179,6 +218,10 @@ public class FailOverRouter extends AbstractRouter {
                     }
                 };
                 break;
+            case LATENCY_STRATEGY:
+                strategyRuntime = new LatencyAwareStrategy(latencyDecay, failureThreshold, probeInterval.getTime(),
+                        probeInterval.getUnit() == null ? TimeUnit.MILLISECONDS : probeInterval.getUnit());
+                break;
             case "static":
                 strategyRuntime = new Strategy() { // no auto adaption (if first ds is always faster for instance)
                     @Override
@@ -254,6 +297,9 @@ public class FailOverRouter extends AbstractRouter {
     public void updateDataSources(final Collection<DataSourceHolder> ds) {
         dataSources.clear();
         dataSources.addAll(ds);
+        if (LatencyAwareStrategy.class.isInstance(strategyRuntime)) {
+            LatencyAwareStrategy.class.cast(strategyRuntime).retain(dataSources);
+        }
         initFacade();
     }
 
@@ -265,6 +311,7 @@ public class FailOverRouter extends AbstractRouter {
         private final Strategy strategy;
         private final ErrorHandler handler;
         private final ExceptionSelector selector;
+        private final LatencyAwareStrategy latency;
 
         public FacadeHandler(final Collection<DataSourceHolder> dataSources, final Strategy strategy,
                              final ErrorHandler handler, final ExceptionSelector selector) {
@@ -272,6 +319,7 @@ public class FailOverRouter extends AbstractRouter {
             this.strategy = strategy;
             this.handler = handler;
             this.selector = selector;
+            this.latency = LatencyAwareStrategy.class.isInstance(strategy) ? LatencyAwareStrategy.class.cast(strategy) : null;
             this.transactionManager = OpenEJB.getTransactionManager();
         }
 
@@ -310,6 +358,13 @@ public class FailOverRouter extends AbstractRouter {
                     final boolean set = method.getName().startsWith("set");
                     if (set) { // should set on all datasources because of failover which can happen but can also be bound to the tx
                         method.invoke(ds.dataSource, args);
+                    } else if (latency != null) {
+                        final long start = System.nanoTime();
+                        out = method.invoke(ds.dataSource, args);
+                        if (Connection.class.isInstance(out)) {
+                            latency.acquired(ds, System.nanoTime() - start);
+                            out = latency.connection(ds, Connection.class.cast(out));
+                        }
                     } else { // getConnection methods are here
                         out = method.invoke(ds.dataSource, args);
                     }
@@ -331,6 +386,10 @@ public class FailOverRouter extends AbstractRouter {
                         throw cause;
                     }
 
+                    if (latency != null) {
+                        latency.failed(ds, cause);
+                    }
+
                     if (handler != null) {
                         if (failed == null) {
                             failed = new HashMap<>();
@@ -406,5 +465,13 @@ public class FailOverRouter extends AbstractRouter {
             this.dataSource = dataSource;
             this.name = name;
         }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
     }
 }
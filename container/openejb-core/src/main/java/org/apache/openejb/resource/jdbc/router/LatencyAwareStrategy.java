@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.router;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the traffic to the datasources proportionally to the inverse of their latency.
+ * <p/>
+ * Each member keeps an exponentially weighted moving average of the time to get a connection
+ * and of the statement executions on the connections it gave. The first datasource tried is
+ * picked randomly with these weights, the others follow by increasing latency so a slow but
+ * alive member only gets a small share of the calls.
+ * <p/>
+ * After {@code failureThreshold} consecutive failures a member is down: it is only tried when
+ * all the others failed and a background task checks it every {@code probeInterval} instead of
+ * the callers, the first successful check brings it back.
+ */
+public class LatencyAwareStrategy implements FailOverRouter.Strategy {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_RESOURCE_JDBC, LatencyAwareStrategy.class);
+
+    private static final long MIN_LATENCY = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final int PROBE_TIMEOUT = 5; // seconds
+
+    private final ConcurrentMap<FailOverRouter.DataSourceHolder, Member> members = new ConcurrentHashMap<>();
+    private final double decay;
+    private final int failureThreshold;
+    private final ScheduledExecutorService prober;
+
+    public LatencyAwareStrategy(final double decay, final int failureThreshold, final long probeInterval, final TimeUnit unit) {
+        this.decay = Math.min(1, Math.max(0.01, decay));
+        this.failureThreshold = Math.max(1, failureThreshold);
+        if (probeInterval > 0) {
+            prober = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("FailOverRouter probe"));
+            prober.scheduleWithFixedDelay(this::probe, probeInterval, probeInterval, unit);
+        } else {
+            prober = null;
+        }
+    }
+
+    @Override
+    public Collection<FailOverRouter.DataSourceHolder> prepare(final Collection<FailOverRouter.DataSourceHolder> list) {
+        final List<Member> up = new ArrayList<>(list.size());
+        final List<Member> down = new ArrayList<>(0);
+        double total = 0;
+        for (final FailOverRouter.DataSourceHolder holder : list) {
+            final Member member = member(holder);
+            if (member.down) {
+                down.add(member);
+            } else {
+                up.add(member);
+                total += member.weight();
+            }
+        }
+
+        final List<FailOverRouter.DataSourceHolder> ordered = new ArrayList<>(list.size());
+        if (!up.isEmpty()) {
+            double random = ThreadLocalRandom.current().nextDouble() * total;
+            Member first = up.get(up.size() - 1);
+            for (final Member member : up) {
+                random -= member.weight();
+                if (random <= 0) {
+                    first = member;
+                    break;
+                }
+            }
+            ordered.add(first.holder);
+
+            if (up.size() > 1) {
+                up.remove(first);
+                Collections.sort(up, (o1, o2) -> Double.compare(o1.score(), o2.score()));
+                for (final Member member : up) {
+                    ordered.add(member.holder);
+                }
+            }
+        }
+        for (final Member member : down) { // last resort
+            ordered.add(member.holder);
+        }
+        return ordered;
+    }
+
+    @Override
+    public void used(final FailOverRouter.DataSourceHolder holder) {
+        // no-op: acquired() gets the timing
+    }
+
+    public void acquired(final FailOverRouter.DataSourceHolder holder, final long nanos) {
+        final Member member = member(holder);
+        member.acquired.incrementAndGet();
+        member.acquireLatency.update(nanos);
+        member.up();
+    }
+
+    public void failed(final FailOverRouter.DataSourceHolder holder, final Throwable error) {
+        final Member member = member(holder);
+        member.failures.incrementAndGet();
+        if (member.consecutiveFailures.incrementAndGet() >= failureThreshold && !member.down) {
+            member.down = true;
+            LOGGER.warning("DataSource " + holder.getName() + " is down, it will be checked in background: " + error.getMessage());
+        }
+    }
+
+    /**
+     * @return the connection measuring the statement executions of the member
+     */
+    public Connection connection(final FailOverRouter.DataSourceHolder holder, final Connection connection) {
+        return new MeasuredConnection(connection, member(holder));
+    }
+
+    void probe() {
+        for (final Member member : members.values()) {
+            if (!member.down) {
+                continue;
+            }
+
+            member.probes.incrementAndGet();
+            final long start = System.nanoTime();
+            try (final Connection connection = member.holder.getDataSource().getConnection()) {
+                if (!connection.isValid(PROBE_TIMEOUT)) {
+                    continue;
+                }
+            } catch (final Exception e) {
+                continue;
+            }
+            member.acquireLatency.update(System.nanoTime() - start);
+            member.up();
+            LOGGER.info("DataSource " + member.holder.getName() + " is back");
+        }
+    }
+
+    /**
+     * Forgets the members which are no more in the router and unregisters their MBean.
+     */
+    public void retain(final Collection<FailOverRouter.DataSourceHolder> holders) {
+        for (final Member member : members.values()) {
+            if (!holders.contains(member.holder) && members.remove(member.holder, member)) {
+                LocalMBeanServer.unregisterSilently(member.objectName);
+            }
+        }
+    }
+
+    public void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        for (final Member member : members.values()) {
+            LocalMBeanServer.unregisterSilently(member.objectName);
+        }
+        members.clear();
+    }
+
+    Member member(final FailOverRouter.DataSourceHolder holder) {
+        final Member existing = members.get(holder);
+        if (existing != null) {
+            return existing;
+        }
+
+        final Member created = new Member(holder);
+        final Member racing = members.putIfAbsent(holder, created);
+        if (racing != null) {
+            return racing;
+        }
+        LocalMBeanServer.registerDynamicWrapperSilently(created, created.objectName);
+        return created;
+    }
+
+    private final class Ewma {
+        private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(-1));
+
+        private void update(final long sample) {
+            long current;
+            double next;
+            do {
+                current = bits.get();
+                final double value = Double.longBitsToDouble(current);
+                next = value < 0 ? sample : value + decay * (sample - value);
+            } while (!bits.compareAndSet(current, Double.doubleToRawLongBits(next)));
+        }
+
+        private double get() {
+            return Math.max(0, Double.longBitsToDouble(bits.get()));
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Latency of a datasource used by a FailOverRouter")
+    public final class Member {
+        private final FailOverRouter.DataSourceHolder holder;
+        private final ObjectName objectName;
+        private final Ewma acquireLatency = new Ewma();
+        private final Ewma statementLatency = new Ewma();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong probes = new AtomicLong();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile boolean down;
+
+        private Member(final FailOverRouter.DataSourceHolder holder) {
+            this.holder = holder;
+            this.objectName = ObjectNameBuilder.uniqueName("FailOverRouterMember", holder.getName(), this);
+        }
+
+        private void up() {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            down = false;
+        }
+
+        double score() {
+            return Math.max(MIN_LATENCY, acquireLatency.get() + statementLatency.get());
+        }
+
+        double weight() {
+            return 1. / score();
+        }
+
+        void executed(final long nanos) {
+            statements.incrementAndGet();
+            statementLatency.update(nanos);
+        }
+
+        @ManagedAttribute
+        @Description("DataSource name")
+        public String getName() {
+            return holder.getName();
+        }
+
+        @ManagedAttribute
+        @Description("Is the datasource excluded until a background check succeeds")
+        public boolean getDown() {
+            return down;
+        }
+
+        @ManagedAttribute
+        @Description("Average time to get a connection in milliseconds")
+        public double getAcquireLatency() {
+            return acquireLatency.get() / 1000000.;
+        }
+
+        @ManagedAttribute
+        @Description("Average statement execution time in milliseconds")
+        public double getStatementLatency() {
+            return statementLatency.get() / 1000000.;
+        }
+
+        @ManagedAttribute
+        @Description("Connections obtained")
+        public long getAcquired() {
+            return acquired.get();
+        }
+
+        @ManagedAttribute
+        @Description("Statements executed")
+        public long getStatements() {
+            return statements.get();
+        }
+
+        @ManagedAttribute
+        @Description("Failures to get a connection")
+        public long getFailures() {
+            return failures.get();
+        }
+
+        @ManagedAttribute
+        @Description("Background checks of the datasource while it was down")
+        public long getProbes() {
+            return probes.get();
+        }
+    }
+}
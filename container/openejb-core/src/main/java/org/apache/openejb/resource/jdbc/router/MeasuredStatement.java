@@ -0,0 +1,374 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.router;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * Times the {@code execute*} calls of a statement and reports them to its {@link LatencyAwareStrategy.Member}.
+ */
+class MeasuredStatement<S extends Statement> implements Statement {
+    protected final S delegate;
+    protected final Connection connection;
+    protected final LatencyAwareStrategy.Member member;
+
+    MeasuredStatement(final Connection connection, final S delegate, final LatencyAwareStrategy.Member member) {
+        this.connection = connection;
+        this.delegate = delegate;
+        this.member = member;
+    }
+
+    @Override
+    public ResultSet executeQuery(final String sql) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeQuery(sql);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(final String sql) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeUpdate(sql);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return delegate.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(final int max) throws SQLException {
+        delegate.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return delegate.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(final int max) throws SQLException {
+        delegate.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(final boolean enable) throws SQLException {
+        delegate.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return delegate.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(final int seconds) throws SQLException {
+        delegate.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        delegate.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return delegate.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        delegate.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(final String name) throws SQLException {
+        delegate.setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(final String sql) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.execute(sql);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return delegate.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return delegate.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return delegate.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(final int direction) throws SQLException {
+        delegate.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return delegate.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(final int rows) throws SQLException {
+        delegate.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return delegate.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return delegate.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return delegate.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(final String sql) throws SQLException {
+        delegate.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        delegate.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeBatch();
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection;
+    }
+
+    @Override
+    public boolean getMoreResults(final int current) throws SQLException {
+        return delegate.getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return delegate.getGeneratedKeys();
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeUpdate(sql, autoGeneratedKeys);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeUpdate(sql, columnIndexes);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeUpdate(sql, columnNames);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, autoGeneratedKeys);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, columnIndexes);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql, final String[] columnNames) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, columnNames);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return delegate.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public void setPoolable(final boolean poolable) throws SQLException {
+        delegate.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return delegate.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        delegate.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return delegate.isCloseOnCompletion();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return delegate.getLargeUpdateCount();
+    }
+
+    @Override
+    public void setLargeMaxRows(final long max) throws SQLException {
+        delegate.setLargeMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return delegate.getLargeMaxRows();
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeLargeBatch();
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(final String sql) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeLargeUpdate(sql);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeLargeUpdate(sql, columnIndexes);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(final String sql, final String[] columnNames) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.executeLargeUpdate(sql, columnNames);
+        } finally {
+            member.executed(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return delegate.isWrapperFor(iface);
+    }
+}
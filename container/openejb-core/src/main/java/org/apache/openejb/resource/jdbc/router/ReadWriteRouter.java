@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.router;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.api.ReadOnly;
+import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.transaction.JtaTransactionPolicy;
+import org.apache.openejb.core.transaction.TransactionPolicy;
+import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.annotation.PostConstruct;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Sends the connections obtained in read-only contexts to replicas and everything else to the primary.
+ * <p/>
+ * Without a JTA transaction a context is read-only when the current EJB method runs with a SUPPORTS or
+ * NOT_SUPPORTED transaction attribute or is annotated with {@link ReadOnly} (directly or through its bean class),
+ * replicas are used in turn. A transaction started by a {@link ReadOnly} method gets one replica, a transaction
+ * started by any other method the primary, in both cases the datasource is pinned in the
+ * {@link TransactionSynchronizationRegistry} so every connection of the transaction comes from it: a read-only
+ * method joining a transaction a writer started stays on the primary and sees the transaction writes.
+ */
+public class ReadWriteRouter extends AbstractRouter {
+    private final TransactionSynchronizationRegistry registry = SystemInstance.get().getComponent(TransactionSynchronizationRegistry.class);
+    private final List<DataSource> replicaDataSources = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Object pinnedKey = new Object();
+    private final ClassValue<ConcurrentMap<Method, Boolean>> readOnlyMethods = new ClassValue<ConcurrentMap<Method, Boolean>>() {
+        @Override // stored with the bean class so a redeployed application does not leak its loader
+        protected ConcurrentMap<Method, Boolean> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private String delimiter = ",";
+    private String primary;
+    private String replicas = "";
+    private DataSource primaryDataSource;
+
+    @PostConstruct
+    public void init() {
+        if (primary == null) {
+            throw new IllegalArgumentException("primary datasource is not set");
+        }
+        primaryDataSource = lookup(primary.trim());
+
+        replicaDataSources.clear();
+        for (final String ds : replicas.split(Pattern.quote(delimiter))) {
+            final String name = ds.trim();
+            if (!name.isEmpty()) {
+                replicaDataSources.add(lookup(name));
+            }
+        }
+    }
+
+    public void setPrimary(final String primary) {
+        this.primary = primary;
+    }
+
+    public void setReplicas(final String replicas) {
+        this.replicas = replicas;
+    }
+
+    public void setDelimiter(final String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        if (replicaDataSources.isEmpty()) {
+            return primaryDataSource;
+        }
+        if (registry == null || registry.getTransactionKey() == null) {
+            return isReadOnly() ? nextReplica() : primaryDataSource;
+        }
+
+        final Object pinned = registry.getResource(pinnedKey);
+        if (pinned != null) {
+            return DataSource.class.cast(pinned);
+        }
+        final DataSource dataSource = isReadOnlyTransaction() ? nextReplica() : primaryDataSource;
+        registry.putResource(pinnedKey, dataSource);
+        return dataSource;
+    }
+
+    private DataSource nextReplica() {
+        return replicaDataSources.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicaDataSources.size());
+    }
+
+    private boolean isReadOnlyTransaction() {
+        final ThreadContext context = ThreadContext.getThreadContext();
+        if (context == null) {
+            return false;
+        }
+
+        final TransactionPolicy policy = context.getTransactionPolicy();
+        final Method method = context.get(Method.class);
+        return policy != null && policy.isNewTransaction() && method != null && isAnnotated(context.getBeanContext(), method);
+    }
+
+    private boolean isReadOnly() {
+        final ThreadContext context = ThreadContext.getThreadContext();
+        if (context == null) {
+            return false;
+        }
+
+        final Method method = context.get(Method.class);
+        if (method != null && isAnnotated(context.getBeanContext(), method)) {
+            return true;
+        }
+
+        final TransactionPolicy policy = context.getTransactionPolicy();
+        if (JtaTransactionPolicy.class.isInstance(policy)) {
+            final TransactionType type = JtaTransactionPolicy.class.cast(policy).getTransactionType();
+            return type == TransactionType.Supports || type == TransactionType.NotSupported;
+        }
+        return false;
+    }
+
+    private boolean isAnnotated(final BeanContext beanContext, final Method method) {
+        final Class<?> beanClass = beanContext == null ? method.getDeclaringClass() : beanContext.getBeanClass();
+        final ConcurrentMap<Method, Boolean> methods = readOnlyMethods.get(beanClass);
+        Boolean annotated = methods.get(method);
+        if (annotated == null) {
+            annotated = method.isAnnotationPresent(ReadOnly.class) || beanClass.isAnnotationPresent(ReadOnly.class);
+            if (!annotated) { // the invoked method can be the one of the business interface
+                try {
+                    annotated = beanClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(ReadOnly.class);
+                } catch (final NoSuchMethodException e) {
+                    // no-op
+                }
+            }
+            methods.putIfAbsent(method, annotated);
+        }
+        return annotated;
+    }
+
+    private DataSource lookup(final String name) {
+        try {
+            final Object o = getOpenEJBResource(name);
+            if (DataSource.class.isInstance(o)) {
+                return DataSource.class.cast(o);
+            }
+            throw new IllegalArgumentException(name + " (" + o + ") is not a datasource");
+        } catch (final NamingException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -61,7 +62,7 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 @SuppressWarnings("StatementWithEmptyBody")
 public class Pool<T> {
 
-    private final LinkedList<Entry> pool = new LinkedList<>();
+    private final Idle pool;
     private final Semaphore instances;
     private final Semaphore available;
     private final Semaphore minimum;
@@ -98,12 +99,18 @@ public class Pool<T> {
     @Managed
     private final boolean garbageCollection;
 
+    private final Strategy strategy;
+
     public Pool(final int max, final int min, final boolean strict) {
         this(max, min, strict, 0, 0, 0, null, null, false, -1, false, false);
     }
 
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, final long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+        this(max, min, strict, maxAge, idleTimeout, sweepInterval, executor, supplier, replaceAged, maxAgeOffset, garbageCollection, replaceFlushed, Strategy.LOCKING);
+    }
+
     @SuppressWarnings("unchecked")
-    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed, final Strategy strategy) {
         if (min > max) {
             greater("max", max, "min", min);
         }
@@ -126,6 +133,8 @@ public class Pool<T> {
         this.sweeper = new Sweeper(idleTimeout, max);
         this.stats = new Stats(min, max, idleTimeout);
         this.garbageCollection = garbageCollection;
+        this.strategy = strategy != null ? strategy : Strategy.LOCKING;
+        this.pool = this.strategy == Strategy.STRIPED ? new StripedIdle(max) : new LockingIdle();
     }
 
     public Pool start() {
@@ -253,12 +262,9 @@ public class Pool<T> {
 
         Entry entry;
         do {
-            synchronized (pool) {
-                try {
-                    entry = pool.removeFirst();
-                } catch (final NoSuchElementException e) {
-                    return null;
-                }
+            entry = pool.poll();
+            if (entry == null) {
+                return null;
             }
 
             final Pool<T>.Entry.Instance instance = entry.soft.get();
@@ -401,9 +407,7 @@ public class Pool<T> {
                     entry.hard.set(obj);
                 }
 
-                synchronized (pool) {
-                    pool.addFirst(entry);
-                }
+                pool.push(entry);
                 added = true;
             }
         } finally {
@@ -644,6 +648,128 @@ public class Pool<T> {
         }
     }
 
+    public enum Strategy {
+        /**
+         * A single list guarded by the pool monitor
+         */
+        LOCKING,
+
+        /**
+         * Lock free stacks, one per stripe, each with a slot caching the last returned entry
+         */
+        STRIPED
+    }
+
+    /**
+     * Holds the idle entries, the permits are managed by the pool.
+     * Both implementations are LIFO so the most recently used instances stay hot.
+     */
+    private abstract class Idle {
+
+        abstract Entry poll();
+
+        abstract void push(Entry entry);
+    }
+
+    private final class LockingIdle extends Idle {
+
+        private final LinkedList<Entry> entries = new LinkedList<>();
+
+        @Override
+        synchronized Entry poll() {
+            try {
+                return entries.removeFirst();
+            } catch (final NoSuchElementException e) {
+                return null;
+            }
+        }
+
+        @Override
+        synchronized void push(final Entry entry) {
+            entries.addFirst(entry);
+        }
+    }
+
+    /**
+     * Threads are mapped to a stripe from their id.  An entry pushed back goes
+     * to the cache slot of the stripe when it is free, so the usual pop then push
+     * from the same thread neither allocates nor touches a shared stack, otherwise
+     * it is pushed on the Treiber stack of the stripe.  A pop first looks at its
+     * own stripe then steals from the others, so every idle entry stays reachable
+     * from any thread and from the sweeper, which is what enforces {@code MaxAge},
+     * {@code IdleTimeout} and flushes exactly as with {@link LockingIdle}.
+     * <p/>
+     * Stack nodes are never reused, this is what keeps the stacks free of ABA.
+     */
+    private final class StripedIdle extends Idle {
+
+        private final AtomicReferenceArray<Entry> cache;
+        private final AtomicReferenceArray<Node> stacks;
+        private final int mask;
+
+        private StripedIdle(final int max) {
+            int size = 1;
+            while (size < Math.min(Math.min(Runtime.getRuntime().availableProcessors(), max), 64)) {
+                size <<= 1;
+            }
+            this.cache = new AtomicReferenceArray<>(size);
+            this.stacks = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        @Override
+        Entry poll() {
+            final int home = (int) Thread.currentThread().getId() & mask;
+            for (int i = 0; i <= mask; i++) {
+                final int stripe = (home + i) & mask;
+
+                Entry entry = cache.get(stripe);
+                if (entry != null && (entry = cache.getAndSet(stripe, null)) != null) {
+                    return entry;
+                }
+
+                entry = pop(stripe);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        void push(final Entry entry) {
+            final int home = (int) Thread.currentThread().getId() & mask;
+            if (cache.get(home) == null && cache.compareAndSet(home, null, entry)) {
+                return;
+            }
+
+            final Node node = new Node(entry);
+            do {
+                node.next = stacks.get(home);
+            } while (!stacks.compareAndSet(home, node.next, node));
+        }
+
+        private Entry pop(final int stripe) {
+            Node head;
+            do {
+                head = stacks.get(stripe);
+                if (head == null) {
+                    return null;
+                }
+            } while (!stacks.compareAndSet(stripe, head, head.next));
+            return head.entry;
+        }
+    }
+
+    private final class Node {
+        private final Entry entry;
+        private Node next;
+
+        private Node(final Entry entry) {
+            this.entry = entry;
+        }
+    }
+
     private final class Sweeper implements Runnable {
 
         private final AtomicInteger previousVersion = new AtomicInteger(poolVersion.get());
@@ -1072,6 +1198,11 @@ public class Pool<T> {
             this.idleTimeout = idleTimeout;
         }
 
+        @Managed
+        private String getStrategy() {
+            return strategy.name();
+        }
+
         @Managed
         private boolean getStrictPooling() {
             return !(available instanceof Overdraft);
@@ -1124,6 +1255,7 @@ public class Pool<T> {
         private boolean replaceAged;
         private boolean replaceFlushed;
         private boolean garbageCollection = true;
+        private Strategy strategy = Strategy.LOCKING;
 
         public Builder(final Builder<T> that) {
             this.max = that.max;
@@ -1138,6 +1270,7 @@ public class Pool<T> {
             this.replaceAged = that.replaceAged;
             this.replaceFlushed = that.replaceFlushed;
             this.garbageCollection = that.garbageCollection;
+            this.strategy = that.strategy;
         }
 
         public Builder() {
@@ -1167,6 +1300,14 @@ public class Pool<T> {
             this.max = max;
         }
 
+        public Strategy getPoolStrategy() {
+            return strategy;
+        }
+
+        public void setPoolStrategy(final Strategy strategy) {
+            this.strategy = strategy;
+        }
+
         /**
          * Alias for pool size
          *
@@ -1239,7 +1380,7 @@ public class Pool<T> {
         @SuppressWarnings("unchecked")
         public Pool<T> build() {
             //noinspection unchecked
-            final Pool pool = new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed);
+            final Pool pool = new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed, strategy);
             if (scheduledExecutorService != null) {
                 pool.scheduler.set(scheduledExecutorService);
             }
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.ProxyFactoryInfo;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.StatefulSessionContainerInfo;
+import org.apache.openejb.assembler.classic.StatelessSessionContainerInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.AppModule;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.EjbModule;
+import org.apache.openejb.core.ivm.naming.IvmContext;
+import org.apache.openejb.core.ivm.naming.Reference;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.EnterpriseBean;
+import org.apache.openejb.jee.StatefulBean;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.EJB;
+import javax.ejb.Local;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class InjectionPlanTest {
+    private CountingContext context;
+    private List<Injection> injections;
+
+    @Before
+    public void init() throws NamingException {
+        SystemInstance.reset();
+
+        context = new CountingContext();
+        context.bind("comp/env/name", "openejb");
+        context.bind("comp/env/count", 3);
+        context.bind("comp/env/timeout", "12");
+        context.bind("comp/env/session", new Reference() { // a new value for each lookup like a stateful reference
+            @Override
+            public Object getObject() {
+                return new StringBuilder();
+            }
+        });
+
+        injections = Arrays.asList(
+            new Injection("comp/env/name", "name", Bean.class),
+            new Injection("comp/env/count", "count", Bean.class),
+            new Injection("comp/env/timeout", "timeout", Bean.class),
+            new Injection("comp/env/session", "session", Bean.class),
+            new Injection("comp/env/name", "name", Other.class));
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void constantsAreResolvedOnce() throws OpenEJBException {
+        final InjectionPlan plan = new InjectionPlan(injections, context, null);
+        final Bean first = new InjectionProcessor<>(new Bean(), plan).createInstance();
+        final Bean second = new InjectionProcessor<>(new Bean(), plan).createInstance();
+        final Bean third = new InjectionProcessor<>(new Bean(), plan).createInstance();
+
+        for (final Bean bean : Arrays.asList(first, second, third)) {
+            assertEquals("openejb", bean.name);
+            assertEquals(3, bean.count);
+            assertEquals(12L, bean.timeout);
+        }
+        assertNotSame(first.session, second.session);
+        assertNotSame(second.session, third.session);
+
+        assertEquals(1, context.lookups("comp/env/name"));
+        assertEquals(1, context.lookups("comp/env/count"));
+        assertEquals(3, context.lookups("comp/env/session"));
+    }
+
+    @Test
+    public void eachClassHasItsPlan() throws OpenEJBException {
+        final InjectionPlan plan = new InjectionPlan(injections, context, null);
+        new InjectionProcessor<>(new Bean(), plan).createInstance();
+
+        final Other other = new InjectionProcessor<>(new Other(), plan).createInstance();
+        assertEquals("openejb", other.name);
+        assertNull(other.session);
+        assertEquals(2, context.lookups("comp/env/name"));
+    }
+
+    @Test
+    public void deactivated() throws OpenEJBException {
+        SystemInstance.get().setProperty(InjectionPlan.ACTIVE, "false");
+
+        final InjectionPlan plan = new InjectionPlan(injections, context, null);
+        for (int i = 0; i < 2; i++) {
+            final Bean bean = new InjectionProcessor<>(new Bean(), plan).createInstance();
+            assertEquals("openejb", bean.name);
+            assertEquals(12L, bean.timeout);
+        }
+        assertEquals(2, context.lookups("comp/env/name"));
+    }
+
+    @Test
+    public void referencesToAnotherApplicationSurviveItsRedeployment() throws Exception {
+        final ConfigurationFactory config = new ConfigurationFactory();
+        final Assembler assembler = new Assembler();
+        assembler.createProxyFactory(config.configureService(ProxyFactoryInfo.class));
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+        assembler.createContainer(config.configureService(StatelessSessionContainerInfo.class));
+        assembler.createContainer(config.configureService(StatefulSessionContainerInfo.class));
+        try {
+            final AppInfo greeter = config.configureApplication(app("greeter", new StatelessBean(Greeter.class)));
+            assembler.createApplication(greeter);
+            assembler.createApplication(config.configureApplication(app("client", new StatefulBean(Client.class))));
+
+            final Context jndi = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext();
+            assertEquals("hello", Client.class.cast(jndi.lookup("global/client/client/Client")).greet());
+
+            // a new client instance must not get the proxy of the undeployed greeter
+            assembler.destroyApplication(greeter);
+            assembler.createApplication(config.configureApplication(app("greeter", new StatelessBean(Greeter.class))));
+            assertEquals("hello", Client.class.cast(jndi.lookup("global/client/client/Client")).greet());
+        } finally {
+            OpenEJB.destroy();
+        }
+    }
+
+    private static AppModule app(final String name, final EnterpriseBean bean) {
+        final EjbJar ejbJar = new EjbJar(name);
+        ejbJar.addEnterpriseBean(bean);
+        final AppModule app = new AppModule(InjectionPlanTest.class.getClassLoader(), name);
+        app.getEjbModules().add(new EjbModule(ejbJar));
+        return app;
+    }
+
+    @Local
+    public interface Greeting {
+        String greet();
+    }
+
+    public static class Greeter implements Greeting {
+        @Override
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    public static class Client {
+        @EJB(beanName = "Greeter")
+        private Greeting greeter;
+
+        public String greet() {
+            return greeter.greet();
+        }
+    }
+
+    public static class Bean {
+        private String name;
+        private int count;
+        private long timeout;
+        private StringBuilder session;
+
+        public void setCount(final int count) {
+            this.count = count;
+        }
+    }
+
+    public static class Other {
+        private String name;
+        private StringBuilder session;
+    }
+
+    private static class CountingContext extends IvmContext {
+        private final Map<String, Integer> lookups = new HashMap<>();
+
+        @Override
+        public Object lookup(final String name) throws NamingException {
+            final Integer count = lookups.get(name);
+            lookups.put(name, count == null ? 1 : count + 1);
+            return super.lookup(name);
+        }
+
+        private int lookups(final String name) {
+            final Integer count = lookups.get(name);
+            return count == null ? 0 : count;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.assembler.classic;
+
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.config.AppModule;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.EjbModule;
+import org.apache.openejb.config.PersistenceModule;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.jee.jpa.unit.Persistence;
+import org.apache.openejb.jee.jpa.unit.PersistenceUnit;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Local;
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelDeploymentTest {
+    private Assembler assembler;
+
+    @Before
+    public void setUp() throws Exception {
+        SystemInstance.reset();
+        SystemInstance.get().setProperty(ParallelBuilder.PARALLEL, "true");
+        SystemInstance.get().setProperty(ParallelBuilder.THREADS, "4");
+
+        final ConfigurationFactory config = new ConfigurationFactory();
+        assembler = new Assembler();
+        assembler.createProxyFactory(config.configureService(ProxyFactoryInfo.class));
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+        assembler.createContainer(config.configureService(StatelessSessionContainerInfo.class));
+    }
+
+    @After
+    public void tearDown() {
+        OpenEJB.destroy();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void deployModulesInParallel() throws Exception {
+        final AppModule app = new AppModule(getClass().getClassLoader(), "parallel");
+        for (final Class<?> bean : Arrays.asList(Red.class, Green.class, Blue.class, Yellow.class)) {
+            final EjbJar ejbJar = new EjbJar(bean.getSimpleName());
+            ejbJar.addEnterpriseBean(new StatelessBean(bean));
+            app.getEjbModules().add(new EjbModule(ejbJar));
+        }
+        final AppContext context = assembler.createApplication(new ConfigurationFactory().configureApplication(app));
+
+        final List<String> ids = new ArrayList<>();
+        for (final BeanContext beanContext : context.getBeanContexts()) {
+            if (Color.class.isAssignableFrom(beanContext.getBeanClass())) {
+                ids.add(beanContext.getEjbName());
+            }
+        }
+        assertEquals(Arrays.asList("Red", "Green", "Blue", "Yellow"), ids);
+
+        final Context jndi = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext();
+        for (final String name : ids) {
+            assertEquals(name, Color.class.cast(jndi.lookup("global/parallel/" + name + "/" + name)).name());
+        }
+    }
+
+    @Test
+    public void deployPersistenceUnitsInParallel() throws Exception {
+        final AppModule app = new AppModule(getClass().getClassLoader(), "units");
+        final List<String> names = Arrays.asList("red", "green", "blue", "yellow");
+        for (final String name : names) {
+            final PersistenceUnit unit = new PersistenceUnit(name);
+            unit.setExcludeUnlistedClasses(true);
+            app.addPersistenceModule(new PersistenceModule(name, new Persistence(unit)));
+        }
+        final AppInfo appInfo = new ConfigurationFactory().configureApplication(app);
+        assertEquals(names.size(), appInfo.persistenceUnits.size());
+        assembler.createApplication(appInfo);
+
+        final Context jndi = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext();
+        final Set<EntityManagerFactory> factories = new HashSet<>();
+        for (final PersistenceUnitInfo info : appInfo.persistenceUnits) {
+            final EntityManagerFactory factory = EntityManagerFactory.class.cast(jndi.lookup("openejb/PersistenceUnit/" + info.id));
+            factory.createEntityManager().close();
+            factories.add(factory);
+        }
+        assertEquals(names.size(), factories.size());
+
+        assembler.destroyApplication(appInfo);
+        for (final PersistenceUnitInfo info : appInfo.persistenceUnits) {
+            try {
+                jndi.lookup("openejb/PersistenceUnit/" + info.id);
+                fail();
+            } catch (final NameNotFoundException e) {
+                // undeployed
+            }
+        }
+        for (final EntityManagerFactory factory : factories) {
+            assertFalse(factory.isOpen());
+        }
+    }
+
+    @Test
+    public void firstFailureInModuleOrder() {
+        try {
+            ParallelBuilder.build(Arrays.asList(0, 1, 2, 3, 4, 5), new ParallelBuilder.Build<Integer, Integer>() {
+                @Override
+                public Integer build(final Integer module) throws Exception {
+                    if (module == 2) { // fails after the 5th one
+                        TimeUnit.MILLISECONDS.sleep(200);
+                        throw new OpenEJBException("module " + module);
+                    }
+                    if (module == 5) {
+                        throw new IllegalStateException("module " + module);
+                    }
+                    return module;
+                }
+            });
+            fail();
+        } catch (final OpenEJBException e) {
+            assertEquals("module 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void discardBuiltModulesOnFailure() {
+        final Set<Integer> discarded = Collections.synchronizedSet(new HashSet<Integer>());
+        try {
+            ParallelBuilder.build(Arrays.asList(0, 1, 2, 3, 4), new ParallelBuilder.Build<Integer, Integer>() {
+                @Override
+                public Integer build(final Integer module) throws Exception {
+                    if (module == 2) {
+                        throw new OpenEJBException("module " + module);
+                    }
+                    return module;
+                }
+            }, new ParallelBuilder.Discard<Integer>() {
+                @Override
+                public void discard(final Integer result) {
+                    discarded.add(result);
+                }
+            });
+            fail();
+        } catch (final OpenEJBException e) {
+            assertEquals("module 2", e.getMessage());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 3, 4)), discarded);
+    }
+
+    @Test
+    public void keepContextClassLoader() throws Exception {
+        final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        final Thread thread = Thread.currentThread();
+        final ClassLoader old = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            final List<Thread> threads = ParallelBuilder.build(Arrays.asList(1, 2, 3), new ParallelBuilder.Build<Integer, Thread>() {
+                @Override
+                public Thread build(final Integer module) throws Exception {
+                    assertEquals(loader, Thread.currentThread().getContextClassLoader());
+                    return Thread.currentThread();
+                }
+            });
+            assertEquals(3, threads.size());
+            for (final Thread t : threads) {
+                assertNotEquals(thread, t);
+            }
+        } finally {
+            thread.setContextClassLoader(old);
+        }
+    }
+
+    @Local
+    public interface Color {
+        String name();
+    }
+
+    public static class Red implements Color {
+        @Override
+        public String name() {
+            return "Red";
+        }
+    }
+
+    public static class Green implements Color {
+        @Override
+        public String name() {
+            return "Green";
+        }
+    }
+
+    public static class Blue implements Color {
+        @Override
+        public String name() {
+            return "Blue";
+        }
+    }
+
+    public static class Yellow implements Color {
+        @Override
+        public String name() {
+            return "Yellow";
+        }
+    }
+}
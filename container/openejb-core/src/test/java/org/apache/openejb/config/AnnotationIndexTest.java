@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Archives;
+import org.apache.xbean.finder.AnnotationFinder;
+import org.apache.xbean.finder.archive.ClasspathArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+import javax.inject.Named;
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationIndexTest {
+    private static final Class<?>[] CLASSES = {Api.class, Base.class, Bean.class, Other.class};
+
+    @Before
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void indexMatchesScanning() throws Exception {
+        final File jar = Archives.jarArchive(new HashMap<String, Object>(), "index", CLASSES);
+        AnnotationIndex.write(jar);
+        assertFalse(new File(jar.getParentFile(), jar.getName() + ".tmp").exists());
+
+        final URL url = jar.toURI().toURL();
+        final AnnotationIndex index = AnnotationIndex.read(url);
+        assertNotNull(index);
+
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{url}, getClass().getClassLoader())) {
+            final AnnotationFinder scanned = new FinderFactory.OpenEJBAnnotationFinder(ClasspathArchive.archive(loader, url)).link();
+            final AnnotationFinder indexed = new FinderFactory.OpenEJBAnnotationFinder(AnnotationIndex.archive(loader, url), singletonList(index)).link();
+
+            assertFalse(AnnotationIndex.archive(loader, url).iterator().hasNext());
+            assertEquals(singletonList(Bean.class), indexed.findAnnotatedClasses(Stateless.class));
+            assertSame(scanned.findAnnotatedClasses(Stateless.class), indexed.findAnnotatedClasses(Stateless.class));
+            assertSame(scanned.findAnnotatedClasses(Singleton.class), indexed.findAnnotatedClasses(Singleton.class));
+            assertSame(scanned.findAnnotatedMethods(PostConstruct.class), indexed.findAnnotatedMethods(PostConstruct.class));
+            assertSame(scanned.findAnnotatedFields(Resource.class), indexed.findAnnotatedFields(Resource.class));
+            assertSame(scanned.findAnnotatedMethodParameters(Named.class), indexed.findAnnotatedMethodParameters(Named.class));
+            assertSame(scanned.findImplementations(Api.class), indexed.findImplementations(Api.class));
+            assertSame(scanned.findSubclasses(Base.class), indexed.findSubclasses(Base.class));
+            assertSame(scanned.getAnnotatedClassNames(), indexed.getAnnotatedClassNames());
+            assertEquals(3, indexed.findImplementations(Api.class).size());
+        }
+    }
+
+    @Test
+    public void outdatedIndexIsIgnored() throws Exception {
+        final File jar = Archives.jarArchive(new HashMap<String, Object>(), "outdated", CLASSES);
+        AnnotationIndex.write(jar);
+        assertNotNull(AnnotationIndex.read(jar.toURI().toURL()));
+
+        // same index, less classes
+        final Map<String, Object> index = new HashMap<>();
+        index.put(AnnotationIndex.LOCATION, new URL("jar:" + jar.toURI().toURL() + "!/" + AnnotationIndex.LOCATION));
+        final File repackaged = Archives.jarArchive(index, "outdated", Bean.class);
+        assertNull(AnnotationIndex.read(repackaged.toURI().toURL()));
+
+        final File folder = Archives.fileArchive(new HashMap<String, String>(), CLASSES);
+        AnnotationIndex.write(folder);
+        assertNotNull(AnnotationIndex.read(folder.toURI().toURL()));
+        assertTrue(new File(folder, Base.class.getName().replace('.', '/') + ".class").delete());
+        assertNull(AnnotationIndex.read(folder.toURI().toURL()));
+    }
+
+    @Test
+    public void deactivated() throws Exception {
+        final File jar = Archives.jarArchive(new HashMap<String, Object>(), "deactivated", CLASSES);
+        AnnotationIndex.write(jar);
+
+        SystemInstance.get().setProperty(AnnotationIndex.ACTIVE, "false");
+        assertNull(AnnotationIndex.read(jar.toURI().toURL()));
+    }
+
+    @Test
+    public void scanDescriptorDisablesTheIndex() throws Exception {
+        final Map<String, Object> entries = new HashMap<>();
+        entries.put("META-INF/custom-scan.xml", "<scan><packages><package>org.apache.openejb.config</package></packages></scan>");
+        final File jar = Archives.jarArchive(entries, "scan", CLASSES);
+        AnnotationIndex.write(jar);
+        assertNotNull(AnnotationIndex.read(jar.toURI().toURL()));
+
+        SystemInstance.get().setProperty(ScanConstants.SCAN_XML_PROPERTY, "custom-scan.xml");
+        assertNull(AnnotationIndex.read(jar.toURI().toURL()));
+    }
+
+    @Test
+    public void aggregatedArchiveUsesTheIndex() throws Exception {
+        final File folder = Archives.fileArchive(new HashMap<String, String>(), CLASSES);
+        AnnotationIndex.write(folder);
+
+        final URL url = folder.toURI().toURL();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{url}, getClass().getClassLoader())) {
+            final WebappAggregatedArchive archive = new WebappAggregatedArchive(loader, new HashMap<String, Object>(), singletonList(url));
+            assertFalse(archive.iterator().hasNext());
+            assertEquals(1, archive.getIndexes().size());
+            assertTrue(archive.getClassesMap().get(url).contains(Bean.class.getName()));
+
+            final FinderFactory.OpenEJBAnnotationFinder finder = new FinderFactory.OpenEJBAnnotationFinder(archive);
+            assertTrue(finder.foundSomething());
+            assertEquals(singletonList(Other.class), finder.findAnnotatedClasses(Singleton.class));
+        }
+    }
+
+    private static void assertSame(final Collection<?> expected, final Collection<?> actual) {
+        assertEquals(sorted(expected), sorted(actual));
+    }
+
+    private static List<String> sorted(final Collection<?> values) {
+        final List<String> list = new ArrayList<>(values.size());
+        for (final Object value : values) {
+            list.add(String.valueOf(value));
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    public interface Api {
+    }
+
+    public abstract static class Base implements Api {
+        @Resource
+        protected DataSource dataSource;
+    }
+
+    @Stateless
+    public static class Bean extends Base {
+        @PostConstruct
+        public void init() {
+            // no-op
+        }
+
+        public String hello(@Named("name") final String name, final int times) {
+            return name;
+        }
+    }
+
+    @Singleton
+    public static class Other implements Api {
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.ResourceInfo;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.sys.Resource;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.Archives;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Singleton;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class AppInfoCacheTest {
+    private final AtomicInteger deployments = new AtomicInteger();
+    private Assembler assembler;
+    private ConfigurationFactory factory;
+
+    @Before
+    public void init() throws Exception {
+        SystemInstance.reset();
+        SystemInstance.get().setProperty(AppInfoCache.ACTIVE, "true");
+        SystemInstance.get().setProperty(AppInfoCache.DIRECTORY, new File("target/AppInfoCacheTest/" + System.nanoTime()).getAbsolutePath());
+
+        assembler = new Assembler();
+        factory = new ConfigurationFactory(false, new DynamicDeployer() {
+            @Override
+            public AppModule deploy(final AppModule appModule) throws OpenEJBException {
+                deployments.incrementAndGet();
+                return appModule;
+            }
+        });
+        assembler.createTransactionManager(factory.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(factory.configureService(SecurityServiceInfo.class));
+    }
+
+    @After
+    public void reset() {
+        assembler.destroy();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void unchangedArchiveIsNotConfiguredAgain() throws Exception {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("META-INF/ejb-jar.xml", "<ejb-jar/>");
+        final File jar = Archives.jarArchive(entries, "cache", Orange.class);
+
+        final AppInfo configured = factory.configureApplication(jar);
+        assertEquals(1, deployments.get());
+
+        final AppInfo cached = factory.configureApplication(jar);
+        assertEquals(1, deployments.get());
+        assertEquals(configured.appId, cached.appId);
+        assertEquals(configured.paths, cached.paths);
+        assertEquals("Orange", cached.ejbJars.get(0).enterpriseBeans.get(0).ejbName);
+
+        // the cached tree deploys as the computed one, including the auto created singleton container
+        assembler.createApplication(cached);
+        assertNotNull(SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("Orange"));
+        assembler.destroyApplication(cached.path);
+
+        // a modified archive is configured again
+        entries.put("META-INF/ejb-jar.xml", "<ejb-jar><module-name>orange</module-name></ejb-jar>");
+        Archives.jarArchive(jar, entries, Orange.class);
+        assertEquals("orange", factory.configureApplication(jar).ejbJars.get(0).moduleName);
+        assertEquals(2, deployments.get());
+    }
+
+    @Test
+    public void redefinedResourceInvalidatesTheCache() throws Exception {
+        final ResourceInfo db = factory.configureService(new Resource("db", "DataSource"), ResourceInfo.class);
+        assembler.createResource(db);
+
+        final File jar = Archives.jarArchive(new HashMap<String, Object>(), "resource", Orange.class);
+        factory.configureApplication(jar);
+        factory.configureApplication(jar);
+        assertEquals(1, deployments.get());
+
+        // same id, other definition
+        db.properties.setProperty("MaxActive", "5");
+        factory.configureApplication(jar);
+        assertEquals(2, deployments.get());
+    }
+
+    @Singleton
+    public static class Orange {
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Archives;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveScannerTest {
+    @Before
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void parallelScanMatchesSequentialScan() throws Exception {
+        final List<URL> urls = Arrays.asList(
+            Archives.jarArchive(new HashMap<String, Object>(), "first", AnnotationIndexTest.Api.class, AnnotationIndexTest.Base.class).toURI().toURL(),
+            Archives.jarArchive(new HashMap<String, Object>(), "second", AnnotationIndexTest.Bean.class).toURI().toURL(),
+            Archives.fileArchive(new HashMap<String, String>(), AnnotationIndexTest.Other.class).toURI().toURL(),
+            new URL("http://localhost/not-a-file.jar"));
+
+        final List<AnnotationIndex> parallel = new ArchiveScanner(true, true, 4, 0).scan(urls, true);
+        final List<AnnotationIndex> sequential = new ArchiveScanner(true, false, 1, 0).scan(urls, true);
+        assertEquals(urls.size(), parallel.size());
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(parallel.get(i));
+            assertEquals(names(sequential.get(i)), names(parallel.get(i)));
+        }
+        assertEquals(singletonList(AnnotationIndexTest.Bean.class.getName()), names(parallel.get(1)));
+        assertNull(parallel.get(3));
+        assertNull(new ArchiveScanner(true, true, 4, 0).scan(urls, false).get(0));
+    }
+
+    @Test
+    public void customScanDescriptorIsNotPrescanned() throws Exception {
+        final Map<String, Object> entries = new HashMap<>();
+        entries.put("META-INF/custom-scan.xml", "<scan><packages><package>org.apache.openejb.config</package></packages></scan>");
+        final List<URL> urls = singletonList(Archives.jarArchive(entries, "scan", AnnotationIndexTest.Bean.class).toURI().toURL());
+        assertNotNull(new ArchiveScanner(true, false, 1, 0).scan(urls, true).get(0));
+
+        SystemInstance.get().setProperty(ScanConstants.SCAN_XML_PROPERTY, "custom-scan.xml");
+        assertNull(new ArchiveScanner(true, false, 1, 0).scan(urls, true).get(0));
+    }
+
+    @Test
+    public void sharedJarsAreScannedOnce() throws Exception {
+        final List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < 2; i++) { // the same library in two webapps
+            urls.add(Archives.jarArchive(new HashMap<String, Object>(), "shared", AnnotationIndexTest.Bean.class).toURI().toURL());
+        }
+
+        final ArchiveScanner scanner = new ArchiveScanner(true, false, 1, 16);
+        scanner.scan(singletonList(urls.get(0)), true);
+        final AnnotationIndex reused = scanner.scan(singletonList(urls.get(1)), true).get(0);
+        assertEquals(singletonList(AnnotationIndexTest.Bean.class.getName()), names(reused));
+
+        long scans = 0;
+        long hits = 0;
+        for (final ArchiveScanner.Statistics statistics : scanner.getStatistics()) {
+            scans += statistics.getScans();
+            hits += statistics.getCacheHits();
+            assertEquals(1, statistics.getClasses());
+        }
+        assertEquals(2, scans);
+        assertEquals(1, hits);
+
+        scanner.reset();
+        assertEquals(0, scanner.getStatistics().size());
+    }
+
+    @Test
+    public void aggregatedArchiveMergesTheScans() throws Exception {
+        final URL beans = Archives.jarArchive(new HashMap<String, Object>(), "beans", AnnotationIndexTest.Bean.class, AnnotationIndexTest.Other.class).toURI().toURL();
+        final URL api = Archives.fileArchive(new HashMap<String, String>(), AnnotationIndexTest.Api.class, AnnotationIndexTest.Base.class).toURI().toURL();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{beans, api}, getClass().getClassLoader())) {
+            final WebappAggregatedArchive archive = new WebappAggregatedArchive(loader, new HashMap<String, Object>(), Arrays.asList(beans, api));
+            assertFalse(archive.iterator().hasNext());
+            assertEquals(2, archive.getIndexes().size());
+            assertEquals(2, archive.getClassesMap().get(beans).size());
+
+            final FinderFactory.OpenEJBAnnotationFinder finder = new FinderFactory.OpenEJBAnnotationFinder(archive);
+            finder.link();
+            assertEquals(singletonList(AnnotationIndexTest.Bean.class), finder.findAnnotatedClasses(Stateless.class));
+            assertEquals(singletonList(AnnotationIndexTest.Other.class), finder.findAnnotatedClasses(Singleton.class));
+            assertEquals(3, finder.findImplementations(AnnotationIndexTest.Api.class).size());
+        }
+        assertEquals(2, ArchiveScanner.get().getStatistics().size());
+    }
+
+    @Test
+    public void upfrontScanningCanBeDisabled() throws Exception {
+        final URL beans = Archives.jarArchive(new HashMap<String, Object>(), "legacy", AnnotationIndexTest.Bean.class, AnnotationIndexTest.Other.class).toURI().toURL();
+        assertNull(new ArchiveScanner(false, true, 4, 0).scan(singletonList(beans), true).get(0));
+
+        SystemInstance.get().setProperty(ArchiveScanner.UPFRONT, "false");
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{beans}, getClass().getClassLoader())) {
+            final WebappAggregatedArchive archive = new WebappAggregatedArchive(loader, new HashMap<String, Object>(), singletonList(beans));
+            assertTrue(archive.getIndexes().isEmpty());
+            assertTrue(archive.iterator().hasNext()); // scanned by the finder as before
+
+            final FinderFactory.OpenEJBAnnotationFinder finder = new FinderFactory.OpenEJBAnnotationFinder(archive);
+            assertEquals(singletonList(AnnotationIndexTest.Bean.class), finder.findAnnotatedClasses(Stateless.class));
+        }
+        assertEquals(0, ArchiveScanner.get().getStatistics().size());
+    }
+
+    private static List<String> names(final AnnotationIndex index) {
+        final List<String> names = new ArrayList<>();
+        for (final AnnotationIndex.Type type : index.getTypes()) {
+            names.add(type.name);
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.ModuleContext;
+import org.apache.openejb.core.interceptor.Interceptor;
+import org.apache.openejb.core.interceptor.ReflectionInvocationContext;
+import org.apache.openejb.core.security.AbstractSecurityService;
+import org.apache.openejb.loader.SystemInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.interceptor.InvocationContext;
+import javax.security.auth.Subject;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * What a container call does with its {@link ThreadContext}: create it, enter it
+ * (the listener stands for the security service), store the business method and
+ * the invocation context, read them back and exit.
+ * <p/>
+ * Run it with the GC profiler, {@code gc.alloc.rate.norm} is the number of bytes
+ * allocated per call.  On JDK 8 with compressed oops it went from 352 bytes (the
+ * context, its synchronized map, the map table, one node per entry and two listener
+ * iterators) to 64 bytes (the context alone).
+ */
+@State(Scope.Benchmark)
+public class ThreadContextPerfRunner {
+
+    private BeanContext beanContext;
+    private Method method;
+    private InvocationContext invocationContext;
+    private ThreadContextListener listener;
+
+    @Setup
+    public void setup() throws Exception {
+        final ClassLoader loader = ThreadContextPerfRunner.class.getClassLoader();
+        final AppContext appContext = new AppContext("perf", SystemInstance.get(), loader, null, null, false);
+        beanContext = new BeanContext("perf", null, new ModuleContext("perf", null, "perf", appContext, null, loader),
+            Object.class, null, new HashMap<>());
+        method = Object.class.getMethod("hashCode");
+        invocationContext = new ReflectionInvocationContext(Operation.BUSINESS, Collections.<Interceptor>emptyList(), new Object(), method);
+
+        final AbstractSecurityService.SecurityContext securityContext = new AbstractSecurityService.SecurityContext(new Subject());
+        listener = new ThreadContextListener() {
+            @Override
+            public void contextEntered(final ThreadContext oldContext, final ThreadContext newContext) {
+                if (newContext.get(AbstractSecurityService.ProvidedSecurityContext.class) == null) {
+                    newContext.set(AbstractSecurityService.SecurityContext.class, securityContext);
+                }
+            }
+
+            @Override
+            public void contextExited(final ThreadContext exitedContext, final ThreadContext reenteredContext) {
+                exitedContext.get(AbstractSecurityService.SecurityContext.class);
+            }
+        };
+        ThreadContext.addThreadContextListener(listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ThreadContext.removeThreadContextListener(listener);
+    }
+
+    @Benchmark
+    public Object call() {
+        final ThreadContext callContext = new ThreadContext(beanContext, null, Operation.BUSINESS);
+        final ThreadContext oldCallContext = ThreadContext.enter(callContext);
+        try {
+            callContext.set(Method.class, method);
+            callContext.set(InvocationContext.class, invocationContext);
+            try {
+                return callContext.get(Method.class);
+            } finally {
+                callContext.remove(InvocationContext.class);
+            }
+        } finally {
+            ThreadContext.exit(oldCallContext);
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ThreadContextPerfRunner.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+            .run();
+    }
+}
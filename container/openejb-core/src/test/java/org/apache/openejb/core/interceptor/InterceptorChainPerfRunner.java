@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A business call through two interceptors, done as the containers did before
+ * (a new {@link InterceptorStack} per call) and with the {@link InterceptorChain}
+ * cached in the method context, compared with a direct call.
+ */
+@State(Scope.Benchmark)
+public class InterceptorChainPerfRunner {
+
+    private final Bean bean = new Bean();
+    private Method method;
+    private List<InterceptorData> datas;
+    private Map<String, Object> instances;
+    private InterceptorChain chain;
+
+    @Setup
+    public void setup() throws Exception {
+        method = Bean.class.getMethod("add", int.class, int.class);
+        datas = new ArrayList<>();
+        datas.add(InterceptorData.scan(Logging.class));
+        datas.add(InterceptorData.scan(Audit.class));
+        instances = new HashMap<>();
+        instances.put(Logging.class.getName(), new Logging());
+        instances.put(Audit.class.getName(), new Audit());
+        chain = new InterceptorChain(method, Operation.BUSINESS, datas);
+    }
+
+    @Benchmark
+    public Object direct() {
+        return bean.add(1, 2);
+    }
+
+    @Benchmark
+    public Object stack() throws Exception {
+        return new InterceptorStack(bean, method, Operation.BUSINESS, datas, instances).invoke(1, 2);
+    }
+
+    @Benchmark
+    public Object chain() throws Exception {
+        return chain.invoke(bean, instances, 1, 2);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InterceptorChainPerfRunner.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+            .run();
+    }
+
+    public static class Bean {
+        public int add(final int a, final int b) {
+            return a + b;
+        }
+    }
+
+    public static class Logging {
+        @AroundInvoke
+        public Object invoke(final InvocationContext context) throws Exception {
+            return context.proceed();
+        }
+    }
+
+    public static class Audit {
+        @AroundInvoke
+        public Object invoke(final InvocationContext context) throws Exception {
+            context.getContextData();
+            return context.proceed();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import junit.framework.TestCase;
+import org.apache.openejb.core.Operation;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.AroundTimeout;
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class InterceptorChainTest extends TestCase {
+
+    private static final List<String> calls = new ArrayList<>();
+
+    private Map<String, Object> instances;
+    private List<InterceptorData> datas;
+
+    @Override
+    protected void setUp() throws Exception {
+        calls.clear();
+        instances = new HashMap<>();
+        instances.put(First.class.getName(), new First());
+        instances.put(Second.class.getName(), new Second());
+        datas = Arrays.asList(InterceptorData.scan(First.class), InterceptorData.scan(Second.class));
+    }
+
+    public void testSameBehaviorAsInterceptorStack() throws Exception {
+        final Method echo = Bean.class.getMethod("echo", String.class);
+
+        final Object stack = new InterceptorStack(new Bean(), echo, Operation.BUSINESS, datas, instances).invoke("a");
+        final List<String> stackCalls = new ArrayList<>(calls);
+        calls.clear();
+
+        final InterceptorChain chain = new InterceptorChain(echo, Operation.BUSINESS, datas);
+        assertEquals(stack, chain.invoke(new Bean(), instances, "a"));
+        assertEquals(stackCalls, calls);
+        assertEquals("a-first-second:first", stack);
+
+        // the chain is reusable
+        calls.clear();
+        assertEquals("b-first-second:first", chain.invoke(new Bean(), instances, "b"));
+        assertEquals(stackCalls, calls);
+    }
+
+    public void testExceptionsAreNotWrapped() throws Exception {
+        final InterceptorChain chain = new InterceptorChain(Bean.class.getMethod("fail"), Operation.BUSINESS, datas);
+        try {
+            chain.invoke(new Bean(), instances);
+            fail();
+        } catch (final BeanException e) {
+            assertEquals(Arrays.asList("first", "second", "fail"), calls);
+        }
+    }
+
+    public void testTimeoutWithoutTimerParameter() throws Exception {
+        final InterceptorChain chain = new InterceptorChain(Bean.class.getMethod("timeout"), Operation.TIMEOUT, datas);
+        final Object timer = new Object();
+        assertNull(chain.invoke(new Bean(), instances, timer));
+        assertEquals(Arrays.asList("first-timeout", "timeout"), calls);
+    }
+
+    public void testMissingInterceptorInstance() throws Exception {
+        final InterceptorChain chain = new InterceptorChain(Bean.class.getMethod("echo", String.class), Operation.BUSINESS, datas);
+        instances.remove(Second.class.getName());
+        try {
+            chain.invoke(new Bean(), instances, "a");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertEquals("No interceptor of type " + Second.class.getName(), e.getMessage());
+        }
+    }
+
+    public static class First {
+        @AroundInvoke
+        private Object invoke(final InvocationContext context) throws Exception {
+            calls.add("first");
+            context.getContextData().put("by", "first");
+            context.setParameters(context.getParameters().length == 0 ? context.getParameters() : new Object[]{context.getParameters()[0] + "-first"});
+            return context.proceed();
+        }
+
+        @AroundTimeout
+        protected Object timeout(final InvocationContext context) throws Exception {
+            calls.add("first-timeout");
+            assertNotNull(context.getTimer());
+            return context.proceed();
+        }
+    }
+
+    public static class Second {
+        @AroundInvoke
+        Object invoke(final InvocationContext context) throws Exception {
+            calls.add("second");
+            if (context.getParameters().length == 1) {
+                context.setParameters(new Object[]{context.getParameters()[0] + "-second"});
+            }
+            final Object result = context.proceed();
+            return result == null ? null : result + ":" + context.getContextData().get("by");
+        }
+    }
+
+    public static class Bean {
+        public String echo(final String value) {
+            calls.add("echo");
+            return value;
+        }
+
+        public void fail() throws BeanException {
+            calls.add("fail");
+            throw new BeanException();
+        }
+
+        public void timeout() {
+            calls.add("timeout");
+        }
+    }
+
+    public static class BeanException extends Exception {
+    }
+}
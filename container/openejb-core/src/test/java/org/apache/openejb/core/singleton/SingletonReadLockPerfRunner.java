@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Throughput of a {@code @Lock(READ)} call as done by the singleton container
+ * (timed tryLock, short business method, unlock) for 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+public class SingletonReadLockPerfRunner {
+
+    @Param({"REENTRANT", "STRIPED"})
+    public String strategy;
+
+    private ReadWriteLock lock;
+
+    @Setup
+    public void setup() {
+        lock = SingletonInstanceManager.LockStrategy.valueOf(strategy) == SingletonInstanceManager.LockStrategy.STRIPED ?
+            new StripedReadWriteLock() : new ReentrantReadWriteLock();
+    }
+
+    @Benchmark
+    public void read() throws InterruptedException {
+        final Lock read = lock.readLock();
+        if (!read.tryLock(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("timeout");
+        }
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        for (final int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(SingletonReadLockPerfRunner.class.getSimpleName())
+                    .forks(0)
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(threads)
+                    .build())
+                .run();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+public class StripedReadWriteLockTest extends TestCase {
+
+    public void testReadersDontBlockEachOther() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(8);
+        final int threads = 8;
+        final CountDownLatch locked = new CountDownLatch(threads);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    lock.readLock().lock();
+                    try {
+                        locked.countDown();
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(locked.await(1, TimeUnit.MINUTES));
+
+        assertFalse(lock.writeLock().tryLock());
+        assertFalse(lock.writeLock().tryLock(50, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(lock.writeLock().tryLock(1, TimeUnit.MINUTES));
+        lock.writeLock().unlock();
+    }
+
+    public void testWriterExcludesReaders() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        lock.writeLock().lock();
+
+        final AtomicBoolean acquired = new AtomicBoolean(true);
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(lock.readLock().tryLock(50, TimeUnit.MILLISECONDS));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        reader.start();
+        reader.join();
+        assertFalse(acquired.get());
+
+        lock.writeLock().unlock();
+        assertTrue(lock.readLock().tryLock());
+        lock.readLock().unlock();
+    }
+
+    public void testFailedWriteReleasesStripes() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                lock.readLock().lock();
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+        reader.start();
+        assertTrue(locked.await(1, TimeUnit.MINUTES));
+        assertFalse(lock.writeLock().tryLock(10, TimeUnit.MILLISECONDS));
+
+        // the stripes taken before the timeout were given back
+        final AtomicBoolean read = new AtomicBoolean();
+        final Thread other = new Thread() {
+            @Override
+            public void run() {
+                read.set(lock.readLock().tryLock());
+                if (read.get()) {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertTrue(read.get());
+
+        release.countDown();
+        reader.join();
+    }
+
+    public void testReentrancyAndDowngrade() {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        final Lock read = lock.readLock();
+        final Lock write = lock.writeLock();
+
+        read.lock();
+        read.lock();
+        read.unlock();
+        read.unlock();
+
+        write.lock();
+        write.lock();
+        read.lock();
+        write.unlock();
+        write.unlock();
+        read.unlock();
+
+        assertTrue(write.tryLock());
+        write.unlock();
+    }
+}
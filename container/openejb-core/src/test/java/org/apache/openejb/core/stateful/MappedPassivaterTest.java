@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.core.EnvProps;
+import org.apache.openejb.loader.SystemInstance;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class MappedPassivaterTest extends TestCase {
+
+    public void testPassivateActivate() throws Exception {
+        for (final boolean compress : new boolean[]{false, true}) {
+            final MappedPassivater passivater = passivater(1024 * 1024, compress);
+
+            final Map<Object, Object> beans = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                beans.put("bean" + i, new int[]{i, i * 2, i * 3});
+            }
+            passivater.passivate(beans);
+            assertEquals(100, passivater.size());
+
+            for (int i = 0; i < 100; i++) {
+                assertTrue(Arrays.equals(new int[]{i, i * 2, i * 3}, (int[]) passivater.activate("bean" + i)));
+            }
+            assertNull(passivater.activate("bean0"));
+            assertEquals(0, passivater.size());
+            passivater.close();
+        }
+    }
+
+    public void testCompaction() throws Exception {
+        final MappedPassivater passivater = passivater(4096, false);
+
+        final Map<Object, Object> beans = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            beans.put(i, new byte[100]);
+        }
+        passivater.passivate(beans);
+        final int segments = passivater.getSegmentCount();
+        assertTrue(segments > 2);
+
+        // activate most of them, a few stay in each segment
+        for (int i = 0; i < 200; i++) {
+            if (i % 10 != 0) {
+                assertNotNull(passivater.activate(i));
+            }
+        }
+        passivater.compact();
+
+        assertTrue(passivater.getSegmentCount() < segments);
+        assertEquals(20, passivater.size());
+        for (int i = 0; i < 200; i += 10) {
+            assertEquals(100, ((byte[]) passivater.activate(i)).length);
+        }
+        passivater.close();
+    }
+
+    public void testSegmentFilesAreDeleted() throws Exception {
+        final String path = "target/MappedPassivaterTest-" + System.nanoTime();
+        final MappedPassivater passivater = passivater(4096, false, path);
+        final File directory = SystemInstance.get().getBase().getDirectory(path);
+
+        final Map<Object, Object> beans = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            beans.put(i, new byte[100]);
+        }
+        passivater.passivate(beans);
+        final Set<String> created = segmentFiles(directory);
+        assertEquals(passivater.getSegmentCount(), created.size());
+
+        // compaction deletes the segments it emptied
+        for (int i = 0; i < 200; i++) {
+            if (i % 10 != 0) {
+                passivater.activate(i);
+            }
+        }
+        passivater.compact();
+        final Set<String> compacted = segmentFiles(directory);
+        assertEquals(passivater.getSegmentCount(), compacted.size());
+        assertFalse(compacted.containsAll(created));
+
+        passivater.close();
+        assertTrue(segmentFiles(directory).isEmpty());
+        assertEquals(0, passivater.size());
+    }
+
+    private static Set<String> segmentFiles(final File directory) {
+        final String[] files = directory.list();
+        return files == null ? new HashSet<String>() : new HashSet<>(Arrays.asList(files));
+    }
+
+    private MappedPassivater passivater(final int segmentSize, final boolean compress) throws Exception {
+        return passivater(segmentSize, compress, null);
+    }
+
+    private MappedPassivater passivater(final int segmentSize, final boolean compress, final String directory) throws Exception {
+        final Properties properties = new Properties();
+        if (directory != null) {
+            properties.setProperty(EnvProps.IM_PASSIVATOR_PATH_PREFIX, directory);
+        }
+        properties.setProperty(MappedPassivater.SEGMENT_SIZE, Integer.toString(segmentSize));
+        properties.setProperty(MappedPassivater.COMPRESS, Boolean.toString(compress));
+
+        final MappedPassivater passivater = new MappedPassivater();
+        passivater.init(properties);
+        return passivater;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ShardedCacheTest extends TestCase {
+
+    public void testPassivationAndActivation() throws Exception {
+        final MemoryPassivater passivater = new MemoryPassivater();
+        final Listener listener = new Listener();
+        final ShardedCache<String, String> cache = new ShardedCache<>(listener, passivater, 4, 2, new Duration(-1, TimeUnit.MILLISECONDS));
+        cache.setShards(2);
+        cache.setFrequency("0");
+        cache.init();
+        try {
+            for (int i = 0; i < 20; i++) {
+                cache.add("key" + i, "value" + i);
+                cache.checkIn("key" + i);
+            }
+
+            assertTrue(cache.getStats().getSize() <= 4);
+            assertEquals(20 - cache.getStats().getSize(), passivater.store.size());
+            assertEquals(passivater.store.size(), listener.stored.size());
+            assertTrue(passivater.calls < passivater.store.size()); // batched
+
+            // the oldest entries were passivated
+            assertEquals("value0", cache.checkOut("key0", true));
+            assertEquals(1, cache.getStats().getActivations());
+            assertEquals(1, listener.loaded.size());
+            cache.checkIn("key0");
+
+            // the most recently used one is still in memory
+            assertEquals("value0", cache.checkOut("key0", true));
+            assertEquals(1, cache.getStats().getHits());
+            assertEquals("value0", cache.remove("key0"));
+
+            assertNull(cache.checkOut("unknown", true));
+            assertEquals(1, cache.getStats().getMisses());
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    public void testTimeOut() throws Exception {
+        final Listener listener = new Listener();
+        final ShardedCache<String, String> cache = new ShardedCache<>(listener, new MemoryPassivater(), 100, 10, new Duration(0, TimeUnit.MILLISECONDS));
+        cache.setFrequency("1 hour");
+        cache.init();
+        try {
+            cache.add("a", "A");
+            cache.checkIn("a");
+            cache.add("b", "B");
+
+            cache.processLRU();
+
+            assertEquals(1, listener.timedOut.size());
+            assertEquals("A", listener.timedOut.get(0));
+            assertNull(cache.checkOut("a", false));
+            assertEquals("B", cache.checkOut("b", false)); // checked out entries don't time out
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    public void testDestroyStopsItsOwnExecutor() throws Exception {
+        final ShardedCache<String, String> cache = new ShardedCache<>(new Listener(), new MemoryPassivater(), 10, 2, new Duration(-1, TimeUnit.MILLISECONDS));
+        cache.init();
+        final ScheduledExecutorService executor = cache.getScheduledExecutorService();
+        cache.destroy();
+
+        assertTrue(executor.isShutdown());
+        assertNull(cache.getScheduledExecutorService());
+    }
+
+    public void testDestroyKeepsAProvidedExecutor() throws Exception {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final ShardedCache<String, String> cache = new ShardedCache<>(new Listener(), new MemoryPassivater(), 10, 2, new Duration(-1, TimeUnit.MILLISECONDS));
+            cache.setScheduledExecutorService(executor);
+            cache.init();
+            cache.destroy();
+
+            assertFalse(executor.isShutdown());
+            assertSame(executor, cache.getScheduledExecutorService());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final MemoryPassivater passivater = new MemoryPassivater();
+        final ShardedCache<String, String> cache = new ShardedCache<>(new Listener(), passivater, 64, 8, new Duration(-1, TimeUnit.MILLISECONDS));
+        cache.setShards(8);
+        cache.setPassivationThreads(4);
+        cache.setFrequency("10 milliseconds");
+        cache.init();
+        try {
+            final int threads = 8;
+            final AtomicReference<Throwable> error = new AtomicReference<>();
+            final CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < 500; i++) {
+                                final String key = thread + "-" + i;
+                                cache.add(key, key);
+                                cache.checkIn(key);
+                            }
+                            for (int round = 0; round < 3; round++) {
+                                for (int i = 0; i < 500; i++) {
+                                    final String key = thread + "-" + i;
+                                    assertEquals(key, cache.checkOut(key, true));
+                                    cache.checkIn(key);
+                                }
+                            }
+                        } catch (final Throwable e) {
+                            error.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+            assertTrue(done.await(1, TimeUnit.MINUTES));
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            assertTrue(cache.getStats().getPassivations() > 0);
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    private static class Listener implements Cache.CacheListener<String> {
+        private final List<String> loaded = new ArrayList<>();
+        private final List<String> stored = new ArrayList<>();
+        private final List<String> timedOut = new ArrayList<>();
+
+        @Override
+        public synchronized void afterLoad(final String value) {
+            loaded.add(value);
+        }
+
+        @Override
+        public synchronized void beforeStore(final String value) {
+            stored.add(value);
+        }
+
+        @Override
+        public synchronized void timedOut(final String value) {
+            timedOut.add(value);
+        }
+    }
+
+    private static class MemoryPassivater implements PassivationStrategy {
+        private final Map<Object, Object> store = new ConcurrentHashMap<>();
+        private volatile int calls;
+
+        @Override
+        public void init(final Properties props) {
+            // no-op
+        }
+
+        @Override
+        public synchronized void passivate(final Map stateTable) {
+            calls++;
+            store.putAll(stateTable);
+        }
+
+        @Override
+        public Object activate(final Object primaryKey) {
+            return store.remove(primaryKey);
+        }
+    }
+}
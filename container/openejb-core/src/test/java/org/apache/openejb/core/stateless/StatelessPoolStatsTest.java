@@ -139,6 +139,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributes.add(new MBeanAttributeInfo("Replaced", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Replaced.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Replaced.LatestTime", "long", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("Strategy", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("StrictPooling", "boolean", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("SweepInterval", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Sweeps", "long", "", true, false, false));
@@ -174,6 +175,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributesValue.put("SweepInterval", (long) 10);
         // expectedAttributesValue.put("Sweeps", (long) 1);
         expectedAttributesValue.put("StrictPooling", true);
+        expectedAttributesValue.put("Strategy", "LOCKING");
 
         final List<MBeanAttributeInfo> actualAttributes = new ArrayList<>();
         final Map<String, Object> actualAttributesValue = new TreeMap<>();
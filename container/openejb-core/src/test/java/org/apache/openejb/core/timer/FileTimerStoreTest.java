@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.EjbModule;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import java.io.File;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class FileTimerStoreTest {
+    private static final File DIRECTORY = new File("target/FileTimerStoreTest/" + System.nanoTime());
+
+    @EJB
+    private Scheduler scheduler;
+
+    @Configuration
+    public Properties configuration() {
+        final Properties properties = new Properties();
+        properties.setProperty(FileTimerStore.DIRECTORY, DIRECTORY.getAbsolutePath());
+        return properties;
+    }
+
+    @Module
+    public EjbModule module() {
+        final EjbModule module = new EjbModule(new EjbJar().enterpriseBean(new SingletonBean(Scheduler.class).localBean()));
+        module.getProperties().setProperty(Assembler.TIMER_STORE_CLASS, FileTimerStore.class.getName());
+        return module;
+    }
+
+    @Test
+    public void persistentTimersSurviveARestart() throws Exception {
+        final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("Scheduler");
+        final EjbTimerServiceImpl timerService = EjbTimerServiceImpl.class.cast(beanContext.getEjbTimerService());
+        assertTrue(FileTimerStore.class.isInstance(timerService.getTimerStore()));
+
+        final Date expiration = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        scheduler.create("durable", expiration, true);
+        scheduler.create("memory only", expiration, false);
+        scheduler.create("cancelled", expiration, true).cancel();
+
+        // restart: reopen the journal and reload the timers with a new store
+        TimerJournal.close(DIRECTORY);
+        final FileTimerStore store = new FileTimerStore(timerService.getTransactionManager());
+        final Collection<TimerData> timers = store.loadTimers(timerService, "Scheduler");
+        assertEquals(1, timers.size());
+
+        final TimerData timer = timers.iterator().next();
+        assertEquals("durable", timer.getInfo());
+        assertEquals(expiration, SingleActionTimerData.class.cast(timer).getExpiration());
+        assertEquals(beanContext.getEjbTimeout(), timer.getTimeoutMethod());
+
+        TimerJournal.close(DIRECTORY);
+    }
+
+    @Singleton
+    public static class Scheduler {
+        @Resource
+        private TimerService timerService;
+
+        public Timer create(final String info, final Date expiration, final boolean persistent) {
+            return timerService.createSingleActionTimer(expiration, new TimerConfig(info, persistent));
+        }
+
+        @Timeout
+        public void timeout() {
+            // no-op
+        }
+    }
+}
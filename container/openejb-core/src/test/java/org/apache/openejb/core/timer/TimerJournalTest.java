@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.loader.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimerJournalTest {
+    private File directory;
+
+    @Before
+    public void mkdir() {
+        directory = new File("target/TimerJournalTest/" + System.nanoTime());
+    }
+
+    @After
+    public void delete() throws IOException {
+        TimerJournal.close(directory);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void recover() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 3);
+        for (int i = 0; i < 10; i++) {
+            journal.add(i % 2 == 0 ? "even" : "odd", journal.nextId(), new byte[]{(byte) i});
+        }
+        journal.remove("even", 1);
+        journal.remove("odd", 2);
+        journal.remove("odd", 4);
+        TimerJournal.close(directory);
+
+        final TimerJournal reloaded = TimerJournal.open(directory, false, 3);
+        assertEquals(7, reloaded.size());
+        assertEquals(new HashSet<>(Arrays.asList(3L, 5L, 7L, 9L)), ids(reloaded.getTimers("even")));
+        assertEquals(new HashSet<>(Arrays.asList(6L, 8L, 10L)), ids(reloaded.getTimers("odd")));
+        assertEquals(11, reloaded.nextId()); // ids are not reused
+        for (final TimerJournal.Entry entry : reloaded.getTimers("odd")) {
+            assertEquals(entry.id - 1, entry.data[0]);
+        }
+    }
+
+    @Test
+    public void snapshotsDontLoseEntries() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 2);
+        for (int i = 0; i < 101; i++) {
+            journal.add("app", journal.nextId(), new byte[0]);
+        }
+        TimerJournal.close(directory);
+        assertEquals(101, TimerJournal.open(directory, false, 2).size());
+    }
+
+    @Test
+    public void compactedOnRestart() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 100);
+        for (int i = 0; i < 10; i++) {
+            journal.add("app", journal.nextId(), new byte[0]);
+        }
+        TimerJournal.close(directory);
+        TimerJournal.open(directory, false, 100);
+        TimerJournal.close(directory);
+
+        final String[] files = directory.list();
+        Arrays.sort(files);
+        assertEquals(Arrays.asList("journal-2.log", "snapshot-2.dat"), Arrays.asList(files));
+        assertEquals(10, TimerJournal.open(directory, false, 100).size());
+    }
+
+    @Test
+    public void idsOfCompactedTimersAreNotReused() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 100);
+        for (int i = 0; i < 3; i++) {
+            journal.add("app", journal.nextId(), new byte[0]);
+        }
+        journal.remove("app", 3);
+        TimerJournal.close(directory);
+        TimerJournal.open(directory, false, 100); // compacts, timer 3 only exists in the snapshot header
+        TimerJournal.close(directory);
+
+        final TimerJournal reloaded = TimerJournal.open(directory, false, 100);
+        assertEquals(2, reloaded.size());
+        assertEquals(4, reloaded.nextId());
+    }
+
+    @Test
+    public void closeAllRecoversFromDisk() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 100);
+        journal.add("app", journal.nextId(), new byte[0]);
+        TimerJournal.closeAll();
+
+        final TimerJournal reloaded = TimerJournal.open(directory, false, 100);
+        assertNotSame(journal, reloaded);
+        assertEquals(1, reloaded.size());
+    }
+
+    @Test
+    public void ignoreTornWrite() throws Exception {
+        final TimerJournal journal = TimerJournal.open(directory, false, 100);
+        journal.add("app", journal.nextId(), new byte[]{1, 2, 3});
+        journal.add("app", journal.nextId(), new byte[]{4, 5, 6});
+        TimerJournal.close(directory);
+
+        final File log = new File(directory, "journal-1.log");
+        assertTrue(log.isFile());
+        try (final FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(new byte[]{0, 0, 0, 42, 1, 2}); // a frame header without its payload
+        }
+
+        assertEquals(2, TimerJournal.open(directory, false, 100).size());
+    }
+
+    private static Set<Long> ids(final Collection<TimerJournal.Entry> entries) {
+        final Set<Long> ids = new HashSet<>();
+        for (final TimerJournal.Entry entry : entries) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.DeploymentsResolver;
+import org.apache.openejb.core.LocalInitialContextFactory;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules {@code timers} non persistent single action timers expiring over {@code window} ms and
+ * waits until all of them fired, once with {@code openejb.timers.wheel=true} (the timers go through
+ * {@code EjbTimerServiceImpl#scheduleOnWheel}) and once with the default Quartz triggers.
+ * The {@link Expirations} counters report the timers scheduled and fired and the total lateness
+ * in ms (divide it by {@code fired} to get the mean lateness), the GC profiler the allocations.
+ * <p/>
+ * With the default 1M timers the Quartz run takes minutes, use {@code -p timers=200000} to shorten it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimerWheelPerfRunner {
+
+    @Param({"wheel", "quartz"})
+    public String scheduler;
+
+    @Param({"1000000"})
+    public int timers;
+
+    @Param({"10000"})
+    public long window;
+
+    private Expiring expiring;
+
+    @Setup
+    public void setup() throws Exception {
+        final Properties initProps = new Properties();
+        initProps.put(DeploymentsResolver.DEPLOYMENTS_CLASSPATH_PROPERTY, "false");
+        initProps.put(EjbTimerServiceImpl.OPENEJB_TIMERS_WHEEL, Boolean.toString("wheel".equals(scheduler)));
+        OpenEJB.init(initProps);
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new SingletonBean(Expiring.class).localBean());
+        SystemInstance.get().getComponent(Assembler.class).createApplication(new ConfigurationFactory().configureApplication(ejbJar));
+
+        final Properties props = new Properties();
+        props.put(Context.INITIAL_CONTEXT_FACTORY, LocalInitialContextFactory.class.getName());
+        expiring = Expiring.class.cast(new InitialContext(props).lookup("ExpiringLocalBean"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        OpenEJB.destroy();
+    }
+
+    @Benchmark
+    public long scheduleAndExpire(final Expirations expirations) throws InterruptedException {
+        Expiring.fired = new CountDownLatch(timers);
+        Expiring.lateness.set(0);
+
+        expiring.schedule(timers, window);
+        if (!Expiring.fired.await(window + TimeUnit.MINUTES.toMillis(30), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(Expiring.fired.getCount() + " timers didn't fire");
+        }
+
+        expirations.scheduled += timers;
+        expirations.fired += timers - Expiring.fired.getCount();
+        expirations.latenessMillis += Expiring.lateness.get();
+        return Expiring.lateness.get();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TimerWheelPerfRunner.class.getSimpleName())
+                .forks(0)
+                .warmupIterations(1)
+                .measurementIterations(3)
+                .threads(1)
+                .addProfiler(GCProfiler.class)
+                .build())
+            .run();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Expirations {
+
+        public long scheduled;
+        public long fired;
+        public long latenessMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            scheduled = 0;
+            fired = 0;
+            latenessMillis = 0;
+        }
+    }
+
+    @Singleton
+    @ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public static class Expiring {
+
+        private static volatile CountDownLatch fired;
+        private static final AtomicLong lateness = new AtomicLong();
+
+        @Resource
+        private TimerService timerService;
+
+        public void schedule(final int count, final long window) {
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                final long delay = window * i / count;
+                timerService.createSingleActionTimer(delay, new TimerConfig(start + delay, false));
+            }
+        }
+
+        @Timeout
+        public void timeout(final Timer timer) {
+            lateness.addAndGet(Math.max(0, System.currentTimeMillis() - (Long) timer.getInfo()));
+            fired.countDown();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.jee.EnterpriseBean;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.quartz.impl.matchers.GroupMatcher;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class TimerWheelSchedulingTest {
+
+    @EJB
+    private Scheduled scheduled;
+
+    @Configuration
+    public Properties configuration() {
+        final Properties properties = new Properties();
+        properties.setProperty(EjbTimerServiceImpl.OPENEJB_TIMERS_WHEEL, "true");
+        return properties;
+    }
+
+    @Module
+    public EnterpriseBean bean() {
+        return new SingletonBean(Scheduled.class).localBean();
+    }
+
+    @Test
+    public void nonPersistentTimersRunOnTheWheel() throws Exception {
+        scheduled.single();
+        final Timer interval = scheduled.interval();
+        final Timer persistent = scheduled.persistent();
+
+        assertTrue(Scheduled.SINGLE.await(1, TimeUnit.MINUTES));
+        assertTrue(Scheduled.INTERVAL.await(1, TimeUnit.MINUTES));
+        assertTrue(Scheduled.SCHEDULE.await(1, TimeUnit.MINUTES));
+
+        // the interval timer is rescheduled until cancelled, the single action one is done
+        assertNotNull(interval.getNextTimeout());
+        interval.cancel();
+
+        final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("Scheduled");
+        final EjbTimerServiceImpl timerService = EjbTimerServiceImpl.class.cast(beanContext.getEjbTimerService());
+        final TimerWheel wheel = SystemInstance.get().getComponent(TimerWheel.class);
+        assertNotNull(wheel);
+        assertEquals(1, wheel.size()); // the @Schedule one, the single action timer expired
+
+        // only the persistent timer went to quartz
+        assertEquals(1, timerService.getScheduler().getTriggerKeys(GroupMatcher.triggerGroupEquals(TimerData.OPEN_EJB_TIMEOUT_TRIGGER_GROUP_NAME)).size());
+        persistent.cancel();
+    }
+
+    @Singleton
+    public static class Scheduled {
+        private static final CountDownLatch SINGLE = new CountDownLatch(1);
+        private static final CountDownLatch INTERVAL = new CountDownLatch(3);
+        private static final CountDownLatch SCHEDULE = new CountDownLatch(1);
+
+        @Resource
+        private TimerService timerService;
+
+        public Timer single() {
+            return timerService.createSingleActionTimer(10, new TimerConfig("single", false));
+        }
+
+        public Timer interval() {
+            return timerService.createIntervalTimer(10, 20, new TimerConfig("interval", false));
+        }
+
+        public Timer persistent() {
+            return timerService.createSingleActionTimer(TimeUnit.HOURS.toMillis(1), new TimerConfig("persistent", true));
+        }
+
+        @Timeout
+        public void timeout(final Timer timer) {
+            if ("single".equals(timer.getInfo())) {
+                SINGLE.countDown();
+            } else if ("interval".equals(timer.getInfo())) {
+                INTERVAL.countDown();
+            }
+        }
+
+        @Schedule(second = "*", minute = "*", hour = "*", persistent = false)
+        public void everySecond() {
+            SCHEDULE.countDown();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+    private ExecutorService executor;
+    private TimerWheel wheel;
+
+    @Before
+    public void start() {
+        executor = Executors.newSingleThreadExecutor();
+        // 8 buckets of 5ms: anything later than 40ms needs several rounds
+        wheel = new TimerWheel(5, 8, executor);
+    }
+
+    @After
+    public void stop() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void expiresInOrder() throws Exception {
+        final List<Integer> fired = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        final long now = System.currentTimeMillis();
+        for (final int delay : new int[]{150, 20, 90}) {
+            wheel.schedule(now + delay, new Runnable() {
+                @Override
+                public void run() {
+                    assertTrue(System.currentTimeMillis() >= now + delay);
+                    fired.add(delay);
+                    latch.countDown();
+                }
+            });
+        }
+        assertEquals(3, wheel.size());
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        assertEquals(20, fired.get(0).intValue());
+        assertEquals(90, fired.get(1).intValue());
+        assertEquals(150, fired.get(2).intValue());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void pastTimeExpiresOnNextTick() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(System.currentTimeMillis() - 1000, new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch fired = new CountDownLatch(1);
+        final long now = System.currentTimeMillis();
+        final TimerWheel.Timeout timeout = wheel.schedule(now + 50, new Runnable() {
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        });
+        wheel.schedule(now + 100, new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        });
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        assertEquals(1, wheel.size());
+
+        assertTrue(fired.await(1, TimeUnit.MINUTES));
+        assertEquals(1, cancelled.getCount());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        int previous = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            final int index = LatencyHistogram.index(micros);
+            assertTrue(index == previous || index == previous + 1);
+            previous = index;
+
+            final long value = LatencyHistogram.value(index);
+            assertTrue(Math.abs(value - micros) <= Math.max(1, micros / 16));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram(10000);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1., snapshot.getMin(), 0.);
+        assertEquals(1000., snapshot.getMax(), 0.);
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertEquals(500., snapshot.getPercentile(50), 500 * 0.07);
+        assertEquals(990., snapshot.getPercentile(99), 990 * 0.07);
+        assertEquals(999., snapshot.getPercentile(99.9), 999 * 0.07);
+        assertEquals(1000, snapshot.getSortedValues().length);
+    }
+
+    @Test
+    public void slidingWindow() {
+        final LatencyHistogram histogram = new LatencyHistogram(300);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(TimeUnit.SECONDS.toNanos(1));
+        }
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertTrue(snapshot.getCount() >= 300 && snapshot.getCount() <= 400);
+        assertEquals(1., snapshot.getMax(), 0.);
+    }
+
+    @Test
+    public void reset() {
+        final LatencyHistogram histogram = new LatencyHistogram(100, 1);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(TimeUnit.SECONDS.toNanos(1));
+        }
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(2., histogram.snapshot().getMax(), 0.);
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(1000000);
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(threads * 10000, histogram.snapshot().getCount());
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.openejb.persistence;
 
+import org.apache.openejb.assembler.classic.ReloadableEntityManagerFactory;
 import org.apache.openejb.jee.jpa.unit.Persistence;
 import org.apache.openejb.jee.jpa.unit.PersistenceUnit;
 import org.apache.openejb.junit.ApplicationComposer;
@@ -28,7 +29,9 @@ import org.junit.runner.RunWith;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -82,4 +85,23 @@ public class JtaQueryTest {
             // assertFalse(EntityManager.class.cast(Reflections.get(query, "_em")).isOpen());
         }
     }
+
+    @Test
+    public void firstExecutionReusesTheCreatedQuery() {
+        final QueryStatistics statistics = ReloadableEntityManagerFactory.class.cast(wrapped.getEntityManagerFactory()).getQueryStatistics();
+        statistics.reset();
+
+        final Query query = wrapped.createNativeQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+        query.setMaxResults(5);
+        query.setMaxResults(1);
+        assertEquals(1, query.getResultList().size());
+        assertEquals(1, statistics.getHits());
+        assertEquals(0, statistics.getMisses());
+
+        // then recreated with the last value of each setter
+        assertEquals(1, query.getResultList().size());
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, Map.class.cast(Reflections.get(query, "appliedOperations")).size());
+    }
 }
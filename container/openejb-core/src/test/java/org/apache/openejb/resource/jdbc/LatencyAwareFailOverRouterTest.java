@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.resource.jdbc.router.FailOverRouter;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.testng.PropertiesBuilder;
+import org.apache.xbean.finder.AnnotationFinder;
+import org.apache.xbean.finder.IAnnotationFinder;
+import org.apache.xbean.finder.archive.ClassesArchive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.openejb.resource.jdbc.FailOverRouters.datasource;
+import static org.apache.openejb.resource.jdbc.FailOverRouters.url;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class LatencyAwareFailOverRouterTest {
+    private static volatile boolean failing;
+
+    @Resource(name = "routedDs")
+    private DataSource failover;
+
+    @Resource(name = "router")
+    private FailOverRouter router;
+
+    @Test
+    public void test() throws Exception {
+        // slow fo1 only gets a small share of the calls
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            final String url = url(failover.getConnection());
+            final Integer count = counts.get(url);
+            counts.put(url, count == null ? 1 : count + 1);
+        }
+        final Integer slow = counts.get("jdbc:hsqldb:mem:lat1");
+        assertTrue(counts.toString(), slow == null || slow < 40);
+
+        try (final Connection connection = failover.getConnection();
+             final Statement statement = connection.createStatement();
+             final ResultSet rs = statement.executeQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS")) {
+            assertTrue(rs.next());
+            assertSame(connection, statement.getConnection());
+        }
+        long statements = 0;
+        for (final String name : new String[]{"lat1", "lat2", "lat3"}) {
+            statements += (Long) LocalMBeanServer.get().getAttribute(member(name), "statements");
+        }
+        assertEquals(1, statements);
+
+        // failing fo3 is excluded without breaking the callers
+        failing = true;
+        for (int i = 0; i < 1000 && !(Boolean) LocalMBeanServer.get().getAttribute(member("lat3"), "down"); i++) {
+            assertFalse("jdbc:hsqldb:mem:lat3".equals(url(failover.getConnection())));
+        }
+        assertTrue((Boolean) LocalMBeanServer.get().getAttribute(member("lat3"), "down"));
+
+        // and checked in background until it is back
+        failing = false;
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((Boolean) LocalMBeanServer.get().getAttribute(member("lat3"), "down") && System.nanoTime() < end) {
+            Thread.sleep(50);
+        }
+        assertFalse((Boolean) LocalMBeanServer.get().getAttribute(member("lat3"), "down"));
+        assertTrue((Long) LocalMBeanServer.get().getAttribute(member("lat3"), "probes") > 0);
+
+        // a datasource removed from the router doesn't keep its MBean
+        final List<FailOverRouter.DataSourceHolder> holders = new ArrayList<>(router.getDataSources());
+        router.updateDataSources(holders.subList(0, 2));
+        assertTrue(LocalMBeanServer.get().isRegistered(member("lat1")));
+        assertFalse(LocalMBeanServer.get().isRegistered(member("lat3")));
+    }
+
+    private static ObjectName member(final String name) throws Exception {
+        return new ObjectName("openejb.management:ObjectType=FailOverRouterMember,DataSource=" + name);
+    }
+
+    @Configuration
+    public Properties configuration() {
+        return datasource(datasource(datasource(new PropertiesBuilder(), "lat1"), "lat2"), "lat3")
+            .property("lat1.TomEEProxyHandler", SlowHandler.class.getName())
+            .property("lat1.JtaManaged", "false")
+            .property("lat3.TomEEProxyHandler", FailingHandler.class.getName())
+            .property("lat3.JtaManaged", "false")
+
+            .property("router", "new://Resource?class-name=" + FailOverRouter.class.getName())
+            .property("router.datasourceNames", "lat1,lat2,lat3")
+            .property("router.strategy", "latency")
+            .property("router.failureThreshold", "1")
+            .property("router.probeInterval", "100 milliseconds")
+
+            .property("routedDs", "new://Resource?provider=RoutedDataSource&type=DataSource")
+            .property("routedDs.router", "router")
+
+            .build();
+    }
+
+    @Module
+    public IAnnotationFinder finder() { // needed to run the test
+        return new AnnotationFinder(new ClassesArchive());
+    }
+
+    public static class SlowHandler implements InvocationHandler {
+        private final DataSource ds;
+
+        public SlowHandler(final DataSource ds) {
+            this.ds = ds;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if ("getConnection".equals(method.getName())) {
+                Thread.sleep(20);
+            }
+            try {
+                return method.invoke(ds, args);
+            } catch (final InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+
+    public static class FailingHandler implements InvocationHandler {
+        private final DataSource ds;
+
+        public FailingHandler(final DataSource ds) {
+            this.ds = ds;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (failing && "getConnection".equals(method.getName())) {
+                throw new SQLException("injected failure", "08001");
+            }
+            try {
+                return method.invoke(ds, args);
+            } catch (final InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
@@ -53,7 +53,10 @@ import javax.transaction.TransactionManager;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ManagedConnectionBehaviorTest {
     @Test
@@ -126,6 +129,50 @@ public class ManagedConnectionBehaviorTest {
 
     }
 
+    @Test
+    public void localTransactionForbiddenWhenEnlisted() throws Exception {
+        final GeronimoTransactionManager mgr = new GeronimoTransactionManager((int) TimeUnit.MINUTES.toMillis(10));
+        final MyDs myDs = new MyDs();
+        final DataSource ds = new ManagedDataSource(myDs, mgr, mgr);
+
+        mgr.begin();
+        final Connection connection = ds.getConnection();
+        connection.createBlob();
+        for (final String forbidden : new String[]{"commit", "rollback", "setAutoCommit", "setSavepoint", "setReadOnly"}) {
+            try {
+                if ("setAutoCommit".equals(forbidden)) {
+                    connection.setAutoCommit(true);
+                } else if ("setReadOnly".equals(forbidden)) {
+                    connection.setReadOnly(true);
+                } else if ("setSavepoint".equals(forbidden)) {
+                    connection.setSavepoint();
+                } else if ("rollback".equals(forbidden)) {
+                    connection.rollback();
+                } else {
+                    connection.commit();
+                }
+                fail(forbidden + " should be forbidden");
+            } catch (final SQLException e) {
+                assertTrue(e.getMessage().contains(forbidden));
+            }
+        }
+
+        final MyConn physical = myDs.connections.iterator().next();
+        assertFalse(physical.commit);
+        assertFalse(physical.autoCommit);
+        assertSame(physical, connection.unwrap(Connection.class));
+        assertTrue(connection.isWrapperFor(Connection.class));
+        assertEquals(connection, connection);
+        assertNotEquals(connection, ds.getConnection());
+
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertFalse(physical.closed); // closed with the transaction
+        mgr.commit();
+        assertTrue(physical.closed);
+        assertTrue(physical.commit);
+    }
+
     public static class MyDs implements DataSource {
         private final Collection<MyConn> connections = new LinkedList<>();
 
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedConnection;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedSqlConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Calls on a container managed connection through the former JDK proxy and through
+ * {@link ManagedSqlConnection}: a statement-like call (checks the transaction) and a state read.
+ */
+@State(Scope.Benchmark)
+public class ManagedConnectionPerfRunner {
+
+    private Connection proxy;
+    private Connection concrete;
+
+    @Setup
+    public void setup() throws Exception {
+        final GeronimoTransactionManager mgr = new GeronimoTransactionManager();
+        final ManagedConnectionBehaviorTest.MyDs ds = new ManagedConnectionBehaviorTest.MyDs();
+        proxy = Connection.class.cast(Proxy.newProxyInstance(ManagedConnectionPerfRunner.class.getClassLoader(), new Class<?>[]{Connection.class},
+            new ManagedConnection(ds, mgr, mgr, null, null)));
+        concrete = new ManagedSqlConnection(new ManagedConnection(ds, mgr, mgr, null, null));
+    }
+
+    @Benchmark
+    public Object proxyCreateBlob() throws SQLException {
+        return proxy.createBlob();
+    }
+
+    @Benchmark
+    public Object concreteCreateBlob() throws SQLException {
+        return concrete.createBlob();
+    }
+
+    @Benchmark
+    public boolean proxyGetAutoCommit() throws SQLException {
+        return proxy.getAutoCommit();
+    }
+
+    @Benchmark
+    public boolean concreteGetAutoCommit() throws SQLException {
+        return concrete.getAutoCommit();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ManagedConnectionPerfRunner.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+            .run();
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.openejb.api.ReadOnly;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.resource.jdbc.router.ReadWriteRouter;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.testng.PropertiesBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.apache.openejb.resource.jdbc.FailOverRouters.datasource;
+import static org.apache.openejb.resource.jdbc.FailOverRouters.url;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(ApplicationComposer.class)
+public class ReadWriteRouterTest {
+    private static final String PRIMARY = "jdbc:hsqldb:mem:rwPrimary";
+    private static final String REPLICA1 = "jdbc:hsqldb:mem:rwReplica1";
+    private static final String REPLICA2 = "jdbc:hsqldb:mem:rwReplica2";
+
+    @EJB
+    private Repository repository;
+
+    @Resource(name = "routedDs")
+    private DataSource routed;
+
+    @Test
+    public void writesGoToThePrimary() throws SQLException {
+        assertEquals(PRIMARY, url(routed.getConnection()));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(PRIMARY, repository.write());
+        }
+    }
+
+    @Test
+    public void readsAreSpreadOnReplicas() throws SQLException {
+        final Set<String> urls = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            urls.add(repository.supports());
+            urls.add(repository.notSupported());
+        }
+        assertEquals(new HashSet<>(asList(REPLICA1, REPLICA2)), urls);
+    }
+
+    @Test
+    public void readOnlyTransactionIsPinnedToAReplica() throws SQLException {
+        final Set<String> urls = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            final Set<String> transaction = repository.readOnly(); // REQUIRED, starts the transaction
+            assertEquals(transaction.toString(), 1, transaction.size());
+            urls.addAll(transaction);
+        }
+        assertEquals(new HashSet<>(asList(REPLICA1, REPLICA2)), urls);
+    }
+
+    @Test
+    public void readOnlyJoiningAWriterTransactionUsesThePrimary() throws SQLException {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(singleton(PRIMARY), repository.writeThenReadOnly());
+        }
+    }
+
+    @Test
+    public void readsJoiningATransactionUseThePrimary() throws SQLException {
+        // REQUIRED -> SUPPORTS read -> write, the read must see the transaction writes
+        for (int i = 0; i < 4; i++) {
+            assertEquals(asList(PRIMARY, PRIMARY), repository.readThenWrite());
+        }
+    }
+
+    @Configuration
+    public Properties configuration() {
+        return datasource(datasource(datasource(new PropertiesBuilder(), "rwPrimary"), "rwReplica1"), "rwReplica2")
+            .property("router", "new://Resource?class-name=" + ReadWriteRouter.class.getName())
+            .property("router.primary", "rwPrimary")
+            .property("router.replicas", "rwReplica1, rwReplica2")
+            .property("routedDs", "new://Resource?provider=RoutedDataSource&type=DataSource")
+            .property("routedDs.router", "router")
+            .build();
+    }
+
+    @Module
+    public Class<?>[] classes() {
+        return new Class<?>[]{Repository.class};
+    }
+
+    @Singleton
+    public static class Repository {
+        @Resource(name = "routedDs")
+        private DataSource ds;
+
+        @Resource
+        private SessionContext context;
+
+        public String write() throws SQLException {
+            return url(ds.getConnection());
+        }
+
+        @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+        public String supports() throws SQLException {
+            return url(ds.getConnection());
+        }
+
+        @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+        public String notSupported() throws SQLException {
+            return url(ds.getConnection());
+        }
+
+        public List<String> readThenWrite() throws SQLException {
+            final Repository self = context.getBusinessObject(Repository.class);
+            return asList(self.supports(), self.write());
+        }
+
+        public Set<String> writeThenReadOnly() throws SQLException {
+            final Set<String> urls = new HashSet<>();
+            urls.add(write());
+            urls.addAll(context.getBusinessObject(Repository.class).readOnly());
+            return urls;
+        }
+
+        @ReadOnly
+        public Set<String> readOnly() throws SQLException {
+            final Set<String> urls = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                urls.add(url(ds.getConnection()));
+            }
+            return urls;
+        }
+    }
+}
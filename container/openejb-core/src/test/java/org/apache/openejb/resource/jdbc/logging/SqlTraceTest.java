@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc.logging;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SqlTraceTest {
+    @Test
+    public void normalize() {
+        assertEquals("select * from t1 where a = ? and b = ?",
+            SqlTrace.normalize("select *\n  from t1\twhere a = 'it''s' and b = 12.5"));
+        assertEquals("select * from t where id in (?)", SqlTrace.normalize("select * from t where id in (1, 2, 3)"));
+        assertEquals("insert into t values (?)", SqlTrace.normalize("insert into t values (?,?, ?)"));
+        assertEquals("select col_2 from t where x = -?", SqlTrace.normalize(" select col_2 from t where x = -5 "));
+    }
+
+    @Test
+    public void statementsAreBounded() {
+        final SqlTrace trace = new SqlTrace("bounded", 1, 1, TimeUnit.HOURS, 2, null);
+        assertSame(trace.statistics("select a from t where id = 1"), trace.statistics("select a from t where id = 2"));
+        trace.statistics("select b from t");
+        assertEquals(SqlTrace.OVERFLOW, trace.statistics("select c from t").getSql());
+        assertEquals(2, trace.getStatistics().size()); // empty overflow is not listed
+    }
+
+    @Test
+    public void statistics() {
+        final SqlTrace trace = new SqlTrace("statistics", 1, 1, TimeUnit.HOURS, 10, null);
+        final SqlTrace.Statistics statistics = trace.statistics("update t set a = ?");
+        for (int i = 1; i <= 100; i++) {
+            trace.executed(statistics, "update t set a = ?", null, 0, TimeUnit.MILLISECONDS.toNanos(i), 2, i % 10 == 0 ? new Exception() : null);
+        }
+        assertEquals(100, statistics.getExecutions());
+        assertEquals(10, statistics.getErrors());
+        assertEquals(200, statistics.getRows());
+        assertEquals(50.5, statistics.getMean(), 0.001);
+        assertEquals(100., statistics.getMax(), 0.);
+        assertEquals(50., statistics.getPercentile(50), 50 * 0.13);
+        assertEquals(99., statistics.getPercentile(99), 99 * 0.13);
+        assertEquals(0, trace.getSlowExecutions());
+    }
+
+    @Test
+    public void slowStatementWithoutSql() {
+        final SqlTrace trace = new SqlTrace("unknown", 1, 0, TimeUnit.MILLISECONDS, 10, null);
+        trace.executed(trace.statistics(null), null, null, 0, 1, -1, null);
+        assertEquals(1, trace.getSlowExecutions());
+    }
+
+    @Test
+    public void reset() {
+        final SqlTrace trace = new SqlTrace("reset", 1, 0, TimeUnit.MILLISECONDS, 1, null);
+        final SqlTrace.Statistics statistics = trace.statistics("select a from t");
+        trace.executed(statistics, "select a from t", null, 0, TimeUnit.MILLISECONDS.toNanos(5), 3, null);
+        final SqlTrace.Statistics overflow = trace.statistics("select b from t");
+        assertEquals(SqlTrace.OVERFLOW, overflow.getSql());
+
+        trace.reset();
+        assertTrue(trace.getStatistics().isEmpty());
+        assertEquals(0, trace.getSlowExecutions());
+
+        // the table has room again for new statements
+        final SqlTrace.Statistics b = trace.statistics(overflow, "select b from t");
+        assertEquals("select b from t", b.getSql());
+        assertSame(b, trace.statistics(b, "select b from t"));
+
+        // a statement prepared before the reset switches to the new table
+        assertEquals(SqlTrace.OVERFLOW, trace.statistics(statistics, "select a from t").getSql());
+    }
+
+    @Test
+    public void sampling() {
+        assertTrue(new SqlTrace("all", 1, 1, TimeUnit.SECONDS, 1, null).sample());
+        assertFalse(new SqlTrace("none", 0, 1, TimeUnit.SECONDS, 1, null).sample());
+    }
+}
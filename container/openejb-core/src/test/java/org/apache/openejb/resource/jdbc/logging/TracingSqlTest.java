@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc.logging;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.testing.Classes;
+import org.apache.openejb.testing.ContainerProperties;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@Classes
+@ContainerProperties({
+    @ContainerProperties.Property(name = "traced", value = "new://Resource?type=DataSource"),
+    @ContainerProperties.Property(name = "traced.JdbcUrl", value = "jdbc:hsqldb:mem:traced"),
+    @ContainerProperties.Property(name = "traced.TraceSql", value = "true"),
+    @ContainerProperties.Property(name = "traced.TraceSqlSlowThreshold", value = "0 milliseconds")
+})
+@RunWith(ApplicationComposer.class)
+public class TracingSqlTest {
+    @Resource(name = "traced")
+    private DataSource ds;
+
+    @Test
+    public void statementTable() throws Exception {
+        try (final Connection c = ds.getConnection()) {
+            try (final Statement statement = c.createStatement()) {
+                statement.executeUpdate("create table traced(id int, name varchar(20))");
+            }
+            for (int i = 0; i < 3; i++) {
+                try (final PreparedStatement insert = c.prepareStatement("insert into traced values (?, ?)")) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "name" + i);
+                    assertEquals(1, insert.executeUpdate());
+                }
+            }
+            try (final PreparedStatement select = c.prepareStatement("select name from traced where id >= ?")) {
+                select.setInt(1, 1);
+                try (final ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        assertNotNull(rs.getString(1));
+                    }
+                }
+            }
+        }
+
+        final TabularData statements = TabularData.class.cast(LocalMBeanServer.get().getAttribute(
+            new ObjectName("openejb.management:ObjectType=SqlTrace,name=traced"), "statements"));
+        final CompositeData insert = statements.get(new Object[]{"insert into traced values (?)"});
+        assertEquals(3L, insert.get("executions"));
+        assertEquals(3L, insert.get("rows"));
+        assertEquals(0L, insert.get("errors"));
+        final CompositeData select = statements.get(new Object[]{"select name from traced where id >= ?"});
+        assertEquals(1L, select.get("executions"));
+        assertEquals(2L, select.get("rows"));
+        assertEquals(5L, LocalMBeanServer.get().getAttribute(
+            new ObjectName("openejb.management:ObjectType=SqlTrace,name=traced"), "slowExecutions"));
+    }
+
+    @Test
+    public void emptyBatch() throws Exception {
+        try (final Connection c = ds.getConnection();
+             final Statement statement = c.createStatement()) {
+            assertEquals(0, statement.executeBatch().length);
+        }
+
+        final TabularData statements = TabularData.class.cast(LocalMBeanServer.get().getAttribute(
+            new ObjectName("openejb.management:ObjectType=SqlTrace,name=traced"), "statements"));
+        assertEquals(1L, statements.get(new Object[]{"<batch>"}).get("executions"));
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Throughput of a stateless call as seen by the pool (pop, short business
+ * method, push) for 1 to 64 threads, the pool being sized for the threads.
+ */
+@State(Scope.Benchmark)
+public class PoolPerfRunner {
+
+    @Param({"LOCKING", "STRIPED"})
+    public String strategy;
+
+    private Pool<Object> pool;
+
+    @Setup
+    public void setup() {
+        pool = new Pool<>(64, 0, true, 0, 0, 0, null, null, false, -1, false, false, Pool.Strategy.valueOf(strategy));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        pool.close(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public void call() throws InterruptedException, TimeoutException {
+        final Pool<Object>.Entry entry = pool.pop(30, TimeUnit.SECONDS);
+        if (entry == null) {
+            pool.push(new Object());
+            return;
+        }
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            pool.push(entry);
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        for (final int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(PoolPerfRunner.class.getSimpleName())
+                    .forks(0)
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(threads)
+                    .build())
+                .run();
+        }
+    }
+}
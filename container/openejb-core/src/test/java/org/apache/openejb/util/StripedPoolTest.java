@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs every {@link PoolTest} scenario against the lock free pool storage.
+ */
+@SuppressWarnings("unchecked")
+public class StripedPoolTest extends PoolTest {
+
+    @Override
+    protected Pool.Strategy strategy() {
+        return Pool.Strategy.STRIPED;
+    }
+
+    public void testSameThreadGetsItsInstanceBack() throws Exception {
+        final Pool<String> pool = new Pool<>(4, 0, true, 0, 0, 0, null, null, false, -1, false, false, strategy());
+        for (final String s : new String[]{"a", "b", "c", "d"}) {
+            assertTrue(pool.add(s));
+        }
+
+        final Pool<String>.Entry entry = pool.pop(0, TimeUnit.MILLISECONDS);
+        final String instance = entry.get();
+        pool.push(entry);
+
+        for (int i = 0; i < 10; i++) {
+            final Pool<String>.Entry again = pool.pop(0, TimeUnit.MILLISECONDS);
+            assertSame(instance, again.get());
+            pool.push(again);
+        }
+    }
+
+    public void testOtherThreadsSeeCachedInstances() throws Exception {
+        final Pool<String> pool = new Pool<>(1, 0, true, 0, 0, 0, null, null, false, -1, false, false, strategy());
+        assertTrue(pool.add("only"));
+
+        // park the instance in the cache of this thread
+        pool.push(pool.pop(0, TimeUnit.MILLISECONDS));
+
+        final AtomicReference<Object> popped = new AtomicReference<>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Pool<String>.Entry entry = pool.pop(1, TimeUnit.SECONDS);
+                    popped.set(entry.get());
+                    pool.push(entry);
+                } catch (final Exception e) {
+                    popped.set(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join(10000);
+
+        assertEquals("only", popped.get());
+    }
+}
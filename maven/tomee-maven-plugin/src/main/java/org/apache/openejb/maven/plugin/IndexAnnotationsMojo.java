@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.maven.plugin;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.openejb.config.AnnotationIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The type IndexAnnotationsMojo.
+ * Store the annotation index of the compiled classes (META-INF/openejb-annotations.idx) so TomEE
+ * reads it at deployment instead of scanning the classes.
+ * <p/>
+ * For a classes folder (WEB-INF/classes) TomEE still reads and CRCs every class file to check the index
+ * is up to date, only the bytecode parsing is saved. Jars are checked from their central directory, so the
+ * index pays off most on the packaged jar and on the WEB-INF/lib jars: list them (or the folder holding them,
+ * for instance the WEB-INF/lib of the exploded war) in {@code archives} and bind the execution after they are
+ * created (package phase, after war:exploded). The jars are rewritten in place, never point it to the local
+ * repository.
+ */
+@Mojo(name = "index-annotations", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true)
+public class IndexAnnotationsMojo extends AbstractMojo {
+    /**
+     * The classes to index.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", property = "tomee-plugin.index.classes")
+    protected File classes;
+
+    /**
+     * Jars to index too, a folder means all the jars it contains.
+     */
+    @Parameter(property = "tomee-plugin.index.archives")
+    protected List<File> archives;
+
+    /**
+     * Skip the indexing.
+     */
+    @Parameter(defaultValue = "false", property = "tomee-plugin.index.skip")
+    protected boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping annotation indexing");
+            return;
+        }
+
+        if (classes != null && classes.isDirectory()) {
+            index(classes);
+        }
+        if (archives != null) {
+            for (final File archive : archives) {
+                if (archive.isDirectory()) {
+                    final File[] jars = archive.listFiles();
+                    if (jars != null) {
+                        for (final File jar : jars) {
+                            if (jar.isFile() && jar.getName().endsWith(".jar")) {
+                                index(jar);
+                            }
+                        }
+                    }
+                } else if (archive.isFile()) {
+                    index(archive);
+                } else {
+                    getLog().warn("Can't index " + archive.getAbsolutePath() + ", it doesn't exist");
+                }
+            }
+        }
+    }
+
+    private void index(final File archive) throws MojoExecutionException {
+        try {
+            AnnotationIndex.write(archive);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Can't index " + archive.getAbsolutePath(), e);
+        }
+        getLog().info("Indexed annotations of " + archive.getAbsolutePath());
+    }
+}
@@ -16,12 +16,15 @@
  */
 package org.apache.tomee.microprofile.jwt.config;
 
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.jose4j.jwk.JsonWebKey;
 import org.jose4j.jwk.JsonWebKeySet;
 import org.jose4j.lang.JoseException;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 import javax.enterprise.event.Observes;
@@ -31,6 +34,7 @@ import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
 import javax.json.stream.JsonParsingException;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import java.io.BufferedReader;
 import java.io.File;
@@ -52,6 +56,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -65,14 +70,40 @@ import static org.jose4j.jwk.JsonWebKeySet.JWK_SET_MEMBER_NAME;
 public class ConfigurableJWTAuthContextInfo {
     private static final List<String> JWK_SUPPORTED_KEY_TYPES = Arrays.asList("RSA");
 
+    /**
+     * Seconds between two reloads of the keys read from {@code mp.jwt.verify.publickey.location}, 0 disables
+     * the background reload (an unknown key id still reloads them).
+     */
+    public static final String PUBLIC_KEY_REFRESH_INTERVAL = "tomee.mp.jwt.verify.publickey.refresh.interval";
+
     private Config config;
     private JWTAuthContextInfo jwtAuthContextInfo;
+    private ObjectName keysObjectName;
     private static final String PUBLIC_KEY_ERROR = "Could not read MicroProfile Public Key";
     private static final String PUBLIC_KEY_ERROR_LOCATION = PUBLIC_KEY_ERROR + " from Location: ";
 
     public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
         this.config = ConfigProvider.getConfig();
         this.jwtAuthContextInfo = createJWTAuthContextInfo();
+
+        if (jwtAuthContextInfo != null && getPublicKeyLocation().isPresent()) {
+            final String contextPath = context == null ? "" : context.getContextPath();
+            keysObjectName = new ObjectNameBuilder("openejb.management")
+                    .set("j2eeType", "JWTSignerKeys")
+                    .set("name", contextPath.isEmpty() ? "ROOT" : contextPath)
+                    .build();
+            LocalMBeanServer.registerDynamicWrapperSilently(jwtAuthContextInfo.getKeys(), keysObjectName);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (keysObjectName != null) {
+            LocalMBeanServer.unregisterSilently(keysObjectName);
+        }
+        if (jwtAuthContextInfo != null) {
+            jwtAuthContextInfo.close();
+        }
     }
 
     public Optional<JWTAuthContextInfo> getJWTAuthContextInfo() {
@@ -87,6 +118,10 @@ public class ConfigurableJWTAuthContextInfo {
         return config.getOptionalValue(VERIFIER_PUBLIC_KEY_LOCATION, String.class).map(s -> s.isEmpty() ? null : s);
     }
 
+    private long getPublicKeyRefreshInterval() {
+        return TimeUnit.SECONDS.toMillis(config.getOptionalValue(PUBLIC_KEY_REFRESH_INTERVAL, Long.class).orElse(300L));
+    }
+
     private Optional<String> getIssuer() {
         return config.getOptionalValue(ISSUER, String.class);
     }
@@ -100,16 +135,15 @@ public class ConfigurableJWTAuthContextInfo {
                                           " are being supplied. You must use only one.");
         }
 
-        final Stream<Supplier<Optional<Map<String, Key>>>> possiblePublicKeys =
-                Stream.of(() -> getVerifierPublicKey().map(this::readPublicKeys),
-                          () -> getPublicKeyLocation().map(this::readPublicKeysFromLocation));
+        final Optional<String> publicKey = getVerifierPublicKey();
+        if (publicKey.isPresent()) {
+            return JWTAuthContextInfo.authContextInfo(readPublicKeys(publicKey.get()), getIssuer().orElse(null));
+        }
 
-        return possiblePublicKeys
-                .map(Supplier::get)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .findFirst()
-                .map(keys -> JWTAuthContextInfo.authContextInfo(keys, getIssuer().orElse(null)))
+        // keys behind a location can be rotated, they are reloaded
+        return getPublicKeyLocation()
+                .map(location -> JWTAuthContextInfo.authContextInfo(
+                        () -> readPublicKeysFromLocation(location), getPublicKeyRefreshInterval(), getIssuer().orElse(null)))
                 .orElse(null);
     }
 
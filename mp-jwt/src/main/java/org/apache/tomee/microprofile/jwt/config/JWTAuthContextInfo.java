@@ -23,6 +23,10 @@ import java.security.Key;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -33,43 +37,51 @@ public class JWTAuthContextInfo {
     private static final Logger logger = Logger.getLogger(JWTAuthContextInfo.class.getName());
     public static final String DEFAULT_KEY = "DEFAULT";
 
-    private Map<String, Key> signerKeys;
+    private final SignerKeys signerKeys;
     private String issuedBy;
     private int expGracePeriodSecs = 60;
+    private final ConcurrentMap<Class<?>, Object> components = new ConcurrentHashMap<>();
 
-    private JWTAuthContextInfo(final Key signerKey, final String issuedBy) {
-        this.signerKeys = Collections.singletonMap(DEFAULT_KEY, signerKey);
-        this.issuedBy = issuedBy;
-    }
-
-    private JWTAuthContextInfo(final Map<String, Key> signerKeys, final String issuedBy) {
-        if (signerKeys.size() == 1) {
-            final Key singleKey = signerKeys.values().iterator().next();
-            this.signerKeys = Collections.singletonMap(DEFAULT_KEY, singleKey);
-        } else {
-            this.signerKeys = Collections.unmodifiableMap(signerKeys);
-        }
+    private JWTAuthContextInfo(final SignerKeys signerKeys, final String issuedBy) {
+        this.signerKeys = signerKeys;
         this.issuedBy = issuedBy;
     }
 
     public static JWTAuthContextInfo authContextInfo(final Key signerKey, final String issuedBy) {
-        return new JWTAuthContextInfo(signerKey, issuedBy);
+        return new JWTAuthContextInfo(new SignerKeys(Collections.singletonMap(DEFAULT_KEY, signerKey)), issuedBy);
     }
 
     public static JWTAuthContextInfo authContextInfo(final Map<String, Key> signerKeys, final String issuedBy) {
-        return new JWTAuthContextInfo(signerKeys, issuedBy);
+        return new JWTAuthContextInfo(new SignerKeys(signerKeys), issuedBy);
+    }
+
+    /**
+     * @param loader          reads the keys, called once here then to reload them
+     * @param refreshInterval milliseconds between two background reloads, 0 to only reload on unknown key ids
+     */
+    public static JWTAuthContextInfo authContextInfo(final Supplier<Map<String, Key>> loader, final long refreshInterval,
+                                                     final String issuedBy) {
+        return new JWTAuthContextInfo(new SignerKeys(loader, refreshInterval), issuedBy);
     }
 
     public boolean isSingleKey() {
-        return signerKeys.size() == 1;
+        return signerKeys.getKeyCount() == 1;
     }
 
     public Key getSignerKey() {
-        return signerKeys.get(DEFAULT_KEY);
+        return isSingleKey() ? signerKeys.getKeys().values().iterator().next() : null;
+    }
+
+    /**
+     * @param kid the key id of the token
+     * @return the key verifying this token or null
+     */
+    public Key getSignerKey(final String kid) {
+        return signerKeys.resolve(kid);
     }
 
     public List<JsonWebKey> getSignerKeys() {
-        return signerKeys.entrySet().stream().map(key -> {
+        return signerKeys.getKeys().entrySet().stream().map(key -> {
             try {
                 final JsonWebKey jsonWebKey = JsonWebKey.Factory.newJwk(key.getValue());
                 jsonWebKey.setKeyId(key.getKey());
@@ -81,6 +93,10 @@ public class JWTAuthContextInfo {
         }).collect(Collectors.toList());
     }
 
+    public SignerKeys getKeys() {
+        return signerKeys;
+    }
+
     public String getIssuedBy() {
         return issuedBy;
     }
@@ -88,4 +104,23 @@ public class JWTAuthContextInfo {
     public int getExpGracePeriodSecs() {
         return expGracePeriodSecs;
     }
+
+    /**
+     * State derived from this configuration (prepared token consumer, verified tokens...),
+     * created once and released with the configuration.
+     */
+    public <T> T getComponent(final Class<T> type, final Function<JWTAuthContextInfo, T> factory) {
+        final Object component = components.get(type);
+        if (component != null) {
+            return type.cast(component);
+        }
+        return type.cast(components.computeIfAbsent(type, k -> factory.apply(this)));
+    }
+
+    /**
+     * Stops the background reload of the keys.
+     */
+    public void close() {
+        signerKeys.close();
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.util.DaemonThreadFactory;
+
+import java.security.Key;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The keys verifying the token signatures, indexed by key id.
+ * <p/>
+ * Keys read from a location are reloaded in the background every {@code refreshInterval} and
+ * swapped at once. A token signed with an unknown key id triggers one synchronous reload (at
+ * most every {@link #FORCED_REFRESH_INTERVAL} ms, random key ids can't make us reload on
+ * every request) so a rotated key is accepted before the next scheduled reload.
+ */
+@MBean
+@Internal
+@Description("MicroProfile JWT signer keys")
+public class SignerKeys implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SignerKeys.class.getName());
+
+    public static final long FORCED_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private final Supplier<Map<String, Key>> loader;
+    private final long forcedRefreshInterval;
+    private final ScheduledExecutorService refresher;
+    private final Object refreshLock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile long lastRefresh;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private volatile long lastRefreshDuration;
+    private volatile long maxRefreshDuration;
+
+    SignerKeys(final Map<String, Key> keys) {
+        this.loader = null;
+        this.forcedRefreshInterval = FORCED_REFRESH_INTERVAL;
+        this.refresher = null;
+        this.snapshot = new Snapshot(keys, 0);
+    }
+
+    SignerKeys(final Supplier<Map<String, Key>> loader, final long refreshInterval) {
+        this(loader, refreshInterval, FORCED_REFRESH_INTERVAL);
+    }
+
+    SignerKeys(final Supplier<Map<String, Key>> loader, final long refreshInterval, final long forcedRefreshInterval) {
+        this.loader = loader;
+        this.forcedRefreshInterval = forcedRefreshInterval;
+        this.snapshot = new Snapshot(loader.get(), 0);
+        this.lastRefresh = System.currentTimeMillis();
+
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(SignerKeys.class));
+            refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * @param kid the key id of the token, can be null
+     * @return the key to verify the token or null if there is none for this id
+     */
+    public Key resolve(final String kid) {
+        Snapshot current = snapshot;
+        Key key = current.find(kid);
+        if (key == null && kid != null && loader != null) {
+            synchronized (refreshLock) {
+                // another thread may already have loaded the key
+                if (snapshot == current && System.currentTimeMillis() - lastRefresh >= forcedRefreshInterval) {
+                    refresh();
+                }
+            }
+            current = snapshot;
+            key = current.find(kid);
+        }
+        if (key == null) {
+            // as before the key id index, a single key verifies whatever the token kid is
+            key = current.single;
+        }
+
+        if (key == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return key;
+    }
+
+    /**
+     * @return the current keys, the map is swapped but never modified
+     */
+    public Map<String, Key> getKeys() {
+        return snapshot.keys;
+    }
+
+    /**
+     * Incremented each time a reload changes the keys.
+     */
+    public long getGeneration() {
+        return snapshot.generation;
+    }
+
+    @ManagedOperation
+    @Description("Reload the keys from their location")
+    public void refresh() {
+        if (loader == null) {
+            return;
+        }
+
+        synchronized (refreshLock) {
+            final long start = System.nanoTime();
+            try {
+                final Map<String, Key> keys = loader.get();
+                final Snapshot current = snapshot;
+                if (!current.keys.equals(keys)) {
+                    snapshot = new Snapshot(keys, current.generation + 1);
+                    logger.info("MicroProfile JWT signer keys reloaded: " + keys.keySet());
+                }
+                refreshes.increment();
+            } catch (final RuntimeException e) {
+                refreshFailures.increment();
+                logger.log(Level.WARNING, "Can't reload MicroProfile JWT signer keys, keeping the current ones: " + e.getMessage(), e);
+            } finally {
+                final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lastRefreshDuration = duration;
+                maxRefreshDuration = Math.max(maxRefreshDuration, duration);
+                lastRefresh = System.currentTimeMillis();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    @ManagedAttribute
+    @Description("Number of keys")
+    public int getKeyCount() {
+        return snapshot.keys.size();
+    }
+
+    @ManagedAttribute
+    @Description("Key lookups which found a key")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute
+    @Description("Key lookups which didn't find a key, even after a reload")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute
+    @Description("Successful reloads")
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    @ManagedAttribute
+    @Description("Failed reloads")
+    public long getRefreshFailures() {
+        return refreshFailures.sum();
+    }
+
+    @ManagedAttribute
+    @Description("Duration of the last reload in milliseconds")
+    public long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    @ManagedAttribute
+    @Description("Longest reload in milliseconds")
+    public long getMaxRefreshDuration() {
+        return maxRefreshDuration;
+    }
+
+    private static final class Snapshot {
+
+        private final Map<String, Key> keys;
+        private final Key single;
+        private final long generation;
+
+        private Snapshot(final Map<String, Key> keys, final long generation) {
+            this.keys = Collections.unmodifiableMap(new HashMap<>(keys));
+            this.single = keys.size() == 1 ? keys.values().iterator().next() : null;
+            this.generation = generation;
+        }
+
+        private Key find(final String kid) {
+            if (kid == null) {
+                return single;
+            }
+
+            return keys.get(kid);
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.tomee.microprofile.jwt.principal;
 
+import org.apache.openejb.loader.SystemInstance;
 import org.apache.tomee.microprofile.jwt.ParseException;
 import org.apache.tomee.microprofile.jwt.config.JWTAuthContextInfo;
 import org.eclipse.microprofile.jwt.Claims;
@@ -28,13 +29,22 @@ import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.jwt.consumer.JwtConsumer;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.jwt.consumer.JwtContext;
-import org.jose4j.keys.resolvers.JwksVerificationKeyResolver;
+import org.jose4j.lang.UnresolvableKeyException;
+
+import java.nio.ByteBuffer;
+import java.security.Key;
 
 /**
- * A default implementation of the abstract JWTCallerPrincipalFactory that uses the Keycloak token parsing classes.
+ * Validates the tokens with a {@link JwtConsumer} built once per {@link JWTAuthContextInfo}.
+ * <p/>
+ * The principal of a valid token is cached until the token expires, a client presenting the same
+ * bearer token again doesn't pay the signature verification, the cache is ignored once the signer keys are reloaded. The cache size is set with the
+ * {@code tomee.mp.jwt.token.cache.size} system property, 0 disables it.
  */
 public class DefaultJWTCallerPrincipalFactory extends JWTCallerPrincipalFactory {
 
+    public static final String TOKEN_CACHE_SIZE = "tomee.mp.jwt.token.cache.size";
+
     /**
      * Tries to load the JWTAuthContextInfo from CDI if the class level authContextInfo has not been set.
      */
@@ -43,35 +53,21 @@ public class DefaultJWTCallerPrincipalFactory extends JWTCallerPrincipalFactory
 
     @Override
     public JWTCallerPrincipal parse(final String token, final JWTAuthContextInfo authContextInfo) throws ParseException {
-        JWTCallerPrincipal principal;
-
-        try {
-            final JwtConsumerBuilder builder = new JwtConsumerBuilder()
-                    .setRequireExpirationTime()
-                    .setRequireSubject()
-                    .setSkipDefaultAudienceValidation()
-                    .setExpectedIssuer(authContextInfo.getIssuedBy())
-                    .setJwsAlgorithmConstraints(
-                            new AlgorithmConstraints(AlgorithmConstraints.ConstraintType.WHITELIST,
-                                    AlgorithmIdentifiers.RSA_USING_SHA256));
+        final Verifier verifier = authContextInfo.getComponent(Verifier.class, Verifier::new);
 
-            if (authContextInfo.getExpGracePeriodSecs() > 0) {
-                builder.setAllowedClockSkewInSeconds(authContextInfo.getExpGracePeriodSecs());
-            } else {
-                builder.setEvaluationTime(NumericDate.fromSeconds(0));
-            }
+        final long generation = authContextInfo.getKeys().getGeneration();
+        final ByteBuffer key = verifier.tokens.key(token);
+        final JWTCallerPrincipal cached = verifier.tokens.get(key, generation);
+        if (cached != null) {
+            return cached;
+        }
 
-            if (authContextInfo.isSingleKey()) {
-                builder.setVerificationKey(authContextInfo.getSignerKey());
-            } else {
-                builder.setVerificationKeyResolver(new JwksVerificationKeyResolver(authContextInfo.getSignerKeys()));
-            }
+        JWTCallerPrincipal principal;
 
-            final JwtConsumer jwtConsumer = builder.build();
-            final JwtContext jwtContext = jwtConsumer.process(token);
+        try {
+            // process() verifies the signature and validates the claims
+            final JwtContext jwtContext = verifier.consumer.process(token);
             final String type = jwtContext.getJoseObjects().get(0).getHeader("typ");
-            //  Validate the JWT and process it to the Claims
-            jwtConsumer.processContext(jwtContext);
             JwtClaims claimsSet = jwtContext.getJwtClaims();
 
             // We have to determine the unique name to use as the principal name. It comes from upn, preferred_username, sub in that order
@@ -82,9 +78,12 @@ public class DefaultJWTCallerPrincipalFactory extends JWTCallerPrincipalFactory
                     principalName = claimsSet.getSubject();
                 }
             }
+            final long expiresAt = claimsSet.getExpirationTime().getValueInMillis();
             claimsSet.setClaim(Claims.raw_token.name(), token);
             principal = new DefaultJWTCallerPrincipal(token, type, claimsSet, principalName);
 
+            verifier.tokens.put(key, principal, expiresAt, generation);
+
         } catch (final InvalidJwtException e) {
             throw new ParseException("Failed to verify token", e);
 
@@ -94,4 +93,42 @@ public class DefaultJWTCallerPrincipalFactory extends JWTCallerPrincipalFactory
 
         return principal;
     }
+
+    /**
+     * The consumer is thread safe and only depends on the configuration so it is built once.
+     */
+    private static final class Verifier {
+
+        private final JwtConsumer consumer;
+        private final VerifiedTokenCache tokens;
+
+        private Verifier(final JWTAuthContextInfo authContextInfo) {
+            final JwtConsumerBuilder builder = new JwtConsumerBuilder()
+                    .setRequireExpirationTime()
+                    .setRequireSubject()
+                    .setSkipDefaultAudienceValidation()
+                    .setExpectedIssuer(authContextInfo.getIssuedBy())
+                    .setJwsAlgorithmConstraints(
+                            new AlgorithmConstraints(AlgorithmConstraints.ConstraintType.WHITELIST,
+                                    AlgorithmIdentifiers.RSA_USING_SHA256));
+
+            if (authContextInfo.getExpGracePeriodSecs() > 0) {
+                builder.setAllowedClockSkewInSeconds(authContextInfo.getExpGracePeriodSecs());
+            } else {
+                builder.setEvaluationTime(NumericDate.fromSeconds(0));
+            }
+
+            // the keys can be reloaded, they are looked up by kid for each token
+            builder.setVerificationKeyResolver((jws, nestingContext) -> {
+                final Key key = authContextInfo.getSignerKey(jws.getKeyIdHeaderValue());
+                if (key == null) {
+                    throw new UnresolvableKeyException("No signer key for kid " + jws.getKeyIdHeaderValue());
+                }
+                return key;
+            });
+
+            this.consumer = builder.build();
+            this.tokens = new VerifiedTokenCache(SystemInstance.get().getOptions().get(TOKEN_CACHE_SIZE, 10000));
+        }
+    }
 }
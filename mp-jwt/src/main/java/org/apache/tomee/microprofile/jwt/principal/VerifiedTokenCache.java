@@ -0,0 +1,119 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.principal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Principals of the tokens which already went through the signature and claims validation,
+ * kept until the token expires.
+ * <p/>
+ * Entries are keyed by the SHA-256 of the raw token so the cache doesn't hold the tokens
+ * a second time. When it is full the expired entries are dropped first then arbitrary ones,
+ * a dropped token is simply validated again.
+ */
+class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ConcurrentMap<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    VerifiedTokenCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    ByteBuffer key(final String token) {
+        final MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param generation the generation of the signer keys, tokens verified with other keys are dropped
+     */
+    JWTCallerPrincipal get(final ByteBuffer key, final long generation) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis() || entry.generation != generation) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    void put(final ByteBuffer key, final JWTCallerPrincipal principal, final long expiresAt, final long generation) {
+        if (maxSize <= 0 || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new Entry(principal, expiresAt, generation));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        if (entries.size() < maxSize) {
+            return;
+        }
+
+        // still full: free a quarter of the cache
+        final Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize - maxSize / 4 - 1 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final JWTCallerPrincipal principal;
+        private final long expiresAt;
+        private final long generation;
+
+        private Entry(final JWTCallerPrincipal principal, final long expiresAt, final long generation) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.spi.ConfigBuilder;
+import org.eclipse.microprofile.config.spi.ConfigProviderResolver;
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.apache.tomee.microprofile.jwt.config.SignerKeysTest.newKey;
+import static org.apache.tomee.microprofile.jwt.config.SignerKeysTest.write;
+import static org.eclipse.microprofile.jwt.config.Names.VERIFIER_PUBLIC_KEY_LOCATION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurableJWTAuthContextInfoTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // ConfigProvider keeps the first resolver it sees, the properties are shared by the tests
+    private static final Map<String, Object> properties = new HashMap<>();
+
+    private final ConfigurableJWTAuthContextInfo info = new ConfigurableJWTAuthContextInfo();
+    private File jwks;
+
+    @BeforeClass
+    public static void registerConfig() {
+        ConfigProviderResolver.setInstance(new MapConfigProviderResolver(new MapConfig(properties)));
+    }
+
+    @AfterClass
+    public static void releaseConfig() {
+        ConfigProviderResolver.setInstance(null);
+    }
+
+    @Before
+    public void init() throws Exception {
+        jwks = folder.newFile("jwks.json");
+        properties.clear();
+        properties.put(VERIFIER_PUBLIC_KEY_LOCATION, jwks.toURI().toURL().toExternalForm());
+        properties.put(ConfigurableJWTAuthContextInfo.PUBLIC_KEY_REFRESH_INTERVAL, 0L);
+    }
+
+    @After
+    public void destroy() {
+        info.destroy();
+    }
+
+    @Test
+    public void keysFromLocationAreReloaded() throws Exception {
+        final RsaJsonWebKey k1 = newKey("k1");
+        final RsaJsonWebKey k2 = newKey("k2");
+        write(jwks, k1);
+        info.init(null);
+
+        final SignerKeys keys = keys();
+        assertEquals(Collections.singleton("k1"), keys.getKeys().keySet());
+
+        write(jwks, k1, k2);
+        keys.refresh();
+        assertEquals(k2.getPublicKey(), keys.resolve("k2"));
+        assertEquals(1, keys.getGeneration());
+    }
+
+    @Test
+    public void rotatedKidIsAccepted() throws Exception {
+        final RsaJsonWebKey k1 = newKey("k1");
+        final RsaJsonWebKey k2 = newKey("k2");
+        final RsaJsonWebKey k3 = newKey("k3");
+        write(jwks, k1, k2);
+        info.init(null);
+
+        write(jwks, k2, k3);
+        final SignerKeys keys = keys();
+        waitForcedRefreshInterval();
+        assertEquals(k3.getPublicKey(), keys.resolve("k3"));
+        assertEquals(1, keys.getGeneration());
+    }
+
+    @Test
+    public void brokenLocationKeepsTheKeys() throws Exception {
+        final RsaJsonWebKey k1 = newKey("k1");
+        write(jwks, k1);
+        info.init(null);
+
+        final SignerKeys keys = keys();
+        Files.write(jwks.toPath(), "{\"keys\":[{\"kty\":\"EC\"}]}".getBytes(StandardCharsets.UTF_8));
+        keys.refresh();
+        assertTrue(jwks.delete());
+        keys.refresh();
+
+        assertEquals(2, keys.getRefreshFailures());
+        assertEquals(0, keys.getGeneration());
+        assertEquals(k1.getPublicKey(), keys.resolve("k1"));
+    }
+
+    private SignerKeys keys() {
+        return info.getJWTAuthContextInfo().orElseThrow(IllegalStateException::new).getKeys();
+    }
+
+    private static void waitForcedRefreshInterval() throws InterruptedException {
+        Thread.sleep(SignerKeys.FORCED_REFRESH_INTERVAL);
+    }
+
+    private static class MapConfigProviderResolver extends ConfigProviderResolver {
+        private final Config config;
+
+        private MapConfigProviderResolver(final Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public Config getConfig() {
+            return config;
+        }
+
+        @Override
+        public Config getConfig(final ClassLoader loader) {
+            return config;
+        }
+
+        @Override
+        public ConfigBuilder getBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerConfig(final Config config, final ClassLoader classLoader) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void releaseConfig(final Config config) {
+            // no-op
+        }
+    }
+
+    private static class MapConfig implements Config {
+        private final Map<String, Object> properties;
+
+        private MapConfig(final Map<String, Object> properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public <T> T getValue(final String propertyName, final Class<T> propertyType) {
+            return getOptionalValue(propertyName, propertyType).orElseThrow(() -> new NoSuchElementException(propertyName));
+        }
+
+        @Override
+        public <T> Optional<T> getOptionalValue(final String propertyName, final Class<T> propertyType) {
+            return Optional.ofNullable(propertyType.cast(properties.get(propertyName)));
+        }
+
+        @Override
+        public Iterable<String> getPropertyNames() {
+            return properties.keySet();
+        }
+
+        @Override
+        public Iterable<ConfigSource> getConfigSources() {
+            return Collections.emptyList();
+        }
+    }
+}
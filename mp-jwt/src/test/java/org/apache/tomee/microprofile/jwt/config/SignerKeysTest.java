@@ -0,0 +1,172 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.lang.JoseException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SignerKeysTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File jwks;
+    private RsaJsonWebKey k1;
+    private RsaJsonWebKey k2;
+    private RsaJsonWebKey k3;
+
+    @Before
+    public void init() throws Exception {
+        k1 = newKey("k1");
+        k2 = newKey("k2");
+        k3 = newKey("k3");
+        jwks = folder.newFile("jwks.json");
+        write(jwks, k1, k2);
+    }
+
+    @Test
+    public void refresh() throws Exception {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 0);
+        assertEquals(2, keys.getKeyCount());
+        assertNull(keys.resolve("k3"));
+
+        write(jwks, k1, k2, k3);
+        keys.refresh();
+
+        assertEquals(k3.getPublicKey(), keys.resolve("k3"));
+        assertEquals(1, keys.getGeneration());
+        assertEquals(1, keys.getRefreshCount());
+    }
+
+    @Test
+    public void unchangedKeysKeepTheirGeneration() {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 0);
+        keys.refresh();
+        assertEquals(0, keys.getGeneration());
+    }
+
+    @Test
+    public void unknownKidReloadsTheKeys() throws Exception {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 0, 0);
+
+        // k1 is rotated out, k3 is the new signer key
+        write(jwks, k2, k3);
+        assertEquals(k3.getPublicKey(), keys.resolve("k3"));
+        assertEquals(1, keys.getRefreshCount());
+        assertNull(keys.resolve("k1"));
+    }
+
+    @Test
+    public void unknownKidsDontReloadOnEveryToken() throws Exception {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 0, TimeUnit.HOURS.toMillis(1));
+
+        write(jwks, k1, k2, k3);
+        for (int i = 0; i < 10; i++) {
+            assertNull(keys.resolve("k3"));
+        }
+        assertEquals(0, keys.getRefreshCount());
+        assertEquals(10, keys.getMisses());
+    }
+
+    @Test
+    public void failedRefreshKeepsTheKeys() throws Exception {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 0, 0);
+
+        Files.write(jwks.toPath(), "not a key set".getBytes(StandardCharsets.UTF_8));
+        keys.refresh();
+        assertNull(keys.resolve("k3")); // forced reload fails too
+
+        assertEquals(2, keys.getRefreshFailures());
+        assertEquals(0, keys.getGeneration());
+        assertEquals(k1.getPublicKey(), keys.resolve("k1"));
+        assertEquals(k2.getPublicKey(), keys.resolve("k2"));
+    }
+
+    @Test
+    public void backgroundRefresh() throws Exception {
+        final SignerKeys keys = new SignerKeys(loader(jwks), 50);
+        try {
+            write(jwks, k3);
+
+            final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (keys.getGeneration() == 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, keys.getKeyCount());
+            assertTrue(keys.getRefreshCount() > 0);
+        } finally {
+            keys.close();
+        }
+    }
+
+    @Test
+    public void singleKeyMatchesAnyKid() {
+        final Map<String, Key> map = new HashMap<>();
+        map.put("k1", k1.getPublicKey());
+        final SignerKeys keys = new SignerKeys(map);
+        assertSame(k1.getPublicKey(), keys.resolve(null));
+        assertSame(k1.getPublicKey(), keys.resolve("other"));
+    }
+
+    static RsaJsonWebKey newKey(final String kid) throws JoseException {
+        final RsaJsonWebKey key = RsaJwkGenerator.generateJwk(2048);
+        key.setKeyId(kid);
+        return key;
+    }
+
+    static void write(final File file, final JsonWebKey... keys) throws IOException {
+        final String json = new JsonWebKeySet(asList(keys)).toJson(JsonWebKey.OutputControlLevel.PUBLIC_ONLY);
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Supplier<Map<String, Key>> loader(final File file) {
+        return () -> {
+            try {
+                final Map<String, Key> keys = new HashMap<>();
+                for (final JsonWebKey key : new JsonWebKeySet(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).getJsonWebKeys()) {
+                    keys.put(key.getKeyId(), key.getKey());
+                }
+                return keys;
+            } catch (final IOException | JoseException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.principal;
+
+import org.apache.tomee.microprofile.jwt.ParseException;
+import org.apache.tomee.microprofile.jwt.config.JWTAuthContextInfo;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class DefaultJWTCallerPrincipalFactoryTest {
+
+    private final DefaultJWTCallerPrincipalFactory factory = new DefaultJWTCallerPrincipalFactory();
+    private final AtomicReference<Map<String, Key>> keys = new AtomicReference<>();
+    private RsaJsonWebKey signer;
+    private JWTAuthContextInfo authContextInfo;
+
+    @Before
+    public void init() throws Exception {
+        signer = RsaJwkGenerator.generateJwk(2048);
+        signer.setKeyId("k1");
+        keys.set(singletonMap("k1", signer.getPublicKey()));
+        authContextInfo = JWTAuthContextInfo.authContextInfo(keys::get, 0, "https://server.example.com");
+    }
+
+    @After
+    public void close() {
+        authContextInfo.close();
+    }
+
+    @Test
+    public void sameTokenIsVerifiedOnce() throws Exception {
+        final String token = sign("alice");
+
+        final JWTCallerPrincipal principal = factory.parse(token, authContextInfo);
+        assertEquals("alice", principal.getName());
+        assertSame(principal, factory.parse(token, authContextInfo));
+        assertNotSame(principal, factory.parse(sign("bob"), authContextInfo));
+    }
+
+    @Test
+    public void reloadedKeysInvalidateTheCache() throws Exception {
+        final String token = sign("alice");
+        final JWTCallerPrincipal principal = factory.parse(token, authContextInfo);
+
+        final Map<String, Key> rotated = new HashMap<>(keys.get());
+        rotated.put("k2", RsaJwkGenerator.generateJwk(2048).getPublicKey());
+        keys.set(rotated);
+        authContextInfo.getKeys().refresh();
+
+        final JWTCallerPrincipal verifiedAgain = factory.parse(token, authContextInfo);
+        assertNotSame(principal, verifiedAgain);
+        assertSame(verifiedAgain, factory.parse(token, authContextInfo));
+    }
+
+    @Test(expected = ParseException.class)
+    public void tokenSignedWithARemovedKeyIsRejected() throws Exception {
+        final String token = sign("alice");
+        factory.parse(token, authContextInfo);
+
+        keys.set(singletonMap("k2", RsaJwkGenerator.generateJwk(2048).getPublicKey()));
+        authContextInfo.getKeys().refresh();
+
+        factory.parse(token, authContextInfo);
+    }
+
+    private String sign(final String subject) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setIssuer("https://server.example.com");
+        claims.setSubject(subject);
+        claims.setExpirationTimeMinutesInTheFuture(10);
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setKey(signer.getPrivateKey());
+        jws.setKeyIdHeaderValue(signer.getKeyId());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
+        return jws.getCompactSerialization();
+    }
+}
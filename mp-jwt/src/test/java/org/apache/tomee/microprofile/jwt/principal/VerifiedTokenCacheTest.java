@@ -0,0 +1,121 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.principal;
+
+import org.jose4j.jwt.JwtClaims;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    public void hit() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        final JWTCallerPrincipal principal = principal("a");
+        cache.put(cache.key("a"), principal, later(), 0);
+
+        assertSame(principal, cache.get(cache.key("a"), 0));
+        assertNull(cache.get(cache.key("b"), 0));
+    }
+
+    @Test
+    public void expiredEntriesAreDropped() throws Exception {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put(cache.key("a"), principal("a"), System.currentTimeMillis() + 50, 0);
+        assertNotNull(cache.get(cache.key("a"), 0));
+
+        Thread.sleep(100);
+        assertNull(cache.get(cache.key("a"), 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void alreadyExpiredTokensAreNotCached() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put(cache.key("a"), principal("a"), System.currentTimeMillis() - 1, 0);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void otherKeyGenerationIsAMiss() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put(cache.key("a"), principal("a"), later(), 0);
+
+        assertNull(cache.get(cache.key("a"), 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void disabled() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(0);
+        cache.put(cache.key("a"), principal("a"), later(), 0);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictionWhenFull() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(8);
+        for (int i = 0; i < 100; i++) {
+            final String token = Integer.toString(i);
+            cache.put(cache.key(token), principal(token), later(), 0);
+            assertEquals(true, cache.size() <= 8);
+        }
+        assertNotNull(cache.get(cache.key("99"), 0));
+    }
+
+    @Test
+    public void expiredEntriesAreEvictedFirst() throws Exception {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(4);
+        cache.put(cache.key("short"), principal("short"), System.currentTimeMillis() + 50, 0);
+        for (int i = 0; i < 3; i++) {
+            final String token = Integer.toString(i);
+            cache.put(cache.key(token), principal(token), later(), 0);
+        }
+
+        Thread.sleep(100);
+        cache.put(cache.key("new"), principal("new"), later(), 0);
+
+        assertEquals(4, cache.size());
+        for (final String token : new String[]{"0", "1", "2", "new"}) {
+            assertNotNull(token, cache.get(cache.key(token), 0));
+        }
+    }
+
+    @Test
+    public void keyIsTheTokenDigest() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        final ByteBuffer key = cache.key("a");
+        assertEquals(32, key.remaining());
+        assertEquals(key, cache.key("a"));
+    }
+
+    private static long later() {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    private static JWTCallerPrincipal principal(final String name) {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject(name);
+        return new DefaultJWTCallerPrincipal(name, "JWT", claims, name);
+    }
+}
@@ -40,6 +40,7 @@ public class ConnectionManager {
         registerFactory("ejbds", ejbdFactory);
         registerFactory("zejbd", ejbdFactory);
         registerFactory("zejbds", ejbdFactory);
+        registerFactory("mejbd", new MultiplexedConnectionFactory());
 
         final HttpConnectionFactory httpFactory = new HttpConnectionFactory();
         registerFactory("http", httpFactory);
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a client connection pool.
+ * <p/>
+ * Observers get the instance with the {@link org.apache.openejb.client.event.ConnectionPoolCreated}
+ * event. When the client is loaded by the system classloader it is also registered in the platform
+ * MBeanServer as {@code openejb.client:type=ConnectionPool,uri=<uri>}, pools are never closed so a
+ * client packaged in a webapp would leak the webapp classloader. {@code openejb.client.connection.pool.jmx}
+ * forces the registration ({@code true}) or disables it ({@code false}).
+ */
+public class ConnectionPoolStats implements ConnectionPoolStatsMXBean {
+
+    private static final long[] BUCKETS = {0, 1, 5, 10, 50, 100, 500, 1000, 5000, Long.MAX_VALUE};
+
+    private final URI uri;
+    private final int size;
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder[] waitTimes = new LongAdder[BUCKETS.length];
+
+    public ConnectionPoolStats(final URI uri, final int size) {
+        this.uri = uri;
+        this.size = size;
+        for (int i = 0; i < this.waitTimes.length; i++) {
+            this.waitTimes[i] = new LongAdder();
+        }
+    }
+
+    void borrowed(final long waitNanos) {
+        this.borrowed.increment();
+        this.borrowCount.increment();
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        int bucket = 0;
+        while (millis > BUCKETS[bucket] || (bucket == 0 && waitNanos > 0)) {
+            bucket++;
+        }
+        this.waitTimes[bucket].increment();
+    }
+
+    void returned() {
+        this.borrowed.decrement();
+    }
+
+    void created() {
+        this.created.increment();
+    }
+
+    void evicted() {
+        this.evicted.increment();
+    }
+
+    void discarded() {
+        this.discarded.increment();
+    }
+
+    void timeout() {
+        this.timeouts.increment();
+    }
+
+    void waiting(final int delta) {
+        this.waiting.addAndGet(delta);
+    }
+
+    @Override
+    public String getUri() {
+        return this.uri.toString();
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    @Override
+    public long getBorrowed() {
+        return this.borrowed.sum();
+    }
+
+    @Override
+    public int getWaiting() {
+        return this.waiting.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return this.borrowCount.sum();
+    }
+
+    @Override
+    public long getCreated() {
+        return this.created.sum();
+    }
+
+    @Override
+    public long getEvicted() {
+        return this.evicted.sum();
+    }
+
+    @Override
+    public long getDiscarded() {
+        return this.discarded.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return this.timeouts.sum();
+    }
+
+    @Override
+    public long[] getWaitTimeBuckets() {
+        return BUCKETS.clone();
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+        final long[] histogram = new long[this.waitTimes.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = this.waitTimes[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" +
+            "uri=" + this.uri +
+            ", size=" + this.size +
+            ", borrowed=" + this.getBorrowed() +
+            ", waiting=" + this.getWaiting() +
+            ", created=" + this.getCreated() +
+            ", evicted=" + this.getEvicted() +
+            ", discarded=" + this.getDiscarded() +
+            ", timeouts=" + this.getTimeouts() +
+            ", waitTimeHistogram=" + Arrays.toString(this.getWaitTimeHistogram()) +
+            '}';
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+public interface ConnectionPoolStatsMXBean {
+
+    String getUri();
+
+    int getSize();
+
+    /**
+     * @return connections currently handed out
+     */
+    long getBorrowed();
+
+    /**
+     * @return threads currently waiting for a connection
+     */
+    int getWaiting();
+
+    long getBorrowCount();
+
+    long getCreated();
+
+    /**
+     * @return connections closed by the pool because they were idle or stale
+     */
+    long getEvicted();
+
+    /**
+     * @return connections closed after an I/O error
+     */
+    long getDiscarded();
+
+    long getTimeouts();
+
+    /**
+     * @return upper bound, in milliseconds, of each {@link #getWaitTimeHistogram()} bucket, the last one is unbounded
+     */
+    long[] getWaitTimeBuckets();
+
+    long[] getWaitTimeHistogram();
+}
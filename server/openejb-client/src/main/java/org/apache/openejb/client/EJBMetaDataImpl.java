@@ -24,6 +24,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,15 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
 
     protected final transient Properties properties = new Properties();
 
+    // interface name -> MethodTable fingerprint advertised by the server
+    protected final transient Map<String, Integer> methodTables = new HashMap<String, Integer>();
+
+    // interface name -> id of the interface in the deployment, sent instead of the class
+    protected final transient Map<String, Integer> interfaceIds = new HashMap<String, Integer>();
+
+    // server side only, the remote interfaces of the deployment indexed by their id
+    protected transient Class[] deploymentInterfaces;
+
     protected transient Class keyClass;
 
     protected transient EJBHome ejbHomeProxy;
@@ -228,14 +238,42 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
         return primaryKey;
     }
 
+    /**
+     * @param type one of the interfaces of this bean
+     * @return true if the server advertised the same {@link MethodTable} for this interface as the local one
+     */
+    public boolean hasMethodTable(final Class<?> type) {
+        final Integer fingerprint = methodTables.get(type.getName());
+        return fingerprint != null && fingerprint != 0 && fingerprint == MethodTable.of(type).getFingerprint();
+    }
+
+    /**
+     * @param type one of the interfaces of this bean
+     * @return the id the server gave to this interface or -1 if it has to be sent as a class
+     */
+    public int getInterfaceId(final Class<?> type) {
+        final Integer id = interfaceIds.get(type.getName());
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Server side, the remote interfaces of the deployment, the index of each of them is its id.
+     */
+    public void setDeploymentInterfaces(final Class[] deploymentInterfaces) {
+        this.deploymentInterfaces = deploymentInterfaces;
+    }
+
     public void setPrimaryKey(final Object primaryKey) {
         this.primaryKey = primaryKey;
     }
 
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
+        // the method tables are only understood by 4.7 clients
+        final boolean methodTables = null == metaData || metaData.isAtLeast(4, 7);
+
         // write out the version of the serialized data for future use
-        out.writeByte(3);
+        out.writeByte(methodTables ? 4 : 3);
 
         out.writeObject(homeClass);
         out.writeObject(remoteClass);
@@ -273,6 +311,21 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             out.write(bytes);
         }
 
+        if (methodTables) {
+            final List<Class> interfaces = new ArrayList<Class>(businessClasses);
+            if (homeClass != null) {
+                interfaces.add(homeClass);
+            }
+            if (remoteClass != null) {
+                interfaces.add(remoteClass);
+            }
+            out.writeShort((short) interfaces.size());
+            for (final Class clazz : interfaces) {
+                out.writeUTF(clazz.getName());
+                out.writeInt(MethodTable.of(clazz).getFingerprint());
+                out.writeShort(indexOf(deploymentInterfaces, clazz));
+            }
+        }
     }
 
     @Override
@@ -312,6 +365,28 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
             properties.load(bais);
         }
+
+        if (version > 3) {
+            for (int i = in.readShort(); i > 0; i--) {
+                final String name = in.readUTF();
+                methodTables.put(name, in.readInt());
+                final int id = in.readShort();
+                if (id >= 0) {
+                    interfaceIds.put(name, id);
+                }
+            }
+        }
+    }
+
+    private static int indexOf(final Class[] interfaces, final Class clazz) {
+        if (interfaces != null) {
+            for (int i = 0; i < interfaces.length && i <= Short.MAX_VALUE; i++) {
+                if (interfaces[i] == clazz) {
+                    return i;
+                }
+            }
+        }
+        return -1;
     }
 
     public String toString() {
@@ -310,6 +310,7 @@ public class EJBRequest implements ClusterableRequest {
         private transient Object orb;
         private transient Method methodInstance;
         private transient Class interfaceClass;
+        private transient Class[] interfaces;
         private transient String methodName;
         private transient Class[] methodParamTypes;
         private transient Object[] methodParameters;
@@ -412,6 +413,13 @@ public class EJBRequest implements ClusterableRequest {
             return requestId;
         }
 
+        /**
+         * Server side, the remote interfaces of the deployment the interface ids sent by the client refer to.
+         */
+        public void setInterfaces(final Class[] interfaces) {
+            this.interfaces = interfaces;
+        }
+
         public void setRequestId(final String requestId) {
             this.requestId = requestId;
         }
@@ -440,22 +448,59 @@ public class EJBRequest implements ClusterableRequest {
 
             methodName = in.readUTF();
 
-            try {
-                readMethodParameters(in);
-            } catch (ClassNotFoundException cnfe) {
-                if (result == null) {
-                    result = cnfe;
+            IOException mismatch = null;
+            if (methodName.isEmpty()) {
+                // compact form, the method is identified by its index in the MethodTable
+                final int index = in.readShort();
+                final int fingerprint = in.readInt();
+                final int interfaceId = in.readShort();
+                if (interfaceId >= 0 && result == null) {
+                    if (interfaces != null && interfaceId < interfaces.length) {
+                        interfaceClass = interfaces[interfaceId];
+                    } else {
+                        result = new ClassNotFoundException("No interface with id " + interfaceId);
+                    }
+                }
+
+                Class[] types = null;
+                if (interfaceClass == null) {
+                    if (result == null) {
+                        result = new ClassNotFoundException("No interface class for method index " + index);
+                    }
+                } else {
+                    final MethodTable table = MethodTable.of(interfaceClass);
+                    if (table.getFingerprint() == fingerprint && (methodInstance = table.getMethod(index)) != null) {
+                        methodName = methodInstance.getName();
+                        types = methodInstance.getParameterTypes();
+                    } else {
+                        mismatch = new IOException("Method table of " + interfaceClass.getName() + " does not match the client one");
+                    }
+                }
+
+                // the arguments are always consumed so the rest of the body can be read
+                try {
+                    readMethodArguments(in, types);
+                } catch (ClassNotFoundException cnfe) {
+                    if (result == null) {
+                        result = cnfe;
+                    }
+                }
+            } else {
+                try {
+                    readMethodParameters(in);
+                } catch (ClassNotFoundException cnfe) {
+                    if (result == null) {
+                        result = cnfe;
+                    }
                 }
             }
 
-            if (interfaceClass != null) {
+            if (interfaceClass != null && methodInstance == null && mismatch == null && result == null) {
                 try {
                     //noinspection unchecked
                     methodInstance = interfaceClass.getMethod(methodName, methodParamTypes);
                 } catch (NoSuchMethodException nsme) {
-                    if (result == null) {
-                        throw new ClassNotFoundException(interfaceClass.getSimpleName() + "#" + methodName + " is not valid");
-                    }
+                    result = new ClassNotFoundException(interfaceClass.getSimpleName() + "#" + methodName + " is not valid");
                 }
             }
 
@@ -468,6 +513,9 @@ public class EJBRequest implements ClusterableRequest {
             if (result != null) {
                 throw result;
             }
+            if (mismatch != null) {
+                throw mismatch;
+            }
         }
 
         /**
@@ -482,11 +530,24 @@ public class EJBRequest implements ClusterableRequest {
 
             out.writeObject(primaryKey);
 
-            out.writeObject(interfaceClass);
+            // with the method tables the interface is identified by the id the server advertised
+            final int index = getMethodIndex();
+            final int interfaceId = index < 0 ? -1 : ejb.getInterfaceId(interfaceClass);
+            out.writeObject(interfaceId < 0 ? interfaceClass : null);
 
-            out.writeUTF(methodName);
+            if (index < 0) {
+                out.writeUTF(methodName);
 
-            writeMethodParameters(out, methodParamTypes, methodParameters);
+                writeMethodParameters(out, methodParamTypes, methodParameters);
+            } else {
+                // compact form, an empty name can't be a java method
+                out.writeUTF("");
+                out.writeShort(index);
+                out.writeInt(MethodTable.of(interfaceClass).getFingerprint());
+                out.writeShort(interfaceId);
+
+                writeMethodArguments(out, methodParamTypes, methodParameters);
+            }
 
             if (null == metaData || metaData.isAtLeast(4, 6)) {
                 out.writeObject(authentication);
@@ -561,6 +622,126 @@ public class EJBRequest implements ClusterableRequest {
             }
         }
 
+        /**
+         * @return the index of the method in the interface {@link MethodTable}
+         * or -1 if the server did not advertise the same table
+         */
+        private int getMethodIndex() {
+            if (ejb == null || interfaceClass == null || methodInstance == null || !ejb.hasMethodTable(interfaceClass)) {
+                return -1;
+            }
+            return MethodTable.of(interfaceClass).indexOf(methodInstance);
+        }
+
+        /**
+         * Compact counterpart of {@link #writeMethodParameters(java.io.ObjectOutput, Class[], Object[])},
+         * the types are known by both sides so only the values are written.
+         */
+        protected void writeMethodArguments(final ObjectOutput out, final Class[] types, final Object[] args) throws IOException {
+
+            out.writeByte(types.length);
+
+            for (int i = 0; i < types.length; i++) {
+                final Class clazz = types[i];
+                Object obj = args[i];
+
+                if (clazz == Byte.TYPE) {
+                    out.write(BYTE);
+                    out.writeByte((Byte) obj);
+                } else if (clazz == Character.TYPE) {
+                    out.write(CHAR);
+                    out.writeChar((Character) obj);
+                } else if (clazz == Integer.TYPE) {
+                    out.write(INT);
+                    out.writeInt((Integer) obj);
+                } else if (clazz == Boolean.TYPE) {
+                    out.write(BOOLEAN);
+                    out.writeBoolean((Boolean) obj);
+                } else if (clazz == Long.TYPE) {
+                    out.write(LONG);
+                    out.writeLong((Long) obj);
+                } else if (clazz == Float.TYPE) {
+                    out.write(FLOAT);
+                    out.writeFloat((Float) obj);
+                } else if (clazz == Double.TYPE) {
+                    out.write(DOUBLE);
+                    out.writeDouble((Double) obj);
+                } else if (clazz == Short.TYPE) {
+                    out.write(SHORT);
+                    out.writeShort((Short) obj);
+                } else if (clazz.isPrimitive()) {
+                    throw new IOException("Unkown primitive type: " + clazz);
+                } else {
+                    if (InstanceOf.isRemote(obj)) {
+                        obj = Corbas.toStub(obj);
+                    }
+                    out.write(OBJECT);
+                    out.writeObject(obj);
+                }
+            }
+        }
+
+        /**
+         * Compact counterpart of {@link #readMethodParameters(java.io.ObjectInput)}, each value is only
+         * prefixed by its data type so the arguments can be consumed even when the types are unknown.
+         *
+         * @param types the parameter types of the resolved method or null to only skip the arguments
+         */
+        protected void readMethodArguments(final ObjectInput in, final Class[] types) throws IOException, ClassNotFoundException {
+            final int length = in.read();
+
+            if (length < 1) {
+                methodParamTypes = noArgsC;
+                methodParameters = noArgsO;
+                return;
+            }
+
+            final Object[] args = new Object[length];
+            for (int i = 0; i < length; i++) {
+                final int type = in.read();
+
+                switch (type) {
+                    case BYTE:
+                        args[i] = in.readByte();
+                        break;
+                    case CHAR:
+                        args[i] = in.readChar();
+                        break;
+                    case INT:
+                        args[i] = in.readInt();
+                        break;
+                    case BOOLEAN:
+                        args[i] = in.readBoolean();
+                        break;
+                    case LONG:
+                        args[i] = in.readLong();
+                        break;
+                    case FLOAT:
+                        args[i] = in.readFloat();
+                        break;
+                    case DOUBLE:
+                        args[i] = in.readDouble();
+                        break;
+                    case SHORT:
+                        args[i] = in.readShort();
+                        break;
+                    case OBJECT:
+                        final Object read = in.readObject();
+                        args[i] = InstanceOf.isStub(read) ? Corbas.connect(read) : read;
+                        break;
+                    default:
+                        throw new IOException("Unkown data type: " + type);
+                }
+            }
+
+            if (types != null && types.length != length) {
+                throw new IOException("Expected " + types.length + " arguments but got " + length);
+            }
+
+            methodParamTypes = types;
+            methodParameters = args;
+        }
+
         static final Class[] noArgsC = new Class[0];
         static final Object[] noArgsO = new Object[0];
 
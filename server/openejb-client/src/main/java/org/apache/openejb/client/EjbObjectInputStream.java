@@ -35,6 +35,16 @@ public class EjbObjectInputStream extends ObjectInputStream {
         RESOLVER_ATOMIC_REFERENCE.set(new BlacklistClassResolver());
     }
 
+    /**
+     * Applies the tomee.serialization.class.blacklist/whitelist rules to a class name
+     * read by something else than java serialization.
+     *
+     * @throws SecurityException if the class must not be deserialized
+     */
+    public static String checkClassName(final String name) {
+        return RESOLVER_ATOMIC_REFERENCE.get().check(name);
+    }
+
     public EjbObjectInputStream(final InputStream in) throws IOException {
         super(in);
     }
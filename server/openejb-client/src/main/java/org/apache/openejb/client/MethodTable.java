@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stable, ordered view of the public methods of a remote interface.
+ * <p/>
+ * Client and server both build the table from their own copy of the interface. The server
+ * advertises the {@link #getFingerprint() fingerprint} of each interface in the
+ * {@link EJBMetaDataImpl}, and when the client computes the same value the invocation
+ * only carries the method index instead of the method name and parameter classes.
+ */
+public final class MethodTable {
+
+    private static final ClassValue<MethodTable> TABLES = new ClassValue<MethodTable>() {
+        @Override
+        protected MethodTable computeValue(final Class<?> type) {
+            return new MethodTable(type);
+        }
+    };
+
+    private final Method[] methods;
+    private final Map<Method, Integer> indexes;
+    private final int fingerprint;
+
+    private MethodTable(final Class<?> type) {
+        this.methods = type.getMethods();
+        Arrays.sort(this.methods, new Comparator<Method>() {
+            @Override
+            public int compare(final Method o1, final Method o2) {
+                return signature(o1).compareTo(signature(o2));
+            }
+        });
+
+        this.indexes = new HashMap<Method, Integer>(this.methods.length * 2);
+        int hash = 1;
+        for (int i = 0; i < this.methods.length; i++) {
+            this.indexes.put(this.methods[i], i);
+            hash = 31 * hash + signature(this.methods[i]).hashCode();
+        }
+
+        // zero means "no table", an index has to fit in a short on the wire
+        this.fingerprint = this.methods.length > Short.MAX_VALUE ? 0 : (hash == 0 ? 1 : hash);
+    }
+
+    public static MethodTable of(final Class<?> type) {
+        return TABLES.get(type);
+    }
+
+    public int getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return the index of the method or -1 when it is not part of this table
+     */
+    public int indexOf(final Method method) {
+        final Integer index = this.indexes.get(method);
+        return null == index ? -1 : index;
+    }
+
+    public Method getMethod(final int index) {
+        if (index < 0 || index >= this.methods.length) {
+            return null;
+        }
+        return this.methods[index];
+    }
+
+    private static String signature(final Method method) {
+        final StringBuilder sb = new StringBuilder(method.getDeclaringClass().getName()).append('#').append(method.getName()).append('(');
+        for (final Class<?> type : method.getParameterTypes()) {
+            sb.append(type.getName()).append(',');
+        }
+        return sb.append(')').append(method.getReturnType().getName()).toString();
+    }
+}
@@ -0,0 +1,373 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.apache.openejb.client.event.ConnectionOpened;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connection factory for the "mejbd" scheme.
+ * <p/>
+ * All the calls made to one server share a single socket. Each request is sent as a frame
+ * <p/>
+ * Frame = request-id (int) length (int) payload
+ * <p/>
+ * where the payload is exactly what a classic ejbd connection would write (protocol metadata,
+ * server metadata, cluster request and the request itself). The server answers with a frame
+ * carrying the same request id, so several calls can be in flight on the same connection
+ * and responses may come back in any order.
+ * <p/>
+ * A channel without pending calls for {@code openejb.client.multiplexed.idle.timeout} ms (60s by default,
+ * 0 to keep it open) is closed, the next call opens a new one. Response frames larger than
+ * {@code openejb.client.multiplexed.max-frame-size} (64MB by default) close the channel.
+ */
+public class MultiplexedConnectionFactory implements ConnectionFactory {
+
+    public static final int HEADER_SIZE = 8;
+    public static final String PROPERTY_IDLE_TIMEOUT = "openejb.client.multiplexed.idle.timeout";
+    public static final String PROPERTY_MAX_FRAME_SIZE = "openejb.client.multiplexed.max-frame-size";
+
+    private static final Map<URI, Channel> channels = new ConcurrentHashMap<URI, Channel>();
+    private static final ConcurrentMap<URI, Object> connecting = new ConcurrentHashMap<URI, Object>();
+
+    private final int timeoutConnect;
+    private final int timeoutRead;
+    private final int timeoutIdle;
+    private final int maxFrameSize;
+
+    public MultiplexedConnectionFactory() {
+        final Properties p = System.getProperties();
+        this.timeoutConnect = SocketConnectionFactory.getInt(p, SocketConnectionFactory.PROPERTY_SOCKET_TIMEOUT, 1000);
+        this.timeoutRead = SocketConnectionFactory.getInt(p, SocketConnectionFactory.PROPERTY_SOCKET_READ, 14400000);
+        this.timeoutIdle = SocketConnectionFactory.getInt(p, PROPERTY_IDLE_TIMEOUT, 60000);
+        this.maxFrameSize = SocketConnectionFactory.getInt(p, PROPERTY_MAX_FRAME_SIZE, 64 * 1024 * 1024);
+    }
+
+    @Override
+    public Connection getConnection(final URI uri) throws IOException {
+        return new MultiplexedConnection(uri, this.getChannel(uri));
+    }
+
+    private Channel getChannel(final URI uri) throws IOException {
+        Channel channel = channels.get(uri);
+        if (channel != null && !channel.closed) {
+            return channel;
+        }
+
+        // connecting can take timeoutConnect, only block the callers of the same server
+        Object lock = connecting.get(uri);
+        if (lock == null) {
+            final Object created = new Object();
+            lock = connecting.putIfAbsent(uri, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+
+        synchronized (lock) {
+            channel = channels.get(uri);
+            if (channel == null || channel.closed) {
+                channel = new Channel(uri, this.timeoutIdle, this.maxFrameSize);
+                channel.open(this.timeoutConnect);
+                channels.put(uri, channel);
+            }
+        }
+        return channel;
+    }
+
+    private class MultiplexedConnection implements Connection {
+
+        private final URI uri;
+        private final RequestBuffer request = new RequestBuffer();
+        private Channel channel;
+        private Call call;
+        private InputStream in;
+
+        private MultiplexedConnection(final URI uri, final Channel channel) {
+            this.uri = uri;
+            this.channel = channel;
+        }
+
+        @Override
+        public URI getURI() {
+            return this.uri;
+        }
+
+        @Override
+        public void discard() {
+            // the channel closes itself on I/O failures, only forget about our own call
+            if (null != this.call) {
+                this.channel.calls.remove(this.call.id);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.discard();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (null == this.in) {
+                try {
+                    this.call = this.channel.send(this.request.buffer(), this.request.size());
+                } catch (final IOException e) {
+                    if (!this.channel.idle) {
+                        throw e;
+                    }
+                    // closed as idle before anything was written, a new channel can take the call
+                    this.channel = MultiplexedConnectionFactory.this.getChannel(this.uri);
+                    this.call = this.channel.send(this.request.buffer(), this.request.size());
+                }
+                this.in = new ByteArrayInputStream(this.call.await(MultiplexedConnectionFactory.this.timeoutRead));
+            }
+            return this.in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (null != this.call) {
+                throw new IOException("Request already sent to " + this.uri);
+            }
+            return this.request;
+        }
+    }
+
+    private static class RequestBuffer extends ByteArrayOutputStream {
+
+        private RequestBuffer() {
+            super(512);
+        }
+
+        private byte[] buffer() {
+            return this.buf;
+        }
+    }
+
+    private static class Call {
+
+        private final int id;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile byte[] response;
+        private volatile Throwable failure;
+
+        private Call(final int id) {
+            this.id = id;
+        }
+
+        private void complete(final byte[] response) {
+            this.response = response;
+            this.latch.countDown();
+        }
+
+        private void fail(final Throwable failure) {
+            this.failure = failure;
+            this.latch.countDown();
+        }
+
+        private byte[] await(final long timeout) throws IOException {
+            try {
+                if (!this.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SocketTimeoutException("No response received for request " + this.id + " after " + timeout + " milliseconds");
+                }
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+                throw new IOException("Interrupted while waiting for request " + this.id, e);
+            }
+
+            if (null != this.failure) {
+                throw new IOException("Connection failed while waiting for request " + this.id + ": " + this.failure.getMessage(), this.failure);
+            }
+            return this.response;
+        }
+    }
+
+    private static class Channel implements Runnable {
+
+        private final URI uri;
+        private final int timeoutIdle;
+        private final int maxFrameSize;
+        private final AtomicInteger ids = new AtomicInteger();
+        private final Map<Integer, Call> calls = new ConcurrentHashMap<Integer, Call>();
+        private final Lock writeLock = new ReentrantLock();
+        private volatile boolean closed;
+        private volatile boolean idle;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private Socket socket;
+        private DataOutputStream out;
+        private DataInputStream in;
+
+        private Channel(final URI uri, final int timeoutIdle, final int maxFrameSize) {
+            this.uri = uri;
+            this.timeoutIdle = timeoutIdle;
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        private void open(final int timeoutConnect) throws IOException {
+            try {
+                this.socket = new Socket();
+                this.socket.setTcpNoDelay(true);
+                this.socket.connect(new InetSocketAddress(this.uri.getHost(), this.uri.getPort()), timeoutConnect);
+                if (this.timeoutIdle > 0) {
+                    // wakes the reader up to check whether the channel is idle
+                    this.socket.setSoTimeout(this.timeoutIdle);
+                }
+                this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+                this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+            } catch (final ConnectException e) {
+                this.close(e);
+                throw new IOException("Cannot connect to server '" + this.uri + "'.  Check that the server is started and that the specified serverURL is correct.", e);
+            } catch (final IOException e) {
+                this.close(e);
+                throw new IOException("Cannot connect to server: '" + this.uri + "'.  Exception: " + e.getClass().getName() + " : " + e.getMessage(), e);
+            }
+
+            final Thread reader = new Thread(this, "OpenEJB.Client.Multiplexed." + this.uri.getHost() + ":" + this.uri.getPort());
+            reader.setDaemon(true);
+            reader.start();
+
+            Client.fireEvent(new ConnectionOpened(this.uri));
+        }
+
+        private Call send(final byte[] payload, final int length) throws IOException {
+            if (this.closed) {
+                throw new IOException("Connection to " + this.uri + " is closed");
+            }
+
+            final Call call = new Call(this.ids.incrementAndGet());
+            this.calls.put(call.id, call);
+
+            final Lock l = this.writeLock;
+            l.lock();
+            try {
+                if (this.closed) { // the reader closed it as idle
+                    this.calls.remove(call.id);
+                    throw new IOException("Connection to " + this.uri + " is closed");
+                }
+                this.lastUsed = System.currentTimeMillis();
+                this.out.writeInt(call.id);
+                this.out.writeInt(length);
+                this.out.write(payload, 0, length);
+                this.out.flush();
+            } catch (final IOException e) {
+                this.calls.remove(call.id);
+                this.close(e);
+                throw e;
+            } finally {
+                l.unlock();
+            }
+            return call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!this.closed) {
+                    final int first;
+                    try {
+                        first = this.in.read();
+                    } catch (final SocketTimeoutException e) { // nothing consumed, the stream is still aligned
+                        if (this.closeIfIdle()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (first < 0) {
+                        throw new EOFException();
+                    }
+
+                    final int id = first << 24 | this.in.readUnsignedByte() << 16 | this.in.readUnsignedByte() << 8 | this.in.readUnsignedByte();
+                    final int length = this.in.readInt();
+                    if (length < 0 || length > this.maxFrameSize) {
+                        throw new StreamCorruptedException("Invalid frame length " + length + " for request " + id);
+                    }
+
+                    final byte[] response = new byte[length];
+                    this.in.readFully(response);
+
+                    final Call call = this.calls.remove(id);
+                    if (null != call) {
+                        call.complete(response);
+                    }
+                }
+            } catch (final EOFException e) {
+                this.close(new EOFException("Server " + this.uri + " closed the connection"));
+            } catch (final Throwable e) {
+                this.close(e);
+            }
+        }
+
+        private boolean closeIfIdle() {
+            final Lock l = this.writeLock;
+            l.lock();
+            try {
+                if (!this.calls.isEmpty() || System.currentTimeMillis() - this.lastUsed < this.timeoutIdle) {
+                    return false;
+                }
+                this.idle = true;
+                this.close(new IOException("Connection to " + this.uri + " closed after " + this.timeoutIdle + " idle milliseconds"));
+                return true;
+            } finally {
+                l.unlock();
+            }
+        }
+
+        private void close(final Throwable cause) {
+            this.closed = true;
+            channels.remove(this.uri, this);
+
+            if (null != this.socket) {
+                try {
+                    this.socket.close();
+                } catch (final Throwable e) {
+                    //Ignore
+                }
+            }
+
+            for (final Call call : new ArrayList<Call>(this.calls.values())) {
+                call.fail(cause);
+            }
+            this.calls.clear();
+        }
+    }
+}
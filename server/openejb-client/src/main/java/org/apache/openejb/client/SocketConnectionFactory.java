@@ -16,10 +16,12 @@
  */
 package org.apache.openejb.client;
 
+import org.apache.openejb.client.event.ConnectionEvicted;
 import org.apache.openejb.client.event.ConnectionOpened;
 import org.apache.openejb.client.event.ConnectionPoolCreated;
 import org.apache.openejb.client.event.ConnectionPoolTimeout;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedInputStream;
@@ -28,18 +30,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.util.Map;
 import java.util.Properties;
-import java.util.Stack;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.zip.GZIPInputStream;
 
 public class SocketConnectionFactory implements ConnectionFactory {
@@ -52,12 +57,17 @@ public class SocketConnectionFactory implements ConnectionFactory {
     private static final String PROPERTY_POOL_TIMEOUT2 = "openejb.client.connectionpool.timeout";
     public static final String PROPERTY_POOL_SIZE = "openejb.client.connection.pool.size";
     private static final String PROPERTY_POOL_SIZE2 = "openejb.client.connectionpool.size";
+    public static final String PROPERTY_POOL_IDLE_TIMEOUT = "openejb.client.connection.pool.idle.timeout";
+    public static final String PROPERTY_POOL_VALIDATION_INTERVAL = "openejb.client.connection.pool.validation.interval";
+    public static final String PROPERTY_POOL_JMX = "openejb.client.connection.pool.jmx";
     public static final String PROPERTY_KEEPALIVE = "openejb.client.keepalive";
     public static final String ENABLED_CIPHER_SUITES = "openejb.client.enabledCipherSuites";
 
-    private static final Map<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
+    private static final ConcurrentMap<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
     private int size = 5;
     private long timeoutPool = 1000;
+    private long timeoutIdle = 60000;
+    private long validationInterval = 5000;
     private int timeoutConnect = 1000;
     private int timeoutRead = 14400000;
     private int timeoutLinger;
@@ -67,6 +77,8 @@ public class SocketConnectionFactory implements ConnectionFactory {
 
         this.size = this.getSize();
         this.timeoutPool = this.getTimeoutPool();
+        this.timeoutIdle = getLong(System.getProperties(), PROPERTY_POOL_IDLE_TIMEOUT, this.timeoutIdle);
+        this.validationInterval = getLong(System.getProperties(), PROPERTY_POOL_VALIDATION_INTERVAL, this.validationInterval);
         this.timeoutConnect = this.getTimeoutSocket();
         this.timeoutLinger = this.getTimeoutLinger();
         this.timeoutRead = this.getTimeoutRead();
@@ -152,37 +164,43 @@ public class SocketConnectionFactory implements ConnectionFactory {
 
     @Override
     public Connection getConnection(final URI uri) throws java.io.IOException {
+        return this.getConnection(uri, true);
+    }
 
-        final Pool pool = this.getPool(uri);
-
-        SocketConnection conn = pool.get();
-        if (conn == null) {
-            try {
-                conn = new SocketConnection(uri, pool);
-                conn.open(uri);
-            } catch (IOException e) {
-
-                conn.cleanUp();
+    private Connection getConnection(final URI uri, final boolean retryStale) throws IOException {
 
-                pool.put(null);
-                throw e;
+        final Pool pool = this.getPool(uri);
+        final Pool.Slot slot = pool.borrow();
+
+        SocketConnection conn = slot.connection;
+        if (conn != null) {
+            final long idle = System.currentTimeMillis() - slot.lastUsed;
+            if (this.timeoutIdle > 0 && idle > this.timeoutIdle) {
+                pool.evict(slot, "idle");
+                conn = null;
+            } else if (!conn.isValid(idle)) {
+                pool.evict(slot, "stale");
+                conn = null;
             }
         }
 
-        try {
-            if (!conn.lock.tryLock(2, TimeUnit.SECONDS)) {
-                throw new InterruptedException();
-            }
-        } catch (InterruptedException e) {
-            Thread.interrupted();
-            pool.put(conn);
-            throw new IOException("Connection busy");
+        final boolean reused = conn != null;
+        if (conn == null) {
+            conn = new SocketConnection(uri, pool, slot);
+            slot.connection = conn;
+            conn.inUse = true;
+
+            // on failure the connection discards itself and gives the slot back
+            conn.open(uri);
+            pool.stats.created();
+        } else {
+            conn.inUse = true;
         }
 
         final OutputStream ouputStream = conn.getOutputStream();
         if (conn.socket.isClosed()) {
-            pool.put(null);
-            return this.getConnection(uri);
+            conn.discard();
+            return this.getConnection(uri, retryStale);
         }
 
         try {
@@ -202,7 +220,11 @@ public class SocketConnectionFactory implements ConnectionFactory {
                 }
             }
         } catch (IOException e) {
-            pool.put(null);
+            conn.discard();
+            if (reused && retryStale) {
+                // the server most likely closed the idle socket, give a fresh one a chance
+                return this.getConnection(uri, false);
+            }
             throw e;
         }
 
@@ -212,8 +234,12 @@ public class SocketConnectionFactory implements ConnectionFactory {
     private Pool getPool(final URI uri) {
         Pool pool = connections.get(uri);
         if (pool == null) {
-            pool = new Pool(uri, this.getSize(), this.timeoutPool);
-            connections.put(uri, pool);
+            pool = new Pool(uri, this.getSize(), this.timeoutPool, this.timeoutIdle);
+            final Pool existing = connections.putIfAbsent(uri, pool);
+            if (existing != null) {
+                return existing;
+            }
+            pool.created();
         }
         return pool;
     }
@@ -224,15 +250,17 @@ public class SocketConnectionFactory implements ConnectionFactory {
         private final URI uri;
 
         private boolean discarded;
+        private boolean inUse;
         private final Pool pool;
-        private final Lock lock = new ReentrantLock();
+        private final Pool.Slot slot;
         private OutputStream out;
         private InputStream in;
         private boolean gzip = false;
 
-        public SocketConnection(final URI uri, final Pool pool) {
+        private SocketConnection(final URI uri, final Pool pool, final Pool.Slot slot) {
             this.uri = uri;
             this.pool = pool;
+            this.slot = slot;
         }
 
         @Override
@@ -273,6 +301,38 @@ public class SocketConnectionFactory implements ConnectionFactory {
             }
         }
 
+        /**
+         * Cheap checks first, sockets idle for longer than the validation interval
+         * are also probed for an end of stream sent by the server.
+         */
+        private boolean isValid(final long idle) {
+            if (this.socket == null || this.socket.isClosed() || !this.socket.isConnected()
+                || this.socket.isInputShutdown() || this.socket.isOutputShutdown()) {
+                return false;
+            }
+
+            final long interval = SocketConnectionFactory.this.validationInterval;
+            if (interval < 0 || idle < interval || this.socket instanceof SSLSocket) {
+                return true;
+            }
+
+            try {
+                final int timeout = this.socket.getSoTimeout();
+                this.socket.setSoTimeout(1);
+                try {
+                    // nothing is expected between two requests, even a byte means the stream is out of sync
+                    this.socket.getInputStream().read();
+                    return false;
+                } catch (final SocketTimeoutException e) {
+                    return true;
+                } finally {
+                    this.socket.setSoTimeout(timeout);
+                }
+            } catch (final IOException e) {
+                return false;
+            }
+        }
+
         protected void open(final URI uri) throws IOException {
 
             /*-----------------------*/
@@ -337,14 +397,14 @@ public class SocketConnectionFactory implements ConnectionFactory {
         @Override
         public void discard() {
             try {
-                this.pool.put(null);
+                if (this.inUse) {
+                    this.inUse = false;
+                    this.pool.discard(this.slot, this);
+                }
             } finally {
                 this.discarded = true;
                 this.cleanUp();
             }
-
-            // don't bother unlocking it
-            // it should never get used again
         }
 
         @Override
@@ -358,11 +418,9 @@ public class SocketConnectionFactory implements ConnectionFactory {
                 return;
             }
 
-            this.pool.put(this);
-            try {
-                this.lock.unlock();
-            } catch (IllegalMonitorStateException e) {
-                //Ignore
+            if (this.inUse) {
+                this.inUse = false;
+                this.pool.release(this.slot);
             }
         }
 
@@ -437,39 +495,131 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
     }
 
+    /**
+     * Fixed set of slots, each one owning at most one socket.
+     * <p/>
+     * Borrowing is a CAS on a slot flag, starting with the slot the thread used last and then
+     * with the slots already connected, so the common case neither locks nor allocates.
+     * Threads only park when every slot is busy and are woken up one at a time on release.
+     */
     private static class Pool {
 
-        private final Semaphore semaphore;
-        private final Stack<SocketConnection> pool;
+        private final Slot[] slots;
+        private final ThreadLocal<Slot> affinity = new ThreadLocal<Slot>();
+        private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+        private final AtomicLong nextSweep = new AtomicLong();
         private final long timeout;
+        private final long timeoutIdle;
         private final TimeUnit timeUnit;
         private final int size;
         private final URI uri;
+        private final ConnectionPoolStats stats;
 
-        private Pool(final URI uri, final int size, final long timeout) {
+        private Pool(final URI uri, final int size, final long timeout, final long timeoutIdle) {
             this.uri = uri;
             this.size = size;
-            this.semaphore = new Semaphore(size);
-            this.pool = new Stack<SocketConnection>();
+            this.slots = new Slot[size];
             this.timeout = timeout;
+            this.timeoutIdle = timeoutIdle;
             this.timeUnit = TimeUnit.MILLISECONDS;
+            this.stats = new ConnectionPoolStats(uri, size);
 
             for (int i = 0; i < size; i++) {
-                this.pool.push(null);
+                this.slots[i] = new Slot();
+            }
+        }
+
+        private void created() {
+            if (isJmx()) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(this.stats,
+                        new ObjectName("openejb.client:type=ConnectionPool,uri=" + ObjectName.quote(this.uri.toString())));
+                } catch (final Throwable e) {
+                    //Ignore
+                }
+            }
+
+            Client.fireEvent(new ConnectionPoolCreated(this.uri, this.size, this.timeout, this.timeUnit, this.stats));
+        }
+
+        /**
+         * The platform MBeanServer outlives the pools, never unregistered they would leak the classloader
+         * of a client packaged in a webapp so by default they are only registered when the client comes
+         * from the system classloader (or one of its parents).
+         */
+        private static boolean isJmx() {
+            final String jmx = System.getProperty(PROPERTY_POOL_JMX);
+            if (jmx != null) {
+                return Boolean.parseBoolean(jmx);
+            }
+
+            final ClassLoader loader = Pool.class.getClassLoader();
+            for (ClassLoader system = ClassLoader.getSystemClassLoader(); system != null; system = system.getParent()) {
+                if (system == loader) {
+                    return true;
+                }
+            }
+            return loader == null;
+        }
+
+        public Slot borrow() throws IOException {
+            final Slot slot = this.tryAcquire();
+            if (slot != null) {
+                this.stats.borrowed(0);
+                return slot;
+            }
+            return this.await();
+        }
+
+        private Slot tryAcquire() {
+            final Slot last = this.affinity.get();
+            if (last != null && last.busy.compareAndSet(false, true)) {
+                return last;
             }
 
-            Client.fireEvent(new ConnectionPoolCreated(uri, size, timeout, this.timeUnit));
+            // connected slots first, opening a socket is way more expensive than a second pass
+            for (int pass = 0; pass < 2; pass++) {
+                for (final Slot slot : this.slots) {
+                    if ((pass == 1 || slot.connection != null) && slot.busy.compareAndSet(false, true)) {
+                        this.affinity.set(slot);
+                        return slot;
+                    }
+                }
+            }
+            return null;
         }
 
-        public SocketConnection get() throws IOException {
+        private Slot await() throws IOException {
+            final Thread thread = Thread.currentThread();
+            final long start = System.nanoTime();
+            final long deadline = start + this.timeUnit.toNanos(this.timeout);
+
+            this.stats.waiting(1);
             try {
-                if (this.semaphore.tryAcquire(this.timeout, this.timeUnit)) {
-                    return this.pool.pop();
+                while (true) {
+                    this.waiters.add(thread);
+
+                    final Slot slot = this.tryAcquire();
+                    if (slot != null) {
+                        this.leave(thread);
+                        this.stats.borrowed(System.nanoTime() - start);
+                        return slot;
+                    }
+
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || Thread.interrupted()) {
+                        this.leave(thread);
+                        break;
+                    }
+
+                    LockSupport.parkNanos(this, remaining);
+                    this.waiters.remove(thread);
                 }
-            } catch (InterruptedException e) {
-                Thread.interrupted();
+            } finally {
+                this.stats.waiting(-1);
             }
 
+            this.stats.timeout();
             final ConnectionPoolTimeoutException exception = new ConnectionPoolTimeoutException("No connections available in pool (size " +
                 this.size +
                 ").  Waited for " +
@@ -480,18 +630,82 @@ public class SocketConnectionFactory implements ConnectionFactory {
             throw exception;
         }
 
-        public void put(final SocketConnection connection) {
-            this.pool.push(connection);
-            this.semaphore.release();
+        private void leave(final Thread thread) {
+            if (!this.waiters.remove(thread)) {
+                // a release picked us while we were not parked, pass the wake up on
+                this.signal();
+            }
+        }
+
+        private void signal() {
+            final Thread waiter = this.waiters.poll();
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+
+        public void release(final Slot slot) {
+            final long now = System.currentTimeMillis();
+            slot.lastUsed = now;
+            slot.busy.set(false);
+            this.stats.returned();
+            this.signal();
+
+            final long sweep = this.nextSweep.get();
+            if (this.timeoutIdle > 0 && now >= sweep && this.nextSweep.compareAndSet(sweep, now + this.timeoutIdle)) {
+                this.evictIdle(now);
+            }
+        }
+
+        public void discard(final Slot slot, final SocketConnection connection) {
+            if (slot.connection == connection) {
+                slot.connection = null;
+            }
+            this.stats.discarded();
+            slot.busy.set(false);
+            this.stats.returned();
+            this.signal();
+        }
+
+        /**
+         * Closes the connection of a slot the caller owns, the slot stays borrowed.
+         */
+        private void evict(final Slot slot, final String reason) {
+            final SocketConnection connection = slot.connection;
+            slot.connection = null;
+            if (connection != null) {
+                connection.cleanUp();
+                this.stats.evicted();
+                Client.fireEvent(new ConnectionEvicted(this.uri, reason));
+            }
+        }
+
+        private void evictIdle(final long now) {
+            for (final Slot slot : this.slots) {
+                if (slot.connection != null && now - slot.lastUsed > this.timeoutIdle && slot.busy.compareAndSet(false, true)) {
+                    if (now - slot.lastUsed > this.timeoutIdle) {
+                        this.evict(slot, "idle");
+                    }
+                    slot.busy.set(false);
+                    this.signal();
+                }
+            }
         }
 
         @Override
         public String toString() {
             return "Pool{" +
                 "size=" + this.size +
-                ", available=" + this.semaphore.availablePermits() +
+                ", borrowed=" + this.stats.getBorrowed() +
                 ", uri=" + this.uri +
                 '}';
         }
+
+        private static class Slot {
+
+            private final AtomicBoolean busy = new AtomicBoolean();
+            private volatile SocketConnection connection;
+            private volatile long lastUsed = System.currentTimeMillis();
+        }
     }
 }
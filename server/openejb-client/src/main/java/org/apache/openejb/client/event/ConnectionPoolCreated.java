@@ -16,6 +16,8 @@
  */
 package org.apache.openejb.client.event;
 
+import org.apache.openejb.client.ConnectionPoolStats;
+
 import java.net.URI;
 import java.util.concurrent.TimeUnit;
 
@@ -29,12 +31,18 @@ public class ConnectionPoolCreated {
     private final TimeUnit timeUnit;
     private final int size;
     private final URI uri;
+    private final ConnectionPoolStats stats;
 
     public ConnectionPoolCreated(final URI uri, final int size, final long timeout, final TimeUnit timeUnit) {
+        this(uri, size, timeout, timeUnit, null);
+    }
+
+    public ConnectionPoolCreated(final URI uri, final int size, final long timeout, final TimeUnit timeUnit, final ConnectionPoolStats stats) {
         this.uri = uri;
         this.size = size;
         this.timeUnit = timeUnit;
         this.timeout = timeout;
+        this.stats = stats;
     }
 
     public long getTimeout() {
@@ -53,6 +61,13 @@ public class ConnectionPoolCreated {
         return uri;
     }
 
+    /**
+     * @return the live counters of the pool, can be null
+     */
+    public ConnectionPoolStats getStats() {
+        return stats;
+    }
+
     @Override
     public String toString() {
         return "ConnectionPoolCreated{" +
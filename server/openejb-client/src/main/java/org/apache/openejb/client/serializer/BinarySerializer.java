@@ -0,0 +1,674 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import org.apache.openejb.client.EjbObjectInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compact reflective serializer for business method parameters and return values.
+ * <p/>
+ * Unlike java serialization no class descriptor is written: a class name is sent once per
+ * payload and then referenced by index, primitive fields are written raw and only the
+ * non static, non transient fields of the serializable classes of the hierarchy are considered.
+ * Shared references and cycles are preserved.
+ * <p/>
+ * Only public serializable classes with a public no-arg constructor and no custom serialization
+ * ({@code writeObject}, {@code readResolve}, {@link Externalizable}...) and the plain JDK collections
+ * are written this way, anything else (java.time, UUID, sorted collections with a comparator, collection
+ * subclasses...) is embedded with java serialization. Class names go through the same black/white list as
+ * {@link EjbObjectInputStream} and the reader never instantiates a class the writer wouldn't have written.
+ * <p/>
+ * Enable it with {@code openejb.ejbd.serializer=org.apache.openejb.client.serializer.BinarySerializer}
+ * on the client and on the server (globally or per bean).
+ * <p/>
+ * Sizes read from the payload are checked against the remaining bytes and against
+ * {@code openejb.ejbd.serializer.binary.max-size} (default 16M) before anything is allocated.
+ */
+public class BinarySerializer implements EJBDSerializer {
+
+    private static final byte NULL = 0;
+    private static final byte REFERENCE = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte BYTES = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte DATE = 14;
+    private static final byte ENUM = 15;
+    private static final byte ARRAY = 16;
+    private static final byte COLLECTION = 17;
+    private static final byte MAP = 18;
+    private static final byte OBJECT = 19;
+    private static final byte JAVA = 20;
+
+    public static final String MAX_SIZE = "openejb.ejbd.serializer.binary.max-size";
+
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger(MAX_SIZE, 16 * 1024 * 1024);
+
+    /**
+     * Upper bound of the initial capacity of the collections, they grow if the payload really has more elements.
+     */
+    private static final int MAX_CAPACITY_HINT = 1024;
+
+    private final int maxSize;
+
+    public BinarySerializer() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public BinarySerializer(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        for (final Class<?> type : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(final Class<?> type) {
+            final List<Field> fields = new ArrayList<Field>();
+            Class<?> current = type;
+            while (current != null && current != Object.class) {
+                final Field[] declared = current.getDeclaredFields();
+                // declaration order is not specified, sort to get the same layout on both sides
+                Arrays.sort(declared, new Comparator<Field>() {
+                    @Override
+                    public int compare(final Field o1, final Field o2) {
+                        return o1.getName().compareTo(o2.getName());
+                    }
+                });
+                for (final Field field : declared) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+                current = current.getSuperclass();
+                if (current != null && !Serializable.class.isAssignableFrom(current)) { // as java serialization
+                    break;
+                }
+            }
+            return fields.toArray(new Field[fields.size()]);
+        }
+    };
+
+    /**
+     * Public no-arg constructor of the classes the binary format represents faithfully, null for the others.
+     */
+    private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(final Class<?> type) {
+            if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+                || !Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())
+                || type.isInterface() || type.isArray() || type.isEnum()) {
+                return null;
+            }
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                if (hasMethod(current, "writeObject", ObjectOutputStream.class) || hasMethod(current, "readObject", ObjectInputStream.class)
+                    || hasMethod(current, "readObjectNoData") || hasMethod(current, "writeReplace") || hasMethod(current, "readResolve")) {
+                    return null;
+                }
+            }
+            try {
+                return type.getConstructor();
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        private boolean hasMethod(final Class<?> type, final String name, final Class<?>... parameters) {
+            try {
+                type.getDeclaredMethod(name, parameters);
+                return true;
+            } catch (final NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Collections written as their elements, sorted ones only without comparator.
+     */
+    private static final Set<Class<?>> COLLECTIONS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+        HashMap.class, LinkedHashMap.class, TreeMap.class));
+
+    @Override
+    public Serializable serialize(final Object o) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try {
+            new Writer(new DataOutputStream(baos)).write(o);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Cannot serialize " + o, e);
+        }
+        return baos.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(final Serializable o, final Class<?> clazz) {
+        ClassLoader loader = null == clazz ? null : clazz.getClassLoader();
+        if (null == loader) {
+            loader = Thread.currentThread().getContextClassLoader();
+        }
+
+        try {
+            return new Reader(new DataInputStream(new ByteArrayInputStream((byte[]) o)), loader, this.maxSize).read();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Cannot deserialize " + (null == clazz ? "payload" : clazz.getName()), e);
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot deserialize " + (null == clazz ? "payload" : clazz.getName()), e);
+        }
+    }
+
+    private static final class Writer {
+
+        private final DataOutputStream out;
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+        private Writer(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void write(final Object o) throws IOException {
+            if (null == o) {
+                this.out.writeByte(NULL);
+                return;
+            }
+
+            final Class<?> type = o.getClass();
+            if (type == String.class) {
+                this.out.writeByte(STRING);
+                this.writeString((String) o);
+            } else if (type == Integer.class) {
+                this.out.writeByte(INT);
+                this.out.writeInt((Integer) o);
+            } else if (type == Long.class) {
+                this.out.writeByte(LONG);
+                this.out.writeLong((Long) o);
+            } else if (type == Boolean.class) {
+                this.out.writeByte(BOOLEAN);
+                this.out.writeBoolean((Boolean) o);
+            } else if (type == Double.class) {
+                this.out.writeByte(DOUBLE);
+                this.out.writeDouble((Double) o);
+            } else if (type == Float.class) {
+                this.out.writeByte(FLOAT);
+                this.out.writeFloat((Float) o);
+            } else if (type == Byte.class) {
+                this.out.writeByte(BYTE);
+                this.out.writeByte((Byte) o);
+            } else if (type == Short.class) {
+                this.out.writeByte(SHORT);
+                this.out.writeShort((Short) o);
+            } else if (type == Character.class) {
+                this.out.writeByte(CHAR);
+                this.out.writeChar((Character) o);
+            } else if (type == byte[].class) {
+                this.out.writeByte(BYTES);
+                final byte[] bytes = (byte[]) o;
+                this.writeSize(bytes.length);
+                this.out.write(bytes);
+            } else if (type == BigInteger.class) {
+                this.out.writeByte(BIG_INTEGER);
+                final byte[] bytes = ((BigInteger) o).toByteArray();
+                this.writeSize(bytes.length);
+                this.out.write(bytes);
+            } else if (type == BigDecimal.class) {
+                this.out.writeByte(BIG_DECIMAL);
+                this.writeString(o.toString());
+            } else if (type == Date.class) {
+                this.out.writeByte(DATE);
+                this.out.writeLong(((Date) o).getTime());
+            } else if (o instanceof Enum) {
+                this.out.writeByte(ENUM);
+                this.writeClass(((Enum<?>) o).getDeclaringClass());
+                this.writeString(((Enum<?>) o).name());
+            } else if (this.writeReference(o)) {
+                return;
+            } else if (type.isArray()) {
+                this.out.writeByte(ARRAY);
+                final Class<?> component = type.getComponentType();
+                this.writeClass(component);
+                final int length = Array.getLength(o);
+                this.writeSize(length);
+                for (int i = 0; i < length; i++) {
+                    if (component.isPrimitive()) {
+                        this.writePrimitive(component, Array.get(o, i));
+                    } else {
+                        this.write(Array.get(o, i));
+                    }
+                }
+            } else if (!isBinary(o)) {
+                if (!(o instanceof Serializable)) {
+                    throw new NotSerializableException(type.getName());
+                }
+                this.out.writeByte(JAVA);
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                final ObjectOutputStream java = new ObjectOutputStream(baos);
+                java.writeObject(o);
+                java.close();
+                this.writeSize(baos.size());
+                baos.writeTo(this.out);
+            } else if (o instanceof Collection) {
+                this.out.writeByte(COLLECTION);
+                this.writeClass(type);
+                final Collection<?> collection = (Collection<?>) o;
+                this.writeSize(collection.size());
+                for (final Object item : collection) {
+                    this.write(item);
+                }
+            } else if (o instanceof Map) {
+                this.out.writeByte(MAP);
+                this.writeClass(type);
+                final Map<?, ?> map = (Map<?, ?>) o;
+                this.writeSize(map.size());
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    this.write(entry.getKey());
+                    this.write(entry.getValue());
+                }
+            } else {
+                this.out.writeByte(OBJECT);
+                this.writeClass(type);
+                for (final Field field : FIELDS.get(type)) {
+                    try {
+                        if (field.getType().isPrimitive()) {
+                            this.writePrimitive(field.getType(), field.get(o));
+                        } else {
+                            this.write(field.get(o));
+                        }
+                    } catch (final IllegalAccessException e) {
+                        throw new IOException("Cannot read " + field, e);
+                    }
+                }
+            }
+        }
+
+        private boolean isBinary(final Object o) {
+            final Class<?> type = o.getClass();
+            if (type.isArray()) {
+                return true;
+            }
+            if (COLLECTIONS.contains(type)) {
+                if (o instanceof TreeSet) {
+                    return null == ((TreeSet<?>) o).comparator();
+                }
+                if (o instanceof TreeMap) {
+                    return null == ((TreeMap<?, ?>) o).comparator();
+                }
+                return true;
+            }
+            return !(o instanceof Collection) && !(o instanceof Map) && null != CONSTRUCTORS.get(type);
+        }
+
+        private boolean writeReference(final Object o) throws IOException {
+            final Integer index = this.references.get(o);
+            if (null != index) {
+                this.out.writeByte(REFERENCE);
+                this.writeSize(index);
+                return true;
+            }
+            this.references.put(o, this.references.size());
+            return false;
+        }
+
+        private void writePrimitive(final Class<?> type, final Object value) throws IOException {
+            if (type == int.class) {
+                this.out.writeInt((Integer) value);
+            } else if (type == long.class) {
+                this.out.writeLong((Long) value);
+            } else if (type == boolean.class) {
+                this.out.writeBoolean((Boolean) value);
+            } else if (type == double.class) {
+                this.out.writeDouble((Double) value);
+            } else if (type == float.class) {
+                this.out.writeFloat((Float) value);
+            } else if (type == byte.class) {
+                this.out.writeByte((Byte) value);
+            } else if (type == short.class) {
+                this.out.writeShort((Short) value);
+            } else {
+                this.out.writeChar((Character) value);
+            }
+        }
+
+        private void writeClass(final Class<?> type) throws IOException {
+            final Integer index = this.classes.get(type);
+            if (null != index) {
+                this.writeSize(index + 1);
+                return;
+            }
+            this.classes.put(type, this.classes.size());
+            this.writeSize(0);
+            this.writeString(type.getName());
+        }
+
+        private void writeString(final String value) throws IOException {
+            // not writeUTF which is limited to 64k
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeSize(bytes.length);
+            this.out.write(bytes);
+        }
+
+        private void writeSize(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.out.writeByte(value);
+        }
+    }
+
+    private static final class Reader {
+
+        private final DataInputStream in;
+        private final ClassLoader loader;
+        private final int maxSize;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final List<Object> references = new ArrayList<Object>();
+
+        private Reader(final DataInputStream in, final ClassLoader loader, final int maxSize) {
+            this.in = in;
+            this.loader = loader;
+            this.maxSize = maxSize;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object read() throws IOException, ClassNotFoundException {
+            final byte tag = this.in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case REFERENCE:
+                    return this.readReference();
+                case STRING:
+                    return this.readString();
+                case INT:
+                    return this.in.readInt();
+                case LONG:
+                    return this.in.readLong();
+                case BOOLEAN:
+                    return this.in.readBoolean();
+                case DOUBLE:
+                    return this.in.readDouble();
+                case FLOAT:
+                    return this.in.readFloat();
+                case BYTE:
+                    return this.in.readByte();
+                case SHORT:
+                    return this.in.readShort();
+                case CHAR:
+                    return this.in.readChar();
+                case BYTES:
+                    return this.readBytes();
+                case BIG_INTEGER:
+                    return new BigInteger(this.readBytes());
+                case BIG_DECIMAL:
+                    return new BigDecimal(this.readString());
+                case DATE:
+                    return new Date(this.in.readLong());
+                case ENUM:
+                    return Enum.valueOf((Class<Enum>) this.readClass(), this.readString());
+                case ARRAY:
+                    return this.readArray();
+                case COLLECTION:
+                    return this.readCollection();
+                case MAP:
+                    return this.readMap();
+                case OBJECT:
+                    return this.readObject();
+                case JAVA:
+                    return this.readJava();
+                default:
+                    throw new IOException("Unknown type tag " + tag);
+            }
+        }
+
+        private Object readArray() throws IOException, ClassNotFoundException {
+            final Class<?> component = this.readClass();
+            // a primitive element takes at least a byte, any other one at least its tag
+            final int length = this.readLength();
+            final Object array = Array.newInstance(component, length);
+            this.references.add(array);
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, component.isPrimitive() ? this.readPrimitive(component) : this.read());
+            }
+            return array;
+        }
+
+        private Object readCollection() throws IOException, ClassNotFoundException {
+            final Class<?> type = this.readClass();
+            final int size = this.readLength();
+            final int capacity = capacity(size);
+
+            final Collection<Object> collection;
+            if (type == ArrayList.class) {
+                collection = new ArrayList<Object>(capacity);
+            } else if (type == LinkedList.class) {
+                collection = new LinkedList<Object>();
+            } else if (type == HashSet.class) {
+                collection = new HashSet<Object>(capacity);
+            } else if (type == LinkedHashSet.class) {
+                collection = new LinkedHashSet<Object>(capacity);
+            } else if (type == TreeSet.class) {
+                collection = new TreeSet<Object>();
+            } else {
+                throw new InvalidClassException(type.getName(), "not a binary collection");
+            }
+            this.references.add(collection);
+
+            for (int i = 0; i < size; i++) {
+                collection.add(this.read());
+            }
+            return collection;
+        }
+
+        private Object readMap() throws IOException, ClassNotFoundException {
+            final Class<?> type = this.readClass();
+            final int size = this.readLength();
+            final int capacity = capacity(size);
+
+            final Map<Object, Object> map;
+            if (type == HashMap.class) {
+                map = new HashMap<Object, Object>(capacity);
+            } else if (type == LinkedHashMap.class) {
+                map = new LinkedHashMap<Object, Object>(capacity);
+            } else if (type == TreeMap.class) {
+                map = new TreeMap<Object, Object>();
+            } else {
+                throw new InvalidClassException(type.getName(), "not a binary map");
+            }
+            this.references.add(map);
+
+            for (int i = 0; i < size; i++) {
+                map.put(this.read(), this.read());
+            }
+            return map;
+        }
+
+        private Object readObject() throws IOException, ClassNotFoundException {
+            final Class<?> type = this.readClass();
+            final Constructor<?> constructor = CONSTRUCTORS.get(type);
+            if (null == constructor) { // never written by a writer, don't instantiate it
+                throw new InvalidClassException(type.getName(), "not a binary serializable class");
+            }
+
+            final Object instance;
+            try {
+                instance = constructor.newInstance();
+            } catch (final Exception e) {
+                throw new IOException("Cannot instantiate " + type.getName(), e);
+            }
+            this.references.add(instance);
+
+            for (final Field field : FIELDS.get(type)) {
+                try {
+                    field.set(instance, field.getType().isPrimitive() ? this.readPrimitive(field.getType()) : this.read());
+                } catch (final IllegalAccessException e) {
+                    throw new IOException("Cannot set " + field, e);
+                }
+            }
+            return instance;
+        }
+
+        private Object readJava() throws IOException, ClassNotFoundException {
+            final ObjectInputStream java = new EjbObjectInputStream(new ByteArrayInputStream(this.readBytes()));
+            try {
+                final Object o = java.readObject();
+                this.references.add(o);
+                return o;
+            } finally {
+                java.close();
+            }
+        }
+
+        private Object readPrimitive(final Class<?> type) throws IOException {
+            if (type == int.class) {
+                return this.in.readInt();
+            } else if (type == long.class) {
+                return this.in.readLong();
+            } else if (type == boolean.class) {
+                return this.in.readBoolean();
+            } else if (type == double.class) {
+                return this.in.readDouble();
+            } else if (type == float.class) {
+                return this.in.readFloat();
+            } else if (type == byte.class) {
+                return this.in.readByte();
+            } else if (type == short.class) {
+                return this.in.readShort();
+            }
+            return this.in.readChar();
+        }
+
+        private Class<?> readClass() throws IOException, ClassNotFoundException {
+            final int index = this.readSize();
+            if (index > 0) {
+                if (index > this.classes.size()) {
+                    throw new StreamCorruptedException("Unknown class index " + index);
+                }
+                return this.classes.get(index - 1);
+            }
+
+            final String name = this.readString();
+            Class<?> type = PRIMITIVES.get(name);
+            if (null == type) {
+                type = Class.forName(EjbObjectInputStream.checkClassName(name), false, this.loader);
+            }
+            this.classes.add(type);
+            return type;
+        }
+
+        private byte[] readBytes() throws IOException {
+            final byte[] bytes = new byte[this.readLength()];
+            this.in.readFully(bytes);
+            return bytes;
+        }
+
+        private String readString() throws IOException {
+            return new String(this.readBytes(), StandardCharsets.UTF_8);
+        }
+
+        private int readSize() throws IOException {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 28) {
+                    throw new StreamCorruptedException("Malformed size");
+                }
+                b = this.in.readByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /**
+         * A size of something still to read, each unit takes at least a byte of the payload.
+         */
+        private int readLength() throws IOException {
+            final int length = this.readSize();
+            if (length < 0 || length > this.maxSize || length > this.in.available()) {
+                throw new StreamCorruptedException("Invalid size " + length);
+            }
+            return length;
+        }
+
+        private Object readReference() throws IOException {
+            final int index = this.readSize();
+            if (index < 0 || index >= this.references.size()) {
+                throw new StreamCorruptedException("Unknown reference " + index);
+            }
+            return this.references.get(index);
+        }
+
+        private static int capacity(final int size) {
+            return Math.min(size, MAX_CAPACITY_HINT) * 4 / 3 + 1;
+        }
+    }
+}
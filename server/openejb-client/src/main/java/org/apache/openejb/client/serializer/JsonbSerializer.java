@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.Serializable;
+
+/**
+ * Serializes business method parameters and return values as JSON with the JSON-B
+ * implementation available on the classpath (Johnzon in TomEE).
+ * <p/>
+ * Slower than {@link BinarySerializer} but the payload is readable and does not depend on
+ * the exact class layout: client and server only have to agree on the JSON mapping.
+ */
+public class JsonbSerializer implements EJBDSerializer {
+
+    private volatile Jsonb jsonb;
+
+    @Override
+    public Serializable serialize(final Object o) {
+        return getJsonb().toJson(o);
+    }
+
+    @Override
+    public Object deserialize(final Serializable o, final Class<?> clazz) {
+        return getJsonb().fromJson(String.class.cast(o), clazz);
+    }
+
+    private Jsonb getJsonb() {
+        if (null == jsonb) {
+            synchronized (this) {
+                if (null == jsonb) {
+                    jsonb = JsonbBuilder.create();
+                }
+            }
+        }
+        return jsonb;
+    }
+}
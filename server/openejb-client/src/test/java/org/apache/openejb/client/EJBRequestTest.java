@@ -26,10 +26,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.lang.reflect.Method;
 
 public class EJBRequestTest extends TestCase {
 
+    private static final Class[] INTERFACES = {FooHome.class, FooObject.class};
+
     private EJBMetaDataImpl ejb;
 
     static interface FooHome extends EJBHome {
@@ -42,6 +45,8 @@ public class EJBRequestTest extends TestCase {
     static interface FooObject extends EJBObject {
 
         String businessMethod(String param);
+
+        long primitives(int i, boolean b, double d, char c);
     }
 
     @Override
@@ -145,6 +150,152 @@ public class EJBRequestTest extends TestCase {
         invoke(requestMethod, method, args);
     }
 
+    public void testCompactBusinessMethod() throws Exception {
+        ejb = advertised(ejb);
+        assertTrue(ejb.hasMethodTable(FooObject.class));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        invoke(requestMethod, method, args);
+    }
+
+    public void testCompactPrimitives() throws Exception {
+        ejb = advertised(ejb);
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("primitives", new Class[]{int.class, boolean.class, double.class, char.class});
+        final Object[] args = new Object[]{42, true, 1.5d, 'x'};
+
+        invoke(requestMethod, method, args);
+    }
+
+    public void testNoMethodTablesForOlderClients() throws Exception {
+        ejb.setMetaData(new ProtocolMetaData("4.6"));
+        final EJBMetaDataImpl legacy = advertised(ejb);
+        assertFalse(legacy.hasMethodTable(FooObject.class));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        ejb = legacy;
+        invoke(requestMethod, method, args);
+    }
+
+    public void testCompactIsSmaller() throws Exception {
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        final int legacy = size(new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, args, null, null));
+        final int compact = size(new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, advertised(ejb), method, args, null, null));
+
+        assertTrue(compact + " < " + legacy, compact < legacy);
+    }
+
+    public void testCompactBodyIsConsumedWhenInterfaceIsUnknown() throws Exception {
+        final Method method = FooObject.class.getMethod("primitives", new Class[]{int.class, boolean.class, double.class, char.class});
+        final EJBRequest expected = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, advertised(ejb), method, new Object[]{42, true, 1.5d, 'x'}, null, null);
+        expected.getBody().setAuthentication(new JNDIContext.AuthenticationInfo("realm", "user", new char[]{'p', 'w'}));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        expected.writeExternal(out);
+        out.writeUTF("next request");
+        out.close();
+
+        // the server side can't load the interface
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())) {
+            @Override
+            protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (FooObject.class.getName().equals(desc.getName())) {
+                    throw new ClassNotFoundException(desc.getName());
+                }
+                return super.resolveClass(desc);
+            }
+        };
+
+        final EJBRequest actual = new EJBRequest();
+        actual.readExternal(in);
+        try {
+            actual.getBody().readExternal(in);
+            fail("the interface should not be resolved");
+        } catch (final ClassNotFoundException cnfe) {
+            assertEquals(FooObject.class.getName(), cnfe.getMessage());
+        }
+
+        assertEquals("user", actual.getBody().getAuthentication().getUser());
+        assertEquals("next request", in.readUTF());
+    }
+
+    public void testCompactInterfaceId() throws Exception {
+        ejb.setDeploymentInterfaces(INTERFACES);
+        ejb = advertised(ejb);
+        assertEquals(1, ejb.getInterfaceId(FooObject.class));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        invoke(requestMethod, method, args);
+    }
+
+    public void testInterfaceIdIsSmaller() throws Exception {
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        final int withClass = size(new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, advertised(ejb), method, args, null, null));
+        ejb.setDeploymentInterfaces(INTERFACES);
+        final int withId = size(new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, advertised(ejb), method, args, null, null));
+
+        assertTrue(withId + " < " + withClass, withId < withClass);
+    }
+
+    public void testCompactBodyIsConsumedWhenInterfaceIdIsUnknown() throws Exception {
+        ejb.setDeploymentInterfaces(INTERFACES);
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final EJBRequest expected = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, advertised(ejb), method, new Object[]{"hola mundo"}, null, null);
+        expected.getBody().setAuthentication(new JNDIContext.AuthenticationInfo("realm", "user", new char[]{'p', 'w'}));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        expected.writeExternal(out);
+        out.writeUTF("next request");
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final EJBRequest actual = new EJBRequest();
+        actual.readExternal(in);
+        actual.getBody().setInterfaces(new Class[]{FooHome.class}); // redeployed without the remote interface
+        try {
+            actual.getBody().readExternal(in);
+            fail("the interface id should not be resolved");
+        } catch (final ClassNotFoundException cnfe) {
+            // ok
+        }
+
+        assertEquals("user", actual.getBody().getAuthentication().getUser());
+        assertEquals("next request", in.readUTF());
+    }
+
+    private static EJBMetaDataImpl advertised(final EJBMetaDataImpl metaData) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        out.writeObject(metaData);
+        out.close();
+
+        return (EJBMetaDataImpl) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+    }
+
+    private static int size(final EJBRequest request) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        request.writeExternal(out);
+        out.close();
+        return baos.size();
+    }
+
     private void invoke(final RequestMethodCode requestMethod, final Method method, final Object[] args) throws IOException, ClassNotFoundException {
 
         final EJBRequest expected = new EJBRequest(requestMethod, ejb, method, args, null, null);
@@ -162,6 +313,7 @@ public class EJBRequestTest extends TestCase {
         final ObjectInputStream in = new ObjectInputStream(bais);
 
         actual.readExternal(in);
+        actual.getBody().setInterfaces(INTERFACES);
         actual.getBody().readExternal(in);
         final JNDIContext.AuthenticationInfo authentication = actual.getBody().getAuthentication();
 
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MultiplexedConnectionFactoryTest extends TestCase {
+
+    private ServerSocket server;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile int responseLength = 4;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new ServerSocket(0);
+        final Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (final Socket socket = server.accept()) {
+                    final DataInputStream in = new DataInputStream(socket.getInputStream());
+                    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    while (true) {
+                        final int id = in.readInt();
+                        in.readFully(new byte[in.readInt()]);
+                        out.writeInt(id);
+                        out.writeInt(responseLength);
+                        out.write(new byte[Math.min(responseLength, 4)]);
+                        out.flush();
+                    }
+                } catch (final IOException e) {
+                    closed.countDown();
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.close();
+        System.getProperties().remove(MultiplexedConnectionFactory.PROPERTY_IDLE_TIMEOUT);
+        System.getProperties().remove(MultiplexedConnectionFactory.PROPERTY_MAX_FRAME_SIZE);
+    }
+
+    public void testOversizedFrameIsRejected() throws Exception {
+        System.setProperty(MultiplexedConnectionFactory.PROPERTY_MAX_FRAME_SIZE, "1024");
+        responseLength = 1025;
+
+        final Connection connection = new MultiplexedConnectionFactory().getConnection(uri());
+        connection.getOutputStream().write(1);
+        try {
+            connection.getInputStream();
+            fail("the frame is larger than the max frame size");
+        } catch (final IOException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof StreamCorruptedException);
+        }
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testIdleChannelIsClosed() throws Exception {
+        System.setProperty(MultiplexedConnectionFactory.PROPERTY_IDLE_TIMEOUT, "200");
+
+        final Connection connection = new MultiplexedConnectionFactory().getConnection(uri());
+        connection.getOutputStream().write(1);
+        assertEquals(4, connection.getInputStream().available());
+        connection.close();
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    private URI uri() {
+        return URI.create("mejbd://127.0.0.1:" + server.getLocalPort() + "/" + getName());
+    }
+}
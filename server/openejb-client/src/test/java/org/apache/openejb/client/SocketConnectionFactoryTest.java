@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+import org.apache.openejb.client.event.ConnectionPoolCreated;
+import org.apache.openejb.client.event.Observes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SocketConnectionFactoryTest extends TestCase {
+
+    private ServerSocket server;
+    private final AtomicInteger accepted = new AtomicInteger();
+    private ConnectionPoolStats stats;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new ServerSocket(0);
+        final Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        accepted.incrementAndGet();
+                        drain(socket);
+                    } catch (final IOException e) {
+                        // closed
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        Client.addEventObserver(this);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Client.removeEventObserver(this);
+        server.close();
+        System.getProperties().remove(SocketConnectionFactory.PROPERTY_POOL_SIZE);
+        System.getProperties().remove(SocketConnectionFactory.PROPERTY_POOL_TIMEOUT);
+        System.getProperties().remove(SocketConnectionFactory.PROPERTY_POOL_IDLE_TIMEOUT);
+    }
+
+    public void observe(@Observes final ConnectionPoolCreated event) {
+        stats = event.getStats();
+    }
+
+    public void testSocketIsReused() throws Exception {
+        final SocketConnectionFactory factory = new SocketConnectionFactory();
+        final URI uri = uri();
+
+        for (int i = 0; i < 5; i++) {
+            factory.getConnection(uri).close();
+        }
+
+        assertEquals(1, stats.getCreated());
+        assertEquals(5, stats.getBorrowCount());
+        assertEquals(0, stats.getBorrowed());
+    }
+
+    public void testTimeout() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE, "1");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_TIMEOUT, "100");
+
+        final SocketConnectionFactory factory = new SocketConnectionFactory();
+        final URI uri = uri();
+
+        final Connection connection = factory.getConnection(uri);
+        try {
+            factory.getConnection(uri);
+            fail("pool is exhausted");
+        } catch (final ConnectionPoolTimeoutException e) {
+            // ok
+        }
+        assertEquals(1, stats.getTimeouts());
+        assertEquals(1, stats.getBorrowed());
+        assertEquals(0, stats.getWaiting());
+
+        connection.close();
+        factory.getConnection(uri).close();
+        assertEquals(1, stats.getCreated());
+    }
+
+    public void testWaiterIsWokenUp() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE, "1");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_TIMEOUT, "10000");
+
+        final SocketConnectionFactory factory = new SocketConnectionFactory();
+        final URI uri = uri();
+
+        final Connection connection = factory.getConnection(uri);
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    factory.getConnection(uri).close();
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        waiter.start();
+
+        while (stats.getWaiting() == 0) {
+            Thread.sleep(10);
+        }
+        connection.close();
+        waiter.join(5000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(2, stats.getBorrowCount());
+        assertEquals(0, stats.getTimeouts());
+    }
+
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_IDLE_TIMEOUT, "50");
+
+        final SocketConnectionFactory factory = new SocketConnectionFactory();
+        final URI uri = uri();
+
+        factory.getConnection(uri).close();
+        Thread.sleep(200);
+        factory.getConnection(uri).close();
+
+        assertEquals(1, stats.getEvicted());
+        assertEquals(2, stats.getCreated());
+        assertEquals(2, accepted.get());
+    }
+
+    private URI uri() {
+        // a new path per test to get a new pool
+        return URI.create("ejbd://localhost:" + server.getLocalPort() + "/" + getName());
+    }
+
+    private static void drain(final Socket socket) {
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final InputStream in = socket.getInputStream();
+                    while (in.read() != -1) {
+                        // keep alive bytes
+                    }
+                } catch (final IOException e) {
+                    // closed
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class BinarySerializerTest extends TestCase {
+
+    private final BinarySerializer serializer = new BinarySerializer();
+
+    public void testSimpleValues() {
+        for (final Object value : new Object[]{null, "héllo", 1, 2L, true, 3.5d, 4.5f, (byte) 6, (short) 7, 'c',
+            BigDecimal.TEN, new Date(123), TimeUnit.SECONDS}) {
+            assertEquals(value, roundTrip(value));
+        }
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3})));
+        assertTrue(Arrays.equals(new int[]{1, 2, 3}, (int[]) roundTrip(new int[]{1, 2, 3})));
+        assertTrue(Arrays.equals(new String[]{"a", null}, (String[]) roundTrip(new String[]{"a", null})));
+    }
+
+    public void testGraph() {
+        final Person parent = new Person("parent", 60);
+        final Person child = new Person("child", 30);
+        child.parent = parent;
+        parent.children.add(child);
+        parent.children.add(child);
+        parent.attributes.put("city", "Paris");
+        parent.tags = Collections.unmodifiableList(Arrays.asList("a", "b"));
+        parent.cache = "not sent";
+
+        final Person copy = (Person) roundTrip(parent);
+        assertEquals("parent", copy.name);
+        assertEquals(60, copy.age);
+        assertEquals("Paris", copy.attributes.get("city"));
+        assertEquals(Arrays.asList("a", "b"), copy.tags);
+        assertNull(copy.cache);
+        assertEquals(2, copy.children.size());
+        assertSame(copy.children.get(0), copy.children.get(1));
+        assertSame(copy, copy.children.get(0).parent);
+    }
+
+    public void testSmallerThanJavaSerialization() throws IOException {
+        final List<Person> people = new ArrayList<Person>();
+        for (int i = 0; i < 10; i++) {
+            people.add(new Person("person" + i, i));
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        out.writeObject(people);
+        out.close();
+
+        assertTrue(((byte[]) serializer.serialize(people)).length < baos.size());
+    }
+
+    public void testJavaSerializationFallback() {
+        final UUID uuid = UUID.randomUUID();
+        assertEquals(uuid, roundTrip(uuid));
+        assertEquals(LocalDate.of(2020, 2, 29), roundTrip(LocalDate.of(2020, 2, 29)));
+
+        final TreeSet<String> set = new TreeSet<String>(Collections.reverseOrder());
+        set.addAll(Arrays.asList("a", "c", "b"));
+        final TreeSet<?> setCopy = (TreeSet<?>) roundTrip(set);
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<Object>(setCopy));
+        assertNotNull(setCopy.comparator());
+
+        final TreeMap<String, Integer> map = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        map.put("A", 1);
+        assertEquals(Integer.valueOf(1), ((TreeMap<?, ?>) roundTrip(map)).get("a"));
+
+        final NamedList list = new NamedList();
+        list.name = "names";
+        list.add("first");
+        final NamedList listCopy = (NamedList) roundTrip(list);
+        assertEquals("names", listCopy.name);
+        assertEquals(Collections.singletonList("first"), listCopy);
+    }
+
+    public void testNotSerializable() {
+        try {
+            serializer.serialize(new Object());
+            fail();
+        } catch (final IllegalArgumentException iae) {
+            // ok
+        }
+    }
+
+    public void testReaderOnlyInstantiatesBinaryClasses() {
+        for (final Class<?> type : new Class<?>[]{Unserializable.class, Hidden.class, NamedList.class}) {
+            try {
+                serializer.deserialize(objectOf(type), Object.class);
+                fail(type.getName());
+            } catch (final IllegalArgumentException iae) {
+                assertFalse(Unserializable.created || Hidden.created);
+            }
+        }
+    }
+
+    public void testRejectsOversizedLengths() {
+        // BYTES with a 5 bytes varint size of ~2^31, MAP of HashMap with 2^28 entries, negative ARRAY length
+        final byte[][] payloads = {
+            {11, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+            concat(new byte[]{18, 0}, className(HashMap.class), new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01}),
+            concat(new byte[]{16, 0}, className(String.class), new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}),
+            {1, 5}
+        };
+        for (final byte[] payload : payloads) {
+            try {
+                serializer.deserialize(payload, Object.class);
+                fail(Arrays.toString(payload));
+            } catch (final IllegalArgumentException iae) {
+                assertTrue(StreamCorruptedException.class.isInstance(iae.getCause()));
+            }
+        }
+    }
+
+    public void testMaxSize() {
+        final List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 64; i++) {
+            values.add(i);
+        }
+        assertEquals(values, new BinarySerializer(64).deserialize(serializer.serialize(values), Object.class));
+        values.add(64);
+        try {
+            new BinarySerializer(64).deserialize(serializer.serialize(values), Object.class);
+            fail();
+        } catch (final IllegalArgumentException iae) {
+            assertTrue(StreamCorruptedException.class.isInstance(iae.getCause()));
+        }
+    }
+
+    private static byte[] className(final Class<?> type) {
+        final byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+        return concat(new byte[]{(byte) name.length}, name);
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            baos.write(part, 0, part.length);
+        }
+        return baos.toByteArray();
+    }
+
+    // what a forged payload would send: an OBJECT tag and a new class name
+    private static byte[] objectOf(final Class<?> type) {
+        final byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(19);
+        baos.write(0);
+        baos.write(name.length);
+        baos.write(name, 0, name.length);
+        return baos.toByteArray();
+    }
+
+    private Object roundTrip(final Object value) {
+        return serializer.deserialize(serializer.serialize(value), Object.class);
+    }
+
+    public static class Person implements Serializable {
+
+        private String name;
+        private int age;
+        private Person parent;
+        private List<Person> children = new ArrayList<Person>();
+        private Map<String, String> attributes = new HashMap<String, String>();
+        private List<String> tags;
+        private transient String cache;
+
+        public Person() {
+            // no-op
+        }
+
+        public Person(final String name, final int age) {
+            this.name = name;
+            this.age = age;
+        }
+    }
+
+    public static class NamedList extends ArrayList<String> {
+
+        private String name;
+    }
+
+    public static class Unserializable {
+
+        private static boolean created;
+
+        public Unserializable() {
+            created = true;
+        }
+    }
+
+    public static class Hidden implements Serializable {
+
+        private static boolean created;
+
+        private Hidden() {
+            created = true;
+        }
+    }
+}
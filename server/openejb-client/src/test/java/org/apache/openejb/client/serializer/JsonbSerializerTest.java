@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonbSerializerTest extends TestCase {
+
+    private final JsonbSerializer serializer = new JsonbSerializer();
+
+    public void testSimpleValues() {
+        assertEquals("héllo", roundTrip("héllo", String.class));
+        assertEquals(Integer.valueOf(1), roundTrip(1, Integer.class));
+        assertEquals(Boolean.TRUE, roundTrip(true, Boolean.class));
+    }
+
+    public void testNestedCollectionsAndMaps() {
+        final Order order = new Order();
+        order.setCustomer("Jane Doe");
+        order.setLines(new ArrayList<Line>());
+        for (int i = 0; i < 3; i++) {
+            final Line line = new Line();
+            line.setSku("SKU-" + i);
+            line.setQuantity(i + 1);
+            line.setTags(Arrays.asList("tag" + i, "common"));
+            order.getLines().add(line);
+        }
+        order.setAttributes(new HashMap<String, List<Integer>>());
+        order.getAttributes().put("first", Arrays.asList(1, 2));
+        order.getAttributes().put("empty", new ArrayList<Integer>());
+
+        final Order copy = roundTrip(order, Order.class);
+        assertEquals("Jane Doe", copy.getCustomer());
+        assertEquals(3, copy.getLines().size());
+        assertEquals("SKU-2", copy.getLines().get(2).getSku());
+        assertEquals(3, copy.getLines().get(2).getQuantity());
+        assertEquals(Arrays.asList("tag1", "common"), copy.getLines().get(1).getTags());
+        assertEquals(Arrays.asList(1, 2), copy.getAttributes().get("first"));
+        assertTrue(copy.getAttributes().get("empty").isEmpty());
+    }
+
+    public void testNullFields() {
+        final Order order = new Order();
+        order.setLines(new ArrayList<Line>());
+        order.getLines().add(new Line());
+
+        final Order copy = roundTrip(order, Order.class);
+        assertNull(copy.getCustomer());
+        assertNull(copy.getAttributes());
+        assertEquals(1, copy.getLines().size());
+        assertNull(copy.getLines().get(0).getSku());
+        assertNull(copy.getLines().get(0).getTags());
+    }
+
+    private <T> T roundTrip(final Object value, final Class<T> type) {
+        return type.cast(serializer.deserialize(serializer.serialize(value), type));
+    }
+
+    public static class Order {
+
+        private String customer;
+        private List<Line> lines;
+        private Map<String, List<Integer>> attributes;
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(final String customer) {
+            this.customer = customer;
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+
+        public void setLines(final List<Line> lines) {
+            this.lines = lines;
+        }
+
+        public Map<String, List<Integer>> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(final Map<String, List<Integer>> attributes) {
+            this.attributes = attributes;
+        }
+    }
+
+    public static class Line {
+
+        private String sku;
+        private int quantity;
+        private List<String> tags;
+
+        public String getSku() {
+            return sku;
+        }
+
+        public void setSku(final String sku) {
+            this.sku = sku;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(final int quantity) {
+            this.quantity = quantity;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(final List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
@@ -29,6 +29,8 @@ import org.apache.openejb.client.JNDIContext;
 import org.apache.openejb.client.ServerMetaData;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
@@ -154,6 +156,7 @@ class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
             info.getInterfaces(),
             beanContext.getAsynchronousMethodSignatures());
         eMetaData.loadProperties(beanContext.getProperties());
+        eMetaData.setDeploymentInterfaces(getRemoteInterfaces(beanContext));
 
         final Object primKey = info.getPrimaryKey();
 
@@ -162,6 +165,26 @@ class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
         return hanlder.createEJBObjectProxy();
     }
 
+    /**
+     * The remote interfaces of the bean in a stable order, the index of an interface is the id
+     * advertised in the {@link EJBMetaDataImpl} and sent back by the clients instead of the class.
+     */
+    public static Class[] getRemoteInterfaces(final BeanContext beanContext) {
+        RemoteInterfaces interfaces = beanContext.get(RemoteInterfaces.class);
+        if (interfaces == null) {
+            final List<Class> classes = new ArrayList<Class>(beanContext.getBusinessRemoteInterfaces());
+            if (beanContext.getHomeInterface() != null) {
+                classes.add(beanContext.getHomeInterface());
+            }
+            if (beanContext.getRemoteInterface() != null) {
+                classes.add(beanContext.getRemoteInterface());
+            }
+            interfaces = new RemoteInterfaces(classes.toArray(new Class[classes.size()]));
+            beanContext.set(RemoteInterfaces.class, interfaces);
+        }
+        return interfaces.classes;
+    }
+
     public static InterfaceType convert(final org.apache.openejb.InterfaceType type) {
         switch (type) {
             case EJB_HOME:
@@ -216,6 +239,16 @@ class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
             info.getInterfaces(),
             beanContext.getAsynchronousMethodSignatures());
         eMetaData.loadProperties(beanContext.getProperties());
+        eMetaData.setDeploymentInterfaces(getRemoteInterfaces(beanContext));
         return eMetaData;
     }
-}
\ No newline at end of file
+
+    private static final class RemoteInterfaces {
+
+        private final Class[] classes;
+
+        private RemoteInterfaces(final Class[] classes) {
+            this.classes = classes;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.openejb.server.ejbd;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.ProxyInfo;
+import org.apache.openejb.assembler.classic.event.AssemblerAfterApplicationCreated;
+import org.apache.openejb.client.JNDIContext;
 import org.apache.openejb.client.ClusterResponse;
 import org.apache.openejb.client.EJBRequest;
 import org.apache.openejb.client.EjbObjectInputStream;
@@ -29,6 +31,7 @@ import org.apache.openejb.client.Response;
 import org.apache.openejb.client.ServerMetaData;
 import org.apache.openejb.client.serializer.EJBDSerializer;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.observer.Observes;
 import org.apache.openejb.server.DiscoveryAgent;
 import org.apache.openejb.server.context.RequestInfos;
 import org.apache.openejb.server.stream.CountingInputStream;
@@ -94,13 +97,15 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
 
         final String serializer = props.getProperty("serializer", null);
         if (serializer != null) {
-            try {
-                this.serializer = EJBDSerializer.class.cast(Thread.currentThread().getContextClassLoader().loadClass(serializer).newInstance());
-            } catch (final ClassNotFoundException | NoClassDefFoundError cnfe) { // let's try later with app classloader
-                this.serializer = new ContextualSerializer(serializer);
-            }
+            this.serializer = newSerializer(serializer, Thread.currentThread().getContextClassLoader());
         }
 
+        // beans can select their own serializer with the openejb.ejbd.serializer property
+        for (final BeanContext beanContext : containerSystem.deployments()) {
+            initSerializer(beanContext);
+        }
+        SystemInstance.get().addObserver(this);
+
         final DiscoveryAgent discovery = SystemInstance.get().getComponent(DiscoveryAgent.class);
         if (discovery != null) {
             discovery.setDiscoveryListener(clusterHandler);
@@ -111,6 +116,10 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         securityService = SystemInstance.get().getComponent(SecurityService.class);
     }
 
+    public void stop() {
+        SystemInstance.get().removeObserver(this);
+    }
+
     public void service(final Socket socket) throws IOException {
 
         InputStream in = null;
@@ -426,6 +435,37 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         return serializer;
     }
 
+    /**
+     * @return the serializer configured on the bean or the server one
+     */
+    public EJBDSerializer getSerializer(final BeanContext beanContext) {
+        final EJBDSerializer deploymentSerializer = beanContext.get(EJBDSerializer.class);
+        return deploymentSerializer != null ? deploymentSerializer : serializer;
+    }
+
+    public void afterApplicationCreated(@Observes final AssemblerAfterApplicationCreated event) {
+        for (final BeanContext beanContext : event.getContext().getBeanContexts()) {
+            initSerializer(beanContext);
+        }
+    }
+
+    private static void initSerializer(final BeanContext beanContext) {
+        final String serializer = beanContext.getProperties().getProperty(JNDIContext.SERIALIZER);
+        if (serializer != null && beanContext.get(EJBDSerializer.class) == null) {
+            beanContext.set(EJBDSerializer.class, newSerializer(serializer, beanContext.getClassLoader()));
+        }
+    }
+
+    private static EJBDSerializer newSerializer(final String serializer, final ClassLoader loader) {
+        try {
+            return EJBDSerializer.class.cast(loader.loadClass(serializer).newInstance());
+        } catch (final ClassNotFoundException | NoClassDefFoundError cnfe) { // let's try later with app classloader
+            return new ContextualSerializer(serializer);
+        } catch (final InstantiationException | IllegalAccessException e) {
+            throw new OpenEJBRuntimeException(e);
+        }
+    }
+
     private static class ContextualSerializer implements EJBDSerializer {
 
         private final String classname;
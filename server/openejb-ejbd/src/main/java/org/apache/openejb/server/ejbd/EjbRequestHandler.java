@@ -136,6 +136,7 @@ class EjbRequestHandler extends RequestHandler {
 
                 res.start(EJBResponse.Time.DESERIALIZATION);
 
+                req.getBody().setInterfaces(ClientObjectFactory.getRemoteInterfaces(di));
                 req.getBody().readExternal(in);
 
                 //Client version retrieved from body
@@ -363,7 +364,7 @@ class EjbRequestHandler extends RequestHandler {
             //                    req.getPrimaryKey()
             //            );
 
-            final EJBDSerializer serializer = daemon.getSerializer();
+            final EJBDSerializer serializer = daemon.getSerializer(call.getBeanContext());
             if (serializer != null) {
                 req.setSerializer(serializer);
             }
@@ -44,12 +44,16 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
 
     @Override
     public void init(final Properties props) throws Exception {
+        initDaemon(props);
+        keepAlive = new KeepAliveServer(this, server.isGzip());
+    }
+
+    protected void initDaemon(final Properties props) throws Exception {
         server = new EjbDaemon();
         if (props.getProperty("name") == null) { // to let server be component aware
             props.setProperty("name", getName());
         }
         server.init(props);
-        keepAlive = new KeepAliveServer(this, server.isGzip());
     }
 
     @Override
@@ -72,6 +76,9 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
         } else {
             logNotInitialized();
         }
+        if (null != server) {
+            server.stop();
+        }
     }
 
     @Override
@@ -484,6 +484,7 @@ class JndiRequestHandler extends RequestHandler {
                     null,
                     beanContext.getAsynchronousMethodSignatures());
                 metaData.loadProperties(beanContext.getProperties());
+                metaData.setDeploymentInterfaces(ClientObjectFactory.getRemoteInterfaces(beanContext));
                 log(metaData);
                 res.setResult(metaData);
                 break;
@@ -509,6 +510,7 @@ class JndiRequestHandler extends RequestHandler {
                     beanContext.getAsynchronousMethodSignatures());
                 metaData.setPrimaryKey(proxyInfo.getPrimaryKey());
                 metaData.loadProperties(beanContext.getProperties());
+                metaData.setDeploymentInterfaces(ClientObjectFactory.getRemoteInterfaces(beanContext));
 
                 log(metaData);
                 res.setResult(metaData);
@@ -0,0 +1,400 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.client.MultiplexedConnectionFactory;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.SelfManaging;
+import org.apache.openejb.server.ServiceException;
+import org.apache.openejb.server.context.RequestInfos;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector based ejbd server speaking the multiplexed framing of the "mejbd" client scheme
+ * (see {@link MultiplexedConnectionFactory}).
+ * <p/>
+ * Idle connections only cost a selection key: a few event loop threads decode complete frames
+ * and hand them to the business executor, so the number of open clients is no longer bound
+ * to the number of pooled threads as it is with {@link KeepAliveServer}.
+ */
+public class NioEjbServer extends EjbServer implements SelfManaging {
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SERVER_REMOTE, NioEjbServer.class);
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private String ip = "127.0.0.1";
+    private int port;
+    private int backlog = 200;
+    private int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int threads = 200;
+    private int maxFrameSize = 64 * 1024 * 1024;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public void init(final Properties props) throws Exception {
+        // no KeepAliveServer, the sockets are handled by the event loops
+        initDaemon(props);
+
+        final Options options = new Options(props);
+        this.ip = options.get("bind", this.ip);
+        this.port = options.get("port", this.port);
+        this.backlog = options.get("backlog", this.backlog);
+        this.ioThreads = Math.max(1, options.get("ioThreads", this.ioThreads));
+        this.threads = Math.max(1, options.get("threads", this.threads));
+        this.maxFrameSize = options.get("maxFrameSize", this.maxFrameSize);
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        if (this.running.getAndSet(true)) {
+            return;
+        }
+
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("OpenEJB." + getName()));
+        this.executor.allowCoreThreadTimeOut(true);
+
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.socket().setReuseAddress(true);
+            this.serverChannel.socket().bind(new InetSocketAddress(this.ip, this.port), this.backlog);
+            if (this.port == 0) {
+                this.port = this.serverChannel.socket().getLocalPort();
+                SystemInstance.get().getProperties().put(getName() + ".port", Integer.toString(this.port));
+            }
+
+            this.loops = new EventLoop[this.ioThreads];
+            for (int i = 0; i < this.loops.length; i++) {
+                this.loops[i] = new EventLoop(Selector.open());
+                start(this.loops[i], "OpenEJB." + getName() + ".io." + i);
+            }
+        } catch (final IOException e) {
+            this.running.set(false);
+            throw new ServiceException("Service failed to open socket", e);
+        }
+
+        start(new Acceptor(), "OpenEJB." + getName() + ".acceptor");
+        LOGGER.info("Started " + getName() + " on " + this.ip + ":" + this.port + " with " + this.ioThreads + " io threads");
+    }
+
+    private static void start(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        if (!this.running.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            this.serverChannel.close();
+        } catch (final IOException e) {
+            //Ignore
+        }
+
+        for (final EventLoop loop : this.loops) {
+            loop.selector.wakeup();
+        }
+
+        this.executor.shutdownNow();
+
+        if (null != this.server) {
+            this.server.stop();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "ejbd-nio";
+    }
+
+    /**
+     * @return the number of connections accepted by this server since it started
+     */
+    public int getAcceptedConnections() {
+        return this.accepted.get();
+    }
+
+    /**
+     * @return the number of connections currently open
+     */
+    public int getOpenConnections() {
+        return this.connections.get();
+    }
+
+    @Override
+    public String getIP() {
+        return this.ip;
+    }
+
+    @Override
+    public int getPort() {
+        return this.port;
+    }
+
+    private class Acceptor implements Runnable {
+
+        @Override
+        public void run() {
+            while (NioEjbServer.this.running.get()) {
+                try {
+                    final SocketChannel channel = NioEjbServer.this.serverChannel.accept();
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    NioEjbServer.this.accepted.incrementAndGet();
+
+                    final EventLoop[] loops = NioEjbServer.this.loops;
+                    loops[(NioEjbServer.this.next.getAndIncrement() & Integer.MAX_VALUE) % loops.length].register(channel);
+                } catch (final ClosedChannelException e) {
+                    break;
+                } catch (final Throwable e) {
+                    if (NioEjbServer.this.running.get()) {
+                        LOGGER.debug("Unexpected error accepting connection", e);
+                    }
+                }
+            }
+        }
+    }
+
+    private class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private EventLoop(final Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(final SocketChannel channel) {
+            this.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        channel.register(EventLoop.this.selector, SelectionKey.OP_READ, new Session(EventLoop.this, channel));
+                        NioEjbServer.this.connections.incrementAndGet();
+                    } catch (final ClosedChannelException e) {
+                        //Ignore
+                    }
+                }
+            });
+        }
+
+        private void execute(final Runnable task) {
+            this.tasks.add(task);
+            this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (NioEjbServer.this.running.get()) {
+                    this.selector.select();
+
+                    Runnable task;
+                    while ((task = this.tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+
+                        final Session session = Session.class.cast(key.attachment());
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                session.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.write();
+                            }
+                        } catch (final Throwable e) {
+                            LOGGER.debug("Closing connection after error", e);
+                            session.close();
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                LOGGER.error("Event loop failed", e);
+            } finally {
+                for (final SelectionKey key : this.selector.keys()) {
+                    Session.class.cast(key.attachment()).close();
+                }
+                try {
+                    this.selector.close();
+                } catch (final IOException e) {
+                    //Ignore
+                }
+            }
+        }
+    }
+
+    private class Session {
+
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(MultiplexedConnectionFactory.HEADER_SIZE);
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private ByteBuffer body;
+        private int requestId;
+        private boolean closed;
+
+        private Session(final EventLoop loop, final SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        private void read() throws IOException {
+            while (true) {
+                if (null == this.body) {
+                    if (this.channel.read(this.header) < 0) {
+                        this.close();
+                        return;
+                    }
+                    if (this.header.hasRemaining()) {
+                        return;
+                    }
+
+                    this.header.flip();
+                    this.requestId = this.header.getInt();
+                    final int length = this.header.getInt();
+                    this.header.clear();
+
+                    if (length < 0 || length > NioEjbServer.this.maxFrameSize) {
+                        throw new IOException("Invalid frame length " + length + " for request " + this.requestId);
+                    }
+                    this.body = ByteBuffer.allocate(length);
+                }
+
+                if (this.channel.read(this.body) < 0) {
+                    this.close();
+                    return;
+                }
+                if (this.body.hasRemaining()) {
+                    return;
+                }
+
+                this.dispatch(this.requestId, this.body.array());
+                this.body = null;
+            }
+        }
+
+        private void dispatch(final int id, final byte[] request) {
+            NioEjbServer.this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final ByteArrayOutputStream response = new ByteArrayOutputStream(512);
+                    RequestInfos.initRequestInfo(Session.this.channel.socket());
+                    try {
+                        NioEjbServer.this.service(new ByteArrayInputStream(request), response);
+                    } catch (final Throwable e) {
+                        LOGGER.debug("Request " + id + " failed", e);
+                    } finally {
+                        RequestInfos.clearRequestInfo();
+                    }
+
+                    final ByteBuffer frame = ByteBuffer.allocate(MultiplexedConnectionFactory.HEADER_SIZE + response.size());
+                    frame.putInt(id).putInt(response.size()).put(response.toByteArray());
+                    frame.flip();
+                    Session.this.responses.add(frame);
+
+                    Session.this.loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                Session.this.write();
+                            } catch (final IOException e) {
+                                LOGGER.debug("Closing connection after write error", e);
+                                Session.this.close();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        private void write() throws IOException {
+            final SelectionKey key = this.channel.keyFor(this.loop.selector);
+            if (null == key || !key.isValid()) {
+                return;
+            }
+
+            ByteBuffer frame;
+            while ((frame = this.responses.peek()) != null) {
+                this.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                this.responses.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close() {
+            if (this.closed) { // only called by the event loop
+                return;
+            }
+            this.closed = true;
+            NioEjbServer.this.connections.decrementAndGet();
+
+            final SelectionKey key = this.channel.keyFor(this.loop.selector);
+            if (null != key) {
+                key.cancel();
+            }
+            try {
+                this.channel.close();
+            } catch (final IOException e) {
+                //Ignore
+            }
+            this.responses.clear();
+        }
+    }
+}
@@ -17,8 +17,10 @@
 package org.apache.openejb;
 
 import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.EjbJarInfo;
 import org.apache.openejb.client.JNDIContext;
 import org.apache.openejb.client.RemoteInitialContextFactory;
+import org.apache.openejb.client.serializer.BinarySerializer;
 import org.apache.openejb.client.serializer.EJBDSerializer;
 import org.apache.openejb.config.ConfigurationFactory;
 import org.apache.openejb.config.DeploymentsResolver;
@@ -53,6 +55,14 @@ public class SerializerTest {
         }}, MySerializer.class.getName());
     }
 
+    @Test
+    public void perDeploymentSerializer() throws Exception {
+        // the server default is not able to handle InputNotSerilizable, the bean property wins
+        invokeRemote(new Properties() {{
+            setProperty("serializer", BinarySerializer.class.getName());
+        }}, MySerializer.class.getName(), MySerializer.class.getName());
+    }
+
     @Test
     public void ensureItFailBecauseNotSerializeByDefault() throws Exception {
         try {
@@ -64,6 +74,10 @@ public class SerializerTest {
     }
 
     private void invokeRemote(final Properties serverProps, final String serializer) throws Exception {
+        invokeRemote(serverProps, serializer, null);
+    }
+
+    private void invokeRemote(final Properties serverProps, final String serializer, final String beanSerializer) throws Exception {
         final EjbServer ejbServer = new EjbServer();
 
         final Properties initProps = new Properties();
@@ -81,7 +95,11 @@ public class SerializerTest {
 
         final EjbJar ejbJar = new EjbJar();
         ejbJar.addEnterpriseBean(new StatelessBean(AnEjbRemote.class));
-        assembler.createApplication(config.configureApplication(ejbJar));
+        final EjbJarInfo ejbJarInfo = config.configureApplication(ejbJar);
+        if (beanSerializer != null) {
+            ejbJarInfo.enterpriseBeans.get(0).properties.setProperty(JNDIContext.SERIALIZER, beanSerializer);
+        }
+        assembler.createApplication(ejbJarInfo);
 
         try {
 
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioEjbServerTest extends TestCase {
+
+    public void testConcurrentCallsShareOneConnection() throws Exception {
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final NioEjbServer server = new NioEjbServer();
+        final Properties serverProps = new Properties();
+        serverProps.setProperty("bind", "127.0.0.1");
+        serverProps.setProperty("port", "0");
+        serverProps.setProperty("ioThreads", "1");
+        serverProps.setProperty("threads", "4");
+        server.init(serverProps);
+        server.start();
+
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(KeepAilveTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final Properties props = new Properties();
+            props.put("java.naming.factory.initial", "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put("java.naming.provider.url", "mejbd://127.0.0.1:" + server.getPort());
+            final Context context = new InitialContext(props);
+            final KeepAilveTest.Echo echo = (KeepAilveTest.Echo) context.lookup("EchoBeanRemote");
+
+            final int threads = 20;
+            final CountDownLatch latch = new CountDownLatch(threads);
+            final AtomicInteger failures = new AtomicInteger();
+            for (int i = 0; i < threads; i++) {
+                final int id = i;
+                KeepAilveTest.thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 50; j++) {
+                                final String message = id + " bottles of beer on the wall " + j;
+                                if (!message.equals(new StringBuilder(echo.echo(message)).reverse().toString())) {
+                                    failures.incrementAndGet();
+                                }
+                            }
+                        } catch (final Throwable e) {
+                            failures.incrementAndGet();
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }, true);
+            }
+
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            assertEquals(0, failures.get());
+            assertEquals(1, server.getAcceptedConnections()); // the lookup and all the calls are multiplexed
+            assertEquals(1, server.getOpenConnections());
+        } finally {
+            server.stop();
+            OpenEJB.destroy();
+        }
+    }
+}
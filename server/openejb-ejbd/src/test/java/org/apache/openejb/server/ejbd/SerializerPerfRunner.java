@@ -0,0 +1,335 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.JNDIContext;
+import org.apache.openejb.client.RemoteInitialContextFactory;
+import org.apache.openejb.client.serializer.BinarySerializer;
+import org.apache.openejb.client.serializer.EJBDSerializer;
+import org.apache.openejb.client.serializer.JsonbSerializer;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.DeploymentsResolver;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServiceException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.ejb.Remote;
+import javax.ejb.Stateless;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares a remote business method call going through {@link EjbDaemon#service(InputStream, OutputStream)}
+ * with java serialization and the bundled {@link EJBDSerializer}s. The {@link Wire} counters report the
+ * request and response bytes seen by the daemon (divide them by {@code calls} to get the size of one call)
+ * and the GC profiler reports the allocation rate of each one.
+ */
+@State(Scope.Benchmark)
+public class SerializerPerfRunner {
+
+    @Param({"java", "binary", "jsonb"})
+    public String serializer;
+
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private ServiceDaemon daemon;
+    private OrderService service;
+    private Order order;
+
+    @Setup
+    public void setup() throws Exception {
+        order = Order.sample();
+
+        final Properties initProps = new Properties();
+        initProps.put(DeploymentsResolver.DEPLOYMENTS_CLASSPATH_PROPERTY, "false");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final String serializerClass = serializerClass();
+        final Properties serverProps = new Properties();
+        if (serializerClass != null) {
+            serverProps.setProperty("serializer", serializerClass);
+        }
+        final EjbServer ejbServer = new CountingEjbServer(read, written);
+        ejbServer.init(serverProps);
+
+        daemon = new ServiceDaemon(ejbServer, 0, "localhost");
+        daemon.start();
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new StatelessBean(OrderBean.class));
+        SystemInstance.get().getComponent(Assembler.class).createApplication(new ConfigurationFactory().configureApplication(ejbJar));
+
+        final Properties props = new Properties();
+        props.put(Context.INITIAL_CONTEXT_FACTORY, RemoteInitialContextFactory.class.getName());
+        props.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + daemon.getPort());
+        if (serializerClass != null) {
+            props.put(JNDIContext.SERIALIZER, serializerClass);
+        }
+        service = OrderService.class.cast(new InitialContext(props).lookup("OrderBeanRemote"));
+    }
+
+    @TearDown
+    public void tearDown() throws ServiceException {
+        daemon.stop();
+        OpenEJB.destroy();
+    }
+
+    @Benchmark
+    public Object remoteCall(final Wire wire) {
+        final long in = read.get();
+        final long out = written.get();
+
+        final Order result = service.echo(order);
+
+        wire.requestBytes += read.get() - in;
+        wire.responseBytes += written.get() - out;
+        wire.calls++;
+        return result;
+    }
+
+    private String serializerClass() {
+        if ("binary".equals(serializer)) {
+            return BinarySerializer.class.getName();
+        }
+        if ("jsonb".equals(serializer)) {
+            return JsonbSerializer.class.getName();
+        }
+        return null; // plain java serialization, the ejbd default
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SerializerPerfRunner.class.getSimpleName())
+                .forks(0)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .threads(1)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+
+        public long requestBytes;
+        public long responseBytes;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requestBytes = 0;
+            responseBytes = 0;
+            calls = 0;
+        }
+    }
+
+    @Remote
+    public interface OrderService {
+
+        Order echo(Order order);
+    }
+
+    @Stateless
+    public static class OrderBean implements OrderService {
+
+        @Override
+        public Order echo(final Order order) {
+            return order;
+        }
+    }
+
+    /**
+     * Counts the bytes while they go through the daemon and not once the request is done
+     * so the client always sees the full count when its call returns.
+     */
+    public static class CountingEjbServer extends EjbServer {
+
+        private final AtomicLong read;
+        private final AtomicLong written;
+
+        public CountingEjbServer(final AtomicLong read, final AtomicLong written) {
+            this.read = read;
+            this.written = written;
+        }
+
+        @Override
+        public void service(final InputStream inputStream, final OutputStream outputStream) throws ServiceException, IOException {
+            super.service(new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    final int r = super.read();
+                    if (r != -1) {
+                        read.incrementAndGet();
+                    }
+                    return r;
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    final int r = super.read(b, off, len);
+                    if (r > 0) {
+                        read.addAndGet(r);
+                    }
+                    return r;
+                }
+            }, new FilterOutputStream(outputStream) {
+                @Override
+                public void write(final int b) throws IOException {
+                    written.incrementAndGet();
+                    out.write(b);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    written.addAndGet(len);
+                    out.write(b, off, len);
+                }
+            });
+        }
+    }
+
+    public static class Order implements Serializable {
+
+        private long id;
+        private String customer;
+        private double total;
+        private List<Line> lines;
+        private Map<String, String> attributes;
+
+        public static Order sample() {
+            final Order order = new Order();
+            order.id = 12345;
+            order.customer = "Jane Doe";
+            order.lines = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final Line line = new Line();
+                line.sku = "SKU-" + i;
+                line.quantity = i + 1;
+                line.price = 9.99 * (i + 1);
+                order.total += line.price * line.quantity;
+                order.lines.add(line);
+            }
+            order.attributes = new HashMap<>();
+            order.attributes.put("channel", "web");
+            order.attributes.put("currency", "EUR");
+            return order;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(final long id) {
+            this.id = id;
+        }
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(final String customer) {
+            this.customer = customer;
+        }
+
+        public double getTotal() {
+            return total;
+        }
+
+        public void setTotal(final double total) {
+            this.total = total;
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+
+        public void setLines(final List<Line> lines) {
+            this.lines = lines;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(final Map<String, String> attributes) {
+            this.attributes = attributes;
+        }
+    }
+
+    public static class Line implements Serializable {
+
+        private String sku;
+        private int quantity;
+        private double price;
+
+        public String getSku() {
+            return sku;
+        }
+
+        public void setSku(final String sku) {
+            this.sku = sku;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(final int quantity) {
+            this.quantity = quantity;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(final double price) {
+            this.price = price;
+        }
+    }
+}